@@ -0,0 +1,326 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttendanceManagerTest {
+    
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 4);
+    
+    private static AttendanceManager createManager(boolean concurrent) {
+        AttendanceManager manager = new AttendanceManager(concurrent);
+        for (int i = 0; i < 100; i++) {
+            manager.addStudent(new Student("S" + i, "Student " + i, "s" + i + "@university.edu", "Physics"));
+        }
+        return manager;
+    }
+    
+    /**
+     * A bulk save that only clears marks must not leave an empty session behind
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void unmarkedOnlySessionOpensNothing(boolean concurrent) {
+        AttendanceManager manager = createManager(concurrent);
+        String[] ids = new String[100];
+        AttendanceStatus[] statuses = new AttendanceStatus[100];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = "S" + i;
+            statuses[i] = i % 2 == 0 ? AttendanceStatus.UNMARKED : null;
+        }
+        BulkMarkResult result = manager.markSessionStatus(DAY, ids, statuses, ids.length);
+        
+        assertEquals(100, result.getCount(BulkMarkResult.Outcome.UNCHANGED));
+        assertFalse(manager.hasSession(DAY));
+        assertEquals(0, manager.getTotalRecords());
+        assertTrue(manager.aggregate().getDates().isEmpty());
+        manager.verifyCounters();
+    }
+    
+    /**
+     * Clearing every mark of an existing session keeps the session, as single removals do
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void unmarkedRowsClearAnExistingSession(boolean concurrent) {
+        AttendanceManager manager = createManager(concurrent);
+        manager.markAttendance("S1", DAY, true);
+        String[] ids = {"S1", "S2"};
+        AttendanceStatus[] statuses = {AttendanceStatus.UNMARKED, AttendanceStatus.UNMARKED};
+        BulkMarkResult result = manager.markSessionStatus(DAY, ids, statuses, ids.length);
+        
+        assertEquals(1, result.getCount(BulkMarkResult.Outcome.UPDATED));
+        assertEquals(0, manager.getTotalRecords());
+        assertTrue(manager.hasSession(DAY));
+        manager.verifyCounters();
+    }
+    
+    /**
+     * Full-history and date-range aggregates, with any number of workers, agree with
+     * the counters the manager maintains
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void aggregateMatchesCounters(int workers) {
+        AttendanceManager manager = new AttendanceManager(true);
+        AttendanceStatus[] cycle = {AttendanceStatus.PRESENT, AttendanceStatus.PRESENT, AttendanceStatus.PRESENT,
+            AttendanceStatus.ABSENT, AttendanceStatus.LATE, AttendanceStatus.EXCUSED};
+        String[] ids = new String[10000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = "S" + i;
+            manager.addStudent(new Student(ids[i], "Student " + i, "s" + i + "@university.edu", "Course " + i % 4));
+        }
+        AttendanceStatus[] statuses = new AttendanceStatus[ids.length];
+        for (int d = 0; d < 12; d++) {
+            for (int i = 0; i < ids.length; i++) {
+                statuses[i] = cycle[(i * 7 + d) % cycle.length];
+            }
+            manager.markSessionStatus(DAY.plusDays(d), ids, statuses, ids.length);
+        }
+        LocalDate from = DAY.plusDays(3);
+        LocalDate to = DAY.plusDays(11);
+        
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            AttendanceAggregate full = manager.aggregate(null, null, pool, () -> false);
+            AttendanceAggregate range = manager.aggregate(from, to, pool, () -> false);
+            long rangeTotal = 0;
+            for (int d = 0; d < 12; d++) {
+                LocalDate date = DAY.plusDays(d);
+                assertEquals(manager.getDateStatistics(date), full.getDateStatistics(date), date.toString());
+                if (!date.isBefore(from)) {
+                    rangeTotal += range.getDateStatistics(date).get("total");
+                }
+            }
+            for (String id : ids) {
+                assertEquals(manager.getStudentStatistics(id), full.getStudentStatistics(id), id);
+            }
+            assertEquals(ids.length, full.getStudentCount());
+            assertEquals(9, range.getDates().size());
+            assertEquals(rangeTotal, (long) range.getTotalStatistics().get("total"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Removing a cohort in bulk leaves the same roster, marks and counters as removing
+     * it one student at a time; unknown and repeated IDs are skipped
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void bulkRemovalMatchesOneByOne(boolean concurrent) {
+        AttendanceManager bulk = createManager(concurrent);
+        AttendanceManager single = createManager(concurrent);
+        for (AttendanceManager manager : new AttendanceManager[] {bulk, single}) {
+            for (int i = 0; i < 100; i++) {
+                manager.markAttendance("S" + i, DAY, AttendanceStatus.fromCode(i % 4));
+                manager.markAttendance("S" + i, DAY.plusDays(1), i % 3 == 0);
+            }
+        }
+        List<String> cohort = new ArrayList<>();
+        for (int i = 0; i < 100; i += 5) {
+            cohort.add("S" + i);
+        }
+        cohort.add("S0");
+        cohort.add("missing");
+        
+        assertEquals(20, bulk.removeStudents(cohort));
+        for (String studentId : cohort) {
+            single.removeStudent(studentId);
+        }
+        
+        assertEquals(80, bulk.getTotalStudents());
+        assertEquals(single.getAllAttendanceRecords().size(), bulk.getAllAttendanceRecords().size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(single.getStudentAttendance("S" + i).toString(), bulk.getStudentAttendance("S" + i).toString());
+        }
+        assertEquals(single.getDateStatistics(DAY), bulk.getDateStatistics(DAY));
+        bulk.verifyCounters();
+    }
+    
+    /**
+     * Every status reads back as marked, whatever status it replaces, through each
+     * read path; UNMARKED removes the mark
+     */
+    @ParameterizedTest
+    @EnumSource(AttendanceStatus.class)
+    void everyStatusRoundTrips(AttendanceStatus status) {
+        AttendanceManager manager = createManager(false);
+        AttendanceStatus[] previous = AttendanceStatus.values();
+        for (int i = 0; i < previous.length; i++) {
+            String id = "S" + i;
+            manager.markAttendance(id, DAY, previous[i]);
+            assertTrue(manager.markAttendance(id, DAY, status));
+            
+            assertEquals(status, manager.getAttendanceStatus(id, DAY), "over " + previous[i]);
+            AttendanceRecord record = manager.getAttendanceRecord(id, DAY);
+            ArrayList<AttendanceRecord> history = manager.getStudentAttendance(id);
+            if (status.isMarked()) {
+                assertEquals(status, record.getStatus());
+                assertEquals(status.isPresent(), record.isPresent());
+                assertEquals(1, history.size());
+                assertEquals(status, history.get(0).getStatus());
+            } else {
+                assertNull(record);
+                assertTrue(history.isEmpty());
+            }
+            manager.verifyCounters();
+        }
+        
+        SessionRoster roster = manager.getSessionRoster(DAY);
+        int marked = 0;
+        for (int row = 0; row < roster.size(); row++) {
+            if (Integer.parseInt(roster.getStudentId(row).substring(1)) < previous.length) {
+                assertEquals(status, roster.getStatus(row), roster.getStudentId(row));
+                marked++;
+            }
+        }
+        assertEquals(previous.length, marked);
+        manager.forEachRecord((studentId, date, recorded) -> assertEquals(status, recorded, studentId));
+        assertEquals(status.isMarked() ? previous.length : 0, manager.getTotalRecords());
+        int count = status.isMarked() ? previous.length : 0;
+        Map<String, Integer> statistics = manager.getDateStatistics(DAY, CountingPolicy.LENIENT);
+        assertEquals(status == AttendanceStatus.LATE ? count : 0, statistics.get("late"));
+        assertEquals(status == AttendanceStatus.EXCUSED ? count : 0, statistics.get("excused"));
+    }
+    
+    /**
+     * Each counting policy weighs late and excused marks its own way, and changing the
+     * default policy changes the percentages of the methods that don't take one
+     */
+    @Test
+    void countingPoliciesWeighStatusesDifferently() {
+        AttendanceManager manager = createManager(false);
+        AttendanceStatus[] marks = {AttendanceStatus.PRESENT, AttendanceStatus.PRESENT, AttendanceStatus.PRESENT,
+            AttendanceStatus.PRESENT, AttendanceStatus.PRESENT, AttendanceStatus.ABSENT, AttendanceStatus.ABSENT,
+            AttendanceStatus.LATE, AttendanceStatus.LATE, AttendanceStatus.EXCUSED};
+        for (int d = 0; d < marks.length; d++) {
+            manager.markAttendance("S0", DAY.plusDays(d), marks[d]);
+            manager.markAttendance("S1", DAY.plusDays(d), AttendanceStatus.PRESENT);
+        }
+        
+        // 5 present, 2 absent, 2 late, 1 excused
+        Object[][] expected = {
+            {CountingPolicy.STANDARD, 7, 9, 700.0 / 9},
+            {CountingPolicy.STRICT, 5, 10, 50.0},
+            {CountingPolicy.LENIENT, 8, 10, 80.0},
+        };
+        for (Object[] row : expected) {
+            CountingPolicy policy = (CountingPolicy) row[0];
+            int attended = (Integer) row[1];
+            int counted = (Integer) row[2];
+            double percentage = (Double) row[3];
+            
+            assertEquals(percentage, manager.calculateAttendancePercentage("S0", policy), 1e-9, policy.getName());
+            Map<String, Integer> statistics = manager.getStudentStatistics("S0", policy);
+            assertEquals(counted, statistics.get("total"), policy.getName());
+            assertEquals(attended, statistics.get("present"), policy.getName());
+            assertEquals(counted - attended, statistics.get("absent"), policy.getName());
+            assertEquals(2, statistics.get("late"));
+            assertEquals(1, statistics.get("excused"));
+            
+            manager.setCountingPolicy(policy);
+            assertSame(policy, manager.getCountingPolicy());
+            assertEquals(percentage, manager.calculateAttendancePercentage("S0"), 1e-9, policy.getName());
+            assertEquals(statistics, manager.getStudentStatistics("S0"));
+            StudentStanding standing = manager.getStanding("S0");
+            assertEquals(attended, standing.getAttended(), policy.getName());
+            assertEquals(counted, standing.getCounted(), policy.getName());
+            assertEquals("S0", manager.getLowestStudents(1).get(0).getStudentId());
+            assertEquals(100.0, manager.calculateAttendancePercentage("S1"));
+            manager.verifyCounters();
+        }
+        assertNotEquals(manager.calculateAttendancePercentage("S0", CountingPolicy.STRICT),
+            manager.calculateAttendancePercentage("S0", CountingPolicy.STANDARD));
+        assertNotEquals(manager.calculateAttendancePercentage("S0", CountingPolicy.STANDARD),
+            manager.calculateAttendancePercentage("S0", CountingPolicy.LENIENT));
+    }
+    
+    /**
+     * Course counters follow a student's marks when the student changes course and
+     * when the student is removed, matching a recount from the roster
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void courseRollupsFollowCourseChangesAndRemovals(boolean concurrent) {
+        AttendanceManager manager = new AttendanceManager(concurrent);
+        String[] courses = {"Physics", "Chemistry", "Biology"};
+        for (int i = 0; i < 60; i++) {
+            manager.addStudent(new Student("S" + i, "Student " + i, "s" + i + "@university.edu", courses[i % 3]));
+            for (int d = 0; d < 5; d++) {
+                manager.markAttendance("S" + i, DAY.plusDays(d), AttendanceStatus.fromCode((i + d) % 4));
+            }
+        }
+        assertCourseRollupsMatchRecount(manager, courses);
+        
+        for (int i = 0; i < 60; i += 4) {
+            assertTrue(manager.changeCourse("S" + i, courses[(i + 1) % 3]));
+        }
+        assertFalse(manager.changeCourse("S1", courses[1]));
+        assertCourseRollupsMatchRecount(manager, courses);
+        
+        for (int i = 0; i < 60; i += 3) {
+            assertTrue(manager.removeStudent("S" + i));
+        }
+        assertCourseRollupsMatchRecount(manager, courses);
+        
+        List<String> cohort = new ArrayList<>();
+        for (int i = 1; i < 60; i += 3) {
+            cohort.add("S" + i);
+        }
+        assertEquals(cohort.size(), manager.removeStudents(cohort));
+        assertCourseRollupsMatchRecount(manager, courses);
+        manager.verifyCounters();
+    }
+    
+    /**
+     * Recount each course's size and per-status marks, lifetime and per date, from its
+     * current students' histories and compare them with the manager's course counters
+     */
+    private static void assertCourseRollupsMatchRecount(AttendanceManager manager, String[] courses) {
+        for (String course : courses) {
+            int size = 0;
+            int[] lifetime = new int[AttendanceStore.STATES];
+            int[][] daily = new int[5][AttendanceStore.STATES];
+            for (Student student : manager.getAllStudents()) {
+                if (!course.equals(student.getCourse())) {
+                    continue;
+                }
+                size++;
+                for (AttendanceRecord record : manager.getStudentAttendance(student.getStudentId())) {
+                    int state = record.getStatus().getCode();
+                    lifetime[state]++;
+                    daily[(int) (record.getDate().toEpochDay() - DAY.toEpochDay())][state]++;
+                }
+            }
+            assertEquals(size, manager.getCourseSize(course), course);
+            assertEquals(size, manager.getCourseRoster(course, DAY).size(), course);
+            for (CountingPolicy policy : new CountingPolicy[] {CountingPolicy.STANDARD, CountingPolicy.STRICT}) {
+                assertEquals(statisticsOf(lifetime, policy), manager.getCourseStatistics(course, policy), course);
+                for (int d = 0; d < 5; d++) {
+                    assertEquals(statisticsOf(daily[d], policy),
+                        manager.getCourseStatistics(course, DAY.plusDays(d), policy), course + " day " + d);
+                }
+            }
+        }
+    }
+    
+    private static Map<String, Integer> statisticsOf(int[] counts, CountingPolicy policy) {
+        return policy.statistics(counts[AttendanceStore.PRESENT], counts[AttendanceStore.ABSENT],
+            counts[AttendanceStore.LATE], counts[AttendanceStore.EXCUSED]);
+    }
+}
@@ -0,0 +1,189 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+    
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 4);
+    private static final long TIMEOUT_SECONDS = 10;
+    
+    /**
+     * Collects the bursts it is given, with the thread each arrived on
+     */
+    private static final class Recorder implements MutationListener {
+        
+        final BlockingQueue<List<MutationEvent>> bursts = new LinkedBlockingQueue<>();
+        final BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+        
+        @Override
+        public void mutationsApplied(List<MutationEvent> events) {
+            threads.add(Thread.currentThread());
+            bursts.add(events);
+        }
+        
+        List<MutationEvent> next() throws InterruptedException {
+            List<MutationEvent> burst = bursts.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(burst, "No burst delivered");
+            return burst;
+        }
+        
+        /**
+         * Every event delivered until the feed has been quiet for a while
+         */
+        List<MutationEvent> drain() throws InterruptedException {
+            List<MutationEvent> events = new ArrayList<>(next());
+            List<MutationEvent> burst;
+            while ((burst = bursts.poll(500, TimeUnit.MILLISECONDS)) != null) {
+                events.addAll(burst);
+            }
+            return events;
+        }
+    }
+    
+    private static AttendanceManager createManager() {
+        AttendanceManager manager = new AttendanceManager(true);
+        for (int i = 0; i < 10; i++) {
+            manager.addStudent(new Student("S" + i, "Student " + i, "s" + i + "@university.edu", "Physics"));
+        }
+        return manager;
+    }
+    
+    /**
+     * A listener's first burst is a RESET
+     */
+    private static Recorder listen(AttendanceManager manager) throws InterruptedException {
+        Recorder recorder = new Recorder();
+        manager.addMutationListener(recorder);
+        assertEquals(List.of(MutationEvent.reset()), recorder.next());
+        return recorder;
+    }
+    
+    /**
+     * Repeated changes to one mark arrive as a single change from the first old status
+     * to the last new one, and changes that cancel out don't arrive at all
+     */
+    @Test
+    void burstsOfChangesAreCoalesced() throws InterruptedException {
+        AttendanceManager manager = createManager();
+        manager.markAttendance("S2", DAY, AttendanceStatus.ABSENT);
+        Recorder recorder = listen(manager);
+        
+        AttendanceStatus[] cycle = AttendanceStatus.values();
+        int mutations = 0;
+        for (int i = 0; i < 1000; i++) {
+            manager.markAttendance("S1", DAY, cycle[i % cycle.length]);
+            manager.markAttendance("S2", DAY, i % 2 == 0 ? AttendanceStatus.PRESENT : AttendanceStatus.ABSENT);
+            mutations += 2;
+        }
+        manager.markAttendance("S1", DAY, AttendanceStatus.LATE);
+        mutations++;
+        List<MutationEvent> events = recorder.drain();
+        
+        assertTrue(events.size() < mutations / 10, events.size() + " events for " + mutations + " changes");
+        Map<String, AttendanceStatus> latest = new HashMap<>();
+        Map<String, AttendanceStatus> earliest = new HashMap<>();
+        for (MutationEvent event : events) {
+            if (event.getType() == MutationEvent.Type.MARK_CHANGED) {
+                assertNotEquals(event.getOldStatus(), event.getNewStatus(), event.toString());
+                earliest.putIfAbsent(event.getStudentId(), event.getOldStatus());
+                latest.put(event.getStudentId(), event.getNewStatus());
+            }
+        }
+        assertEquals(AttendanceStatus.LATE, latest.get("S1"));
+        assertEquals(AttendanceStatus.ABSENT, latest.getOrDefault("S2", AttendanceStatus.ABSENT));
+        assertEquals(AttendanceStatus.ABSENT, earliest.getOrDefault("S2", AttendanceStatus.ABSENT));
+    }
+    
+    /**
+     * Coalescing merges one mark's changes within a burst but never across the student's
+     * removal and re-addition
+     */
+    @Test
+    void coalescingStopsAtStudentRemoval() {
+        Student student = new Student("S1", "Student 1", "s1@university.edu", "Physics");
+        List<MutationEvent> burst = List.of(
+            MutationEvent.sessionOpened(DAY),
+            MutationEvent.markChanged("S1", DAY, AttendanceStatus.UNMARKED, AttendanceStatus.PRESENT),
+            MutationEvent.markChanged("S1", DAY, AttendanceStatus.PRESENT, AttendanceStatus.LATE),
+            MutationEvent.markChanged("S2", DAY, AttendanceStatus.UNMARKED, AttendanceStatus.ABSENT),
+            MutationEvent.markChanged("S2", DAY, AttendanceStatus.ABSENT, AttendanceStatus.UNMARKED),
+            MutationEvent.markChanged("S1", DAY, AttendanceStatus.LATE, AttendanceStatus.UNMARKED),
+            MutationEvent.studentRemoved("S1"),
+            MutationEvent.studentAdded(student),
+            MutationEvent.markChanged("S1", DAY, AttendanceStatus.UNMARKED, AttendanceStatus.EXCUSED));
+        
+        List<MutationEvent> coalesced = ChangeFeed.coalesce(burst);
+        assertEquals(4, coalesced.size(), coalesced.toString());
+        assertEquals(MutationEvent.Type.SESSION_OPENED, coalesced.get(0).getType());
+        assertEquals(MutationEvent.Type.STUDENT_REMOVED, coalesced.get(1).getType());
+        assertEquals(MutationEvent.Type.STUDENT_ADDED, coalesced.get(2).getType());
+        MutationEvent mark = coalesced.get(3);
+        assertEquals(MutationEvent.Type.MARK_CHANGED, mark.getType());
+        assertEquals(AttendanceStatus.UNMARKED, mark.getOldStatus());
+        assertEquals(AttendanceStatus.EXCUSED, mark.getNewStatus());
+    }
+    
+    /**
+     * Bursts are delivered on the change-feed thread, never on the thread that made the change
+     */
+    @Test
+    void deliveryIsOffTheWritersThread() throws InterruptedException {
+        AttendanceManager manager = createManager();
+        Recorder recorder = listen(manager);
+        Thread feed = recorder.threads.take();
+        assertNotSame(Thread.currentThread(), feed);
+        assertTrue(feed.isDaemon());
+        
+        Thread writer = new Thread(() -> manager.markAttendance("S3", DAY, true), "writer");
+        writer.start();
+        writer.join();
+        recorder.next();
+        Thread delivery = recorder.threads.take();
+        assertNotSame(writer, delivery);
+        assertNotSame(Thread.currentThread(), delivery);
+        assertSame(feed, delivery);
+    }
+    
+    /**
+     * A listener that throws neither stops the others hearing of a change nor stops
+     * hearing of the changes after it
+     */
+    @Test
+    void throwingListenerDoesNotStopDelivery() throws InterruptedException {
+        AttendanceManager manager = createManager();
+        AtomicInteger calls = new AtomicInteger();
+        MutationListener failing = events -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("Listener failure expected by the test");
+        };
+        manager.addMutationListener(failing);
+        Recorder recorder = listen(manager);
+        
+        for (int i = 0; i < 3; i++) {
+            manager.markAttendance("S4", DAY.plusDays(i), AttendanceStatus.PRESENT);
+            boolean marked = false;
+            for (MutationEvent event : recorder.drain()) {
+                marked |= event.getType() == MutationEvent.Type.MARK_CHANGED
+                    && event.getDate().equals(DAY.plusDays(i));
+            }
+            assertTrue(marked, "day " + i);
+        }
+        assertTrue(calls.get() >= 4, calls.get() + " calls"); // Its RESET, then every later burst
+        assertTrue(manager.removeMutationListener(failing));
+        assertTrue(manager.removeMutationListener(recorder));
+    }
+}
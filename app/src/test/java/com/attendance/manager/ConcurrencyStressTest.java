@@ -0,0 +1,158 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.Student;
+import com.attendance.persistence.AttendanceJournal;
+import com.attendance.persistence.FsyncPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writers, student churn and report readers running at the same time against a
+ * concurrent AttendanceManager, with and without a journal taking snapshots.
+ * Writers own disjoint dates, so the final state is known.
+ */
+class ConcurrencyStressTest {
+    
+    private static final int ROSTER_SIZE = 2000;
+    private static final int WRITERS = 4;
+    private static final int DAYS_PER_WRITER = 5;
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void concurrentWritersChurnAndReaders() {
+        AttendanceManager manager = createManager();
+        assertTimeoutPreemptively(TIMEOUT, () -> stress(manager));
+        verify(manager);
+    }
+    
+    @Test
+    void concurrentWritersWithJournal() throws Exception {
+        AttendanceManager manager = new AttendanceManager(true);
+        AttendanceJournal journal = new AttendanceJournal(directory, FsyncPolicy.GROUP);
+        journal.setSnapshotThreshold(10_000);
+        journal.recover(manager);
+        addRoster(manager);
+        
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stress(manager);
+            journal.close();
+        });
+        verify(manager);
+        assertTrue(journal.getGeneration() > 0, "no snapshot was taken");
+        
+        AttendanceManager recovered = new AttendanceManager(true);
+        AttendanceJournal reopened = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        reopened.recover(recovered);
+        reopened.close();
+        verify(recovered);
+        assertEquals(manager.getAllAttendanceRecords().size(), recovered.getAllAttendanceRecords().size());
+    }
+    
+    private static void stress(AttendanceManager manager) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 2);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reports = new AtomicLong();
+        try {
+            List<Future<?>> writerTasks = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writerTasks.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int d = 0; d < DAYS_PER_WRITER; d++) {
+                        LocalDate date = START.plusDays(writer * DAYS_PER_WRITER + d);
+                        // Flip every mark a few times, finishing on the expected value
+                        for (int round = 0; round < 3; round++) {
+                            for (int i = 0; i < ROSTER_SIZE; i++) {
+                                boolean present = round == 2 ? expected(i, date) : random.nextBoolean();
+                                manager.markAttendance(studentId(i), date, present);
+                            }
+                        }
+                    }
+                }));
+            }
+            Future<?> churn = pool.submit(() -> {
+                int next = 0;
+                while (running.get()) {
+                    String id = "TEMP" + (next++);
+                    manager.addStudent(new Student(id, "Temp", "temp@university.edu", "None"));
+                    manager.markAttendance(id, START, true);
+                    manager.removeStudent(id);
+                }
+            });
+            Future<?> reader = pool.submit(() -> {
+                while (running.get()) {
+                    for (Student student : manager.getAllStudents()) {
+                        Map<String, Integer> stats = manager.getStudentStatistics(student.getStudentId());
+                        if (stats.get("present") + stats.get("absent") != stats.get("total")) {
+                            throw new IllegalStateException("Torn statistics for " + student.getStudentId());
+                        }
+                    }
+                    manager.getAttendanceByDate(START);
+                    reports.incrementAndGet();
+                }
+            });
+            
+            for (Future<?> task : writerTasks) {
+                task.get();
+            }
+            running.set(false);
+            churn.get();
+            reader.get();
+        } finally {
+            running.set(false);
+            pool.shutdownNow();
+        }
+        assertTrue(reports.get() > 0, "no report ran");
+    }
+    
+    private static void verify(AttendanceManager manager) {
+        manager.verifyCounters();
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            ArrayList<AttendanceRecord> records = manager.getStudentAttendance(studentId(i));
+            assertEquals(WRITERS * DAYS_PER_WRITER, records.size(), studentId(i));
+            for (AttendanceRecord record : records) {
+                assertEquals(expected(i, record.getDate()), record.isPresent(), "Lost update for " + record);
+            }
+        }
+        assertEquals(ROSTER_SIZE, manager.getTotalStudents());
+        assertEquals(WRITERS * DAYS_PER_WRITER, manager.getSessionCount());
+    }
+    
+    private static AttendanceManager createManager() {
+        AttendanceManager manager = new AttendanceManager(true);
+        addRoster(manager);
+        return manager;
+    }
+    
+    private static void addRoster(AttendanceManager manager) {
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            manager.addStudent(new Student(studentId(i), "Student " + i,
+                "student" + i + "@university.edu", "Computer Science"));
+        }
+    }
+    
+    private static String studentId(int index) {
+        return String.format("S%05d", index);
+    }
+    
+    private static boolean expected(int student, LocalDate date) {
+        return (student + date.getDayOfMonth()) % 3 != 0;
+    }
+}
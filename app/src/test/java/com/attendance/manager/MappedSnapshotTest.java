@@ -0,0 +1,306 @@
+package com.attendance.manager;
+
+import com.attendance.manager.ShardedAttendanceManager.Partitioning;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSnapshotTest {
+    
+    private static final int STUDENT_COUNT = 300;
+    private static final int SESSIONS = 12;
+    private static final LocalDate START = LocalDate.of(2024, 9, 2);
+    private static final String[] COURSES = {"Physics", "Mathematics", "Économie", null};
+    private static final CountingPolicy[] POLICIES = {CountingPolicy.STANDARD, CountingPolicy.STRICT,
+        CountingPolicy.LENIENT};
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * Students over every course (one without), some without a name or email and some with
+     * non-ASCII IDs; sessions opened out of date order, each mark a random status, some
+     * marks changed or removed after the fact
+     */
+    private static void populate(AttendanceService manager) {
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            String id = i % 50 == 7 ? "Ö" + i : String.format("S%04d", i);
+            students.add(new Student(id, i % 9 == 4 ? null : "Student " + i,
+                i % 13 == 5 ? null : "student" + i + "@university.edu", COURSES[i % COURSES.length]));
+        }
+        assertEquals(STUDENT_COUNT, manager.addStudents(students));
+        Random random = new Random(11);
+        for (int session = 0; session < SESSIONS; session++) {
+            LocalDate date = START.plusDays((session * 5L) % SESSIONS); // Opened out of order
+            for (Student student : students) {
+                int code = random.nextInt(5) - 1;
+                if (code >= 0) {
+                    manager.markAttendance(student.getStudentId(), date, AttendanceStatus.fromCode(code));
+                }
+            }
+        }
+        for (int i = 0; i < STUDENT_COUNT; i += 17) {
+            String id = students.get(i).getStudentId();
+            manager.markAttendance(id, START, AttendanceStatus.EXCUSED);
+            manager.removeAttendance(id, START.plusDays(1));
+        }
+    }
+    
+    private static String key(AttendanceRecord record) {
+        return record.getStudentId() + "|" + record.getDate() + "|" + record.getStatus();
+    }
+    
+    private static List<String> keys(List<AttendanceRecord> records) {
+        List<String> keys = new ArrayList<>(records.size());
+        for (AttendanceRecord record : records) {
+            keys.add(key(record));
+        }
+        return keys;
+    }
+    
+    private static String key(Student student) {
+        return student == null ? null : student.getStudentId() + "|" + student.getName() + "|"
+            + student.getEmail() + "|" + student.getCourse();
+    }
+    
+    private static Map<String, AttendanceStatus> statuses(SessionRoster roster) {
+        Map<String, AttendanceStatus> statuses = new TreeMap<>();
+        for (int row = 0; row < roster.size(); row++) {
+            statuses.put(roster.getStudentId(row), roster.getStatus(row));
+        }
+        return statuses;
+    }
+    
+    private static List<String> standings(List<StudentStanding> standings) {
+        List<String> keys = new ArrayList<>();
+        for (StudentStanding standing : standings) {
+            keys.add(standing.getStudentId() + "|" + standing.getAttended() + "/" + standing.getCounted());
+        }
+        return keys;
+    }
+    
+    private static TreeSet<String> idsOf(List<StudentStanding> standings) {
+        TreeSet<String> ids = new TreeSet<>();
+        for (StudentStanding standing : standings) {
+            ids.add(standing.getStudentId());
+        }
+        return ids;
+    }
+    
+    private MappedSnapshot snapshotOf(AttendanceService manager) throws IOException {
+        Path file = directory.resolve("attendance.snap");
+        MappedSnapshot.write(manager, file);
+        return MappedSnapshot.open(file);
+    }
+    
+    /**
+     * Every query answers from the mapped file as the manager it was written from did,
+     * whether that manager was a single store or sharded
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void answersMatchTheManagerItWasWrittenFrom(int shards) throws IOException {
+        AttendanceService manager = shards == 1 ? new AttendanceManager()
+            : new ShardedAttendanceManager(shards, Partitioning.BY_STUDENT);
+        populate(manager);
+        try (MappedSnapshot snapshot = snapshotOf(manager)) {
+            snapshot.verifyCounters();
+            assertEquals(manager.getTotalStudents(), snapshot.getTotalStudents());
+            assertEquals(manager.getTotalRecords(), snapshot.getTotalRecords());
+            assertEquals(new TreeSet<>(manager.getStudentIds()), new TreeSet<>(snapshot.getStudentIds()));
+            assertEquals(new ArrayList<>(manager.getAttendanceSessions()),
+                new ArrayList<>(snapshot.getAttendanceSessions()));
+            assertEquals(manager.getSessionsBetween(START.plusDays(2), START.plusDays(8)),
+                snapshot.getSessionsBetween(START.plusDays(2), START.plusDays(8)));
+            assertNull(snapshot.getStudent("S9999"));
+            assertFalse(snapshot.studentExists("S9999"));
+            assertFalse(snapshot.hasSession(START.minusDays(1)));
+            
+            for (String id : manager.getStudentIds()) {
+                assertEquals(key(manager.getStudent(id)), key(snapshot.getStudent(id)));
+                assertEquals(keys(manager.getStudentAttendance(id)), keys(snapshot.getStudentAttendance(id)), id);
+                assertEquals(keys(manager.getStudentAttendance(id, START.plusDays(3), START.plusDays(6))),
+                    keys(snapshot.getStudentAttendance(id, START.plusDays(3), START.plusDays(6))), id);
+                for (CountingPolicy policy : POLICIES) {
+                    assertEquals(manager.getStudentStatistics(id, policy), snapshot.getStudentStatistics(id, policy));
+                    assertEquals(manager.calculateAttendancePercentage(id, policy),
+                        snapshot.calculateAttendancePercentage(id, policy), id);
+                }
+            }
+            for (LocalDate date : manager.getAttendanceSessions()) {
+                assertEquals(new TreeSet<>(keys(manager.getAttendanceByDate(date))),
+                    new TreeSet<>(keys(snapshot.getAttendanceByDate(date))));
+                assertEquals(statuses(manager.getSessionRoster(date)), statuses(snapshot.getSessionRoster(date)));
+                for (String id : manager.getStudentIds()) {
+                    assertEquals(manager.getAttendanceStatus(id, date), snapshot.getAttendanceStatus(id, date));
+                }
+                assertEquals(manager.getDateStatistics(date), snapshot.getDateStatistics(date));
+            }
+            assertEquals(new TreeSet<>(keys(manager.getAllAttendanceRecords())),
+                new TreeSet<>(keys(snapshot.getAllAttendanceRecords())));
+            assertEquals(new TreeSet<>(keys(manager.getAttendanceBetween(START.plusDays(4), START.plusDays(9)))),
+                new TreeSet<>(keys(snapshot.getAttendanceBetween(START.plusDays(4), START.plusDays(9)))));
+            
+            assertEquals(manager.getCourses(), snapshot.getCourses());
+            for (String course : COURSES) {
+                assertEquals(manager.getCourseSize(course), snapshot.getCourseSize(course), course);
+                assertEquals(manager.getCourseStatistics(course), snapshot.getCourseStatistics(course), course);
+                assertEquals(manager.getCourseStatistics(course, START.plusDays(5)),
+                    snapshot.getCourseStatistics(course, START.plusDays(5)), course);
+                assertEquals(statuses(manager.getCourseRoster(course, START)),
+                    statuses(snapshot.getCourseRoster(course, START)), course);
+            }
+            assertEquals(0, snapshot.getCourseSize("History"));
+            
+            AttendanceAggregate expected = manager.aggregate(START.plusDays(2), START.plusDays(7));
+            AttendanceAggregate actual = snapshot.aggregate(START.plusDays(2), START.plusDays(7));
+            assertEquals(expected.getTotalStatistics(), actual.getTotalStatistics());
+            assertEquals(expected.getDates(), actual.getDates());
+            assertEquals(expected.getCourses(), actual.getCourses());
+            for (String id : manager.getStudentIds()) {
+                assertEquals(expected.getStudentStatistics(id), actual.getStudentStatistics(id), id);
+            }
+            assertEquals(manager.aggregate().getTotalStatistics(), snapshot.aggregate().getTotalStatistics());
+            
+            assertEquals(standings(manager.getStudentsBelow(60)), standings(snapshot.getStudentsBelow(60)));
+            assertEquals(standings(manager.getLowestStudents(25)), standings(snapshot.getLowestStudents(25)));
+            SearchResult found = manager.searchStudents("student 1", 20);
+            SearchResult searched = snapshot.searchStudents("student 1", 20);
+            assertEquals(found.getMatchCount(), searched.getMatchCount());
+            for (int rank = 0; rank < found.getStudentIds().size(); rank++) {
+                assertEquals(found.getScore(rank), searched.getScore(rank)); // Ties fall in roster order
+            }
+        }
+    }
+    
+    /**
+     * Every write is rejected and leaves the snapshot as it was
+     */
+    @Test
+    void writesAreRejected() throws IOException {
+        AttendanceManager manager = new AttendanceManager();
+        populate(manager);
+        try (MappedSnapshot snapshot = snapshotOf(manager)) {
+            String id = manager.getStudentIds().get(0);
+            Student student = new Student("N1", "New", "new@university.edu", "Physics");
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.addStudent(student));
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.addStudents(List.of(student)));
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.removeStudent(id));
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.changeCourse(id, "Physics"));
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.markAttendance(id, START, true));
+            assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.markSessionStatus(START, Map.of(id, AttendanceStatus.LATE)));
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.removeAttendance(id, START));
+            assertEquals(manager.getAttendanceStatus(id, START), snapshot.getAttendanceStatus(id, START));
+            assertEquals(manager.getTotalRecords(), snapshot.getTotalRecords());
+            snapshot.verifyCounters();
+        }
+    }
+    
+    /**
+     * A counting policy change re-ranks the students, tells threshold listeners who crossed,
+     * and sends mutation listeners a RESET, as it does on the manager
+     */
+    @Test
+    void countingPolicyChangeReranksAndNotifies() throws IOException, InterruptedException {
+        AttendanceManager manager = new AttendanceManager(true);
+        populate(manager);
+        try (MappedSnapshot snapshot = snapshotOf(manager)) {
+            List<String> atRisk = new ArrayList<>();
+            snapshot.addThresholdListener(50, new ThresholdListener() {
+                @Override
+                public void studentAtRisk(StudentStanding standing) {
+                    atRisk.add(standing.getStudentId());
+                }
+                
+                @Override
+                public void studentRecovered(StudentStanding standing) {
+                }
+            });
+            BlockingQueue<List<MutationEvent>> bursts = new LinkedBlockingQueue<>();
+            snapshot.addMutationListener(bursts::add);
+            assertEquals(List.of(MutationEvent.reset()), bursts.poll(10, TimeUnit.SECONDS));
+            
+            TreeSet<String> crossed = idsOf(snapshot.getStudentsBelow(50));
+            snapshot.setCountingPolicy(CountingPolicy.STRICT);
+            manager.setCountingPolicy(CountingPolicy.STRICT);
+            assertEquals(CountingPolicy.STRICT, snapshot.getCountingPolicy());
+            assertEquals(standings(manager.getStudentsBelow(50)), standings(snapshot.getStudentsBelow(50)));
+            assertEquals(manager.calculateCourseAttendancePercentage("Physics"),
+                snapshot.calculateCourseAttendancePercentage("Physics"));
+            
+            TreeSet<String> below = idsOf(snapshot.getStudentsBelow(50));
+            below.removeAll(crossed);
+            crossed = below;
+            assertFalse(crossed.isEmpty());
+            assertEquals(crossed, new TreeSet<>(atRisk));
+            assertEquals(List.of(MutationEvent.reset()), bursts.poll(10, TimeUnit.SECONDS));
+        }
+    }
+    
+    /**
+     * Analytics built on AttendanceService run over a snapshot unchanged
+     */
+    @Test
+    void analyticsWorkOverASnapshot() throws IOException {
+        AttendanceManager manager = new AttendanceManager();
+        populate(manager);
+        try (MappedSnapshot snapshot = snapshotOf(manager)) {
+            AttendanceAnalytics expected = new AttendanceAnalytics(manager);
+            AttendanceAnalytics actual = new AttendanceAnalytics(snapshot);
+            for (String id : manager.getStudentIds()) {
+                assertEquals(expected.calculatePercentageBetween(id, START.plusDays(1), START.plusDays(8)),
+                    actual.calculatePercentageBetween(id, START.plusDays(1), START.plusDays(8)), id);
+                assertEquals(expected.getStatisticsBetween(id, START, START.plusDays(SESSIONS)),
+                    actual.getStatisticsBetween(id, START, START.plusDays(SESSIONS)), id);
+            }
+        }
+    }
+    
+    /**
+     * Files that are not snapshots, or are cut short, are refused on open
+     */
+    @Test
+    void corruptFilesAreRefused() throws IOException {
+        AttendanceManager manager = new AttendanceManager();
+        populate(manager);
+        Path file = directory.resolve("attendance.snap");
+        MappedSnapshot.write(manager, file);
+        byte[] bytes = Files.readAllBytes(file);
+        
+        Path truncated = directory.resolve("truncated.snap");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> MappedSnapshot.open(truncated));
+        
+        Path foreign = directory.resolve("foreign.snap");
+        bytes[0] = 'X';
+        Files.write(foreign, bytes);
+        assertThrows(IOException.class, () -> MappedSnapshot.open(foreign));
+        
+        Path empty = directory.resolve("empty.snap");
+        Files.write(empty, new byte[0]);
+        assertThrows(IOException.class, () -> MappedSnapshot.open(empty));
+    }
+}
@@ -0,0 +1,271 @@
+package com.attendance.manager;
+
+import com.attendance.manager.ShardedAttendanceManager.Partitioning;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedAttendanceManagerTest {
+    
+    private static final int STUDENT_COUNT = 5000;
+    private static final int SESSIONS = 20;
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final String[] COURSES = {"Computer Science", "Mathematics", "Physics", "Biology",
+        "Art History", "Economics", "Mechanical Engineering", "Chemistry", "Philosophy", "Music",
+        "Law", "Medicine", "Architecture", "Statistics", "Linguistics", "Geology"};
+    
+    /**
+     * Add STUDENT_COUNT students over every course and mark SESSIONS sessions with random statuses
+     *
+     * @return the student IDs, in the order they were added
+     */
+    private static String[] populate(AttendanceService manager) {
+        String[] ids = new String[STUDENT_COUNT];
+        List<Student> students = new ArrayList<>(STUDENT_COUNT);
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            ids[i] = String.format("S%06d", i);
+            students.add(new Student(ids[i], "Student " + i, "student" + i + "@university.edu",
+                COURSES[i % COURSES.length]));
+        }
+        assertEquals(STUDENT_COUNT, manager.addStudents(students));
+        Random random = new Random(42);
+        AttendanceStatus[] statuses = new AttendanceStatus[STUDENT_COUNT];
+        for (int day = 0; day < SESSIONS; day++) {
+            for (int i = 0; i < STUDENT_COUNT; i++) {
+                statuses[i] = AttendanceStatus.fromCode(random.nextInt(4));
+            }
+            manager.markSessionStatus(START.plusDays(day), ids, statuses, STUDENT_COUNT);
+        }
+        return ids;
+    }
+    
+    /**
+     * Growing from 4 to 8 shards, one at a time, changes nothing but where students are
+     */
+    @ParameterizedTest
+    @EnumSource(Partitioning.class)
+    void addShardKeepsEveryStudentAndMark(Partitioning partitioning) {
+        ShardedAttendanceManager manager = new ShardedAttendanceManager(4, partitioning, true);
+        String[] ids = populate(manager);
+        long records = manager.getTotalRecords();
+        Map<String, Integer> totals = manager.aggregate().getTotalStatistics();
+        List<Map<String, Integer>> dates = new ArrayList<>();
+        for (int day = 0; day < SESSIONS; day++) {
+            dates.add(manager.getDateStatistics(START.plusDays(day)));
+        }
+        List<String> students = new ArrayList<>();
+        List<String> marks = new ArrayList<>();
+        for (String id : ids) {
+            students.add(manager.getStudent(id).toString());
+            marks.add(manager.getStudentAttendance(id).toString());
+        }
+        
+        int movedInTotal = 0;
+        while (manager.getShardCount() < 8) {
+            int moved = manager.addShard();
+            int shards = manager.getShardCount();
+            movedInTotal += moved;
+            if (partitioning == Partitioning.BY_STUDENT) {
+                // About 1/shards of the students, all to the new shard
+                assertTrue(moved > 0 && moved < 2 * STUDENT_COUNT / shards, moved + " moved to shard " + shards);
+                assertEquals(moved, manager.getShardSizes()[shards - 1]);
+            }
+            int placed = 0;
+            for (int size : manager.getShardSizes()) {
+                placed += size;
+            }
+            assertEquals(STUDENT_COUNT, placed);
+            
+            manager.verifyCounters();
+            assertEquals(STUDENT_COUNT, manager.getTotalStudents());
+            assertEquals(records, manager.getTotalRecords());
+            assertEquals(totals, manager.aggregate().getTotalStatistics());
+            assertEquals(SESSIONS, manager.getSessionCount());
+            for (int day = 0; day < SESSIONS; day++) {
+                assertEquals(dates.get(day), manager.getDateStatistics(START.plusDays(day)), "day " + day);
+            }
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(students.get(i), manager.getStudent(ids[i]).toString());
+                assertEquals(marks.get(i), manager.getStudentAttendance(ids[i]).toString(), ids[i]);
+            }
+        }
+        assertTrue(movedInTotal > 0);
+    }
+    
+    /**
+     * Moved students are routed to their new shard by every later operation
+     */
+    @ParameterizedTest
+    @EnumSource(Partitioning.class)
+    void changesAfterAddShardReachMovedStudents(Partitioning partitioning) {
+        ShardedAttendanceManager manager = new ShardedAttendanceManager(2, partitioning, true);
+        String[] ids = populate(manager);
+        manager.addShard();
+        manager.addShard();
+        
+        LocalDate day = START.plusDays(SESSIONS);
+        for (String id : ids) {
+            assertTrue(manager.markAttendance(id, day, true), id);
+            assertFalse(manager.addStudent(new Student(id, "Duplicate", "duplicate@university.edu", "Physics")), id);
+        }
+        assertEquals(STUDENT_COUNT, manager.getDateStatistics(day).get("present"));
+        List<String> cohort = new ArrayList<>();
+        for (int i = 0; i < STUDENT_COUNT; i += 3) {
+            cohort.add(ids[i]);
+        }
+        assertEquals(cohort.size(), manager.removeStudents(cohort));
+        assertEquals(STUDENT_COUNT - cohort.size(), manager.getTotalStudents());
+        assertEquals(STUDENT_COUNT - cohort.size(), manager.getStudentIds().size());
+        for (String id : cohort) {
+            assertFalse(manager.studentExists(id));
+            assertTrue(manager.getStudentAttendance(id).isEmpty());
+        }
+        manager.verifyCounters();
+    }
+    
+    /**
+     * A course change that crosses shards moves the student with every mark
+     */
+    @Test
+    void changeCourseMovesStudentBetweenShards() {
+        ShardedAttendanceManager manager = new ShardedAttendanceManager(4, Partitioning.BY_COURSE, true);
+        String[] ids = populate(manager);
+        for (int i = 0; i < 100; i++) {
+            String id = ids[i];
+            String marks = manager.getStudentAttendance(id).toString();
+            Map<String, Integer> statistics = manager.getStudentStatistics(id);
+            String course = COURSES[(i + 5) % COURSES.length];
+            assertTrue(manager.changeCourse(id, course));
+            assertEquals(course, manager.getStudent(id).getCourse());
+            assertEquals(marks, manager.getStudentAttendance(id).toString());
+            assertEquals(statistics, manager.getStudentStatistics(id));
+            assertFalse(manager.addStudent(new Student(id, "Duplicate", "duplicate@university.edu", COURSES[0])));
+        }
+        int placed = 0;
+        for (int size : manager.getShardSizes()) {
+            placed += size;
+        }
+        assertEquals(STUDENT_COUNT, placed);
+        int courseSizes = 0;
+        for (String course : manager.getCourses()) {
+            courseSizes += manager.getCourseSize(course);
+        }
+        assertEquals(STUDENT_COUNT, courseSizes);
+        manager.verifyCounters();
+    }
+    
+    /**
+     * The sharded manager answers like a single manager given the same changes
+     */
+    @ParameterizedTest
+    @EnumSource(Partitioning.class)
+    void answersMatchSingleManager(Partitioning partitioning) {
+        AttendanceService single = new AttendanceManager(true);
+        AttendanceService sharded = new ShardedAttendanceManager(3, partitioning, true);
+        for (AttendanceService manager : List.of(single, sharded)) {
+            String[] ids = populate(manager);
+            for (int i = 0; i < STUDENT_COUNT; i += 7) {
+                manager.removeAttendance(ids[i], START);
+            }
+            manager.changeCourse(ids[1], COURSES[2]);
+            manager.removeStudent(ids[2]);
+        }
+        ((ShardedAttendanceManager) sharded).addShard();
+        
+        assertEquals(single.getTotalStudents(), sharded.getTotalStudents());
+        assertEquals(single.getTotalRecords(), sharded.getTotalRecords());
+        assertEquals(single.aggregate().getTotalStatistics(), sharded.aggregate().getTotalStatistics());
+        assertEquals(single.getCourses(), sharded.getCourses());
+        for (String course : single.getCourses()) {
+            assertEquals(single.getCourseSize(course), sharded.getCourseSize(course), course);
+            assertEquals(single.getCourseStatistics(course), sharded.getCourseStatistics(course), course);
+            assertEquals(single.getCourseStatistics(course, START), sharded.getCourseStatistics(course, START), course);
+        }
+        for (int day = 0; day < SESSIONS; day++) {
+            LocalDate date = START.plusDays(day);
+            assertEquals(single.getDateStatistics(date), sharded.getDateStatistics(date));
+            assertEquals(single.getSessionRoster(date).size(), sharded.getSessionRoster(date).size());
+        }
+        assertEquals(single.getStudentsBelow(50).size(), sharded.getStudentsBelow(50).size());
+        assertEquals(single.searchStudents("student 12", 10).getMatchCount(),
+            sharded.searchStudents("student 12", 10).getMatchCount());
+    }
+    
+    /**
+     * Analytics cached before students move shard stay correct after the move, when
+     * the moved students' marks change again
+     */
+    @Test
+    void analyticsFollowStudentsToTheirNewShard() {
+        AttendanceManager single = new AttendanceManager(true);
+        ShardedAttendanceManager sharded = new ShardedAttendanceManager(2, Partitioning.BY_STUDENT, true);
+        String[] ids = populate(single);
+        populate(sharded);
+        AttendanceAnalytics singleAnalytics = new AttendanceAnalytics(single);
+        AttendanceAnalytics shardedAnalytics = new AttendanceAnalytics(sharded);
+        LocalDate last = START.plusDays(SESSIONS);
+        for (String id : ids) {
+            assertEquals(singleAnalytics.calculatePercentageBetween(id, START, last),
+                shardedAnalytics.calculatePercentageBetween(id, START, last), id);
+        }
+        
+        sharded.addShard();
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            AttendanceStatus status = i % 2 == 0 ? AttendanceStatus.PRESENT : AttendanceStatus.ABSENT;
+            single.markAttendance(ids[i], last, status);
+            sharded.markAttendance(ids[i], last, status);
+        }
+        for (String id : ids) {
+            assertEquals(singleAnalytics.calculatePercentageBetween(id, START, last),
+                shardedAnalytics.calculatePercentageBetween(id, START, last), id);
+        }
+    }
+    
+    /**
+     * Analytics over an AttendanceService that isn't one of the managers use the
+     * interface's default timeline, and answer like the manager it forwards to
+     */
+    @Test
+    void analyticsWorkOverAnyAttendanceService() {
+        AttendanceManager manager = new AttendanceManager(true);
+        String[] ids = populate(manager);
+        InvocationHandler forward = (proxy, method, args) -> {
+            if (method.getName().equals("studentTimeline")) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            try {
+                return method.invoke(manager, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        AttendanceService other = (AttendanceService) Proxy.newProxyInstance(
+            AttendanceService.class.getClassLoader(), new Class<?>[] {AttendanceService.class}, forward);
+        AttendanceAnalytics expected = new AttendanceAnalytics(manager);
+        AttendanceAnalytics actual = new AttendanceAnalytics(other);
+        LocalDate from = START.plusDays(3);
+        LocalDate to = START.plusDays(SESSIONS - 4);
+        for (int i = 0; i < STUDENT_COUNT; i += 11) {
+            assertEquals(expected.calculatePercentageBetween(ids[i], from, to),
+                actual.calculatePercentageBetween(ids[i], from, to), ids[i]);
+        }
+        manager.markAttendance(ids[0], START, AttendanceStatus.EXCUSED);
+        assertEquals(expected.calculatePercentageBetween(ids[0], START, to),
+            actual.calculatePercentageBetween(ids[0], START, to));
+        assertEquals(expected.calculatePercentageBetween("S999999", START, to),
+            actual.calculatePercentageBetween("S999999", START, to));
+    }
+}
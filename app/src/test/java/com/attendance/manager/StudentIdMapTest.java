@@ -0,0 +1,141 @@
+package com.attendance.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StudentIdMapTest {
+    
+    private static final int MASK = 15; // A new map's 16 slots, enough for 8 IDs before it grows
+    
+    /**
+     * Map every ID to its position in ids
+     */
+    private static StudentIdMap mapOf(String[] ids) {
+        StudentIdMap map = new StudentIdMap();
+        for (int i = 0; i < ids.length; i++) {
+            map.add(ids[i], i);
+        }
+        return map;
+    }
+    
+    /**
+     * Remove ids in the given order, checking after each removal that every ID still
+     * mapped is found at its index and every removed one is gone
+     */
+    private static void removeAndCheck(String[] ids, List<Integer> order) {
+        StudentIdMap map = mapOf(ids);
+        boolean[] removed = new boolean[ids.length];
+        for (int victim : order) {
+            assertEquals(victim, map.remove(ids[victim], ids), ids[victim]);
+            assertEquals(-1, map.remove(ids[victim], ids), ids[victim]);
+            removed[victim] = true;
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(removed[i] ? -1 : i, map.get(new String(ids[i]), ids),
+                    ids[i] + " after removing " + ids[victim] + " in order " + order);
+            }
+        }
+        assertEquals(0, map.size());
+    }
+    
+    /**
+     * IDs whose hash sends them to the given home slots of a new map, one per entry
+     */
+    private static String[] idsWithHomes(int... homes) {
+        String[] ids = new String[homes.length];
+        int found = 0;
+        for (int candidate = 0; found < homes.length; candidate++) {
+            String id = String.format("S%06d", candidate);
+            int home = StudentIdMap.slotOf(id.hashCode(), MASK);
+            for (int i = 0; i < homes.length; i++) {
+                if (ids[i] == null && homes[i] == home) {
+                    ids[i] = id;
+                    found++;
+                    break;
+                }
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * IDs sharing one hash code ("Aa" and "BB" hash alike) form a single probe chain;
+     * removing from its middle must leave the later entries reachable
+     */
+    @Test
+    void removalFromTheMiddleOfACollisionChain() {
+        String[] pairs = {"Aa", "BB"};
+        String[] ids = new String[7];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = pairs[i >> 2 & 1] + pairs[i >> 1 & 1] + pairs[i & 1];
+            assertEquals(ids[0].hashCode(), ids[i].hashCode());
+        }
+        removeAndCheck(ids, List.of(3, 1, 5, 0, 6, 2, 4));
+        removeAndCheck(ids, List.of(6, 5, 4, 3, 2, 1, 0));
+        for (int first = 0; first < ids.length; first++) {
+            StudentIdMap map = mapOf(ids);
+            map.remove(ids[first], ids);
+            map.add(ids[first], first); // Re-added at the end of the chain
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(i, map.get(ids[i], ids), ids[i]);
+            }
+        }
+    }
+    
+    /**
+     * A run that starts in the last slots and wraps around to the first ones: entries
+     * past the end must shift back across the wrap, and entries at home in slot 0
+     * must not be shifted before it. The IDs are added and removed in random orders.
+     */
+    @Test
+    void removalFromClustersThatWrapAround() {
+        // Homes 14 and 15 fill slots 14, 15, 0, 1 and 2; homes 0 and 1 then land past them
+        String[] ids = idsWithHomes(14, 14, 15, 15, 15, 0, 1);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            order.add(i);
+        }
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Collections.shuffle(order, random);
+            String[] inserted = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                inserted[i] = ids[order.get(i)];
+            }
+            List<Integer> removal = new ArrayList<>(order);
+            Collections.shuffle(removal, random);
+            removeAndCheck(inserted, removal);
+        }
+    }
+    
+    /**
+     * Interleaved adds and removes that keep the map small, checked against a list of
+     * the IDs currently mapped
+     */
+    @Test
+    void randomAddsAndRemovesMatchAReference() {
+        String[] ids = idsWithHomes(13, 14, 14, 15, 15, 15, 0, 0, 1, 2, 3, 7);
+        List<Integer> mapped = new ArrayList<>();
+        StudentIdMap map = new StudentIdMap();
+        Random random = new Random(7);
+        for (int step = 0; step < 20000; step++) {
+            int i = random.nextInt(ids.length);
+            if (mapped.contains(i)) {
+                assertEquals(i, map.remove(ids[i], ids));
+                mapped.remove(Integer.valueOf(i));
+            } else if (mapped.size() < 7) {
+                map.add(ids[i], i);
+                mapped.add(i);
+            }
+            assertEquals(mapped.size(), map.size());
+            for (int j = 0; j < ids.length; j++) {
+                assertEquals(mapped.contains(j) ? j : -1, map.get(ids[j], ids), ids[j] + " at step " + step);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.attendance.manager;
+
+import com.attendance.model.Student;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StudentSearchTest {
+    
+    private AttendanceManager manager;
+    
+    @BeforeEach
+    void setUp() {
+        manager = new AttendanceManager(true);
+        manager.addStudent(new Student("S000001", "John Smith", "john.smith@university.edu", "Physics"));
+        manager.addStudent(new Student("S000002", "Johnny Smithers", "johnny@university.edu", "Mathematics"));
+        manager.addStudent(new Student("S000003", "Elizabeth O'Brien", "liz@university.edu", "Mechanical Engineering"));
+        manager.addStudent(new Student("S000004", "Mary Jones", "mary.jones@university.edu", "Physics"));
+    }
+    
+    @Test
+    void everyPrefixOfATypedQueryMatches() {
+        String query = "john smith";
+        for (int length = 1; length <= query.length(); length++) {
+            String prefix = query.substring(0, length).trim();
+            if (!prefix.isEmpty()) {
+                assertTrue(manager.searchStudents(prefix, 10).getStudentIds().contains("S000001"), prefix);
+            }
+        }
+        // The exact words rank above the longer words they prefix
+        assertEquals("S000001", manager.searchStudents("john smith", 10).getStudentIds().get(0));
+    }
+    
+    @Test
+    void misspelledQueriesMatchWithTypoTolerance() {
+        assertEquals(List.of("S000001"), manager.searchStudents("jonh smtih", 10).getStudentIds().subList(0, 1));
+        assertTrue(manager.searchStudents("elizabteh", 10).getStudentIds().contains("S000003"));
+        assertTrue(manager.searchStudents("zzzz", 10).getStudentIds().isEmpty());
+    }
+    
+    @Test
+    void courseWordsAndLimit() {
+        assertEquals(List.of("S000003"), manager.searchStudents("mech eng", 10).getStudentIds());
+        SearchResult physics = manager.searchStudents("physics", 1);
+        assertEquals(2, physics.getMatchCount());
+        assertEquals(1, physics.getStudentIds().size());
+        assertTrue(physics.isTruncated());
+    }
+    
+    @Test
+    void changesReachTheIndex() {
+        manager.changeCourse("S000004", "Biology");
+        assertEquals(List.of("S000004"), manager.searchStudents("biology", 10).getStudentIds());
+        manager.removeStudent("S000001");
+        assertFalse(manager.searchStudents("john", 10).getStudentIds().contains("S000001"));
+    }
+}
@@ -0,0 +1,202 @@
+package com.attendance.persistence;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.ShardedAttendanceManager;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttendanceJournalTest {
+    
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * Automatic snapshots every few entries, and explicit checkpoints from another
+     * thread (as the UI takes on close), while writers keep every stripe busy
+     */
+    @Test
+    void checkpointsWhileConcurrentWritersRun() throws Exception {
+        AttendanceManager manager = new AttendanceManager(true);
+        AttendanceJournal journal = new AttendanceJournal(directory, FsyncPolicy.GROUP);
+        journal.setGroupCommitMillis(1);
+        journal.setSnapshotThreshold(5);
+        journal.recover(manager);
+        
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            ExecutorService pool = Executors.newFixedThreadPool(5);
+            AtomicBoolean running = new AtomicBoolean(true);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int w = 0; w < 4; w++) {
+                    int writer = w;
+                    writers.add(pool.submit(() -> {
+                        for (int i = 0; i < 300; i++) {
+                            String id = "S" + writer + "-" + i;
+                            manager.addStudent(new Student(id, "Student " + i, id + "@university.edu", "Course " + writer));
+                            manager.markAttendance(id, START.plusDays(i % 7), AttendanceStatus.fromCode(i % 4));
+                            if (i % 10 == 0) {
+                                manager.removeStudent("S" + writer + "-" + (i / 2));
+                            }
+                        }
+                    }));
+                }
+                Future<?> checkpoints = pool.submit(() -> {
+                    while (running.get()) {
+                        journal.checkpoint();
+                    }
+                    return null;
+                });
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+                running.set(false);
+                checkpoints.get();
+            } finally {
+                running.set(false);
+                pool.shutdownNow();
+            }
+            journal.close();
+        });
+        assertTrue(journal.getGeneration() > 0, "no snapshot was taken");
+        
+        AttendanceManager recovered = new AttendanceManager(true);
+        AttendanceJournal reopened = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        reopened.recover(recovered);
+        reopened.close();
+        assertEquals(state(manager), state(recovered));
+        recovered.verifyCounters();
+    }
+    
+    /**
+     * A single-threaded manager takes its automatic snapshots on the writing thread
+     */
+    @Test
+    void singleThreadedManagerTakesSnapshots() throws Exception {
+        AttendanceManager manager = new AttendanceManager();
+        AttendanceJournal journal = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        journal.setSnapshotThreshold(5);
+        journal.recover(manager);
+        for (int i = 0; i < 50; i++) {
+            manager.addStudent(new Student("S" + i, "Student " + i, "s" + i + "@university.edu", "Physics"));
+            manager.markAttendance("S" + i, START, i % 2 == 0);
+        }
+        long generation = journal.getGeneration();
+        journal.close();
+        assertTrue(generation >= 10, "expected a snapshot every 5 entries, at generation " + generation);
+        
+        AttendanceManager recovered = new AttendanceManager();
+        AttendanceJournal reopened = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        reopened.recover(recovered);
+        reopened.close();
+        assertEquals(state(manager), state(recovered));
+    }
+    
+    /**
+     * Null student fields replay as null, from the journal and from a snapshot
+     */
+    @Test
+    void nullStudentFieldsAreJournaled() throws Exception {
+        AttendanceManager manager = new AttendanceManager();
+        AttendanceJournal journal = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        journal.recover(manager);
+        manager.addStudent(new Student("S1", null, null, null));
+        manager.markAttendance("S1", START, true);
+        journal.checkpoint();
+        manager.addStudent(new Student("S2", "Student 2", null, "Physics"));
+        manager.addStudent(new Student("S3", null, "s3@university.edu", null));
+        journal.close();
+        
+        AttendanceManager recovered = new AttendanceManager();
+        AttendanceJournal reopened = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        reopened.recover(recovered);
+        reopened.close();
+        assertEquals(state(manager), state(recovered));
+        assertNull(recovered.getStudent("S1").getName());
+        assertNull(recovered.getStudent("S1").getCourse());
+        assertNull(manager.getStudent("S3").getCourse());
+        assertEquals(Set.of("Physics"), recovered.getCourses());
+        assertEquals(2, recovered.getCourseSize(null));
+        assertNull(recovered.getStudent("S2").getEmail());
+        assertEquals("s3@university.edu", recovered.getStudent("S3").getEmail());
+        assertEquals(AttendanceStatus.PRESENT, recovered.getAttendanceStatus("S1", START));
+    }
+    
+    /**
+     * A sharded manager is snapshotted shard by shard, including after a shard is added,
+     * and its journal recovers into either kind of manager
+     */
+    @Test
+    void shardedManagerTakesSnapshots() throws Exception {
+        ShardedAttendanceManager manager = new ShardedAttendanceManager(3,
+            ShardedAttendanceManager.Partitioning.BY_STUDENT, true);
+        AttendanceJournal journal = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        journal.setSnapshotThreshold(50);
+        journal.recover(manager);
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            for (int i = 0; i < 500; i++) {
+                manager.addStudent(new Student("S" + i, "Student " + i, "s" + i + "@university.edu", "Course " + i % 5));
+                manager.markAttendance("S" + i, START.plusDays(i % 7), AttendanceStatus.fromCode(i % 4));
+                if (i == 250) {
+                    manager.addShard();
+                }
+            }
+            journal.checkpoint();
+            manager.removeStudent("S3");
+            manager.changeCourse("S4", "Course 9");
+            journal.close();
+        });
+        assertTrue(journal.getGeneration() > 0, "no snapshot was taken");
+        
+        AttendanceManager single = new AttendanceManager(true);
+        AttendanceJournal reopened = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        reopened.recover(single);
+        reopened.close();
+        assertEquals(state(manager), state(single));
+        
+        ShardedAttendanceManager sharded = new ShardedAttendanceManager(2,
+            ShardedAttendanceManager.Partitioning.BY_COURSE, true);
+        reopened = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        reopened.recover(sharded);
+        reopened.close();
+        assertEquals(state(manager), state(sharded));
+        sharded.verifyCounters();
+    }
+    
+    /**
+     * Every student and mark, in an order independent of the stripes
+     */
+    static List<String> state(AttendanceService manager) {
+        TreeSet<String> students = new TreeSet<>();
+        for (Student student : manager.getAllStudents()) {
+            students.add(student.toString());
+        }
+        TreeSet<String> records = new TreeSet<>();
+        for (AttendanceRecord record : manager.getAllAttendanceRecords()) {
+            records.add(record.toString());
+        }
+        List<String> state = new ArrayList<>(students);
+        state.addAll(records);
+        return state;
+    }
+}
@@ -0,0 +1,63 @@
+package com.attendance.persistence;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRoundTripTest {
+    
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * Every student and mark survives an export and import, including fields that
+     * need quoting
+     */
+    @ParameterizedTest
+    @EnumSource(CsvFormat.class)
+    void exportThenImportKeepsEverything(CsvFormat format) throws Exception {
+        AttendanceManager source = new AttendanceManager(true);
+        String[] names = {"Student, 0", "O\"Brien", "Tab\there", "Plain"};
+        for (int i = 0; i < 1000; i++) {
+            source.addStudent(new Student("S" + i, names[i % names.length] + " " + i, "s" + i + "@university.edu",
+                "Course " + i % 8));
+        }
+        for (int d = 0; d < 10; d++) {
+            for (int i = 0; i < 1000; i++) {
+                source.markAttendance("S" + i, START.plusDays(d), AttendanceStatus.fromCode((i * 7 + d) % 4));
+            }
+        }
+        Path students = directory.resolve("students.csv");
+        Path attendance = directory.resolve("attendance.csv");
+        CsvExporter exporter = new CsvExporter(source, format);
+        exporter.exportStudents(students);
+        assertEquals(10000, exporter.exportAttendance(attendance));
+        
+        AttendanceManager target = new AttendanceManager(true);
+        CsvImporter importer = new CsvImporter(target, format);
+        ImportResult studentResult = importer.importStudents(students);
+        ImportResult attendanceResult = importer.importAttendance(attendance);
+        
+        assertEquals(0, studentResult.getBadRowCount(), studentResult.getBadRows().toString());
+        assertEquals(0, attendanceResult.getBadRowCount(), attendanceResult.getBadRows().toString());
+        assertEquals(source.getTotalStudents(), target.getTotalStudents());
+        assertEquals(source.getTotalRecords(), target.getTotalRecords());
+        for (Student student : source.getAllStudents()) {
+            Student copy = target.getStudent(student.getStudentId());
+            assertEquals(student.toString(), copy.toString());
+            assertEquals(source.getStudentStatistics(student.getStudentId()),
+                target.getStudentStatistics(student.getStudentId()));
+        }
+        target.verifyCounters();
+    }
+}
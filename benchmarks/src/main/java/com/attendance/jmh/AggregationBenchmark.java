@@ -0,0 +1,74 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceAggregate;
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.AttendanceStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of AttendanceManager.aggregate with the number of fork/join workers, on a
+ * multi-million-record dataset. A date range covering part of the history scans the
+ * session bitsets; the full history copies the maintained counters.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar AggregationBenchmark -p workers=1,2,4,8
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+    
+    private static final int ROSTER_SIZE = 100000;
+    private static final int SESSIONS = 60;
+    private static final int RANGE_SESSIONS = 45; // Sessions inside the scanned range
+    private static final AttendanceStatus[] STATUSES = {AttendanceStatus.PRESENT, AttendanceStatus.PRESENT,
+        AttendanceStatus.PRESENT, AttendanceStatus.ABSENT, AttendanceStatus.LATE, AttendanceStatus.EXCUSED};
+    
+    @Param({"1", "4"})
+    public int workers;
+    
+    private AttendanceManager manager;
+    private ForkJoinPool pool;
+    private LocalDate from;
+    private LocalDate to;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = SyntheticData.create(ROSTER_SIZE, 0, true);
+        String[] ids = new String[ROSTER_SIZE];
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            ids[i] = SyntheticData.studentId(i);
+        }
+        AttendanceStatus[] statuses = new AttendanceStatus[ROSTER_SIZE];
+        for (int d = 0; d < SESSIONS; d++) {
+            for (int i = 0; i < ROSTER_SIZE; i++) {
+                statuses[i] = STATUSES[(i * 7 + d) % STATUSES.length];
+            }
+            manager.markSessionStatus(SyntheticData.day(d), ids, statuses, ROSTER_SIZE);
+        }
+        from = SyntheticData.day(SESSIONS - RANGE_SESSIONS);
+        to = SyntheticData.day(SESSIONS - 1);
+        pool = new ForkJoinPool(workers);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+    
+    @Benchmark
+    public AttendanceAggregate rangeScan() {
+        return manager.aggregate(from, to, pool, () -> false);
+    }
+    
+    @Benchmark
+    public AttendanceAggregate fullHistory() {
+        return manager.aggregate(null, null, pool, () -> false);
+    }
+}
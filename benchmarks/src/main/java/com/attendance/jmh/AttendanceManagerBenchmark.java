@@ -0,0 +1,127 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.Student;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH baseline for the AttendanceManager hot paths, parameterized by roster size
+ * and history length.
+ *
+ * Build and run with:
+ *   mvn -B package
+ *   java -jar benchmarks/target/benchmarks.jar AttendanceManagerBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AttendanceManagerBenchmark {
+    
+    @Param({"1000", "10000"})
+    public int rosterSize;
+    
+    @Param({"30", "180"})
+    public int historyDays;
+    
+    private AttendanceManager manager;
+    private String[] studentIds;
+    private LocalDate[] dates;
+    private int cursor;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = SyntheticData.create(rosterSize, historyDays, false);
+        studentIds = new String[rosterSize];
+        for (int i = 0; i < rosterSize; i++) {
+            studentIds[i] = SyntheticData.studentId(i);
+        }
+        dates = new LocalDate[historyDays];
+        for (int d = 0; d < historyDays; d++) {
+            dates[d] = SyntheticData.day(d);
+        }
+    }
+    
+    private int next() {
+        int value = cursor++;
+        if (cursor == Integer.MAX_VALUE) {
+            cursor = 0;
+        }
+        return value;
+    }
+    
+    /**
+     * Upsert over existing history: flips a mark on a day that is already recorded
+     */
+    @Benchmark
+    public boolean markAttendance() {
+        int i = next();
+        return manager.markAttendance(studentIds[i % rosterSize], dates[i % historyDays], (i & 1) == 0);
+    }
+    
+    @Benchmark
+    public ArrayList<AttendanceRecord> getStudentAttendance() {
+        return manager.getStudentAttendance(studentIds[next() % rosterSize]);
+    }
+    
+    @Benchmark
+    public ArrayList<AttendanceRecord> getAttendanceByDate() {
+        return manager.getAttendanceByDate(dates[next() % historyDays]);
+    }
+    
+    @Benchmark
+    public double calculateAttendancePercentage() {
+        return manager.calculateAttendancePercentage(studentIds[next() % rosterSize]);
+    }
+    
+    /**
+     * The "View All Reports" summary: statistics and percentage for every student
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void allStudentsReport(Blackhole blackhole) {
+        StringBuilder report = new StringBuilder();
+        for (Student student : manager.getAllStudents()) {
+            Map<String, Integer> stats = manager.getStudentStatistics(student.getStudentId());
+            double percentage = manager.calculateAttendancePercentage(student.getStudentId());
+            report.append(student.getStudentId()).append(' ')
+                  .append(stats.get("present")).append(' ')
+                  .append(stats.get("absent")).append(' ')
+                  .append(percentage).append('\n');
+        }
+        blackhole.consume(report);
+    }
+    
+    /**
+     * A student with a full history, re-added before every removeStudent call
+     */
+    @State(Scope.Thread)
+    public static class Removal {
+        
+        private String studentId;
+        
+        @Setup(Level.Invocation)
+        public void addStudent(AttendanceManagerBenchmark state) {
+            Student student = SyntheticData.student(state.rosterSize);
+            studentId = student.getStudentId();
+            state.manager.addStudent(student);
+            for (int d = 0; d < state.historyDays; d++) {
+                state.manager.markAttendance(studentId, state.dates[d], d % 2 == 0);
+            }
+        }
+    }
+    
+    @Benchmark
+    public boolean removeStudent(Removal removal) {
+        return manager.removeStudent(removal.studentId);
+    }
+}
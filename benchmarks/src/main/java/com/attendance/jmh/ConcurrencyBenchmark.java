@@ -0,0 +1,55 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of a concurrent AttendanceManager: random marks over a month of
+ * sessions from every benchmark thread. Compare thread counts with -t, e.g.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar ConcurrencyBenchmark -t 1
+ *   java -jar benchmarks/target/benchmarks.jar ConcurrencyBenchmark -t 8
+ *
+ * The matching correctness check, with readers, student churn and a journal, is
+ * ConcurrencyStressTest.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ConcurrencyBenchmark {
+    
+    private static final int ROSTER_SIZE = 10000;
+    private static final int DAYS = 30;
+    
+    private AttendanceManager manager;
+    private String[] studentIds;
+    private LocalDate[] dates;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = SyntheticData.create(ROSTER_SIZE, 0, true);
+        studentIds = new String[ROSTER_SIZE];
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            studentIds[i] = SyntheticData.studentId(i);
+        }
+        dates = new LocalDate[DAYS];
+        for (int d = 0; d < DAYS; d++) {
+            dates[d] = SyntheticData.day(d);
+        }
+    }
+    
+    @Benchmark
+    public boolean markAttendance() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return manager.markAttendance(studentIds[random.nextInt(ROSTER_SIZE)], dates[random.nextInt(DAYS)],
+            random.nextBoolean());
+    }
+}
@@ -0,0 +1,96 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+import com.attendance.persistence.CsvExporter;
+import com.attendance.persistence.CsvFormat;
+import com.attendance.persistence.CsvImporter;
+import com.attendance.persistence.ImportResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of a 10M-row attendance file through CsvExporter and CsvImporter. Each
+ * import loads both files into a new concurrent manager.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar CsvBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CsvBenchmark {
+    
+    private static final int ROSTER_SIZE = 100000;
+    private static final int SESSIONS = 100;
+    private static final AttendanceStatus[] STATUSES = {AttendanceStatus.PRESENT, AttendanceStatus.PRESENT,
+        AttendanceStatus.PRESENT, AttendanceStatus.ABSENT, AttendanceStatus.LATE, AttendanceStatus.EXCUSED};
+    
+    private AttendanceManager source;
+    private Path students;
+    private Path attendance;
+    private Path exportStudents;
+    private Path exportAttendance;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Names with a comma, so every student row is quoted
+        source = new AttendanceManager(true);
+        String[] ids = new String[ROSTER_SIZE];
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            ids[i] = SyntheticData.studentId(i);
+            source.addStudent(new Student(ids[i], "Student, " + i, "student" + i + "@university.edu",
+                "Course " + (i % 8)));
+        }
+        AttendanceStatus[] statuses = new AttendanceStatus[ROSTER_SIZE];
+        for (int d = 0; d < SESSIONS; d++) {
+            for (int i = 0; i < ROSTER_SIZE; i++) {
+                statuses[i] = STATUSES[(i * 7 + d) % STATUSES.length];
+            }
+            source.markSessionStatus(SyntheticData.day(d), ids, statuses, ROSTER_SIZE);
+        }
+        students = Files.createTempFile("students", ".csv");
+        attendance = Files.createTempFile("attendance", ".csv");
+        exportStudents = Files.createTempFile("students-export", ".csv");
+        exportAttendance = Files.createTempFile("attendance-export", ".csv");
+        new CsvExporter(source, CsvFormat.CSV).exportStudents(students);
+        new CsvExporter(source, CsvFormat.CSV).exportAttendance(attendance);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(students);
+        Files.deleteIfExists(attendance);
+        Files.deleteIfExists(exportStudents);
+        Files.deleteIfExists(exportAttendance);
+    }
+    
+    /**
+     * @return the number of attendance rows written
+     */
+    @Benchmark
+    public long export() throws IOException {
+        CsvExporter exporter = new CsvExporter(source, CsvFormat.CSV);
+        exporter.exportStudents(exportStudents);
+        return exporter.exportAttendance(exportAttendance);
+    }
+    
+    @Benchmark
+    public AttendanceManager load() throws IOException {
+        AttendanceManager target = new AttendanceManager(true);
+        CsvImporter importer = new CsvImporter(target, CsvFormat.CSV);
+        ImportResult studentResult = importer.importStudents(students);
+        ImportResult attendanceResult = importer.importAttendance(attendance);
+        if (studentResult.getBadRowCount() != 0 || attendanceResult.getBadRowCount() != 0) {
+            throw new IllegalStateException("Bad rows: " + studentResult.getBadRows() + attendanceResult.getBadRows());
+        }
+        return target;
+    }
+}
@@ -0,0 +1,124 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of a million-student directory: one Student object per row in a
+ * HashMap, as the manager used to hold on top of everything else, against
+ * AttendanceManager, which keeps students in its columnar stores and builds them on
+ * read. IDs are looked up by strings equal to, but not the same objects as, the
+ * stored ones, as typed into a form.
+ *
+ * The setup also prints the heap each directory takes; the manager's figure is its
+ * whole footprint, search index and per-student attendance columns included. Rows
+ * are built with fresh strings per field, as an import produces them.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar DirectoryBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class DirectoryBenchmark {
+    
+    private static final int STUDENT_COUNT = 1000000;
+    private static final int LOOKUPS = 1 << 20; // Power of two, for masking the cursor
+    
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+        "Michael", "Linda", "William", "Elizabeth", "David", "Barbara"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+        "Miller", "Davis", "Rodriguez", "Martinez", "Wilson", "Anderson"};
+    private static final String[] COURSES = {"Computer Science", "Mathematics", "Physics", "Biology",
+        "Art History", "Economics", "Mechanical Engineering", "Chemistry"};
+    
+    private HashMap<String, Student> objects;
+    private AttendanceManager manager;
+    private String[] lookups;
+    private int cursor;
+    private final LocalDate date = LocalDate.of(2024, 1, 1);
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] ids = new String[STUDENT_COUNT];
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            ids[i] = String.format("S%07d", i);
+        }
+        
+        long baseline = usedHeap();
+        objects = new HashMap<>();
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            objects.put(ids[i], row(ids[i], i));
+        }
+        long objectBytes = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        manager = new AttendanceManager();
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            manager.addStudent(row(ids[i], i));
+        }
+        long managerBytes = usedHeap() - baseline;
+        
+        Random random = new Random(42);
+        lookups = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = new String(ids[random.nextInt(STUDENT_COUNT)]);
+        }
+        System.out.println(String.format("%nHashMap of Students: %.1f MB (%.1f bytes/student)",
+            objectBytes / 1048576.0, (double) objectBytes / STUDENT_COUNT));
+        System.out.println(String.format("AttendanceManager:   %.1f MB (%.1f bytes/student)",
+            managerBytes / 1048576.0, (double) managerBytes / STUDENT_COUNT));
+    }
+    
+    private String next() {
+        return lookups[cursor++ & (LOOKUPS - 1)];
+    }
+    
+    @Benchmark
+    public String hashMapGet() {
+        return objects.get(next()).getName();
+    }
+    
+    @Benchmark
+    public String getStudent() {
+        return manager.getStudent(next()).getName();
+    }
+    
+    @Benchmark
+    public boolean studentExists() {
+        return manager.studentExists(next());
+    }
+    
+    @Benchmark
+    public boolean markAttendance() {
+        return manager.markAttendance(next(), date, true);
+    }
+    
+    private static Student row(String studentId, int i) {
+        String first = FIRST_NAMES[i % FIRST_NAMES.length];
+        String last = LAST_NAMES[i / FIRST_NAMES.length % LAST_NAMES.length];
+        return new Student(studentId, first + " " + last, (first + "." + last).toLowerCase() + i + "@university.edu",
+            new String(COURSES[i % COURSES.length]));
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,54 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression benchmark for markAttendance: saves whole new days for a fixed roster on
+ * top of increasingly long histories, reporting the cost per mark. The cost per mark
+ * should stay flat as the history grows. Each measurement starts from a freshly built
+ * history, so every day it saves opens a new session.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar MarkAttendanceBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarkAttendanceBenchmark {
+    
+    private static final int ROSTER_SIZE = 5000;
+    private static final int NEW_DAYS = 5;
+    
+    @Param({"0", "30", "60", "120"})
+    public int historyDays;
+    
+    private AttendanceManager manager;
+    private String[] studentIds;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = SyntheticData.create(ROSTER_SIZE, historyDays, false);
+        studentIds = new String[ROSTER_SIZE];
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            studentIds[i] = SyntheticData.studentId(i);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROSTER_SIZE * NEW_DAYS)
+    public long markNewDays() {
+        for (int d = 0; d < NEW_DAYS; d++) {
+            LocalDate date = SyntheticData.day(historyDays + d);
+            for (int i = 0; i < ROSTER_SIZE; i++) {
+                manager.markAttendance(studentIds[i], date, i % 4 != 0);
+            }
+        }
+        return manager.getTotalRecords();
+    }
+}
@@ -0,0 +1,108 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.AttendanceRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap per attendance record: one AttendanceRecord object per mark in an ArrayList,
+ * as the manager stored them originally, against the columnar store behind
+ * AttendanceManager. The setup prints both figures; the store's excludes the roster,
+ * which is measured before any mark is made.
+ *
+ * The benchmarks time a full pass over every mark in each layout, counting those
+ * present.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar MemoryFootprintBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MemoryFootprintBenchmark {
+    
+    private static final int ROSTER_SIZE = 10000;
+    private static final int SESSIONS = 200;
+    
+    private ArrayList<AttendanceRecord> objectLog;
+    private AttendanceManager manager;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] studentIds = new String[ROSTER_SIZE];
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            studentIds[i] = SyntheticData.studentId(i);
+        }
+        long records = (long) ROSTER_SIZE * SESSIONS;
+        
+        long baseline = usedHeap();
+        objectLog = new ArrayList<>();
+        for (int d = 0; d < SESSIONS; d++) {
+            LocalDate date = SyntheticData.day(d);
+            for (int i = 0; i < ROSTER_SIZE; i++) {
+                objectLog.add(new AttendanceRecord(studentIds[i], date, SyntheticData.present(i, d, SESSIONS)));
+            }
+        }
+        long objectBytes = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        manager = new AttendanceManager();
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            manager.addStudent(SyntheticData.student(i));
+        }
+        long rosterBytes = usedHeap() - baseline;
+        for (int d = 0; d < SESSIONS; d++) {
+            LocalDate date = SyntheticData.day(d);
+            for (int i = 0; i < ROSTER_SIZE; i++) {
+                manager.markAttendance(studentIds[i], date, SyntheticData.present(i, d, SESSIONS));
+            }
+        }
+        long columnarBytes = usedHeap() - baseline - rosterBytes;
+        
+        System.out.println(String.format("%nAttendanceRecord objects: %.1f MB (%.2f bytes/record)",
+            objectBytes / 1048576.0, (double) objectBytes / records));
+        System.out.println(String.format("Columnar store:           %.1f MB (%.2f bytes/record)",
+            columnarBytes / 1048576.0, (double) columnarBytes / records));
+    }
+    
+    @Benchmark
+    public int scanObjectLog() {
+        int present = 0;
+        for (AttendanceRecord record : objectLog) {
+            if (record.isPresent()) {
+                present++;
+            }
+        }
+        return present;
+    }
+    
+    @Benchmark
+    public int scanColumnarStore() {
+        int[] present = new int[1];
+        manager.forEachRecord((studentId, date, status) -> {
+            if (status.isPresent()) {
+                present[0]++;
+            }
+        });
+        return present[0];
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,64 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.metrics.Metrics;
+import com.attendance.model.AttendanceStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the instrumentation on the markAttendance hot path: upserts over an
+ * existing history with metrics disabled and enabled. Disabled should match an
+ * uninstrumented build.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar MetricsBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    
+    private static final int ROSTER_SIZE = 10000;
+    private static final int HISTORY_DAYS = 30;
+    private static final AttendanceStatus[] STATUSES = {AttendanceStatus.ABSENT, AttendanceStatus.PRESENT,
+        AttendanceStatus.LATE, AttendanceStatus.EXCUSED};
+    
+    @Param({"false", "true"})
+    public boolean enabled;
+    
+    private AttendanceManager manager;
+    private String[] studentIds;
+    private LocalDate[] dates;
+    private int cursor;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = SyntheticData.create(ROSTER_SIZE, HISTORY_DAYS, true);
+        studentIds = new String[ROSTER_SIZE];
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            studentIds[i] = SyntheticData.studentId(i);
+        }
+        dates = new LocalDate[HISTORY_DAYS];
+        for (int d = 0; d < HISTORY_DAYS; d++) {
+            dates[d] = SyntheticData.day(d);
+        }
+        Metrics.reset();
+        Metrics.setEnabled(enabled);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Metrics.setEnabled(false);
+    }
+    
+    @Benchmark
+    public boolean markAttendance() {
+        int i = cursor++ & Integer.MAX_VALUE;
+        return manager.markAttendance(studentIds[i % ROSTER_SIZE], dates[i % HISTORY_DAYS], STATUSES[i & 3]);
+    }
+}
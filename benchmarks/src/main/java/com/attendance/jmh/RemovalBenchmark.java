@@ -0,0 +1,104 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.persistence.AttendanceJournal;
+import com.attendance.persistence.FsyncPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Graduating a cohort: removeStudent once per student versus one removeStudents call,
+ * in memory and with a journal that syncs every entry (FsyncPolicy.ALWAYS). Each
+ * measurement removes the cohort from a freshly built roster.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar RemovalBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class RemovalBenchmark {
+    
+    private static final int ROSTER_SIZE = 100000;
+    private static final int SESSIONS = 60;
+    private static final int COHORT_EVERY = 5; // Every 5th student graduates
+    
+    /**
+     * "NONE" for no journal, otherwise the journal's FsyncPolicy
+     */
+    @Param({"NONE", "ALWAYS"})
+    public String journalPolicy;
+    
+    private AttendanceManager manager;
+    private List<String> cohort;
+    private Path directory;
+    private AttendanceJournal journal;
+    
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        manager = SyntheticData.create(ROSTER_SIZE, 0, true);
+        String[] ids = new String[ROSTER_SIZE];
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            ids[i] = SyntheticData.studentId(i);
+        }
+        AttendanceStatus[] cycle = AttendanceStatus.values();
+        AttendanceStatus[] statuses = new AttendanceStatus[ROSTER_SIZE];
+        for (int d = 0; d < SESSIONS; d++) {
+            for (int i = 0; i < ROSTER_SIZE; i++) {
+                statuses[i] = cycle[(i * 7 + d) % cycle.length];
+            }
+            manager.markSessionStatus(SyntheticData.day(d), ids, statuses, ROSTER_SIZE);
+        }
+        cohort = new ArrayList<>();
+        for (int i = 0; i < ROSTER_SIZE; i += COHORT_EVERY) {
+            cohort.add(ids[i]);
+        }
+        directory = Files.createTempDirectory("removal-benchmark");
+        if (!journalPolicy.equals("NONE")) {
+            journal = new AttendanceJournal(directory, FsyncPolicy.valueOf(journalPolicy));
+            journal.setSnapshotThreshold(0);
+            journal.recover(manager);
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+        if (manager.getTotalStudents() != ROSTER_SIZE - cohort.size()) {
+            throw new IllegalStateException(manager.getTotalStudents() + " students left");
+        }
+    }
+    
+    @Benchmark
+    public int oneByOne() {
+        int removed = 0;
+        for (String studentId : cohort) {
+            removed += manager.removeStudent(studentId) ? 1 : 0;
+        }
+        return removed;
+    }
+    
+    @Benchmark
+    public int bulk() {
+        return manager.removeStudents(cohort);
+    }
+}
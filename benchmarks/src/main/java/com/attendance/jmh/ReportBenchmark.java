@@ -0,0 +1,51 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.report.ReportGenerator;
+import com.attendance.report.StudentSummary;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless cost of the "View All Reports" summary over 100k students: the per-student
+ * rows ReportGenerator aggregates, and the full report streamed as text, as the UI
+ * builds it off the event thread.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar ReportBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+    
+    private static final int ROSTER_SIZE = 100000;
+    private static final int SESSIONS = 30;
+    
+    private ReportGenerator generator;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        AttendanceManager manager = SyntheticData.create(ROSTER_SIZE, SESSIONS, false);
+        generator = new ReportGenerator(manager);
+    }
+    
+    @Benchmark
+    public List<StudentSummary> summarize() {
+        return generator.summarize(() -> false);
+    }
+    
+    /**
+     * @return the length of the report
+     */
+    @Benchmark
+    public int writeSummaryReport() {
+        StringBuilder report = new StringBuilder();
+        generator.writeSummaryReport(report::append, () -> false);
+        return report.length();
+    }
+}
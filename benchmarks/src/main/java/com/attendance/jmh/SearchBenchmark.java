@@ -0,0 +1,92 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.Student;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search-as-you-type over a 100k-student directory: each query is typed one keystroke
+ * at a time, and every prefix is searched as the filtered table would. Divide a
+ * typeQuery score by the query's length for the cost per keystroke. Also measures
+ * adding and indexing the roster.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar SearchBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    
+    private static final int STUDENT_COUNT = 100000;
+    private static final int ROWS_SHOWN = 1000;
+    
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+        "Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+        "Thomas", "Sarah", "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Margaret"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+        "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+        "Taylor", "Moore", "Jackson", "Martin", "Lee", "Thompson", "White", "Harris", "O'Brien", "Nguyen"};
+    private static final String[] COURSES = {"Computer Science", "Mathematics", "Physics", "Biology",
+        "Art History", "Economics", "Mechanical Engineering", "Chemistry"};
+    
+    /**
+     * The roster, and a manager that has indexed it
+     */
+    @State(Scope.Benchmark)
+    public static class Directory {
+        
+        List<Student> students;
+        AttendanceManager manager;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            students = new ArrayList<>(STUDENT_COUNT);
+            for (int i = 0; i < STUDENT_COUNT; i++) {
+                String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                String email = (first + "." + last).toLowerCase().replace("'", "") + i + "@university.edu";
+                students.add(new Student(String.format("S%06d", i), first + " " + last, email,
+                    COURSES[random.nextInt(COURSES.length)]));
+            }
+            manager = new AttendanceManager(true);
+            manager.addStudents(students);
+        }
+    }
+    
+    /**
+     * Typed as a user would; the misspelled ones rely on typo tolerance
+     */
+    @State(Scope.Benchmark)
+    public static class Query {
+        
+        @Param({"S012345", "john smith", "jonh smtih", "elizabeth", "elizabteh", "o'brien", "mech eng",
+            "mathematics nguyen", "jessica.taylor"})
+        public String query;
+    }
+    
+    @Benchmark
+    public void typeQuery(Directory directory, Query query, Blackhole blackhole) {
+        String typed = query.query;
+        for (int length = 1; length <= typed.length(); length++) {
+            blackhole.consume(directory.manager.searchStudents(typed.substring(0, length), ROWS_SHOWN));
+        }
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public AttendanceManager addAndIndex(Directory directory) {
+        AttendanceManager manager = new AttendanceManager(true);
+        manager.addStudents(directory.students);
+        return manager;
+    }
+}
@@ -0,0 +1,138 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceAggregate;
+import com.attendance.manager.AttendanceManager;
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.SessionRoster;
+import com.attendance.manager.ShardedAttendanceManager;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scatter-gather cost of ShardedAttendanceManager: routed marks and date-wide queries
+ * over 100k students with 20 sessions, against a single concurrent AttendanceManager
+ * as the shard count grows, and the time addShard takes to grow 4 shards to 5.
+ * ShardedAttendanceManagerTest checks that rebalancing changes nothing but placement.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar ShardingBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ShardingBenchmark {
+    
+    private static final int STUDENT_COUNT = 100000;
+    private static final int SESSIONS = 20;
+    private static final int LOOKUPS = 1 << 20; // Power of two, for masking the cursor
+    private static final String[] COURSES = {"Computer Science", "Mathematics", "Physics", "Biology",
+        "Art History", "Economics", "Mechanical Engineering", "Chemistry", "Philosophy", "Music",
+        "Law", "Medicine", "Architecture", "Statistics", "Linguistics", "Geology"};
+    
+    /**
+     * A populated manager: "single" for an AttendanceManager, otherwise that many shards
+     * partitioned by student ID
+     */
+    @State(Scope.Benchmark)
+    public static class Populated {
+        
+        @Param({"single", "1", "2", "4", "8"})
+        public String shards;
+        
+        AttendanceService manager;
+        String[] lookups;
+        int cursor;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            manager = shards.equals("single") ? new AttendanceManager(true) : new ShardedAttendanceManager(
+                Integer.parseInt(shards), ShardedAttendanceManager.Partitioning.BY_STUDENT, true);
+            String[] ids = populate(manager);
+            Random random = new Random(7);
+            lookups = new String[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                lookups[i] = ids[random.nextInt(STUDENT_COUNT)];
+            }
+        }
+    }
+    
+    /**
+     * A freshly populated 4-shard manager for every addShard measurement
+     */
+    @State(Scope.Benchmark)
+    public static class Growing {
+        
+        @Param({"BY_STUDENT", "BY_COURSE"})
+        public ShardedAttendanceManager.Partitioning partitioning;
+        
+        ShardedAttendanceManager manager;
+        
+        @Setup(Level.Iteration)
+        public void setUp() {
+            manager = new ShardedAttendanceManager(4, partitioning, true);
+            populate(manager);
+        }
+    }
+    
+    /**
+     * Add STUDENT_COUNT students and mark SESSIONS sessions with random statuses
+     */
+    static String[] populate(AttendanceService manager) {
+        String[] ids = new String[STUDENT_COUNT];
+        List<Student> students = new ArrayList<>(STUDENT_COUNT);
+        for (int i = 0; i < STUDENT_COUNT; i++) {
+            ids[i] = SyntheticData.studentId(i);
+            students.add(new Student(ids[i], "Student " + i, "student" + i + "@university.edu",
+                COURSES[i % COURSES.length]));
+        }
+        manager.addStudents(students);
+        Random random = new Random(42);
+        AttendanceStatus[] statuses = new AttendanceStatus[STUDENT_COUNT];
+        for (int d = 0; d < SESSIONS; d++) {
+            for (int i = 0; i < STUDENT_COUNT; i++) {
+                statuses[i] = AttendanceStatus.fromCode(random.nextInt(4));
+            }
+            manager.markSessionStatus(SyntheticData.day(d), ids, statuses, STUDENT_COUNT);
+        }
+        return ids;
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean markAttendance(Populated state) {
+        int i = state.cursor++;
+        return state.manager.markAttendance(state.lookups[i & (LOOKUPS - 1)], SyntheticData.day(0), (i & 1) == 0);
+    }
+    
+    @Benchmark
+    public SessionRoster getSessionRoster(Populated state) {
+        return state.manager.getSessionRoster(SyntheticData.day((state.cursor++ & Integer.MAX_VALUE) % SESSIONS));
+    }
+    
+    @Benchmark
+    public ArrayList<AttendanceRecord> getAttendanceByDate(Populated state) {
+        return state.manager.getAttendanceByDate(SyntheticData.day((state.cursor++ & Integer.MAX_VALUE) % SESSIONS));
+    }
+    
+    @Benchmark
+    public AttendanceAggregate aggregate(Populated state) {
+        return state.manager.aggregate();
+    }
+    
+    /**
+     * @return the number of students moved to the fifth shard
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public int addShard(Growing state) {
+        return state.manager.addShard();
+    }
+}
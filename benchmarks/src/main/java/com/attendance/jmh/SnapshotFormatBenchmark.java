@@ -0,0 +1,107 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.manager.MappedSnapshot;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Java serialization of the Student/AttendanceRecord object graph against the mapped
+ * snapshot format: the setup writes both files for 4M records and prints their sizes
+ * and write times. Each measurement starts from a file on disk: reading the serialized
+ * graph back, opening the snapshot and answering a first query from the mapping, and
+ * opening the snapshot and streaming every record out of it.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar SnapshotFormatBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SnapshotFormatBenchmark {
+    
+    private static final int ROSTER_SIZE = 20000;
+    private static final int SESSIONS = 200;
+    
+    private Path directory;
+    private Path serialized;
+    private Path mapped;
+    
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        directory = Files.createTempDirectory("snapshot-format-benchmark");
+        serialized = directory.resolve("state.ser");
+        mapped = directory.resolve("state.snap");
+        AttendanceManager manager = SyntheticData.create(ROSTER_SIZE, SESSIONS, false);
+        
+        long begin = System.nanoTime();
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(serialized.toFile()), 1 << 16))) {
+            HashMap<String, Student> students = new HashMap<>();
+            for (Student student : manager.getAllStudents()) {
+                students.put(student.getStudentId(), student);
+            }
+            out.writeObject(students);
+            out.writeObject(manager.getAllAttendanceRecords());
+        }
+        long serializedMillis = (System.nanoTime() - begin) / 1_000_000;
+        begin = System.nanoTime();
+        MappedSnapshot.write(manager, mapped);
+        long mappedMillis = (System.nanoTime() - begin) / 1_000_000;
+        
+        System.out.println(String.format("%n%d records%nObjectOutputStream: %.1f MB, written in %d ms"
+                + "%nMappedSnapshot:     %.1f MB, written in %d ms", manager.getTotalRecords(),
+            Files.size(serialized) / 1048576.0, serializedMillis, Files.size(mapped) / 1048576.0, mappedMillis));
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    /**
+     * @return the number of records read back
+     */
+    @Benchmark
+    public int readSerialized() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(serialized.toFile()), 1 << 16))) {
+            in.readObject();
+            return ((ArrayList<?>) in.readObject()).size();
+        }
+    }
+    
+    @Benchmark
+    public AttendanceRecord openAndQuery() throws IOException {
+        try (MappedSnapshot snapshot = MappedSnapshot.open(mapped)) {
+            return snapshot.getAttendanceRecord(SyntheticData.studentId(ROSTER_SIZE / 2),
+                SyntheticData.day(SESSIONS / 2));
+        }
+    }
+    
+    /**
+     * @return the number of records streamed out of the mapping
+     */
+    @Benchmark
+    public long openAndScan() throws IOException {
+        try (MappedSnapshot snapshot = MappedSnapshot.open(mapped)) {
+            long[] records = new long[1];
+            snapshot.forEachRecord((studentId, date, status) -> records[0]++);
+            return records[0];
+        }
+    }
+}
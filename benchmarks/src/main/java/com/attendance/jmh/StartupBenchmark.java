@@ -0,0 +1,93 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.persistence.AttendanceJournal;
+import com.attendance.persistence.FsyncPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold start of AttendanceJournal: the setup writes a compacted snapshot of 10M
+ * attendance records plus a journal tail of a few more sessions, and prints the
+ * snapshot write time and the size on disk. Each measurement recovers the directory
+ * into an empty manager.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar StartupBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    
+    private static final int ROSTER_SIZE = 50000;
+    private static final int SESSIONS = 200;
+    private static final int TAIL_SESSIONS = 5;
+    
+    private Path directory;
+    private AttendanceManager recovered;
+    private AttendanceJournal journal;
+    
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        directory = Files.createTempDirectory("startup-benchmark");
+        AttendanceManager manager = SyntheticData.create(ROSTER_SIZE, SESSIONS, false);
+        
+        // Snapshot the bulk of the data, then leave a journal tail behind it
+        AttendanceJournal writer = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        writer.setSnapshotThreshold(0);
+        writer.recover(manager); // Empty directory: nothing to replay, just attach
+        long begin = System.nanoTime();
+        writer.checkpoint();
+        long snapshotMillis = (System.nanoTime() - begin) / 1_000_000;
+        for (int d = SESSIONS; d < SESSIONS + TAIL_SESSIONS; d++) {
+            for (int i = 0; i < ROSTER_SIZE; i++) {
+                manager.markAttendance(SyntheticData.studentId(i), SyntheticData.day(d), i % 3 != 0);
+            }
+        }
+        writer.close();
+        
+        long size;
+        try (Stream<Path> files = Files.list(directory)) {
+            size = files.mapToLong(path -> path.toFile().length()).sum();
+        }
+        System.out.println(String.format("%n%d records, snapshot written in %d ms, %.1f MB on disk",
+            manager.getTotalRecords(), snapshotMillis, size / 1048576.0));
+    }
+    
+    @Setup(Level.Iteration)
+    public void openJournal() throws IOException {
+        recovered = new AttendanceManager();
+        journal = new AttendanceJournal(directory, FsyncPolicy.NONE);
+        journal.setSnapshotThreshold(0);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void closeJournal() throws IOException {
+        journal.close();
+        if (recovered.getTotalRecords() != (long) ROSTER_SIZE * (SESSIONS + TAIL_SESSIONS)) {
+            throw new IllegalStateException("Recovered " + recovered.getTotalRecords() + " records");
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    @Benchmark
+    public AttendanceManager recover() throws IOException {
+        journal.recover(recovered);
+        return recovered;
+    }
+}
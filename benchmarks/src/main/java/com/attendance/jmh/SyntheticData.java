@@ -0,0 +1,75 @@
+package com.attendance.jmh;
+
+import com.attendance.manager.AttendanceManager;
+import com.attendance.model.Student;
+
+import java.time.LocalDate;
+
+/**
+ * Synthetic rosters and attendance histories for the benchmarks, modelled on
+ * AttendanceSystemUI.addSampleData: a handful of courses and students with
+ * excellent, good, average, declining and poor attendance patterns.
+ */
+public final class SyntheticData {
+    
+    static final String[] COURSES = {
+        "Computer Science", "Information Technology", "Electronics Engineering",
+        "Mechanical Engineering", "Civil Engineering"
+    };
+    
+    static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    
+    private SyntheticData() {
+    }
+    
+    public static String studentId(int index) {
+        return String.format("S%06d", index);
+    }
+    
+    public static Student student(int index) {
+        return new Student(studentId(index), "Student " + index,
+            "student" + index + "@university.edu", COURSES[index % COURSES.length]);
+    }
+    
+    public static LocalDate day(int day) {
+        return FIRST_DAY.plusDays(day);
+    }
+    
+    /**
+     * Presence of a student on a day, following the sample data's patterns
+     */
+    public static boolean present(int student, int day, int historyDays) {
+        switch (student % 5) {
+            case 0:
+                return true;                          // Consistent excellent
+            case 1:
+                return day % 5 != 0;                  // Good (80%)
+            case 2:
+                return day % 2 == 0 || day % 3 == 0;  // Average
+            case 3:
+                return day < historyDays / 2 || day % 3 == 0; // Declining
+            default:
+                return day % 3 == 0;                  // Poor
+        }
+    }
+    
+    /**
+     * A manager holding rosterSize students, each marked on every one of historyDays sessions
+     */
+    public static AttendanceManager create(int rosterSize, int historyDays, boolean concurrent) {
+        AttendanceManager manager = new AttendanceManager(concurrent);
+        String[] ids = new String[rosterSize];
+        for (int i = 0; i < rosterSize; i++) {
+            Student student = student(i);
+            ids[i] = student.getStudentId();
+            manager.addStudent(student);
+        }
+        for (int d = 0; d < historyDays; d++) {
+            LocalDate date = day(d);
+            for (int i = 0; i < rosterSize; i++) {
+                manager.markAttendance(ids[i], date, present(i, d, historyDays));
+            }
+        }
+        return manager;
+    }
+}
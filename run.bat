@@ -2,7 +2,7 @@
 REM Windows Batch Script to Run Student Attendance Management System
 
 echo Compiling Java files...
-javac -d bin src\com\attendance\model\*.java src\com\attendance\manager\*.java src\com\attendance\ui\*.java
+javac -d bin src\com\attendance\model\*.java src\com\attendance\metrics\*.java src\com\attendance\manager\*.java src\com\attendance\persistence\*.java src\com\attendance\report\*.java src\com\attendance\ui\*.java
 
 if %errorlevel% equ 0 (
     echo Compilation successful!
@@ -0,0 +1,184 @@
+package com.attendance.manager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Students ordered by attendance percentage, re-ranked as their marks change.
+ *
+ * Only students with at least one counted mark are indexed. Every change updates
+ * the student's standing and checks the thresholds straight away, but the sorted set
+ * (a skip list in concurrent mode) is only re-sorted when it is next queried: the
+ * student is marked dirty, and a query first moves each dirty student once. A bulk
+ * load that marks a student in many sessions therefore re-sorts it once, not once
+ * per mark. "below X%" and "bottom K" then only walk the students they return.
+ * Updates for a student are serialized by the manager's stripe lock.
+ */
+class AtRiskIndex {
+    
+    // Lowest percentage first, ties by student ID
+    static final Comparator<StudentStanding> ORDER = (a, b) -> {
+        int byRatio = Double.compare(a.ratio, b.ratio);
+        return byRatio != 0 ? byRatio : a.getStudentId().compareTo(b.getStudentId());
+    };
+    
+    /**
+     * A listener and the percentage it watches
+     */
+    private static final class Subscription {
+        final double percentage;
+        final ThresholdListener listener;
+        
+        Subscription(double percentage, ThresholdListener listener) {
+            this.percentage = percentage;
+            this.listener = listener;
+        }
+        
+        boolean below(StudentStanding standing) {
+            return standing != null && standing.ratio < percentage / 100.0;
+        }
+    }
+    
+    private final NavigableSet<StudentStanding> byPercentage;
+    private final Map<String, StudentStanding> standings; // Current standing of every indexed student
+    private final Map<String, StudentStanding> ranked;    // Standing each student is sorted by in byPercentage
+    private final Set<String> dirty;                      // Students whose standing changed since the last re-sort
+    private final CopyOnWriteArrayList<Subscription> subscriptions;
+    
+    AtRiskIndex(boolean concurrent) {
+        this.byPercentage = concurrent ? new ConcurrentSkipListSet<>(ORDER) : new TreeSet<>(ORDER);
+        this.standings = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.ranked = new HashMap<>(); // Guarded by this
+        this.dirty = concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>();
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+    
+    /**
+     * Re-rank a student after its counters changed. Threshold crossings are queued
+     * on {@code pending} (created on first use) to be fired once the locks are released.
+     *
+     * @return pending, or a new list if a crossing was queued and pending was null
+     */
+    List<Runnable> update(String studentId, int attended, int counted, List<Runnable> pending) {
+        StudentStanding previous = standings.get(studentId);
+        if (previous != null && previous.getAttended() == attended && previous.getCounted() == counted) {
+            return pending;
+        }
+        StudentStanding current = counted == 0 ? null : new StudentStanding(studentId, attended, counted);
+        if (current != null) {
+            standings.put(studentId, current);
+        } else if (previous != null) {
+            standings.remove(studentId);
+        }
+        dirty.add(studentId); // After the standing, so a concurrent re-sort can't drop it unseen
+        return queueCrossings(studentId, previous, current, pending);
+    }
+    
+    /**
+     * Drop a removed student
+     */
+    List<Runnable> remove(String studentId, List<Runnable> pending) {
+        StudentStanding previous = standings.remove(studentId);
+        if (previous == null) {
+            return pending;
+        }
+        dirty.add(studentId);
+        return queueCrossings(studentId, previous, null, pending);
+    }
+    
+    /**
+     * Students below a percentage, lowest first
+     */
+    List<StudentStanding> below(double percentage) {
+        resort();
+        return new ArrayList<>(byPercentage.headSet(StudentStanding.probe(percentage), false));
+    }
+    
+    /**
+     * The k lowest students, lowest first
+     */
+    List<StudentStanding> lowest(int k) {
+        resort();
+        ArrayList<StudentStanding> lowest = new ArrayList<>(Math.min(k, 64));
+        Iterator<StudentStanding> it = byPercentage.iterator();
+        while (lowest.size() < k && it.hasNext()) {
+            lowest.add(it.next());
+        }
+        return lowest;
+    }
+    
+    /**
+     * Move every dirty student to its current place in the sorted set
+     */
+    private synchronized void resort() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Iterator<String> it = dirty.iterator();
+        while (it.hasNext()) {
+            String studentId = it.next();
+            it.remove(); // Before reading the standing, so a change made meanwhile stays dirty
+            StudentStanding old = ranked.remove(studentId);
+            if (old != null) {
+                byPercentage.remove(old);
+            }
+            StudentStanding current = standings.get(studentId);
+            if (current != null) {
+                ranked.put(studentId, current);
+                byPercentage.add(current);
+            }
+        }
+    }
+    
+    StudentStanding get(String studentId) {
+        return standings.get(studentId);
+    }
+    
+    void addListener(double percentage, ThresholdListener listener) {
+        subscriptions.add(new Subscription(percentage, listener));
+    }
+    
+    boolean removeListener(ThresholdListener listener) {
+        return subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+    
+    private List<Runnable> queueCrossings(String studentId, StudentStanding previous, StudentStanding current,
+                                          List<Runnable> pending) {
+        for (Subscription subscription : subscriptions) {
+            boolean wasBelow = subscription.below(previous);
+            boolean isBelow = subscription.below(current);
+            if (wasBelow == isBelow) {
+                continue;
+            }
+            if (pending == null) {
+                pending = new ArrayList<>();
+            }
+            ThresholdListener listener = subscription.listener;
+            if (isBelow) {
+                pending.add(() -> listener.studentAtRisk(current));
+            } else {
+                StudentStanding standing = current != null ? current : new StudentStanding(studentId, 0, 0);
+                pending.add(() -> listener.studentRecovered(standing));
+            }
+        }
+        return pending;
+    }
+    
+    /**
+     * Deliver queued crossings; a failing listener doesn't stop the others
+     */
+    static void fire(List<Runnable> pending) {
+        if (pending == null) {
+            return;
+        }
+        for (Runnable crossing : pending) {
+            try {
+                crossing.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
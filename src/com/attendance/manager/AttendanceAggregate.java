@@ -0,0 +1,183 @@
+package com.attendance.manager;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Per-student, per-course and per-date attendance counts over a date range,
+ * as computed by AttendanceManager.aggregate.
+ *
+ * Each fork/join leaf fills its own instance and instances are merged pairwise
+ * as the tasks complete; once returned an aggregate is never modified.
+ * Statistics use the same keys as AttendanceManager.getStudentStatistics.
+ */
+public class AttendanceAggregate {
+    
+    private static final int[] NO_MARKS = new int[AttendanceStore.STATES];
+    
+    private final CountingPolicy policy; // Default policy for the methods that don't take one
+    private final HashMap<String, int[]> students;    // studentId -> marks per state
+    private final HashMap<String, int[]> courses;     // course -> marks per state
+    private final TreeMap<LocalDate, int[]> dates;    // session date -> marks per state
+    
+    AttendanceAggregate(CountingPolicy policy, int expectedStudents) {
+        this.policy = policy;
+        this.students = new HashMap<>(expectedStudents * 4 / 3 + 1);
+        this.courses = new HashMap<>();
+        this.dates = new TreeMap<>();
+    }
+    
+    /**
+     * Add a student's counts, read from counts[offset .. offset + STATES)
+     */
+    void addStudent(String studentId, String course, int[] counts, int offset) {
+        int[] studentCounts = Arrays.copyOfRange(counts, offset, offset + AttendanceStore.STATES);
+        students.put(studentId, studentCounts);
+        add(courses.computeIfAbsent(course, c -> new int[AttendanceStore.STATES]), studentCounts, 0);
+    }
+    
+    /**
+     * Add one session's counts, read from counts[offset .. offset + STATES)
+     */
+    void addSession(LocalDate date, int[] counts, int offset) {
+        add(dates.computeIfAbsent(date, d -> new int[AttendanceStore.STATES]), counts, offset);
+    }
+    
+    /**
+     * Combine two partial aggregates over disjoint sets of students.
+     * The larger one absorbs the smaller and is returned.
+     */
+    AttendanceAggregate merge(AttendanceAggregate other) {
+        if (other.students.size() > students.size()) {
+            return other.merge(this);
+        }
+        students.putAll(other.students);
+        for (Map.Entry<String, int[]> course : other.courses.entrySet()) {
+            add(courses.computeIfAbsent(course.getKey(), c -> new int[AttendanceStore.STATES]), course.getValue(), 0);
+        }
+        for (Map.Entry<LocalDate, int[]> date : other.dates.entrySet()) {
+            add(dates.computeIfAbsent(date.getKey(), d -> new int[AttendanceStore.STATES]), date.getValue(), 0);
+        }
+        return this;
+    }
+    
+    private static void add(int[] target, int[] counts, int offset) {
+        for (int state = 0; state < AttendanceStore.STATES; state++) {
+            target[state] += counts[offset + state];
+        }
+    }
+    
+    /**
+     * Number of students that were aggregated, with or without marks
+     */
+    public int getStudentCount() {
+        return students.size();
+    }
+    
+    public boolean containsStudent(String studentId) {
+        return students.containsKey(studentId);
+    }
+    
+    public Map<String, Integer> getStudentStatistics(String studentId) {
+        return getStudentStatistics(studentId, policy);
+    }
+    
+    public Map<String, Integer> getStudentStatistics(String studentId, CountingPolicy policy) {
+        return statisticsOf(students.getOrDefault(studentId, NO_MARKS), policy);
+    }
+    
+    public double getStudentPercentage(String studentId) {
+        return getStudentPercentage(studentId, policy);
+    }
+    
+    public double getStudentPercentage(String studentId, CountingPolicy policy) {
+        return percentageOf(students.getOrDefault(studentId, NO_MARKS), policy);
+    }
+    
+    /**
+     * Courses of the aggregated students, sorted; students without a course are only
+     * counted under getCourseStatistics(null)
+     */
+    public SortedSet<String> getCourses() {
+        TreeSet<String> names = new TreeSet<>();
+        for (String course : courses.keySet()) {
+            if (course != null) {
+                names.add(course);
+            }
+        }
+        return Collections.unmodifiableSortedSet(names);
+    }
+    
+    public Map<String, Integer> getCourseStatistics(String course) {
+        return getCourseStatistics(course, policy);
+    }
+    
+    public Map<String, Integer> getCourseStatistics(String course, CountingPolicy policy) {
+        return statisticsOf(courses.getOrDefault(course, NO_MARKS), policy);
+    }
+    
+    public double getCoursePercentage(String course) {
+        return getCoursePercentage(course, policy);
+    }
+    
+    public double getCoursePercentage(String course, CountingPolicy policy) {
+        return percentageOf(courses.getOrDefault(course, NO_MARKS), policy);
+    }
+    
+    /**
+     * Session dates within the range, sorted
+     */
+    public SortedSet<LocalDate> getDates() {
+        return Collections.unmodifiableSortedSet((SortedSet<LocalDate>) dates.navigableKeySet());
+    }
+    
+    public Map<String, Integer> getDateStatistics(LocalDate date) {
+        return getDateStatistics(date, policy);
+    }
+    
+    public Map<String, Integer> getDateStatistics(LocalDate date, CountingPolicy policy) {
+        return statisticsOf(dates.getOrDefault(date, NO_MARKS), policy);
+    }
+    
+    public double getDatePercentage(LocalDate date) {
+        return getDatePercentage(date, policy);
+    }
+    
+    public double getDatePercentage(LocalDate date, CountingPolicy policy) {
+        return percentageOf(dates.getOrDefault(date, NO_MARKS), policy);
+    }
+    
+    /**
+     * Statistics over every mark in the range
+     */
+    public Map<String, Integer> getTotalStatistics() {
+        return getTotalStatistics(policy);
+    }
+    
+    public Map<String, Integer> getTotalStatistics(CountingPolicy policy) {
+        int[] total = new int[AttendanceStore.STATES];
+        for (int[] counts : courses.values()) {
+            add(total, counts, 0);
+        }
+        return statisticsOf(total, policy);
+    }
+    
+    private static double percentageOf(int[] counts, CountingPolicy policy) {
+        return policy.percentage(counts[AttendanceStore.PRESENT], counts[AttendanceStore.ABSENT],
+                counts[AttendanceStore.LATE], counts[AttendanceStore.EXCUSED]);
+    }
+    
+    private static Map<String, Integer> statisticsOf(int[] counts, CountingPolicy policy) {
+        return policy.statistics(counts[AttendanceStore.PRESENT], counts[AttendanceStore.ABSENT],
+                counts[AttendanceStore.LATE], counts[AttendanceStore.EXCUSED]);
+    }
+    
+    @Override
+    public String toString() {
+        return "AttendanceAggregate{" +
+                "Students=" + students.size() +
+                ", Courses=" + courses.size() +
+                ", Dates=" + dates.size() +
+                '}';
+    }
+}
@@ -0,0 +1,242 @@
+package com.attendance.manager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Date-range, rolling-window and week/month analytics over an AttendanceManager or
+ * ShardedAttendanceManager.
+ *
+ * Each student's marks are copied once into a date-sorted timeline with prefix
+ * sums per status (see StudentTimeline), so any range query is two binary searches
+ * and a subtraction. Timelines are cached and rebuilt only after the student's
+ * marks change, which the store tracks with a per-student version.
+ */
+public class AttendanceAnalytics {
+    
+    /**
+     * Calendar buckets for trend output
+     */
+    public enum Bucket {
+        WEEK,   // Monday to Sunday
+        MONTH
+    }
+    
+    /**
+     * Direction of a student's most recent sessions compared with the ones before
+     */
+    public enum Trend {
+        IMPROVING,
+        DECLINING,
+        STEADY,
+        INSUFFICIENT_DATA  // Fewer than two full windows of marks
+    }
+    
+    private static final double TREND_THRESHOLD = 5.0; // Percentage points between windows
+    
+    private final AttendanceService attendanceManager;
+    private final ConcurrentHashMap<String, StudentTimeline> timelines;
+    
+    public AttendanceAnalytics(AttendanceService attendanceManager) {
+        this.attendanceManager = attendanceManager;
+        this.timelines = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * A student's attendance percentage between two dates (both inclusive), under the default counting policy
+     */
+    public double calculatePercentageBetween(String studentId, LocalDate from, LocalDate to) {
+        return calculatePercentageBetween(studentId, from, to, attendanceManager.getCountingPolicy());
+    }
+    
+    public double calculatePercentageBetween(String studentId, LocalDate from, LocalDate to, CountingPolicy policy) {
+        return pointBetween(studentId, from, to, policy).getPercentage();
+    }
+    
+    /**
+     * Statistics of a student between two dates (both inclusive), under the default counting policy;
+     * same keys as AttendanceManager.getStudentStatistics
+     */
+    public Map<String, Integer> getStatisticsBetween(String studentId, LocalDate from, LocalDate to) {
+        return getStatisticsBetween(studentId, from, to, attendanceManager.getCountingPolicy());
+    }
+    
+    public Map<String, Integer> getStatisticsBetween(String studentId, LocalDate from, LocalDate to,
+                                                     CountingPolicy policy) {
+        StudentTimeline timeline = timeline(studentId);
+        if (timeline == null) {
+            return policy.statistics(0, 0, 0, 0);
+        }
+        int start = timeline.lowerBound(AttendanceStore.toEpochDay(from));
+        int end = Math.max(start, timeline.upperBound(AttendanceStore.toEpochDay(to)));
+        return policy.statistics(
+            timeline.count(start, end, AttendanceStore.PRESENT),
+            timeline.count(start, end, AttendanceStore.ABSENT),
+            timeline.count(start, end, AttendanceStore.LATE),
+            timeline.count(start, end, AttendanceStore.EXCUSED));
+    }
+    
+    /**
+     * Rolling percentage over the student's last {@code sessions} marked sessions,
+     * one point per marked session (the first points cover fewer sessions)
+     */
+    public List<TrendPoint> getRollingWindow(String studentId, int sessions) {
+        return getRollingWindow(studentId, sessions, attendanceManager.getCountingPolicy());
+    }
+    
+    public List<TrendPoint> getRollingWindow(String studentId, int sessions, CountingPolicy policy) {
+        if (sessions <= 0) {
+            throw new IllegalArgumentException("Window must cover at least one session");
+        }
+        StudentTimeline timeline = timeline(studentId);
+        List<TrendPoint> points = new ArrayList<>();
+        if (timeline == null) {
+            return points;
+        }
+        for (int end = 1; end <= timeline.size(); end++) {
+            points.add(point(timeline, Math.max(0, end - sessions), end, policy));
+        }
+        return points;
+    }
+    
+    /**
+     * A student's attendance per week or month, for every bucket with at least one mark
+     */
+    public List<TrendPoint> getBuckets(String studentId, Bucket bucket) {
+        return getBuckets(studentId, bucket, attendanceManager.getCountingPolicy());
+    }
+    
+    public List<TrendPoint> getBuckets(String studentId, Bucket bucket, CountingPolicy policy) {
+        StudentTimeline timeline = timeline(studentId);
+        List<TrendPoint> points = new ArrayList<>();
+        if (timeline == null) {
+            return points;
+        }
+        int start = 0;
+        while (start < timeline.size()) {
+            LocalDate first = bucketStart(LocalDate.ofEpochDay(timeline.day(start)), bucket);
+            LocalDate last = bucketEnd(first, bucket);
+            int end = timeline.upperBound(AttendanceStore.toEpochDay(last));
+            points.add(new TrendPoint(first, last, attended(timeline, start, end, policy),
+                counted(timeline, start, end, policy)));
+            start = end;
+        }
+        return points;
+    }
+    
+    /**
+     * Attendance of the whole roster per week or month between two dates (both inclusive),
+     * read from the per-date counters of each session
+     */
+    public List<TrendPoint> getClassBuckets(Bucket bucket, LocalDate from, LocalDate to) {
+        return getClassBuckets(bucket, from, to, attendanceManager.getCountingPolicy());
+    }
+    
+    public List<TrendPoint> getClassBuckets(Bucket bucket, LocalDate from, LocalDate to, CountingPolicy policy) {
+        List<TrendPoint> points = new ArrayList<>();
+        LocalDate first = null;
+        int attended = 0;
+        int counted = 0;
+        for (LocalDate date : attendanceManager.getSessionsBetween(from, to)) {
+            LocalDate start = bucketStart(date, bucket);
+            if (!start.equals(first)) {
+                if (first != null) {
+                    points.add(new TrendPoint(first, bucketEnd(first, bucket), attended, counted));
+                }
+                first = start;
+                attended = 0;
+                counted = 0;
+            }
+            Map<String, Integer> stats = attendanceManager.getDateStatistics(date, policy);
+            attended += stats.get("present");
+            counted += stats.get("total");
+        }
+        if (first != null) {
+            points.add(new TrendPoint(first, bucketEnd(first, bucket), attended, counted));
+        }
+        return points;
+    }
+    
+    /**
+     * Compare the student's last {@code sessions} marked sessions with the ones before them
+     */
+    public Trend getTrend(String studentId, int sessions) {
+        return getTrend(studentId, sessions, attendanceManager.getCountingPolicy());
+    }
+    
+    public Trend getTrend(String studentId, int sessions, CountingPolicy policy) {
+        if (sessions <= 0) {
+            throw new IllegalArgumentException("Window must cover at least one session");
+        }
+        StudentTimeline timeline = timeline(studentId);
+        if (timeline == null || timeline.size() < 2 * sessions) {
+            return Trend.INSUFFICIENT_DATA;
+        }
+        int size = timeline.size();
+        double recent = point(timeline, size - sessions, size, policy).getPercentage();
+        double before = point(timeline, size - 2 * sessions, size - sessions, policy).getPercentage();
+        if (recent - before >= TREND_THRESHOLD) {
+            return Trend.IMPROVING;
+        }
+        if (before - recent >= TREND_THRESHOLD) {
+            return Trend.DECLINING;
+        }
+        return Trend.STEADY;
+    }
+    
+    private TrendPoint pointBetween(String studentId, LocalDate from, LocalDate to, CountingPolicy policy) {
+        StudentTimeline timeline = timeline(studentId);
+        if (timeline == null) {
+            return new TrendPoint(from, to, 0, 0);
+        }
+        int start = timeline.lowerBound(AttendanceStore.toEpochDay(from));
+        int end = Math.max(start, timeline.upperBound(AttendanceStore.toEpochDay(to)));
+        return new TrendPoint(from, to, attended(timeline, start, end, policy), counted(timeline, start, end, policy));
+    }
+    
+    private static TrendPoint point(StudentTimeline timeline, int start, int end, CountingPolicy policy) {
+        return new TrendPoint(LocalDate.ofEpochDay(timeline.day(start)), LocalDate.ofEpochDay(timeline.day(end - 1)),
+            attended(timeline, start, end, policy), counted(timeline, start, end, policy));
+    }
+    
+    private static int attended(StudentTimeline timeline, int start, int end, CountingPolicy policy) {
+        return policy.attended(
+            timeline.count(start, end, AttendanceStore.PRESENT),
+            timeline.count(start, end, AttendanceStore.ABSENT),
+            timeline.count(start, end, AttendanceStore.LATE),
+            timeline.count(start, end, AttendanceStore.EXCUSED));
+    }
+    
+    private static int counted(StudentTimeline timeline, int start, int end, CountingPolicy policy) {
+        return policy.counted(
+            timeline.count(start, end, AttendanceStore.PRESENT),
+            timeline.count(start, end, AttendanceStore.ABSENT),
+            timeline.count(start, end, AttendanceStore.LATE),
+            timeline.count(start, end, AttendanceStore.EXCUSED));
+    }
+    
+    private static LocalDate bucketStart(LocalDate date, Bucket bucket) {
+        return bucket == Bucket.WEEK ? date.with(DayOfWeek.MONDAY) : date.withDayOfMonth(1);
+    }
+    
+    private static LocalDate bucketEnd(LocalDate start, Bucket bucket) {
+        return bucket == Bucket.WEEK ? start.plusDays(6) : start.plusMonths(1).minusDays(1);
+    }
+    
+    /**
+     * The student's cached timeline, rebuilt if their marks changed (or, sharded, they
+     * moved shard) since it was built; null if the student doesn't exist
+     */
+    private StudentTimeline timeline(String studentId) {
+        StudentTimeline cached = timelines.get(studentId);
+        StudentTimeline timeline = attendanceManager.studentTimeline(studentId, cached);
+        if (timeline == null) {
+            timelines.remove(studentId);
+        } else if (timeline != cached) {
+            timelines.put(studentId, timeline);
+        }
+        return timeline;
+    }
+}
@@ -1,169 +1,1664 @@
 package com.attendance.manager;
 
+import com.attendance.metrics.Counter;
+import com.attendance.metrics.Metrics;
+import com.attendance.metrics.Timer;
 import com.attendance.model.Student;
 import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
- * HashMap: For storing students with unique IDs
- * ArrayList: For maintaining attendance logs dynamically
- * Queue: For managing date-wise attendance sessions
+ * AttendanceStore: Columnar attendance log (int ordinals, epoch days, presence bitsets) and
+ *   student directory (open-addressing ID map, packed names); Students are built on read
+ * SessionRegistry: For managing date-wise attendance sessions (FIFO order, hashed, sorted)
+ * NameRegistry: Course names and email domains interned to IDs; each store indexes and counts students by course
+ * AtRiskIndex: Students sorted by attendance percentage, re-ranked as marks change
+ * ChangeFeed: Typed change events, coalesced and delivered to listeners on their own thread
+ * StudentSearchIndex: Trie over student ID, name, email and course words for ranked, typo-tolerant search
+ *
+ * In concurrent mode students are striped by ID across independent stores, each
+ * guarded by its own StampedLock. Writes to different stripes proceed in parallel,
+ * every upsert is atomic, and O(1) reads such as statistics and percentages use
+ * optimistic reads that never block writers.
  */
-public class AttendanceManager {
+public class AttendanceManager implements AttendanceService {
     
-    // HashMap to store students with studentId as key
-    private HashMap<String, Student> students;
+    private static final int CONCURRENT_STRIPES = 64;
+    private static final int AGGREGATE_BLOCK = 4096; // Students per fork/join leaf
     
-    // ArrayList to store all attendance records
-    private ArrayList<AttendanceRecord> attendanceRecords;
+    // Latency of the main operations, and rows saved in bulk, recorded while Metrics is enabled
+    private static final Timer ADD_STUDENT = Metrics.timer("manager.addStudent");
+    private static final Timer ADD_STUDENTS = Metrics.timer("manager.addStudents");
+    private static final Timer REMOVE_STUDENT = Metrics.timer("manager.removeStudent");
+    private static final Timer REMOVE_STUDENTS = Metrics.timer("manager.removeStudents");
+    private static final Timer CHANGE_COURSE = Metrics.timer("manager.changeCourse");
+    private static final Timer MARK_ATTENDANCE = Metrics.timer("manager.markAttendance");
+    private static final Timer MARK_SESSION = Metrics.timer("manager.markSessionStatus");
+    private static final Timer REMOVE_ATTENDANCE = Metrics.timer("manager.removeAttendance");
+    private static final Timer STUDENT_RECORDS = Metrics.timer("manager.getStudentAttendance");
+    private static final Timer DATE_RECORDS = Metrics.timer("manager.getAttendanceByDate");
+    private static final Timer SESSION_ROSTER = Metrics.timer("manager.getSessionRoster");
+    private static final Timer AGGREGATE = Metrics.timer("manager.aggregate");
+    private static final Timer SEARCH = Metrics.timer("manager.searchStudents");
+    private static final Counter SESSION_ROWS = Metrics.counter("manager.sessionRows");
     
-    // Queue to manage date-wise attendance sessions (FIFO)
-    private Queue<LocalDate> attendanceSessions;
+    // Columnar stores holding every student and attendance mark, one per stripe; students
+    // and records are materialized as views on read
+    private AttendanceStore[] stripes;
+    
+    // One lock per stripe in concurrent mode, null otherwise
+    private StampedLock[] locks;
+    
+    // Registry of attendance sessions (dates)
+    private SessionRegistry sessions;
+    
+    // Course and email domain IDs shared by every stripe
+    private NameRegistry courses;
+    private NameRegistry domains;
+    
+    // Optional durability hook, notified after every applied change
+    private volatile MutationLog mutationLog;
+    
+    // How statuses count towards percentages and statistics by default
+    private volatile CountingPolicy countingPolicy = CountingPolicy.STANDARD;
+    
+    // Students ordered by percentage under the default counting policy
+    private AtRiskIndex atRisk;
+    
+    // Change events for MutationListeners; only queued while one is registered
+    private ChangeFeed changeFeed;
+    
+    // Search-as-you-type index over every student, updated with the roster
+    private StudentSearchIndex searchIndex;
     
     public AttendanceManager() {
-        this.students = new HashMap<>();
-        this.attendanceRecords = new ArrayList<>();
-        this.attendanceSessions = new LinkedList<>();
+        this(false);
     }
-
+    
+    /**
+     * @param concurrent true to allow several threads to read and write at once
+     */
+    public AttendanceManager(boolean concurrent) {
+        int stripeCount = concurrent ? CONCURRENT_STRIPES : 1;
+        this.stripes = new AttendanceStore[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AttendanceStore();
+        }
+        if (concurrent) {
+            this.locks = new StampedLock[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                locks[i] = new StampedLock();
+            }
+        }
+        this.sessions = new SessionRegistry();
+        this.courses = new NameRegistry();
+        this.domains = new NameRegistry();
+        this.atRisk = new AtRiskIndex(concurrent);
+        this.changeFeed = new ChangeFeed();
+        this.searchIndex = new StudentSearchIndex();
+    }
+    
+    @Override
+    public boolean isConcurrent() {
+        return locks != null;
+    }
+    
+    @Override
     public boolean addStudent(Student student) {
-        if (students.containsKey(student.getStudentId())) {
-            return false; // Student already exists
+        long started = ADD_STUDENT.start();
+        int stripe = stripeOf(student.getStudentId());
+        long stamp = lockWrite(stripe);
+        try {
+            if (stripes[stripe].ordinalOf(student.getStudentId()) >= 0) {
+                return false; // Student already exists
+            }
+            register(stripes[stripe], student);
+            searchIndex.add(student);
+            MutationLog log = mutationLog;
+            if (log != null) {
+                log.studentAdded(student);
+            }
+            if (changeFeed.isActive()) {
+                changeFeed.publish(MutationEvent.studentAdded(student));
+            }
+            return true;
+        } finally {
+            unlockWrite(stripe, stamp);
+            completed();
+            ADD_STUDENT.stop(started);
         }
-        students.put(student.getStudentId(), student);
-        return true;
     }
     
-
+    
+    /**
+     * Add many students at once, e.g. from an import. Students are grouped by stripe
+     * so each stripe is locked once. Students whose ID already exists (or repeats
+     * earlier in the batch) are skipped.
+     *
+     * @return the number of students added
+     */
+    @Override
+    public int addStudents(Collection<Student> batch) {
+        long started = ADD_STUDENTS.start();
+        try {
+            return addGrouped(batch);
+        } finally {
+            completed();
+            ADD_STUDENTS.stop(started);
+        }
+    }
+    
+    private int addGrouped(Collection<Student> batch) {
+        // Group students by stripe so each lock is taken once
+        Student[][] stripeStudents = new Student[stripes.length][];
+        int[] stripeCounts = new int[stripes.length];
+        for (Student student : batch) {
+            int stripe = stripeOf(student.getStudentId());
+            int count = stripeCounts[stripe];
+            if (stripeStudents[stripe] == null) {
+                stripeStudents[stripe] = new Student[stripes.length == 1 ? batch.size() : 16];
+            } else if (count == stripeStudents[stripe].length) {
+                stripeStudents[stripe] = Arrays.copyOf(stripeStudents[stripe], count * 2);
+            }
+            stripeStudents[stripe][count] = student;
+            stripeCounts[stripe] = count + 1;
+        }
+        
+        int added = 0;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            if (stripeCounts[stripe] == 0) {
+                continue;
+            }
+            long stamp = lockWrite(stripe);
+            try {
+                MutationLog log = mutationLog;
+                MutationEvent[] events = changeFeed.isActive() ? new MutationEvent[stripeCounts[stripe]] : null;
+                int count = 0;
+                for (int i = 0; i < stripeCounts[stripe]; i++) {
+                    Student student = stripeStudents[stripe][i];
+                    if (stripes[stripe].ordinalOf(student.getStudentId()) >= 0) {
+                        continue;
+                    }
+                    register(stripes[stripe], student);
+                    searchIndex.add(student);
+                    if (log != null) {
+                        log.studentAdded(student);
+                    }
+                    if (events != null) {
+                        events[count] = MutationEvent.studentAdded(student);
+                    }
+                    count++;
+                }
+                if (events != null) {
+                    changeFeed.publish(events, count);
+                }
+                added += count;
+            } finally {
+                unlockWrite(stripe, stamp);
+            }
+        }
+        return added;
+    }
+    
+    @Override
     public boolean removeStudent(String studentId) {
-        if (!students.containsKey(studentId)) {
-            return false;
+        long started = REMOVE_STUDENT.start();
+        int stripe = stripeOf(studentId);
+        List<Runnable> crossings = null;
+        long stamp = lockWrite(stripe);
+        try {
+            if (stripes[stripe].ordinalOf(studentId) < 0) {
+                return false;
+            }
+            if (changeFeed.isActive()) {
+                publishRemoval(stripes[stripe], studentId);
+            }
+            // Also remove all attendance records for this student
+            stripes[stripe].unregister(studentId);
+            searchIndex.remove(studentId);
+            crossings = atRisk.remove(studentId, null);
+            MutationLog log = mutationLog;
+            if (log != null) {
+                log.studentRemoved(studentId);
+            }
+            return true;
+        } finally {
+            unlockWrite(stripe, stamp);
+            AtRiskIndex.fire(crossings);
+            completed();
+            REMOVE_STUDENT.stop(started);
         }
-        students.remove(studentId);
-        // Also remove all attendance records for this student
-        attendanceRecords.removeIf(record -> record.getStudentId().equals(studentId));
-        return true;
     }
-
+    
+    /**
+     * Remove a whole cohort (e.g. a graduating class) with its attendance history.
+     * IDs are grouped by stripe so each stripe is locked and journaled once, and
+     * each student costs only its own marks. Unknown and repeated IDs are skipped.
+     *
+     * @return the number of students removed
+     */
+    @Override
+    public int removeStudents(Collection<String> studentIds) {
+        long started = REMOVE_STUDENTS.start();
+        // Group IDs by stripe so each lock is taken once
+        String[][] stripeIds = new String[stripes.length][];
+        int[] stripeCounts = new int[stripes.length];
+        for (String studentId : studentIds) {
+            int stripe = stripeOf(studentId);
+            int count = stripeCounts[stripe];
+            if (stripeIds[stripe] == null) {
+                stripeIds[stripe] = new String[stripes.length == 1 ? studentIds.size() : 16];
+            } else if (count == stripeIds[stripe].length) {
+                stripeIds[stripe] = Arrays.copyOf(stripeIds[stripe], count * 2);
+            }
+            stripeIds[stripe][count] = studentId;
+            stripeCounts[stripe] = count + 1;
+        }
+        
+        int removed = 0;
+        List<Runnable> crossings = null;
+        try {
+            for (int stripe = 0; stripe < stripes.length; stripe++) {
+                if (stripeCounts[stripe] == 0) {
+                    continue;
+                }
+                String[] ids = stripeIds[stripe];
+                long stamp = lockWrite(stripe);
+                try {
+                    int count = 0;
+                    for (int i = 0; i < stripeCounts[stripe]; i++) {
+                        if (stripes[stripe].ordinalOf(ids[i]) < 0) {
+                            continue;
+                        }
+                        if (changeFeed.isActive()) {
+                            publishRemoval(stripes[stripe], ids[i]);
+                        }
+                        stripes[stripe].unregister(ids[i]);
+                        searchIndex.remove(ids[i]);
+                        crossings = atRisk.remove(ids[i], crossings);
+                        ids[count++] = ids[i];
+                    }
+                    MutationLog log = mutationLog;
+                    if (log != null && count > 0) {
+                        log.studentsRemoved(ids, count);
+                    }
+                    removed += count;
+                } finally {
+                    unlockWrite(stripe, stamp);
+                }
+            }
+            return removed;
+        } finally {
+            AtRiskIndex.fire(crossings);
+            completed();
+            REMOVE_STUDENTS.stop(started);
+        }
+    }
+    
+    /**
+     * Move a student to another course, keeping the course index and course rollups
+     * in step. Student.setCourse only changes a copy (see getStudent).
+     *
+     * @return false if the student doesn't exist or is already in that course
+     */
+    @Override
+    public boolean changeCourse(String studentId, String course) {
+        long started = CHANGE_COURSE.start();
+        Objects.requireNonNull(course);
+        int stripe = stripeOf(studentId);
+        long stamp = lockWrite(stripe);
+        try {
+            AttendanceStore store = stripes[stripe];
+            int ordinal = store.ordinalOf(studentId);
+            if (ordinal < 0 || !store.changeCourse(ordinal, courses.intern(course))) {
+                return false;
+            }
+            searchIndex.update(studentAt(store, ordinal));
+            MutationLog log = mutationLog;
+            if (log != null) {
+                log.studentCourseChanged(studentId, course);
+            }
+            if (changeFeed.isActive()) {
+                changeFeed.publish(MutationEvent.courseChanged(studentId, course));
+            }
+            return true;
+        } finally {
+            unlockWrite(stripe, stamp);
+            completed();
+            CHANGE_COURSE.stop(started);
+        }
+    }
+    
+    /**
+     * A copy of a student built from the directory, or null if there is none.
+     * Changing the copy doesn't change the student; see changeCourse.
+     */
+    @Override
     public Student getStudent(String studentId) {
-        return students.get(studentId);
+        int stripe = stripeOf(studentId);
+        AttendanceStore store = stripes[stripe];
+        return optimisticRead(stripe, () -> {
+            int ordinal = store.ordinalOf(studentId);
+            return ordinal < 0 ? null : studentAt(store, ordinal);
+        });
     }
     
-
+    /**
+     * Every student, as copies built while iterating a block of a stripe at a time.
+     * Like a concurrent map's view, the iteration reflects changes made since it
+     * started in some blocks but not others.
+     */
+    @Override
     public Collection<Student> getAllStudents() {
-        return students.values();
+        return new AbstractCollection<Student>() {
+            @Override
+            public Iterator<Student> iterator() {
+                return new DirectoryIterator();
+            }
+            
+            @Override
+            public int size() {
+                return getTotalStudents();
+            }
+        };
     }
     
-
-    public boolean markAttendance(String studentId, LocalDate date, boolean present) {
-        if (!students.containsKey(studentId)) {
-            return false; // Student doesn't exist
+    /**
+     * IDs of every student, stripe by stripe; cheaper than getAllStudents when the
+     * other fields aren't needed
+     */
+    @Override
+    public List<String> getStudentIds() {
+        ArrayList<String> ids = new ArrayList<>(getTotalStudents());
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            AttendanceStore store = stripes[stripe];
+            long stamp = lockRead(stripe);
+            try {
+                for (int ordinal = 0; ordinal < store.ordinalLimit(); ordinal++) {
+                    String studentId = store.studentIdOf(ordinal);
+                    if (studentId != null) {
+                        ids.add(studentId);
+                    }
+                }
+            } finally {
+                unlockRead(stripe, stamp);
+            }
         }
+        return ids;
+    }
+    
+    /**
+     * Walks the stripes in blocks of ordinals, building each block's students under
+     * the stripe's read lock so the lock is never held across calls to next
+     */
+    private final class DirectoryIterator implements Iterator<Student> {
         
-        // Check if attendance already exists for this student on this date
-        for (AttendanceRecord record : attendanceRecords) {
-            if (record.getStudentId().equals(studentId) && record.getDate().equals(date)) {
-                // Update existing record
-                record.setPresent(present);
-                return true;
+        private static final int BLOCK = 1024;
+        
+        private final Student[] block = new Student[BLOCK];
+        private int blockSize;
+        private int position;
+        private int stripe;
+        private int nextOrdinal;
+        
+        @Override
+        public boolean hasNext() {
+            while (position == blockSize && stripe < stripes.length) {
+                fill();
+            }
+            return position < blockSize;
+        }
+        
+        @Override
+        public Student next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            Student student = block[position];
+            block[position++] = null;
+            return student;
         }
         
-        // Add new attendance record
-        AttendanceRecord record = new AttendanceRecord(studentId, date, present);
-        attendanceRecords.add(record);
+        private void fill() {
+            AttendanceStore store = stripes[stripe];
+            blockSize = 0;
+            position = 0;
+            int end;
+            boolean last;
+            long stamp = lockRead(stripe);
+            try {
+                int limit = store.ordinalLimit();
+                end = Math.min(nextOrdinal + BLOCK, limit);
+                last = end == limit;
+                for (int ordinal = nextOrdinal; ordinal < end; ordinal++) {
+                    if (store.studentIdOf(ordinal) != null) {
+                        block[blockSize++] = studentAt(store, ordinal);
+                    }
+                }
+            } finally {
+                unlockRead(stripe, stamp);
+            }
+            if (last) {
+                stripe++;
+                nextOrdinal = 0;
+            } else {
+                nextOrdinal = end;
+            }
+        }
+    }
+    
+    /**
+     * Add a student to a store's directory, splitting the email at its last '@' so the
+     * domain is interned; call under the stripe's write lock
+     */
+    private void register(AttendanceStore store, Student student) {
+        String email = student.getEmail();
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        store.register(student.getStudentId(), courses.intern(student.getCourse()), student.getName(),
+                at < 0 ? email : email.substring(0, at), at < 0 ? -1 : domains.intern(email.substring(at + 1)));
+    }
+    
+    /**
+     * A new Student with the fields of a registered ordinal
+     */
+    private Student studentAt(AttendanceStore store, int ordinal) {
+        String email = store.emailUserOf(ordinal);
+        int domain = store.emailDomainOf(ordinal);
+        if (domain >= 0) {
+            email = email + '@' + domains.name(domain);
+        }
+        return new Student(store.studentIdOf(ordinal), store.nameOf(ordinal), email,
+                courses.name(store.courseOf(ordinal)));
+    }
+    
+    /**
+     * Search-as-you-type lookup by student ID, name, email or course words. Every
+     * whitespace-separated term must match a word by prefix; terms of 4 or more
+     * characters also match with one typo (8 or more, two). Exact words rank first,
+     * then prefixes, then typos, and ID or name matches above email or course.
+     * Fields changed through Student's setters aren't seen; use changeCourse.
+     *
+     * @param limit the most students to return; getMatchCount still counts them all
+     */
+    @Override
+    public SearchResult searchStudents(String query, int limit) {
+        long started = SEARCH.start();
+        try {
+            return searchIndex.search(query, limit, this::getStudent);
+        } finally {
+            SEARCH.stop(started);
+        }
+    }
+    
+    
+    @Override
+    public boolean markAttendance(String studentId, LocalDate date, boolean present) {
+        return markAttendance(studentId, date, AttendanceStatus.of(present));
+    }
+    
+    /**
+     * Set a student's status on a date; UNMARKED removes the mark.
+     *
+     * @return false if the student doesn't exist
+     */
+    @Override
+    public boolean markAttendance(String studentId, LocalDate date, AttendanceStatus status) {
+        long started = MARK_ATTENDANCE.start();
+        int stripe = stripeOf(studentId);
+        int epochDay = AttendanceStore.toEpochDay(date);
+        List<Runnable> crossings = null;
+        long stamp = lockWrite(stripe);
+        try {
+            AttendanceStore store = stripes[stripe];
+            int ordinal = store.ordinalOf(studentId);
+            if (ordinal < 0) {
+                return false; // Student doesn't exist
+            }
+            
+            // Insert, update or remove the mark; the first mark of a date opens its session
+            int previous = store.put(ordinal, epochDay, status.getCode());
+            boolean opened = false;
+            if (previous == AttendanceStore.NOT_MARKED && status.isMarked()) {
+                opened = sessions.register(epochDay);
+            }
+            if (previous == status.getCode()) {
+                return true;
+            }
+            crossings = rerank(store, ordinal, studentId, null);
+            MutationLog log = mutationLog;
+            if (log != null) {
+                if (status.isMarked()) {
+                    log.attendanceMarked(studentId, date, status);
+                } else {
+                    log.attendanceRemoved(studentId, date);
+                }
+            }
+            if (changeFeed.isActive()) {
+                if (opened) {
+                    changeFeed.publish(MutationEvent.sessionOpened(date));
+                }
+                changeFeed.publish(MutationEvent.markChanged(studentId, date, AttendanceStatus.fromCode(previous),
+                        status));
+            }
+            return true;
+        } finally {
+            unlockWrite(stripe, stamp);
+            AtRiskIndex.fire(crossings);
+            completed();
+            MARK_ATTENDANCE.stop(started);
+        }
+    }
+    
+    /**
+     * Save a whole session of present/absent marks in one pass
+     *
+     * @param marks studentId -> present, in row order
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     * @see #markSessionStatus(LocalDate, Map)
+     */
+    @Override
+    public BulkMarkResult markSessionAttendance(LocalDate date, Map<String, Boolean> marks) {
+        Map<String, AttendanceStatus> statuses = new LinkedHashMap<>(marks.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Boolean> mark : marks.entrySet()) {
+            statuses.put(mark.getKey(), AttendanceStatus.of(mark.getValue() != null && mark.getValue()));
+        }
+        return markSessionStatus(date, statuses);
+    }
+    
+    /**
+     * Save a whole session in one pass: the date is registered once and every
+     * row is validated and upserted against the same session. Each stripe is
+     * locked once for all of its rows. UNMARKED (or null) rows remove the
+     * student's mark for the date, if any. Threshold listeners are notified
+     * once the whole session has been saved.
+     *
+     * @param statuses studentId -> status, in row order
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     */
+    @Override
+    public BulkMarkResult markSessionStatus(LocalDate date, Map<String, AttendanceStatus> statuses) {
+        String[] studentIds = new String[statuses.size()];
+        AttendanceStatus[] rowStatuses = new AttendanceStatus[statuses.size()];
+        int count = 0;
+        for (Map.Entry<String, AttendanceStatus> row : statuses.entrySet()) {
+            studentIds[count] = row.getKey();
+            rowStatuses[count++] = row.getValue();
+        }
+        return markSessionStatus(date, studentIds, rowStatuses, count);
+    }
+    
+    /**
+     * Like markSessionStatus(LocalDate, Map), for rows held in parallel arrays, as
+     * bulk loaders read them; only the first {@code count} entries are used. A student
+     * may appear more than once, in which case the last row wins.
+     *
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     */
+    @Override
+    public BulkMarkResult markSessionStatus(LocalDate date, String[] studentIds, AttendanceStatus[] statuses, int count) {
+        long started = MARK_SESSION.start();
+        try {
+            return markGrouped(date, studentIds, statuses, count);
+        } finally {
+            completed();
+            MARK_SESSION.stop(started);
+        }
+    }
+    
+    private BulkMarkResult markGrouped(LocalDate date, String[] studentIds, AttendanceStatus[] statuses, int count) {
+        SESSION_ROWS.add(count);
+        BulkMarkResult result = new BulkMarkResult(date);
+        int epochDay = AttendanceStore.toEpochDay(date);
         
-        // Add date to sessions queue if not already present
-        if (!attendanceSessions.contains(date)) {
-            attendanceSessions.offer(date);
+        // Group rows by stripe so each lock is taken once
+        String[][] stripeIds = new String[stripes.length][];
+        byte[][] stripeStates = new byte[stripes.length][];
+        int[] stripeCounts = new int[stripes.length];
+        for (int row = 0; row < count; row++) {
+            int stripe = stripeOf(studentIds[row]);
+            int stripeCount = stripeCounts[stripe];
+            if (stripeIds[stripe] == null) {
+                int capacity = stripes.length == 1 ? count : 16;
+                stripeIds[stripe] = new String[capacity];
+                stripeStates[stripe] = new byte[capacity];
+            } else if (stripeCount == stripeIds[stripe].length) {
+                stripeIds[stripe] = Arrays.copyOf(stripeIds[stripe], stripeCount * 2);
+                stripeStates[stripe] = Arrays.copyOf(stripeStates[stripe], stripeCount * 2);
+            }
+            AttendanceStatus status = statuses[row] != null ? statuses[row] : AttendanceStatus.UNMARKED;
+            stripeIds[stripe][stripeCount] = studentIds[row];
+            stripeStates[stripe][stripeCount] = (byte) status.getCode();
+            stripeCounts[stripe] = stripeCount + 1;
         }
         
-        return true;
+        List<Runnable> crossings = null;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            if (stripeCounts[stripe] > 0) {
+                crossings = markStripe(stripe, date, epochDay, stripeIds[stripe], stripeStates[stripe],
+                        stripeCounts[stripe], result, crossings);
+            }
+        }
+        AtRiskIndex.fire(crossings);
+        return result;
     }
     
     /**
-     * Get all attendance records for a specific student
+     * @return crossings, plus any threshold crossings caused by this stripe's rows
      */
+    private List<Runnable> markStripe(int stripe, LocalDate date, int epochDay, String[] rowIds, byte[] rowStates,
+                                      int rows, BulkMarkResult result, List<Runnable> crossings) {
+        long stamp = lockWrite(stripe);
+        try {
+            AttendanceStore store = stripes[stripe];
+            
+            // Resolve ordinals first so unknown students are reported without touching the store
+            String[] studentIds = new String[rows];
+            int[] ordinals = new int[rows];
+            byte[] states = new byte[rows];
+            int count = 0;
+            for (int i = 0; i < rows; i++) {
+                int ordinal = store.ordinalOf(rowIds[i]);
+                if (ordinal < 0) {
+                    result.record(rowIds[i], BulkMarkResult.Outcome.UNKNOWN_STUDENT);
+                    continue;
+                }
+                studentIds[count] = rowIds[i];
+                ordinals[count] = ordinal;
+                states[count] = rowStates[i];
+                count++;
+            }
+            if (count == 0) {
+                return crossings;
+            }
+            
+            // The session is opened (or looked up) once for the whole batch
+            int[] previous = store.putAll(epochDay, ordinals, states, count);
+            boolean inserted = false;
+            AttendanceStatus[] applied = new AttendanceStatus[count];
+            MutationEvent[] events = changeFeed.isActive() ? new MutationEvent[count] : null;
+            int changed = 0;
+            for (int i = 0; i < count; i++) {
+                applied[i] = AttendanceStatus.fromCode(states[i]);
+                if (previous[i] == states[i]) {
+                    result.record(studentIds[i], BulkMarkResult.Outcome.UNCHANGED);
+                    continue;
+                } else if (previous[i] == AttendanceStore.NOT_MARKED) {
+                    result.record(studentIds[i], BulkMarkResult.Outcome.INSERTED);
+                    inserted = true;
+                } else {
+                    result.record(studentIds[i], BulkMarkResult.Outcome.UPDATED);
+                }
+                crossings = rerank(store, ordinals[i], studentIds[i], crossings);
+                if (events != null) {
+                    events[changed++] = MutationEvent.markChanged(studentIds[i], date,
+                            AttendanceStatus.fromCode(previous[i]), applied[i]);
+                }
+            }
+            boolean opened = inserted && sessions.register(epochDay);
+            MutationLog log = mutationLog;
+            if (log != null) {
+                log.sessionMarked(date, studentIds, applied, count);
+            }
+            if (events != null) {
+                if (opened) {
+                    changeFeed.publish(MutationEvent.sessionOpened(date));
+                }
+                changeFeed.publish(events, changed);
+            }
+            return crossings;
+        } finally {
+            unlockWrite(stripe, stamp);
+        }
+    }
+    
+    /**
+     * Get the attendance record of a student on a given date, or null if not marked
+     */
+    @Override
+    public AttendanceRecord getAttendanceRecord(String studentId, LocalDate date) {
+        int stripe = stripeOf(studentId);
+        int state = optimisticRead(stripe, () -> {
+            AttendanceStore store = stripes[stripe];
+            int ordinal = store.ordinalOf(studentId);
+            return ordinal < 0 ? AttendanceStore.NOT_MARKED : store.get(ordinal, AttendanceStore.toEpochDay(date));
+        });
+        if (state == AttendanceStore.NOT_MARKED) {
+            return null;
+        }
+        return new AttendanceRecord(studentId, date, AttendanceStatus.fromCode(state));
+    }
+    
+    /**
+     * A student's status on a date; UNMARKED if not marked or the student doesn't exist
+     */
+    @Override
+    public AttendanceStatus getAttendanceStatus(String studentId, LocalDate date) {
+        AttendanceRecord record = getAttendanceRecord(studentId, date);
+        return record == null ? AttendanceStatus.UNMARKED : record.getStatus();
+    }
+    
+    /**
+     * Every student joined with their status on a date, in one pass over each stripe.
+     * Students without a mark on that date are reported as unmarked.
+     */
+    @Override
+    public SessionRoster getSessionRoster(LocalDate date) {
+        long started = SESSION_ROSTER.start();
+        try {
+            int epochDay = AttendanceStore.toEpochDay(date);
+            String[] ids = new String[getTotalStudents()];
+            byte[] states = new byte[ids.length];
+            int count = 0;
+            for (int stripe = 0; stripe < stripes.length; stripe++) {
+                long stamp = lockRead(stripe);
+                try {
+                    AttendanceStore store = stripes[stripe];
+                    int needed = count + store.studentCount();
+                    if (needed > ids.length) {
+                        // Students were added since the arrays were sized
+                        ids = Arrays.copyOf(ids, needed);
+                        states = Arrays.copyOf(states, needed);
+                    }
+                    count = store.roster(epochDay, ids, states, count);
+                } finally {
+                    unlockRead(stripe, stamp);
+                }
+            }
+            return new SessionRoster(date, ids, states, count);
+        } finally {
+            SESSION_ROSTER.stop(started);
+        }
+    }
+    
+    /**
+     * Remove the attendance record of a student on a given date
+     */
+    @Override
+    public boolean removeAttendance(String studentId, LocalDate date) {
+        long started = REMOVE_ATTENDANCE.start();
+        int stripe = stripeOf(studentId);
+        List<Runnable> crossings = null;
+        long stamp = lockWrite(stripe);
+        try {
+            AttendanceStore store = stripes[stripe];
+            int ordinal = store.ordinalOf(studentId);
+            if (ordinal < 0) {
+                return false;
+            }
+            int previous = store.remove(ordinal, AttendanceStore.toEpochDay(date));
+            if (previous == AttendanceStore.NOT_MARKED) {
+                return false;
+            }
+            crossings = rerank(store, ordinal, studentId, null);
+            MutationLog log = mutationLog;
+            if (log != null) {
+                log.attendanceRemoved(studentId, date);
+            }
+            if (changeFeed.isActive()) {
+                changeFeed.publish(MutationEvent.markChanged(studentId, date, AttendanceStatus.fromCode(previous),
+                        AttendanceStatus.UNMARKED));
+            }
+            return true;
+        } finally {
+            unlockWrite(stripe, stamp);
+            AtRiskIndex.fire(crossings);
+            completed();
+            REMOVE_ATTENDANCE.stop(started);
+        }
+    }
+    
+    /**
+     * Get all attendance records for a specific student, sorted by date
+     */
+    @Override
     public ArrayList<AttendanceRecord> getStudentAttendance(String studentId) {
-        ArrayList<AttendanceRecord> studentRecords = new ArrayList<>();
-        for (AttendanceRecord record : attendanceRecords) {
-            if (record.getStudentId().equals(studentId)) {
-                studentRecords.add(record);
+        return studentRecords(studentId, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Get a student's attendance records between two dates (both inclusive), sorted by date
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getStudentAttendance(String studentId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        return studentRecords(studentId, AttendanceStore.toEpochDay(from), AttendanceStore.toEpochDay(to));
+    }
+    
+    private ArrayList<AttendanceRecord> studentRecords(String studentId, int fromDay, int toDay) {
+        long started = STUDENT_RECORDS.start();
+        int stripe = stripeOf(studentId);
+        long stamp = lockRead(stripe);
+        try {
+            AttendanceStore store = stripes[stripe];
+            int ordinal = store.ordinalOf(studentId);
+            if (ordinal < 0) {
+                return new ArrayList<>();
             }
+            return store.studentRecords(ordinal, fromDay, toDay);
+        } finally {
+            unlockRead(stripe, stamp);
+            STUDENT_RECORDS.stop(started);
         }
-        return studentRecords;
     }
     
-
+    
+    @Override
     public ArrayList<AttendanceRecord> getAttendanceByDate(LocalDate date) {
-        ArrayList<AttendanceRecord> dateRecords = new ArrayList<>();
-        for (AttendanceRecord record : attendanceRecords) {
-            if (record.getDate().equals(date)) {
-                dateRecords.add(record);
+        long started = DATE_RECORDS.start();
+        try {
+            int epochDay = AttendanceStore.toEpochDay(date);
+            if (stripes.length == 1) {
+                return stripes[0].sessionRecords(epochDay);
             }
+            ArrayList<AttendanceRecord> records = new ArrayList<>();
+            for (int stripe = 0; stripe < stripes.length; stripe++) {
+                long stamp = lockRead(stripe);
+                try {
+                    records.addAll(stripes[stripe].sessionRecords(epochDay));
+                } finally {
+                    unlockRead(stripe, stamp);
+                }
+            }
+            return records;
+        } finally {
+            DATE_RECORDS.stop(started);
         }
-        return dateRecords;
     }
     
-
-    public double calculateAttendancePercentage(String studentId) {
-        ArrayList<AttendanceRecord> studentRecords = getStudentAttendance(studentId);
-        
-        if (studentRecords.isEmpty()) {
-            return 0.0;
+    /**
+     * Get all attendance records between two dates (both inclusive), sorted by date
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getAttendanceBetween(LocalDate from, LocalDate to) {
+        int fromDay = AttendanceStore.toEpochDay(from);
+        int toDay = AttendanceStore.toEpochDay(to);
+        if (stripes.length == 1) {
+            return stripes[0].rangeRecords(fromDay, toDay);
         }
-        
-        int presentCount = 0;
-        for (AttendanceRecord record : studentRecords) {
-            if (record.isPresent()) {
-                presentCount++;
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            long stamp = lockRead(stripe);
+            try {
+                records.addAll(stripes[stripe].rangeRecords(fromDay, toDay));
+            } finally {
+                unlockRead(stripe, stamp);
             }
         }
+        records.sort(Comparator.comparing(AttendanceRecord::getDate));
+        return records;
+    }
+    
+    /**
+     * Per-student, per-course and per-date counts over every session, computed in parallel
+     */
+    @Override
+    public AttendanceAggregate aggregate() {
+        return aggregate(null, null, ForkJoinPool.commonPool(), () -> false);
+    }
+    
+    /**
+     * Per-student, per-course and per-date counts between two dates (both inclusive), computed in parallel
+     */
+    @Override
+    public AttendanceAggregate aggregate(LocalDate from, LocalDate to) {
+        return aggregate(from, to, ForkJoinPool.commonPool(), () -> false);
+    }
+    
+    /**
+     * Aggregate attendance on a fork/join pool. Every stripe is cut into blocks of
+     * students; each leaf counts one block under its stripe's read lock into its own
+     * AttendanceAggregate, and partial aggregates are merged pairwise as tasks join,
+     * so threads never share anything mutable. When the range covers every session
+     * the maintained counters are copied rather than rescanning the marks.
+     *
+     * Like the other multi-stripe reads this is not an atomic snapshot across stripes.
+     * Without concurrent mode the manager must not be modified while aggregating.
+     *
+     * @param from first date, or null for no lower bound
+     * @param to last date (inclusive), or null for no upper bound
+     * @param cancelled polled once per block
+     * @return the aggregate, or null if cancelled
+     */
+    @Override
+    public AttendanceAggregate aggregate(LocalDate from, LocalDate to, ForkJoinPool pool, BooleanSupplier cancelled) {
+        long started = AGGREGATE.start();
+        int fromDay = from == null ? Integer.MIN_VALUE : AttendanceStore.toEpochDay(from);
+        int toDay = to == null ? Integer.MAX_VALUE : AttendanceStore.toEpochDay(to);
         
-        return (presentCount * 100.0) / studentRecords.size();
+        // Plan the blocks up front: (stripe, first ordinal) pairs
+        ArrayList<int[]> blocks = new ArrayList<>();
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            AttendanceStore store = stripes[stripe];
+            int limit = optimisticRead(stripe, store::ordinalLimit);
+            for (int lo = 0; lo == 0 || lo < limit; lo += AGGREGATE_BLOCK) {
+                blocks.add(new int[] {stripe, lo});
+            }
+        }
+        try {
+            return pool.invoke(new AggregateTask(blocks, 0, blocks.size(), fromDay, toDay, countingPolicy, cancelled));
+        } finally {
+            AGGREGATE.stop(started);
+        }
     }
-
-    public Map<String, Integer> getStudentStatistics(String studentId) {
-        ArrayList<AttendanceRecord> studentRecords = getStudentAttendance(studentId);
+    
+    /**
+     * Aggregates blocks [begin, end) by halving until a single block is left
+     */
+    private final class AggregateTask extends RecursiveTask<AttendanceAggregate> {
         
-        int totalDays = studentRecords.size();
-        int presentDays = 0;
-        int absentDays = 0;
+        private static final long serialVersionUID = 1L;
         
-        for (AttendanceRecord record : studentRecords) {
-            if (record.isPresent()) {
-                presentDays++;
-            } else {
-                absentDays++;
-            }
+        private final List<int[]> blocks;
+        private final int begin;
+        private final int end;
+        private final int fromDay;
+        private final int toDay;
+        private final CountingPolicy policy;
+        private final BooleanSupplier cancelled;
+        
+        AggregateTask(List<int[]> blocks, int begin, int end, int fromDay, int toDay,
+                      CountingPolicy policy, BooleanSupplier cancelled) {
+            this.blocks = blocks;
+            this.begin = begin;
+            this.end = end;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.policy = policy;
+            this.cancelled = cancelled;
         }
         
-        Map<String, Integer> stats = new HashMap<>();
-        stats.put("total", totalDays);
-        stats.put("present", presentDays);
-        stats.put("absent", absentDays);
+        @Override
+        protected AttendanceAggregate compute() {
+            if (end - begin == 1) {
+                int[] block = blocks.get(begin);
+                return cancelled.getAsBoolean() ? null : aggregateBlock(block[0], block[1]);
+            }
+            int middle = (begin + end) >>> 1;
+            AggregateTask left = new AggregateTask(blocks, begin, middle, fromDay, toDay, policy, cancelled);
+            left.fork();
+            AttendanceAggregate right = new AggregateTask(blocks, middle, end, fromDay, toDay, policy, cancelled)
+                    .compute();
+            AttendanceAggregate merged = left.join();
+            if (merged == null || right == null) {
+                return null;
+            }
+            return merged.merge(right);
+        }
         
-        return stats;
+        private AttendanceAggregate aggregateBlock(int stripe, int lo) {
+            long stamp = lockRead(stripe);
+            try {
+                AttendanceStore store = stripes[stripe];
+                int hi = Math.min(lo + AGGREGATE_BLOCK, store.ordinalLimit());
+                AttendanceAggregate partial = new AttendanceAggregate(policy, Math.max(0, hi - lo));
+                int[] days = store.sessionDays(fromDay, toDay);
+                int[] studentCounts = new int[Math.max(0, hi - lo) * AttendanceStore.STATES];
+                int[] sessionCounts = new int[days.length * AttendanceStore.STATES];
+                store.countMarks(fromDay, toDay, lo, hi, studentCounts, sessionCounts);
+                for (int ordinal = lo; ordinal < hi; ordinal++) {
+                    String studentId = store.studentIdOf(ordinal);
+                    if (studentId != null) {
+                        partial.addStudent(studentId, courses.name(store.courseOf(ordinal)), studentCounts,
+                                (ordinal - lo) * AttendanceStore.STATES);
+                    }
+                }
+                for (int i = 0; i < days.length; i++) {
+                    partial.addSession(LocalDate.ofEpochDay(days[i]), sessionCounts, i * AttendanceStore.STATES);
+                }
+                return partial;
+            } finally {
+                unlockRead(stripe, stamp);
+            }
+        }
     }
     
-
+    /**
+     * Attendance percentage of a student under the default counting policy
+     */
+    @Override
+    public double calculateAttendancePercentage(String studentId) {
+        return calculateAttendancePercentage(studentId, countingPolicy);
+    }
+    
+    @Override
+    public double calculateAttendancePercentage(String studentId, CountingPolicy policy) {
+        return percentageOf(studentCounters(studentId), policy);
+    }
+    
+    /**
+     * Statistics of a student under the default counting policy; see CountingPolicy.statistics
+     */
+    @Override
+    public Map<String, Integer> getStudentStatistics(String studentId) {
+        return getStudentStatistics(studentId, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getStudentStatistics(String studentId, CountingPolicy policy) {
+        return statisticsOf(studentCounters(studentId), policy);
+    }
+    
+    /**
+     * A student's number of marks in each state, indexed by status code
+     */
+    int[] studentCounters(String studentId) {
+        int stripe = stripeOf(studentId);
+        return optimisticRead(stripe, () -> {
+            AttendanceStore store = stripes[stripe];
+            int ordinal = store.ordinalOf(studentId);
+            if (ordinal < 0) {
+                return new int[AttendanceStore.STATES];
+            }
+            return store.studentCounts(ordinal);
+        });
+    }
+    
+    /**
+     * A student's marks as a prefix-summed timeline, or null if the student doesn't exist.
+     * The cached timeline is returned as is if it was copied from the student's store
+     * and their marks haven't changed since; the check is an optimistic read.
+     */
+    @Override
+    public StudentTimeline studentTimeline(String studentId, StudentTimeline cached) {
+        int stripe = stripeOf(studentId);
+        AttendanceStore store = stripes[stripe];
+        long version = optimisticRead(stripe, () -> {
+            int ordinal = store.ordinalOf(studentId);
+            return ordinal < 0 ? -1L : store.studentVersion(ordinal);
+        });
+        if (version < 0) {
+            return null;
+        }
+        if (cached != null && cached.store == store && cached.version == version) {
+            return cached;
+        }
+        long stamp = lockRead(stripe);
+        try {
+            int ordinal = store.ordinalOf(studentId);
+            if (ordinal < 0) {
+                return null;
+            }
+            return new StudentTimeline(store, store.studentVersion(ordinal), store.studentTimeline(ordinal));
+        } finally {
+            unlockRead(stripe, stamp);
+        }
+    }
+    
+    /**
+     * Percentage of students marked present on a given date, under the default counting policy
+     */
+    @Override
+    public double calculateDateAttendancePercentage(LocalDate date) {
+        return calculateDateAttendancePercentage(date, countingPolicy);
+    }
+    
+    @Override
+    public double calculateDateAttendancePercentage(LocalDate date, CountingPolicy policy) {
+        return percentageOf(dateCounters(date), policy);
+    }
+    
+    /**
+     * Total/present/absent counts for a given date, under the default counting policy
+     */
+    @Override
+    public Map<String, Integer> getDateStatistics(LocalDate date) {
+        return getDateStatistics(date, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getDateStatistics(LocalDate date, CountingPolicy policy) {
+        return statisticsOf(dateCounters(date), policy);
+    }
+    
+    /**
+     * A date's number of marks in each state, across every stripe
+     */
+    int[] dateCounters(LocalDate date) {
+        int epochDay = AttendanceStore.toEpochDay(date);
+        int[] counts = new int[AttendanceStore.STATES];
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            AttendanceStore store = stripes[stripe];
+            int[] stripeCounts = optimisticRead(stripe, () -> {
+                int[] sessionCounts = new int[AttendanceStore.STATES];
+                store.addSessionCounts(epochDay, sessionCounts);
+                return sessionCounts;
+            });
+            for (int state = 0; state < AttendanceStore.STATES; state++) {
+                counts[state] += stripeCounts[state];
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Courses with at least one student, sorted; students without a course are in none
+     */
+    @Override
+    public SortedSet<String> getCourses() {
+        int[] sizes = new int[courses.size()];
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            long stamp = lockRead(stripe);
+            try {
+                for (int course = 0; course < sizes.length; course++) {
+                    sizes[course] += stripes[stripe].courseSize(course);
+                }
+            } finally {
+                unlockRead(stripe, stamp);
+            }
+        }
+        TreeSet<String> names = new TreeSet<>();
+        for (int course = 0; course < sizes.length; course++) {
+            if (sizes[course] > 0 && courses.name(course) != null) {
+                names.add(courses.name(course));
+            }
+        }
+        return names;
+    }
+    
+    @Override
+    public int getCourseSize(String course) {
+        int id = courses.idOf(course);
+        if (id < 0) {
+            return 0;
+        }
+        int size = 0;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            AttendanceStore store = stripes[stripe];
+            size += optimisticRead(stripe, () -> store.courseSize(id));
+        }
+        return size;
+    }
+    
+    /**
+     * The students of one course joined with their status on a date. Only the
+     * course's students are visited, through the course index.
+     */
+    @Override
+    public SessionRoster getCourseRoster(String course, LocalDate date) {
+        int id = courses.idOf(course);
+        int epochDay = AttendanceStore.toEpochDay(date);
+        String[] ids = new String[0];
+        byte[] states = new byte[0];
+        int count = 0;
+        if (id >= 0) {
+            for (int stripe = 0; stripe < stripes.length; stripe++) {
+                long stamp = lockRead(stripe);
+                try {
+                    AttendanceStore store = stripes[stripe];
+                    int needed = count + store.courseSize(id);
+                    if (needed > ids.length) {
+                        ids = Arrays.copyOf(ids, Math.max(needed, ids.length * 2));
+                        states = Arrays.copyOf(states, ids.length);
+                    }
+                    count = store.courseRoster(id, epochDay, ids, states, count);
+                } finally {
+                    unlockRead(stripe, stamp);
+                }
+            }
+        }
+        return new SessionRoster(date, ids, states, count);
+    }
+    
+    /**
+     * Lifetime statistics of a course's current students, under the default counting policy.
+     * Served from counters kept per course, so the cost doesn't depend on the course size.
+     */
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course) {
+        return getCourseStatistics(course, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, CountingPolicy policy) {
+        return statisticsOf(courseCounters(course, null), policy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course) {
+        return calculateCourseAttendancePercentage(course, countingPolicy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, CountingPolicy policy) {
+        return percentageOf(courseCounters(course, null), policy);
+    }
+    
+    /**
+     * Statistics of a course on one date, under the default counting policy
+     */
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, LocalDate date) {
+        return getCourseStatistics(course, date, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, LocalDate date, CountingPolicy policy) {
+        return statisticsOf(courseCounters(course, date), policy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, LocalDate date) {
+        return calculateCourseAttendancePercentage(course, date, countingPolicy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, LocalDate date, CountingPolicy policy) {
+        return percentageOf(courseCounters(course, date), policy);
+    }
+    
+    /**
+     * A course's number of marks in each state on a date, or over its lifetime if date is null
+     */
+    int[] courseCounters(String course, LocalDate date) {
+        int id = courses.idOf(course);
+        int[] counts = new int[AttendanceStore.STATES];
+        if (id < 0) {
+            return counts;
+        }
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            AttendanceStore store = stripes[stripe];
+            int[] stripeCounts = optimisticRead(stripe, () -> {
+                int[] courseCounts = new int[AttendanceStore.STATES];
+                if (date == null) {
+                    store.addCourseCounts(id, courseCounts);
+                } else {
+                    store.addCourseSessionCounts(id, AttendanceStore.toEpochDay(date), courseCounts);
+                }
+                return courseCounts;
+            });
+            for (int state = 0; state < AttendanceStore.STATES; state++) {
+                counts[state] += stripeCounts[state];
+            }
+        }
+        return counts;
+    }
+    
+    static double percentageOf(int[] counts, CountingPolicy policy) {
+        return policy.percentage(counts[AttendanceStore.PRESENT], counts[AttendanceStore.ABSENT],
+                counts[AttendanceStore.LATE], counts[AttendanceStore.EXCUSED]);
+    }
+    
+    static Map<String, Integer> statisticsOf(int[] counts, CountingPolicy policy) {
+        return policy.statistics(counts[AttendanceStore.PRESENT], counts[AttendanceStore.ABSENT],
+                counts[AttendanceStore.LATE], counts[AttendanceStore.EXCUSED]);
+    }
+    
+    /**
+     * Policy used by the percentage and statistics methods that don't take one,
+     * and by the at-risk index. Every student is re-ranked, one stripe at a time,
+     * and threshold listeners hear about any student the change moves across.
+     */
+    @Override
+    public void setCountingPolicy(CountingPolicy countingPolicy) {
+        this.countingPolicy = Objects.requireNonNull(countingPolicy);
+        List<Runnable> crossings = null;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            long stamp = lockWrite(stripe);
+            try {
+                AttendanceStore store = stripes[stripe];
+                for (int ordinal = 0; ordinal < store.ordinalLimit(); ordinal++) {
+                    String studentId = store.studentIdOf(ordinal);
+                    if (studentId != null) {
+                        crossings = rerank(store, ordinal, studentId, crossings);
+                    }
+                }
+            } finally {
+                unlockWrite(stripe, stamp);
+            }
+        }
+        AtRiskIndex.fire(crossings);
+        changeFeed.reset(); // Every derived percentage changed
+    }
+    
+    @Override
+    public CountingPolicy getCountingPolicy() {
+        return countingPolicy;
+    }
+    
+    /**
+     * Students whose percentage under the default counting policy is below the
+     * given percentage, lowest first. Students without counted marks are left out.
+     * Served from the at-risk index: only the returned students are visited.
+     */
+    @Override
+    public List<StudentStanding> getStudentsBelow(double percentage) {
+        return atRisk.below(percentage);
+    }
+    
+    /**
+     * The k students with the lowest percentage under the default counting policy, lowest first
+     */
+    @Override
+    public List<StudentStanding> getLowestStudents(int k) {
+        return atRisk.lowest(k);
+    }
+    
+    /**
+     * A student's ranking entry, or null if the student has no counted marks
+     */
+    @Override
+    public StudentStanding getStanding(String studentId) {
+        return atRisk.get(studentId);
+    }
+    
+    /**
+     * Be notified whenever a student's percentage under the default counting policy
+     * drops below, or climbs back to, the given percentage
+     */
+    @Override
+    public void addThresholdListener(double percentage, ThresholdListener listener) {
+        atRisk.addListener(percentage, Objects.requireNonNull(listener));
+    }
+    
+    @Override
+    public boolean removeThresholdListener(ThresholdListener listener) {
+        return atRisk.removeListener(listener);
+    }
+    
+    /**
+     * Be notified of every change from now on, in coalesced bursts on the change-feed
+     * thread (see MutationListener). The first burst is a RESET. While no listener is
+     * registered, writers don't build or queue any events.
+     */
+    @Override
+    public void addMutationListener(MutationListener listener) {
+        changeFeed.addListener(Objects.requireNonNull(listener));
+    }
+    
+    @Override
+    public boolean removeMutationListener(MutationListener listener) {
+        return changeFeed.removeListener(listener);
+    }
+    
+    /**
+     * Publish a student's removal, preceded by the removal of each of its marks;
+     * call under the stripe's write lock, before unregistering the student
+     */
+    private void publishRemoval(AttendanceStore store, String studentId) {
+        ArrayList<AttendanceRecord> records = store.studentRecords(store.ordinalOf(studentId),
+                Integer.MIN_VALUE, Integer.MAX_VALUE);
+        MutationEvent[] events = new MutationEvent[records.size() + 1];
+        for (int i = 0; i < records.size(); i++) {
+            AttendanceRecord record = records.get(i);
+            events[i] = MutationEvent.markChanged(studentId, record.getDate(), record.getStatus(),
+                    AttendanceStatus.UNMARKED);
+        }
+        events[records.size()] = MutationEvent.studentRemoved(studentId);
+        changeFeed.publish(events, events.length);
+    }
+    
+    /**
+     * Re-rank a student in the at-risk index from its current counters; call under the stripe's write lock
+     */
+    private List<Runnable> rerank(AttendanceStore store, int ordinal, String studentId, List<Runnable> crossings) {
+        int[] counts = store.studentCounts(ordinal);
+        CountingPolicy policy = countingPolicy;
+        int present = counts[AttendanceStore.PRESENT];
+        int absent = counts[AttendanceStore.ABSENT];
+        int late = counts[AttendanceStore.LATE];
+        int excused = counts[AttendanceStore.EXCUSED];
+        return atRisk.update(studentId, policy.attended(present, absent, late, excused),
+                policy.counted(present, absent, late, excused), crossings);
+    }
+    
+    /**
+     * Rebuild the per-student and per-date counters from the raw marks and
+     * compare them with the incrementally maintained ones, and check every
+     * student's entry in the at-risk index. Intended for tests.
+     *
+     * @throws IllegalStateException if any counter is out of sync
+     */
+    @Override
+    public void verifyCounters() {
+        CountingPolicy policy = countingPolicy;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            long stamp = lockRead(stripe);
+            try {
+                AttendanceStore store = stripes[stripe];
+                store.verifyCounters();
+                for (int ordinal = 0; ordinal < store.ordinalLimit(); ordinal++) {
+                    String studentId = store.studentIdOf(ordinal);
+                    if (studentId == null) {
+                        continue;
+                    }
+                    int[] counts = store.studentCounts(ordinal);
+                    int counted = policy.counted(counts[AttendanceStore.PRESENT], counts[AttendanceStore.ABSENT],
+                            counts[AttendanceStore.LATE], counts[AttendanceStore.EXCUSED]);
+                    int attended = policy.attended(counts[AttendanceStore.PRESENT], counts[AttendanceStore.ABSENT],
+                            counts[AttendanceStore.LATE], counts[AttendanceStore.EXCUSED]);
+                    StudentStanding standing = atRisk.get(studentId);
+                    boolean matches = standing == null ? counted == 0
+                            : standing.getAttended() == attended && standing.getCounted() == counted;
+                    if (!matches) {
+                        throw new IllegalStateException("At-risk index out of sync for " + studentId + ": " +
+                                standing + " vs " + attended + "/" + counted);
+                    }
+                }
+            } finally {
+                unlockRead(stripe, stamp);
+            }
+        }
+    }
+    
+    /**
+     * Copy of the session dates in FIFO order; prefer getSessionCount/hasSession
+     * when the whole queue isn't needed
+     */
+    @Override
     public Queue<LocalDate> getAttendanceSessions() {
-        return new LinkedList<>(attendanceSessions);
+        return sessions.inOrder();
     }
     
-
+    /**
+     * Number of attendance sessions, without copying the queue
+     */
+    @Override
+    public int getSessionCount() {
+        return sessions.size();
+    }
+    
+    @Override
+    public boolean hasSession(LocalDate date) {
+        return sessions.contains(AttendanceStore.toEpochDay(date));
+    }
+    
+    /**
+     * Session dates between two dates (both inclusive), sorted by date
+     */
+    @Override
+    public ArrayList<LocalDate> getSessionsBetween(LocalDate from, LocalDate to) {
+        return sessions.between(AttendanceStore.toEpochDay(from), AttendanceStore.toEpochDay(to));
+    }
+    
+    /**
+     * Get every attendance record, grouped by session (per stripe in concurrent mode)
+     */
+    @Override
     public ArrayList<AttendanceRecord> getAllAttendanceRecords() {
-        return new ArrayList<>(attendanceRecords);
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        forEachRecord((studentId, date, status) -> records.add(new AttendanceRecord(studentId, date, status)));
+        return records;
     }
     
-
+    /**
+     * Stream every attendance mark without building AttendanceRecord objects,
+     * grouped by session (per stripe in concurrent mode). Each stripe is read
+     * under its lock, so the visitor sees a consistent view of every stripe.
+     */
+    @Override
+    public void forEachRecord(RecordVisitor visitor) {
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            long stamp = lockRead(stripe);
+            try {
+                stripes[stripe].forEach(visitor);
+            } finally {
+                unlockRead(stripe, stamp);
+            }
+        }
+    }
+    
+    /**
+     * Read every student, then every mark, with every stripe read-locked, so the visit
+     * sees the state between two changes and no change is applied (or logged) until it
+     * returns; used to take snapshots. The stripes are locked in order and writers hold
+     * one stripe at a time, so this can't deadlock against them. The visitors must not
+     * call back into the manager: its locks are not reentrant.
+     *
+     * @param locked run once every stripe is locked, before the first student is visited
+     */
+    @Override
+    public void visitState(Runnable locked, Consumer<Student> students, RecordVisitor records) {
+        long[] stamps = new long[stripes.length];
+        int held = 0;
+        try {
+            while (held < stripes.length) {
+                stamps[held] = lockRead(held);
+                held++;
+            }
+            locked.run();
+            // Every student first, so the marks can refer to them
+            for (AttendanceStore store : stripes) {
+                for (int ordinal = 0; ordinal < store.ordinalLimit(); ordinal++) {
+                    if (store.studentIdOf(ordinal) != null) {
+                        students.accept(studentAt(store, ordinal));
+                    }
+                }
+            }
+            for (AttendanceStore store : stripes) {
+                store.forEach(records);
+            }
+        } finally {
+            while (held > 0) {
+                held--;
+                unlockRead(held, stamps[held]);
+            }
+        }
+    }
+    
+    /**
+     * Attach a durability hook that is notified after every applied change, or null to detach.
+     * In concurrent mode the hook is called under the stripe lock and must be thread-safe;
+     * its changeCompleted is called once the locks are released.
+     */
+    @Override
+    public void setMutationLog(MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+    }
+    
+    @Override
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+    
+    /**
+     * Number of attendance records currently stored
+     */
+    @Override
+    public long getTotalRecords() {
+        long total = 0;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            AttendanceStore store = stripes[stripe];
+            total += optimisticRead(stripe, store::size);
+        }
+        return total;
+    }
+    
+    
+    @Override
     public int getTotalStudents() {
-        return students.size();
+        int total = 0;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            AttendanceStore store = stripes[stripe];
+            total += optimisticRead(stripe, store::studentCount);
+        }
+        return total;
     }
-
+    
+    @Override
     public boolean studentExists(String studentId) {
-        return students.containsKey(studentId);
+        int stripe = stripeOf(studentId);
+        AttendanceStore store = stripes[stripe];
+        return optimisticRead(stripe, () -> store.ordinalOf(studentId) >= 0);
+    }
+    
+    /**
+     * Tell the mutation log that a change is complete; call once no lock is held
+     */
+    private void completed() {
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.changeCompleted();
+        }
+    }
+    
+    // ---- Striping and locking ----
+    
+    private int stripeOf(String studentId) {
+        if (stripes.length == 1) {
+            return 0;
+        }
+        // Top bits of a multiplicative hash: the hash tables within a stripe index by the
+        // low bits, so those must not be the same for every student of the stripe
+        int hash = studentId.hashCode() * 0x9E3779B9;
+        return hash >>> (32 - Integer.numberOfTrailingZeros(stripes.length));
+    }
+    
+    private long lockWrite(int stripe) {
+        return locks == null ? 0L : locks[stripe].writeLock();
+    }
+    
+    private void unlockWrite(int stripe, long stamp) {
+        if (locks != null) {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+    
+    private long lockRead(int stripe) {
+        return locks == null ? 0L : locks[stripe].readLock();
+    }
+    
+    private void unlockRead(int stripe, long stamp) {
+        if (locks != null) {
+            locks[stripe].unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Run a small read without taking the lock, falling back to a read lock if a
+     * writer got in the way
+     */
+    private <T> T optimisticRead(int stripe, Supplier<T> reader) {
+        if (locks == null) {
+            return reader.get();
+        }
+        StampedLock lock = locks[stripe];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                T value = reader.get();
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                // Torn read while a writer was active; retry under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 }
@@ -0,0 +1,383 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * The student directory and attendance register the UI, reports, CSV import/export
+ * and the journal work against.
+ *
+ * AttendanceManager: Every student in one set of stores, locked per stripe in concurrent mode
+ * ShardedAttendanceManager: Students spread over several AttendanceManagers, queries scattered and merged
+ *
+ * Students and attendance records are returned as copies built on read; change them
+ * through this interface. In concurrent mode every method is thread-safe, and reads
+ * that visit many students are not an atomic snapshot unless stated.
+ */
+public interface AttendanceService {
+    
+    boolean isConcurrent();
+    
+    // ---- Students ----
+    
+    /**
+     * @return false if a student with that ID already exists
+     */
+    boolean addStudent(Student student);
+    
+    /**
+     * Add many students at once, e.g. from an import. Students whose ID already exists
+     * (or repeats earlier in the batch) are skipped.
+     *
+     * @return the number of students added
+     */
+    int addStudents(Collection<Student> batch);
+    
+    /**
+     * Remove a student with its attendance history
+     */
+    boolean removeStudent(String studentId);
+    
+    /**
+     * Remove a whole cohort (e.g. a graduating class) with its attendance history.
+     * Unknown and repeated IDs are skipped.
+     *
+     * @return the number of students removed
+     */
+    int removeStudents(Collection<String> studentIds);
+    
+    /**
+     * Move a student to another course. Student.setCourse only changes a copy (see getStudent).
+     *
+     * @return false if the student doesn't exist or is already in that course
+     */
+    boolean changeCourse(String studentId, String course);
+    
+    /**
+     * A copy of a student, or null if there is none. Changing the copy doesn't change
+     * the student; see changeCourse.
+     */
+    Student getStudent(String studentId);
+    
+    /**
+     * Every student, as copies built while iterating
+     */
+    Collection<Student> getAllStudents();
+    
+    /**
+     * IDs of every student; cheaper than getAllStudents when the other fields aren't needed
+     */
+    List<String> getStudentIds();
+    
+    /**
+     * Search-as-you-type lookup by student ID, name, email or course words; see
+     * AttendanceManager.searchStudents for the matching and ranking rules.
+     *
+     * @param limit the most students to return; getMatchCount still counts them all
+     */
+    SearchResult searchStudents(String query, int limit);
+    
+    int getTotalStudents();
+    
+    boolean studentExists(String studentId);
+    
+    // ---- Marking ----
+    
+    boolean markAttendance(String studentId, LocalDate date, boolean present);
+    
+    /**
+     * Set a student's status on a date; UNMARKED removes the mark.
+     *
+     * @return false if the student doesn't exist
+     */
+    boolean markAttendance(String studentId, LocalDate date, AttendanceStatus status);
+    
+    /**
+     * Save a whole session of present/absent marks in one pass
+     *
+     * @param marks studentId -> present, in row order
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     * @see #markSessionStatus(LocalDate, Map)
+     */
+    BulkMarkResult markSessionAttendance(LocalDate date, Map<String, Boolean> marks);
+    
+    /**
+     * Save a whole session in one pass. UNMARKED (or null) rows remove the student's
+     * mark for the date, if any. Threshold listeners are notified once the whole
+     * session has been saved.
+     *
+     * @param statuses studentId -> status, in row order
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     */
+    BulkMarkResult markSessionStatus(LocalDate date, Map<String, AttendanceStatus> statuses);
+    
+    /**
+     * Like markSessionStatus(LocalDate, Map), for rows held in parallel arrays, as
+     * bulk loaders read them; only the first {@code count} entries are used. A student
+     * may appear more than once, in which case the last row wins.
+     *
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     */
+    BulkMarkResult markSessionStatus(LocalDate date, String[] studentIds, AttendanceStatus[] statuses, int count);
+    
+    /**
+     * Remove the attendance record of a student on a given date
+     */
+    boolean removeAttendance(String studentId, LocalDate date);
+    
+    // ---- Attendance records ----
+    
+    /**
+     * Get the attendance record of a student on a given date, or null if not marked
+     */
+    AttendanceRecord getAttendanceRecord(String studentId, LocalDate date);
+    
+    /**
+     * A student's status on a date; UNMARKED if not marked or the student doesn't exist
+     */
+    AttendanceStatus getAttendanceStatus(String studentId, LocalDate date);
+    
+    /**
+     * Every student joined with their status on a date. Students without a mark on
+     * that date are reported as unmarked.
+     */
+    SessionRoster getSessionRoster(LocalDate date);
+    
+    /**
+     * Get all attendance records for a specific student, sorted by date
+     */
+    ArrayList<AttendanceRecord> getStudentAttendance(String studentId);
+    
+    /**
+     * Get a student's attendance records between two dates (both inclusive), sorted by date
+     */
+    ArrayList<AttendanceRecord> getStudentAttendance(String studentId, LocalDate from, LocalDate to);
+    
+    ArrayList<AttendanceRecord> getAttendanceByDate(LocalDate date);
+    
+    /**
+     * Get all attendance records between two dates (both inclusive), sorted by date
+     */
+    ArrayList<AttendanceRecord> getAttendanceBetween(LocalDate from, LocalDate to);
+    
+    /**
+     * Get every attendance record
+     */
+    ArrayList<AttendanceRecord> getAllAttendanceRecords();
+    
+    /**
+     * Stream every attendance mark without building AttendanceRecord objects
+     */
+    void forEachRecord(RecordVisitor visitor);
+    
+    /**
+     * Number of attendance records currently stored
+     */
+    long getTotalRecords();
+    
+    // ---- Sessions ----
+    
+    /**
+     * Copy of the session dates in FIFO order; prefer getSessionCount/hasSession
+     * when the whole queue isn't needed
+     */
+    Queue<LocalDate> getAttendanceSessions();
+    
+    /**
+     * Number of attendance sessions, without copying the queue
+     */
+    int getSessionCount();
+    
+    boolean hasSession(LocalDate date);
+    
+    /**
+     * Session dates between two dates (both inclusive), sorted by date
+     */
+    ArrayList<LocalDate> getSessionsBetween(LocalDate from, LocalDate to);
+    
+    // ---- Statistics ----
+    
+    /**
+     * Per-student, per-course and per-date counts over every session, computed in parallel
+     */
+    AttendanceAggregate aggregate();
+    
+    /**
+     * Per-student, per-course and per-date counts between two dates (both inclusive), computed in parallel
+     */
+    AttendanceAggregate aggregate(LocalDate from, LocalDate to);
+    
+    /**
+     * Aggregate attendance on a fork/join pool. Without concurrent mode the manager
+     * must not be modified while aggregating.
+     *
+     * @param from first date, or null for no lower bound
+     * @param to last date (inclusive), or null for no upper bound
+     * @param cancelled polled between blocks of students
+     * @return the aggregate, or null if cancelled
+     */
+    AttendanceAggregate aggregate(LocalDate from, LocalDate to, ForkJoinPool pool, BooleanSupplier cancelled);
+    
+    /**
+     * Attendance percentage of a student under the default counting policy
+     */
+    double calculateAttendancePercentage(String studentId);
+    
+    double calculateAttendancePercentage(String studentId, CountingPolicy policy);
+    
+    /**
+     * Statistics of a student under the default counting policy; see CountingPolicy.statistics
+     */
+    Map<String, Integer> getStudentStatistics(String studentId);
+    
+    Map<String, Integer> getStudentStatistics(String studentId, CountingPolicy policy);
+    
+    /**
+     * Percentage of students marked present on a given date, under the default counting policy
+     */
+    double calculateDateAttendancePercentage(LocalDate date);
+    
+    double calculateDateAttendancePercentage(LocalDate date, CountingPolicy policy);
+    
+    /**
+     * Total/present/absent counts for a given date, under the default counting policy
+     */
+    Map<String, Integer> getDateStatistics(LocalDate date);
+    
+    Map<String, Integer> getDateStatistics(LocalDate date, CountingPolicy policy);
+    
+    /**
+     * A student's marks as a prefix-summed timeline for AttendanceAnalytics' range
+     * queries, or null if the student doesn't exist. Implementations that track when a
+     * student's marks change return {@code cached} as is while it is still current; this
+     * default can't tell, so it copies the marks from getStudentAttendance every time.
+     *
+     * @param cached the timeline this returned for the student before, or null
+     */
+    default StudentTimeline studentTimeline(String studentId, StudentTimeline cached) {
+        if (!studentExists(studentId)) {
+            return null;
+        }
+        ArrayList<AttendanceRecord> records = getStudentAttendance(studentId);
+        long[] timeline = new long[records.size()];
+        for (int i = 0; i < timeline.length; i++) {
+            AttendanceRecord record = records.get(i);
+            timeline[i] = (record.getDate().toEpochDay() << 8) | record.getStatus().getCode();
+        }
+        return new StudentTimeline(null, -1, timeline);
+    }
+    
+    // ---- Courses ----
+    
+    /**
+     * Courses with at least one student, sorted; students without a course are in none
+     */
+    SortedSet<String> getCourses();
+    
+    int getCourseSize(String course);
+    
+    /**
+     * The students of one course joined with their status on a date
+     */
+    SessionRoster getCourseRoster(String course, LocalDate date);
+    
+    /**
+     * Lifetime statistics of a course's current students, under the default counting policy
+     */
+    Map<String, Integer> getCourseStatistics(String course);
+    
+    Map<String, Integer> getCourseStatistics(String course, CountingPolicy policy);
+    
+    double calculateCourseAttendancePercentage(String course);
+    
+    double calculateCourseAttendancePercentage(String course, CountingPolicy policy);
+    
+    /**
+     * Statistics of a course on one date, under the default counting policy
+     */
+    Map<String, Integer> getCourseStatistics(String course, LocalDate date);
+    
+    Map<String, Integer> getCourseStatistics(String course, LocalDate date, CountingPolicy policy);
+    
+    double calculateCourseAttendancePercentage(String course, LocalDate date);
+    
+    double calculateCourseAttendancePercentage(String course, LocalDate date, CountingPolicy policy);
+    
+    // ---- Counting policy and at-risk students ----
+    
+    /**
+     * Policy used by the percentage and statistics methods that don't take one, and
+     * by the at-risk ranking. Threshold listeners hear about any student the change
+     * moves across their threshold.
+     */
+    void setCountingPolicy(CountingPolicy countingPolicy);
+    
+    CountingPolicy getCountingPolicy();
+    
+    /**
+     * Students whose percentage under the default counting policy is below the
+     * given percentage, lowest first. Students without counted marks are left out.
+     */
+    List<StudentStanding> getStudentsBelow(double percentage);
+    
+    /**
+     * The k students with the lowest percentage under the default counting policy, lowest first
+     */
+    List<StudentStanding> getLowestStudents(int k);
+    
+    /**
+     * A student's ranking entry, or null if the student has no counted marks
+     */
+    StudentStanding getStanding(String studentId);
+    
+    /**
+     * Be notified whenever a student's percentage under the default counting policy
+     * drops below, or climbs back to, the given percentage
+     */
+    void addThresholdListener(double percentage, ThresholdListener listener);
+    
+    boolean removeThresholdListener(ThresholdListener listener);
+    
+    // ---- Change notification and durability ----
+    
+    /**
+     * Be notified of every change from now on, in coalesced bursts on the change-feed
+     * thread (see MutationListener). The first burst is a RESET.
+     */
+    void addMutationListener(MutationListener listener);
+    
+    boolean removeMutationListener(MutationListener listener);
+    
+    /**
+     * Attach a durability hook that is notified after every applied change, or null to
+     * detach. In concurrent mode the hook must be thread-safe; its changeCompleted is
+     * called once the change's locks are released.
+     */
+    void setMutationLog(MutationLog mutationLog);
+    
+    MutationLog getMutationLog();
+    
+    /**
+     * Read every student, then every mark, with no change applied (or logged) until it
+     * returns, so the visit sees the state between two changes; used to take snapshots.
+     * Each mark is visited after its student. The visitors must not call back into the
+     * manager: its locks are not reentrant.
+     *
+     * @param locked run once the state is frozen, before the first student is visited
+     */
+    void visitState(Runnable locked, Consumer<Student> students, RecordVisitor records);
+    
+    /**
+     * Rebuild the maintained counters from the raw marks and compare them. Intended for tests.
+     *
+     * @throws IllegalStateException if any counter is out of sync
+     */
+    void verifyCounters();
+}
@@ -0,0 +1,766 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Columnar storage engine for attendance marks.
+ *
+ * Student IDs are interned to dense int ordinals, dates are kept as epoch-day ints
+ * and each session packs a 3-bit status code per student into three bitsets
+ * (marked, present, qualified) indexed by student ordinal:
+ *   unmarked = 0xx, absent = 100, present = 110, late = 111, excused = 101
+ * so unmarked students cost nothing. Each student also keeps a bitset of the sessions it
+ * was marked in, so per-student queries only touch that student's marks.
+ * Students are also grouped by course ID (see NameRegistry): each course keeps a
+ * bitset of its ordinals and per-session and lifetime counters per state, updated
+ * with every mark, so course queries never visit students outside the course.
+ * AttendanceRecord objects are created only as views when records are read.
+ *
+ * The store is also the student directory: names and email user parts are packed
+ * as UTF-8 into one byte arena, and courses and email domains are kept as IDs (see
+ * NameRegistry), so a student costs a few array slots rather than five objects.
+ *
+ * Not thread-safe by itself: AttendanceManager guards each store with its own lock.
+ */
+final class AttendanceStore {
+    
+    // State codes, matching AttendanceStatus.getCode()
+    static final int NOT_MARKED = -1;
+    static final int ABSENT = 0;
+    static final int PRESENT = 1;
+    static final int LATE = 2;
+    static final int EXCUSED = 3;
+    static final int STATES = 4; // Marked states, usable as counter indexes
+    
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int[] NO_COUNTS = new int[0];
+    
+    // A student's fields, packed side by side in studentFields so a lookup reads one row:
+    // course ID, arena offset of the name (the email user follows it), their lengths in
+    // bytes (-1 for null), and the email domain ID (-1 if the email has no '@')
+    private static final int FIELDS = 5;
+    private static final int COURSE = 0;
+    private static final int TEXT_START = 1;
+    private static final int NAME_LENGTH = 2;
+    private static final int EMAIL_USER_LENGTH = 3;
+    private static final int EMAIL_DOMAIN = 4;
+    
+    /**
+     * One attendance session (date): which students were marked, which were there
+     * (present or late) and which marks are qualified (late or excused)
+     */
+    private static final class Session {
+        final int ordinal;
+        final int epochDay;
+        final BitSet marked = new BitSet();
+        final BitSet present = new BitSet();
+        final BitSet qualified = new BitSet();
+        final int[] counts = new int[STATES]; // Marks per state
+        int[] courseCounts = NO_COUNTS;        // Marks per course and state: [course * STATES + state]
+        
+        Session(int ordinal, int epochDay) {
+            this.ordinal = ordinal;
+            this.epochDay = epochDay;
+        }
+    }
+    
+    // Student ID interning: id -> ordinal and ordinal -> id.
+    // The map's lookups are safe under the manager's optimistic (lock-free) reads.
+    private final StudentIdMap ordinals = new StudentIdMap();
+    private String[] studentIds = new String[INITIAL_CAPACITY];
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+    private int ordinalLimit;
+    
+    // Per-student columns, indexed by student ordinal
+    private BitSet[] studentSessions = new BitSet[INITIAL_CAPACITY];
+    private int[][] studentCounts = new int[STATES][INITIAL_CAPACITY]; // [state][ordinal]
+    private long[] studentVersions = new long[INITIAL_CAPACITY];      // modCount of the last change per student
+    private int[] studentFields = new int[INITIAL_CAPACITY * FIELDS]; // [ordinal * FIELDS + field]
+    private long modCount;
+    
+    // UTF-8 arena of names and email users; removed students' bytes are reclaimed
+    // once they make up half of it
+    private byte[] text = new byte[INITIAL_CAPACITY * 32];
+    private int textLength;
+    private int textGarbage;
+    
+    // Per-course columns, indexed by course ID
+    private BitSet[] courseMembers = new BitSet[0];  // Ordinals of the course's students
+    private int[] courseCounts = NO_COUNTS;          // Lifetime marks: [course * STATES + state]
+    
+    // Sessions by ordinal (creation order), hashed by epoch day, and sorted by epoch day
+    private Session[] sessions = new Session[INITIAL_CAPACITY];
+    private int sessionCount;
+    private final ConcurrentHashMap<Integer, Session> sessionsByDay = new ConcurrentHashMap<>();
+    private final TreeMap<Integer, Session> sortedSessions = new TreeMap<>();
+    
+    private long recordCount;
+    
+    static int toEpochDay(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+    
+    /**
+     * Intern a student ID into a course with its name and email, returning its ordinal
+     *
+     * @param emailUser the email up to its last '@', or all of it if emailDomain is -1
+     */
+    int register(String studentId, int course, String name, String emailUser, int emailDomain) {
+        int existing = ordinals.get(studentId, studentIds);
+        if (existing >= 0) {
+            return existing;
+        }
+        int ordinal = freeOrdinals.isEmpty() ? ordinalLimit++ : freeOrdinals.pop();
+        ensureStudentCapacity(ordinal + 1);
+        studentIds[ordinal] = studentId;
+        studentSessions[ordinal] = new BitSet();
+        for (int state = 0; state < STATES; state++) {
+            studentCounts[state][ordinal] = 0;
+        }
+        studentVersions[ordinal] = ++modCount;
+        ensureCourseCapacity(course);
+        courseMembers[course].set(ordinal);
+        int row = ordinal * FIELDS;
+        studentFields[row + COURSE] = course;
+        studentFields[row + TEXT_START] = textLength;
+        studentFields[row + NAME_LENGTH] = appendText(name);
+        studentFields[row + EMAIL_USER_LENGTH] = appendText(emailUser);
+        studentFields[row + EMAIL_DOMAIN] = emailDomain;
+        ordinals.add(studentId, ordinal);
+        return ordinal;
+    }
+    
+    /**
+     * Drop a student and all of its marks, releasing its ordinal for reuse.
+     * Only the sessions the student was marked in are visited.
+     *
+     * @return the number of records removed, or -1 if the student was not registered
+     */
+    int unregister(String studentId) {
+        int ordinal = ordinals.remove(studentId, studentIds);
+        if (ordinal < 0) {
+            return -1;
+        }
+        BitSet marks = studentSessions[ordinal];
+        int course = studentFields[ordinal * FIELDS + COURSE];
+        int removed = 0;
+        for (int s = marks.nextSetBit(0); s >= 0; s = marks.nextSetBit(s + 1)) {
+            Session session = sessions[s];
+            int state = stateOf(session, ordinal);
+            session.counts[state]--;
+            session.courseCounts[course * STATES + state]--;
+            session.marked.clear(ordinal);
+            session.present.clear(ordinal);
+            session.qualified.clear(ordinal);
+            removed++;
+        }
+        recordCount -= removed;
+        studentIds[ordinal] = null;
+        studentSessions[ordinal] = null;
+        for (int state = 0; state < STATES; state++) {
+            courseCounts[course * STATES + state] -= studentCounts[state][ordinal];
+            studentCounts[state][ordinal] = 0;
+        }
+        courseMembers[course].clear(ordinal);
+        studentVersions[ordinal] = ++modCount;
+        textGarbage += textBytes(ordinal * FIELDS);
+        if (textGarbage > textLength / 2 && textGarbage > 4096) {
+            compactText();
+        }
+        freeOrdinals.push(ordinal);
+        return removed;
+    }
+    
+    int ordinalOf(String studentId) {
+        return ordinals.get(studentId, studentIds);
+    }
+    
+    /**
+     * Registered student with this ordinal, or null if the ordinal is free
+     */
+    String studentIdOf(int ordinal) {
+        return studentIds[ordinal];
+    }
+    
+    /**
+     * Every ordinal in use is below this limit
+     */
+    int ordinalLimit() {
+        return ordinalLimit;
+    }
+    
+    int courseOf(int ordinal) {
+        return studentFields[ordinal * FIELDS + COURSE];
+    }
+    
+    String nameOf(int ordinal) {
+        int row = ordinal * FIELDS;
+        return decodeText(studentFields[row + TEXT_START], studentFields[row + NAME_LENGTH]);
+    }
+    
+    /**
+     * The email up to its last '@', or all of it if emailDomainOf is -1
+     */
+    String emailUserOf(int ordinal) {
+        int row = ordinal * FIELDS;
+        return decodeText(studentFields[row + TEXT_START] + Math.max(studentFields[row + NAME_LENGTH], 0),
+                studentFields[row + EMAIL_USER_LENGTH]);
+    }
+    
+    int emailDomainOf(int ordinal) {
+        return studentFields[ordinal * FIELDS + EMAIL_DOMAIN];
+    }
+    
+    /**
+     * Move a student to another course, carrying its marks over in the course
+     * counters; only the sessions the student was marked in are visited
+     *
+     * @return false if the student is already in that course
+     */
+    boolean changeCourse(int ordinal, int course) {
+        int previous = studentFields[ordinal * FIELDS + COURSE];
+        if (previous == course) {
+            return false;
+        }
+        ensureCourseCapacity(course);
+        BitSet marks = studentSessions[ordinal];
+        for (int s = marks.nextSetBit(0); s >= 0; s = marks.nextSetBit(s + 1)) {
+            Session session = sessions[s];
+            int state = stateOf(session, ordinal);
+            session.courseCounts[previous * STATES + state]--;
+            session.courseCounts = growCounts(session.courseCounts, course);
+            session.courseCounts[course * STATES + state]++;
+        }
+        for (int state = 0; state < STATES; state++) {
+            courseCounts[previous * STATES + state] -= studentCounts[state][ordinal];
+            courseCounts[course * STATES + state] += studentCounts[state][ordinal];
+        }
+        courseMembers[previous].clear(ordinal);
+        courseMembers[course].set(ordinal);
+        studentFields[ordinal * FIELDS + COURSE] = course;
+        return true;
+    }
+    
+    int courseSize(int course) {
+        return course < courseMembers.length ? courseMembers[course].cardinality() : 0;
+    }
+    
+    /**
+     * Add a course's lifetime number of marks in each state to counts, indexed by state code
+     */
+    void addCourseCounts(int course, int[] counts) {
+        int[] totals = courseCounts;
+        if ((course + 1) * STATES <= totals.length) {
+            for (int state = 0; state < STATES; state++) {
+                counts[state] += totals[course * STATES + state];
+            }
+        }
+    }
+    
+    /**
+     * Add a course's number of marks in each state on one epoch day to counts, indexed by state code
+     */
+    void addCourseSessionCounts(int course, int epochDay, int[] counts) {
+        Session session = sessionsByDay.get(epochDay);
+        if (session == null) {
+            return;
+        }
+        int[] sessionCounts = session.courseCounts;
+        if ((course + 1) * STATES <= sessionCounts.length) {
+            for (int state = 0; state < STATES; state++) {
+                counts[state] += sessionCounts[course * STATES + state];
+            }
+        }
+    }
+    
+    /**
+     * Insert, update or (with NOT_MARKED) remove a mark
+     *
+     * @return the previous state: NOT_MARKED, ABSENT, PRESENT, LATE or EXCUSED
+     */
+    int put(int ordinal, int epochDay, int state) {
+        Session session = sessionsByDay.get(epochDay);
+        if (session == null) {
+            if (state == NOT_MARKED) {
+                return NOT_MARKED;
+            }
+            session = createSession(epochDay);
+        }
+        return put(session, ordinal, state);
+    }
+    
+    /**
+     * Insert, update or remove a whole session's marks in one pass; the session is
+     * looked up once for all rows, and opened only if a row sets a mark
+     *
+     * @return the previous state of each row
+     */
+    int[] putAll(int epochDay, int[] ordinals, byte[] states, int count) {
+        int[] previous = new int[count];
+        Session session = sessionsByDay.get(epochDay);
+        if (session == null) {
+            boolean marks = false;
+            for (int i = 0; i < count && !marks; i++) {
+                marks = states[i] != NOT_MARKED;
+            }
+            if (!marks) {
+                // Only removals on a date without a session: nothing to remove
+                Arrays.fill(previous, NOT_MARKED);
+                return previous;
+            }
+            session = createSession(epochDay);
+        }
+        for (int i = 0; i < count; i++) {
+            previous[i] = put(session, ordinals[i], states[i]);
+        }
+        return previous;
+    }
+    
+    private int put(Session session, int ordinal, int state) {
+        int previous = stateOf(session, ordinal);
+        if (previous == state) {
+            return previous;
+        }
+        studentVersions[ordinal] = ++modCount;
+        int course = studentFields[ordinal * FIELDS + COURSE];
+        if (previous == NOT_MARKED) {
+            session.marked.set(ordinal);
+            studentSessions[ordinal].set(session.ordinal);
+            session.courseCounts = growCounts(session.courseCounts, course);
+            recordCount++;
+        } else {
+            session.counts[previous]--;
+            session.courseCounts[course * STATES + previous]--;
+            courseCounts[course * STATES + previous]--;
+            studentCounts[previous][ordinal]--;
+        }
+        if (state == NOT_MARKED) {
+            session.marked.clear(ordinal);
+            session.present.clear(ordinal);
+            session.qualified.clear(ordinal);
+            studentSessions[ordinal].clear(session.ordinal);
+            recordCount--;
+        } else {
+            session.present.set(ordinal, state == PRESENT || state == LATE);
+            session.qualified.set(ordinal, state == LATE || state == EXCUSED);
+            session.counts[state]++;
+            session.courseCounts[course * STATES + state]++;
+            courseCounts[course * STATES + state]++;
+            studentCounts[state][ordinal]++;
+        }
+        return previous;
+    }
+    
+    /**
+     * Remove a single mark
+     *
+     * @return the previous state
+     */
+    int remove(int ordinal, int epochDay) {
+        return put(ordinal, epochDay, NOT_MARKED);
+    }
+    
+    int get(int ordinal, int epochDay) {
+        Session session = sessionsByDay.get(epochDay);
+        return session == null ? NOT_MARKED : stateOf(session, ordinal);
+    }
+    
+    long size() {
+        return recordCount;
+    }
+    
+    /**
+     * A student's number of marks in each state, indexed by state code
+     */
+    int[] studentCounts(int ordinal) {
+        int[] counts = new int[STATES];
+        for (int state = 0; state < STATES; state++) {
+            counts[state] = studentCounts[state][ordinal];
+        }
+        return counts;
+    }
+    
+    /**
+     * Changes whenever the student's marks change; never repeats within this store
+     */
+    long studentVersion(int ordinal) {
+        return studentVersions[ordinal];
+    }
+    
+    /**
+     * One student's marks sorted by date, packed as (epochDay << 8 | state)
+     */
+    long[] studentTimeline(int ordinal) {
+        BitSet marks = studentSessions[ordinal];
+        long[] timeline = new long[marks.cardinality()];
+        int count = 0;
+        for (int s = marks.nextSetBit(0); s >= 0; s = marks.nextSetBit(s + 1)) {
+            Session session = sessions[s];
+            timeline[count++] = ((long) session.epochDay << 8) | stateOf(session, ordinal);
+        }
+        Arrays.sort(timeline);
+        return timeline;
+    }
+    
+    /**
+     * Add one epoch day's number of marks in each state to counts, indexed by state code
+     */
+    void addSessionCounts(int epochDay, int[] counts) {
+        Session session = sessionsByDay.get(epochDay);
+        if (session != null) {
+            for (int state = 0; state < STATES; state++) {
+                counts[state] += session.counts[state];
+            }
+        }
+    }
+    
+    /**
+     * Epoch days of the sessions between two epoch days (inclusive), in date order
+     */
+    int[] sessionDays(int fromDay, int toDay) {
+        Collection<Session> range = sortedSessions.subMap(fromDay, true, toDay, true).values();
+        int[] days = new int[range.size()];
+        int count = 0;
+        for (Session session : range) {
+            days[count++] = session.epochDay;
+        }
+        return days;
+    }
+    
+    /**
+     * Count the marks of ordinals [lo, hi) in the sessions between two epoch days (inclusive):
+     * per student into studentCounts[(ordinal - lo) * STATES + state] and per session into
+     * sessionCounts[i * STATES + state], i being the session's index in sessionDays(fromDay, toDay).
+     *
+     * When the range covers every session the maintained counters are copied instead of
+     * scanning the bitsets. Session counters span all ordinals, so they are then only
+     * copied for the block starting at ordinal 0.
+     */
+    void countMarks(int fromDay, int toDay, int lo, int hi, int[] studentCounts, int[] sessionCounts) {
+        Collection<Session> range = sortedSessions.subMap(fromDay, true, toDay, true).values();
+        boolean everySession = sortedSessions.isEmpty()
+                || (fromDay <= sortedSessions.firstKey() && toDay >= sortedSessions.lastKey());
+        if (everySession) {
+            for (int o = lo; o < hi; o++) {
+                for (int state = 0; state < STATES; state++) {
+                    studentCounts[(o - lo) * STATES + state] = this.studentCounts[state][o];
+                }
+            }
+            if (lo == 0) {
+                int i = 0;
+                for (Session session : range) {
+                    System.arraycopy(session.counts, 0, sessionCounts, i++ * STATES, STATES);
+                }
+            }
+            return;
+        }
+        
+        int i = 0;
+        for (Session session : range) {
+            int base = i++ * STATES;
+            BitSet marked = session.marked;
+            for (int o = marked.nextSetBit(lo); o >= 0 && o < hi; o = marked.nextSetBit(o + 1)) {
+                int state = session.present.get(o)
+                        ? (session.qualified.get(o) ? LATE : PRESENT)
+                        : (session.qualified.get(o) ? EXCUSED : ABSENT);
+                studentCounts[(o - lo) * STATES + state]++;
+                sessionCounts[base + state]++;
+            }
+        }
+    }
+    
+    /**
+     * Views of one student's marks between two epoch days (inclusive), sorted by date
+     */
+    ArrayList<AttendanceRecord> studentRecords(int ordinal, int fromDay, int toDay) {
+        BitSet marks = studentSessions[ordinal];
+        // Pack (epochDay, session) into longs so sorting by date stays primitive
+        long[] keys = new long[marks.cardinality()];
+        int count = 0;
+        for (int s = marks.nextSetBit(0); s >= 0; s = marks.nextSetBit(s + 1)) {
+            int epochDay = sessions[s].epochDay;
+            if (epochDay >= fromDay && epochDay <= toDay) {
+                keys[count++] = ((long) epochDay << 32) | s;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        
+        ArrayList<AttendanceRecord> records = new ArrayList<>(count);
+        String studentId = studentIds[ordinal];
+        for (int i = 0; i < count; i++) {
+            Session session = sessions[(int) keys[i]];
+            records.add(new AttendanceRecord(studentId, LocalDate.ofEpochDay(session.epochDay),
+                    AttendanceStatus.fromCode(stateOf(session, ordinal))));
+        }
+        return records;
+    }
+    
+    int studentCount() {
+        return ordinals.size();
+    }
+    
+    /**
+     * Write every registered student and their state on one epoch day into the
+     * roster arrays from offset on, in ordinal order. The arrays must have room
+     * for studentCount() more entries.
+     *
+     * @return the offset after the last entry written
+     */
+    int roster(int epochDay, String[] ids, byte[] states, int offset) {
+        Session session = sessionsByDay.get(epochDay);
+        for (int o = 0; o < ordinalLimit; o++) {
+            String studentId = studentIds[o];
+            if (studentId == null) {
+                continue; // Free ordinal
+            }
+            ids[offset] = studentId;
+            states[offset] = (byte) (session == null ? NOT_MARKED : stateOf(session, o));
+            offset++;
+        }
+        return offset;
+    }
+    
+    /**
+     * Like roster, but only for the students of one course; the arrays must have
+     * room for courseSize(course) more entries. Visits only the course's students.
+     */
+    int courseRoster(int course, int epochDay, String[] ids, byte[] states, int offset) {
+        if (course >= courseMembers.length) {
+            return offset;
+        }
+        Session session = sessionsByDay.get(epochDay);
+        BitSet members = courseMembers[course];
+        for (int o = members.nextSetBit(0); o >= 0; o = members.nextSetBit(o + 1)) {
+            ids[offset] = studentIds[o];
+            states[offset] = (byte) (session == null ? NOT_MARKED : stateOf(session, o));
+            offset++;
+        }
+        return offset;
+    }
+    
+    /**
+     * Views of all marks taken on one epoch day, ordered by student ordinal
+     */
+    ArrayList<AttendanceRecord> sessionRecords(int epochDay) {
+        Session session = sessionsByDay.get(epochDay);
+        ArrayList<AttendanceRecord> records = new ArrayList<>(session == null ? 0 : session.marked.cardinality());
+        if (session != null) {
+            appendSession(session, records);
+        }
+        return records;
+    }
+    
+    /**
+     * Views of all marks between two epoch days (inclusive), sorted by date
+     */
+    ArrayList<AttendanceRecord> rangeRecords(int fromDay, int toDay) {
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        if (fromDay <= toDay) {
+            for (Session session : sortedSessions.subMap(fromDay, true, toDay, true).values()) {
+                appendSession(session, records);
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * Stream every mark, grouped by session in the order sessions were opened.
+     * One LocalDate is created per session, none per mark.
+     */
+    void forEach(RecordVisitor visitor) {
+        for (int s = 0; s < sessionCount; s++) {
+            Session session = sessions[s];
+            LocalDate date = LocalDate.ofEpochDay(session.epochDay);
+            BitSet marked = session.marked;
+            for (int o = marked.nextSetBit(0); o >= 0; o = marked.nextSetBit(o + 1)) {
+                visitor.visit(studentIds[o], date, AttendanceStatus.fromCode(stateOf(session, o)));
+            }
+        }
+    }
+    
+    /**
+     * Rebuild all counters from the bitsets and compare them with the maintained ones
+     *
+     * @throws IllegalStateException if any counter is out of sync
+     */
+    void verifyCounters() {
+        long records = 0;
+        int[][] counts = new int[STATES][ordinalLimit];
+        int[] courseTotals = new int[courseCounts.length];
+        for (int s = 0; s < sessionCount; s++) {
+            Session session = sessions[s];
+            int[] sessionCounts = new int[STATES];
+            int[] sessionCourseCounts = new int[courseCounts.length];
+            BitSet marked = session.marked;
+            for (int o = marked.nextSetBit(0); o >= 0; o = marked.nextSetBit(o + 1)) {
+                if (studentIds[o] == null || !studentSessions[o].get(s)) {
+                    throw new IllegalStateException("Dangling mark for ordinal " + o
+                            + " on " + LocalDate.ofEpochDay(session.epochDay));
+                }
+                int state = stateOf(session, o);
+                sessionCounts[state]++;
+                sessionCourseCounts[studentFields[o * FIELDS + COURSE] * STATES + state]++;
+                courseTotals[studentFields[o * FIELDS + COURSE] * STATES + state]++;
+                counts[state][o]++;
+                records++;
+            }
+            if (!Arrays.equals(sessionCourseCounts, Arrays.copyOf(session.courseCounts, courseCounts.length))) {
+                throw new IllegalStateException("Course counters out of sync on "
+                        + LocalDate.ofEpochDay(session.epochDay));
+            }
+            if (!Arrays.equals(sessionCounts, session.counts)) {
+                throw new IllegalStateException("Date counters out of sync on "
+                        + LocalDate.ofEpochDay(session.epochDay) + ": expected " + Arrays.toString(sessionCounts)
+                        + " but was " + Arrays.toString(session.counts));
+            }
+        }
+        for (int o = 0; o < ordinalLimit; o++) {
+            for (int state = 0; state < STATES; state++) {
+                if (counts[state][o] != studentCounts[state][o]) {
+                    throw new IllegalStateException("Student counters out of sync for " + studentIds[o]
+                            + ": expected " + counts[state][o] + " marks with state " + state
+                            + " but was " + studentCounts[state][o]);
+                }
+            }
+        }
+        if (!Arrays.equals(courseTotals, courseCounts)) {
+            throw new IllegalStateException("Course totals out of sync: expected " + Arrays.toString(courseTotals)
+                    + " but was " + Arrays.toString(courseCounts));
+        }
+        int members = 0;
+        for (int course = 0; course < courseMembers.length; course++) {
+            BitSet courseOrdinals = courseMembers[course];
+            for (int o = courseOrdinals.nextSetBit(0); o >= 0; o = courseOrdinals.nextSetBit(o + 1)) {
+                if (studentIds[o] == null || studentFields[o * FIELDS + COURSE] != course) {
+                    throw new IllegalStateException("Course index out of sync for ordinal " + o);
+                }
+                members++;
+            }
+        }
+        if (members != ordinals.size()) {
+            throw new IllegalStateException("Course index holds " + members + " of " + ordinals.size() + " students");
+        }
+        if (records != recordCount) {
+            throw new IllegalStateException("Record count out of sync: expected " + records
+                    + " but was " + recordCount);
+        }
+    }
+    
+    private void appendSession(Session session, ArrayList<AttendanceRecord> records) {
+        LocalDate date = LocalDate.ofEpochDay(session.epochDay);
+        BitSet marked = session.marked;
+        for (int o = marked.nextSetBit(0); o >= 0; o = marked.nextSetBit(o + 1)) {
+            records.add(new AttendanceRecord(studentIds[o], date, AttendanceStatus.fromCode(stateOf(session, o))));
+        }
+    }
+    
+    private static int stateOf(Session session, int ordinal) {
+        if (!session.marked.get(ordinal)) {
+            return NOT_MARKED;
+        }
+        if (session.present.get(ordinal)) {
+            return session.qualified.get(ordinal) ? LATE : PRESENT;
+        }
+        return session.qualified.get(ordinal) ? EXCUSED : ABSENT;
+    }
+    
+    private Session createSession(int epochDay) {
+        if (sessionCount == sessions.length) {
+            sessions = Arrays.copyOf(sessions, sessionCount * 2);
+        }
+        Session session = new Session(sessionCount, epochDay);
+        sessions[sessionCount++] = session;
+        sessionsByDay.put(epochDay, session);
+        sortedSessions.put(epochDay, session);
+        return session;
+    }
+    
+    /**
+     * Append a string to the text arena, returning its length in bytes (-1 for null)
+     */
+    private int appendText(String value) {
+        if (value == null) {
+            return -1;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (textLength + bytes.length > text.length) {
+            text = Arrays.copyOf(text, Math.max(textLength + bytes.length, text.length * 2));
+        }
+        System.arraycopy(bytes, 0, text, textLength, bytes.length);
+        textLength += bytes.length;
+        return bytes.length;
+    }
+    
+    private String decodeText(int start, int length) {
+        return length < 0 ? null : new String(text, start, length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Arena bytes of the student whose text fields start at row
+     */
+    private int textBytes(int row) {
+        return Math.max(studentFields[row + NAME_LENGTH], 0) + Math.max(studentFields[row + EMAIL_USER_LENGTH], 0);
+    }
+    
+    /**
+     * Copy the text of registered students into a fresh arena, in ordinal order.
+     * Optimistic readers keep the old arena until their read fails validation.
+     */
+    private void compactText() {
+        byte[] compacted = new byte[Math.max(INITIAL_CAPACITY * 32, (textLength - textGarbage) * 2)];
+        int length = 0;
+        for (int o = 0; o < ordinalLimit; o++) {
+            if (studentIds[o] == null) {
+                continue; // Free ordinal
+            }
+            int row = o * FIELDS;
+            int bytes = textBytes(row);
+            System.arraycopy(text, studentFields[row + TEXT_START], compacted, length, bytes);
+            studentFields[row + TEXT_START] = length;
+            length += bytes;
+        }
+        text = compacted;
+        textLength = length;
+        textGarbage = 0;
+    }
+    
+    private void ensureStudentCapacity(int capacity) {
+        if (capacity <= studentIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, studentIds.length * 2);
+        studentIds = Arrays.copyOf(studentIds, newCapacity);
+        studentSessions = Arrays.copyOf(studentSessions, newCapacity);
+        for (int state = 0; state < STATES; state++) {
+            studentCounts[state] = Arrays.copyOf(studentCounts[state], newCapacity);
+        }
+        studentVersions = Arrays.copyOf(studentVersions, newCapacity);
+        studentFields = Arrays.copyOf(studentFields, newCapacity * FIELDS);
+    }
+    
+    private void ensureCourseCapacity(int course) {
+        if (course < courseMembers.length) {
+            return;
+        }
+        int oldLength = courseMembers.length;
+        courseMembers = Arrays.copyOf(courseMembers, Math.max(course + 1, oldLength * 2));
+        for (int c = oldLength; c < courseMembers.length; c++) {
+            courseMembers[c] = new BitSet();
+        }
+        courseCounts = Arrays.copyOf(courseCounts, courseMembers.length * STATES);
+    }
+    
+    /**
+     * counts, grown if needed to hold the counters of a course
+     */
+    private static int[] growCounts(int[] counts, int course) {
+        int needed = (course + 1) * STATES;
+        return counts.length >= needed ? counts : Arrays.copyOf(counts, Math.max(needed, counts.length * 2));
+    }
+}
@@ -0,0 +1,83 @@
+package com.attendance.manager;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Per-row summary of a bulk attendance save
+ */
+public class BulkMarkResult {
+    
+    /**
+     * What happened to a single row of a bulk save
+     */
+    public enum Outcome {
+        INSERTED,        // No mark existed for this student on this date
+        UPDATED,         // An existing mark was changed or removed
+        UNCHANGED,       // The student already had this status
+        UNKNOWN_STUDENT  // Student doesn't exist, row skipped
+    }
+    
+    private final LocalDate date;
+    private final EnumMap<Outcome, Integer> counts;
+    private final ArrayList<String> rejectedStudentIds;
+    
+    BulkMarkResult(LocalDate date) {
+        this.date = date;
+        this.counts = new EnumMap<>(Outcome.class);
+        this.rejectedStudentIds = new ArrayList<>();
+        for (Outcome outcome : Outcome.values()) {
+            counts.put(outcome, 0);
+        }
+    }
+    
+    void record(String studentId, Outcome outcome) {
+        counts.merge(outcome, 1, Integer::sum);
+        if (outcome == Outcome.UNKNOWN_STUDENT) {
+            rejectedStudentIds.add(studentId);
+        }
+    }
+    
+    /**
+     * Add the rows of another save of the same date, e.g. another shard's share of a session
+     */
+    void merge(BulkMarkResult other) {
+        for (Outcome outcome : Outcome.values()) {
+            counts.merge(outcome, other.getCount(outcome), Integer::sum);
+        }
+        rejectedStudentIds.addAll(other.rejectedStudentIds);
+    }
+    
+    public LocalDate getDate() {
+        return date;
+    }
+    
+    public int getCount(Outcome outcome) {
+        return counts.get(outcome);
+    }
+    
+    /**
+     * Number of rows that were applied (inserted, updated or unchanged)
+     */
+    public int getAppliedCount() {
+        return getCount(Outcome.INSERTED) + getCount(Outcome.UPDATED) + getCount(Outcome.UNCHANGED);
+    }
+    
+    /**
+     * IDs of rows that were skipped because the student doesn't exist
+     */
+    public List<String> getRejectedStudentIds() {
+        return Collections.unmodifiableList(rejectedStudentIds);
+    }
+    
+    @Override
+    public String toString() {
+        return "BulkMarkResult{" +
+                "Date=" + date +
+                ", Inserted=" + getCount(Outcome.INSERTED) +
+                ", Updated=" + getCount(Outcome.UPDATED) +
+                ", Unchanged=" + getCount(Outcome.UNCHANGED) +
+                ", Rejected=" + rejectedStudentIds.size() +
+                '}';
+    }
+}
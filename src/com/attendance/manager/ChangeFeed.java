@@ -0,0 +1,213 @@
+package com.attendance.manager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Queues the manager's changes and delivers them to MutationListeners in coalesced
+ * bursts on its own daemon thread, so writers only pay for an append under a short lock.
+ * While no listener is registered nothing is queued and publishing costs a volatile read.
+ *
+ * The thread waits COALESCE_MILLIS after the first change of a burst to let the rest of
+ * it arrive. If more than MAX_PENDING changes queue up the burst is dropped and a RESET
+ * is delivered instead: re-reading is then cheaper than replaying every change.
+ */
+final class ChangeFeed {
+    
+    private static final long COALESCE_MILLIS = 50;
+    private static final int MAX_PENDING = 1 << 16;
+    private static final List<MutationEvent> RESET_BURST = Collections.singletonList(MutationEvent.reset());
+    
+    private final CopyOnWriteArrayList<MutationListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean active; // At least one listener, so changes are queued
+    
+    // Guarded by this
+    private final ArrayList<MutationListener> joined = new ArrayList<>(); // Awaiting their first RESET
+    private ArrayList<MutationEvent> pending = new ArrayList<>();
+    private boolean overflowed;
+    private Thread thread;
+    
+    boolean isActive() {
+        return active;
+    }
+    
+    synchronized void addListener(MutationListener listener) {
+        joined.add(listener);
+        active = true;
+        if (thread == null) {
+            thread = new Thread(this::run, "attendance-change-feed");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+    
+    synchronized boolean removeListener(MutationListener listener) {
+        boolean removed = joined.remove(listener) | listeners.remove(listener);
+        active = !joined.isEmpty() || !listeners.isEmpty();
+        return removed;
+    }
+    
+    synchronized void publish(MutationEvent event) {
+        if (!active || overflowed) {
+            return;
+        }
+        pending.add(event);
+        if (pending.size() == 1) {
+            notifyAll();
+        } else if (pending.size() > MAX_PENDING) {
+            overflow();
+        }
+    }
+    
+    /**
+     * Queue the first {@code count} events of an array, e.g. the rows of a bulk save
+     */
+    synchronized void publish(MutationEvent[] events, int count) {
+        if (!active || overflowed || count == 0) {
+            return;
+        }
+        if (pending.size() + count > MAX_PENDING) {
+            overflow();
+            return;
+        }
+        boolean wasEmpty = pending.isEmpty();
+        pending.addAll(Arrays.asList(events).subList(0, count));
+        if (wasEmpty) {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Tell listeners to re-read everything, dropping whatever is queued
+     */
+    synchronized void reset() {
+        if (active) {
+            overflow();
+        }
+    }
+    
+    private void overflow() {
+        pending = new ArrayList<>();
+        overflowed = true;
+        notifyAll();
+    }
+    
+    private void run() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (pending.isEmpty() && !overflowed && joined.isEmpty()) {
+                        wait();
+                    }
+                }
+                Thread.sleep(COALESCE_MILLIS);
+                
+                List<MutationListener> newcomers;
+                ArrayList<MutationEvent> burst;
+                boolean reset;
+                synchronized (this) {
+                    newcomers = new ArrayList<>(joined);
+                    burst = pending;
+                    pending = new ArrayList<>();
+                    reset = overflowed;
+                    overflowed = false;
+                }
+                
+                List<MutationEvent> events = reset ? RESET_BURST : coalesce(burst);
+                if (!events.isEmpty()) {
+                    for (MutationListener listener : listeners) {
+                        deliver(listener, events);
+                    }
+                }
+                // Newcomers start from a RESET, which covers this burst too
+                for (MutationListener listener : newcomers) {
+                    deliver(listener, RESET_BURST);
+                    synchronized (this) {
+                        if (joined.remove(listener)) {
+                            listeners.add(listener); // Unless it was removed meanwhile
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void deliver(MutationListener listener, List<MutationEvent> events) {
+        try {
+            listener.mutationsApplied(events);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Merge repeated changes to one student's mark on one date into the first of them,
+     * then drop marks that ended where they started. Merging stops at a student's
+     * addition or removal, so a mark never moves across one.
+     */
+    static List<MutationEvent> coalesce(List<MutationEvent> burst) {
+        ArrayList<MutationEvent> events = new ArrayList<>(burst.size());
+        HashMap<MarkKey, Integer> marks = new HashMap<>();
+        HashMap<String, Integer> generations = new HashMap<>(); // Additions and removals per student
+        boolean merged = false;
+        for (MutationEvent event : burst) {
+            switch (event.getType()) {
+                case MARK_CHANGED:
+                    MarkKey key = new MarkKey(event.getStudentId(), event.getDate(),
+                            generations.getOrDefault(event.getStudentId(), 0));
+                    Integer index = marks.putIfAbsent(key, events.size());
+                    if (index == null) {
+                        events.add(event);
+                    } else {
+                        MutationEvent first = events.get(index);
+                        events.set(index, MutationEvent.markChanged(event.getStudentId(), event.getDate(),
+                                first.getOldStatus(), event.getNewStatus()));
+                        merged = true;
+                    }
+                    break;
+                case STUDENT_ADDED:
+                case STUDENT_REMOVED:
+                    generations.merge(event.getStudentId(), 1, Integer::sum);
+                    events.add(event);
+                    break;
+                default:
+                    events.add(event);
+            }
+        }
+        if (merged) {
+            events.removeIf(event -> event.getType() == MutationEvent.Type.MARK_CHANGED
+                    && event.getOldStatus() == event.getNewStatus());
+        }
+        return Collections.unmodifiableList(events);
+    }
+    
+    private static final class MarkKey {
+        private final String studentId;
+        private final LocalDate date;
+        private final int generation;
+        
+        MarkKey(String studentId, LocalDate date, int generation) {
+            this.studentId = studentId;
+            this.date = date;
+            this.generation = generation;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MarkKey)) {
+                return false;
+            }
+            MarkKey other = (MarkKey) o;
+            return studentId.equals(other.studentId) && date.equals(other.date) && generation == other.generation;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (studentId.hashCode() * 31 + date.hashCode()) * 31 + generation;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceStatus;
+
+import java.util.*;
+
+/**
+ * How marked statuses count towards an attendance percentage.
+ *
+ * Attended statuses count as present, excluded statuses are left out of the
+ * total, and every other marked status counts as absent. Unmarked dates never count.
+ */
+public final class CountingPolicy {
+    
+    /**
+     * Late counts as present; excused absences are left out of the total
+     */
+    public static final CountingPolicy STANDARD = new CountingPolicy("Standard",
+        EnumSet.of(AttendanceStatus.PRESENT, AttendanceStatus.LATE), EnumSet.of(AttendanceStatus.EXCUSED));
+    
+    /**
+     * Only on-time presence counts; late and excused count as absent
+     */
+    public static final CountingPolicy STRICT = new CountingPolicy("Strict",
+        EnumSet.of(AttendanceStatus.PRESENT), EnumSet.noneOf(AttendanceStatus.class));
+    
+    /**
+     * Late and excused both count as present
+     */
+    public static final CountingPolicy LENIENT = new CountingPolicy("Lenient",
+        EnumSet.of(AttendanceStatus.PRESENT, AttendanceStatus.LATE, AttendanceStatus.EXCUSED),
+        EnumSet.noneOf(AttendanceStatus.class));
+    
+    private final String name;
+    private final EnumSet<AttendanceStatus> attended;
+    private final EnumSet<AttendanceStatus> excluded;
+    
+    /**
+     * @param attended statuses counted as present
+     * @param excluded statuses left out of the total
+     * @throws IllegalArgumentException if a status is in both sets, or UNMARKED is in either
+     */
+    public CountingPolicy(String name, Set<AttendanceStatus> attended, Set<AttendanceStatus> excluded) {
+        this.name = name;
+        this.attended = attended.isEmpty() ? EnumSet.noneOf(AttendanceStatus.class) : EnumSet.copyOf(attended);
+        this.excluded = excluded.isEmpty() ? EnumSet.noneOf(AttendanceStatus.class) : EnumSet.copyOf(excluded);
+        if (this.attended.contains(AttendanceStatus.UNMARKED) || this.excluded.contains(AttendanceStatus.UNMARKED)) {
+            throw new IllegalArgumentException("Unmarked dates never count");
+        }
+        EnumSet<AttendanceStatus> overlap = EnumSet.copyOf(this.attended);
+        overlap.retainAll(this.excluded);
+        if (!overlap.isEmpty()) {
+            throw new IllegalArgumentException("Statuses both attended and excluded: " + overlap);
+        }
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public boolean isAttended(AttendanceStatus status) {
+        return attended.contains(status);
+    }
+    
+    public boolean isCounted(AttendanceStatus status) {
+        return status.isMarked() && !excluded.contains(status);
+    }
+    
+    /**
+     * Attendance percentage from per-status counts: attended / counted * 100
+     */
+    public double percentage(int present, int absent, int late, int excused) {
+        int total = counted(present, absent, late, excused);
+        if (total == 0) {
+            return 0.0;
+        }
+        return (attended(present, absent, late, excused) * 100.0) / total;
+    }
+    
+    /**
+     * Statistics map from per-status counts: "total" counted marks, "present" attended,
+     * "absent" counted but not attended, plus the raw "late" and "excused" counts
+     */
+    public Map<String, Integer> statistics(int present, int absent, int late, int excused) {
+        int total = counted(present, absent, late, excused);
+        int attendedCount = attended(present, absent, late, excused);
+        Map<String, Integer> stats = new HashMap<>();
+        stats.put("total", total);
+        stats.put("present", attendedCount);
+        stats.put("absent", total - attendedCount);
+        stats.put("late", late);
+        stats.put("excused", excused);
+        return stats;
+    }
+    
+    int attended(int present, int absent, int late, int excused) {
+        return count(attended, present, absent, late, excused);
+    }
+    
+    int counted(int present, int absent, int late, int excused) {
+        return present + absent + late + excused - count(excluded, present, absent, late, excused);
+    }
+    
+    private static int count(EnumSet<AttendanceStatus> statuses, int present, int absent, int late, int excused) {
+        int count = 0;
+        if (statuses.contains(AttendanceStatus.PRESENT)) {
+            count += present;
+        }
+        if (statuses.contains(AttendanceStatus.ABSENT)) {
+            count += absent;
+        }
+        if (statuses.contains(AttendanceStatus.LATE)) {
+            count += late;
+        }
+        if (statuses.contains(AttendanceStatus.EXCUSED)) {
+            count += excused;
+        }
+        return count;
+    }
+    
+    @Override
+    public String toString() {
+        return "CountingPolicy{" +
+                "Name='" + name + '\'' +
+                ", Attended=" + attended +
+                ", Excluded=" + excluded +
+                '}';
+    }
+}
@@ -0,0 +1,1364 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Read-only AttendanceService served straight from a compact, versioned snapshot file
+ * read through FileChannel.map. Opening a snapshot only checks its header: students
+ * are found by binary search of the mapped tables, statuses are read from the mapped
+ * bitsets, and strings are decoded only when a query returns them. The search index
+ * and the at-risk ranking are built from the mapping on first use.
+ *
+ * Every method that would change the state throws UnsupportedOperationException. The
+ * counting policy is a view setting and may be changed; listeners are accepted, but
+ * only a policy change ever notifies them. Every method is thread-safe.
+ *
+ * Layout (big-endian, sections 8-byte aligned):
+ *   header    magic, version, string count and bytes, student, course and session
+ *             counts, bitset words per session, total records (HEADER_SIZE bytes)
+ *   strings   int[stringCount + 1] offsets, then UTF-8 data; IDs, names, emails and
+ *             courses are deduplicated into this table, and null is index -1
+ *   students  sorted by UTF-8 ID: id, name, email, course (index into courses), marks per state
+ *   courses   sorted by UTF-8 name, a null course first: name, students, marks per state
+ *   sessions  sorted by date: epochDay, marks per state
+ *   opened    session indexes in the order the sessions were opened
+ *   bitsets   per session: marked, status bit 0 and status bit 1 planes, by student position
+ */
+public final class MappedSnapshot implements AttendanceService, AutoCloseable {
+    
+    static final int MAGIC = 0x41544D53; // "ATMS"
+    static final int FORMAT_VERSION = 2; // 1 stored presence only, without late and excused
+    static final int HEADER_SIZE = 48;
+    
+    private static final int STATES = AttendanceStore.STATES;
+    private static final int STUDENT_INTS = 4 + STATES;
+    private static final int COURSE_INTS = 2 + STATES;
+    private static final int SESSION_INTS = 1 + STATES;
+    private static final int PLANES = 3;
+    private static final int AGGREGATE_BLOCK = 4096; // Students per fork/join leaf, a multiple of 64
+    
+    private final FileChannel channel;
+    private final int studentCount;
+    private final int courseCount;
+    private final int sessionCount;
+    private final int words;
+    private final long totalRecords;
+    private final IntBuffer stringOffsets;
+    private final ByteBuffer stringData;
+    private final IntBuffer students;
+    private final IntBuffer courses;
+    private final IntBuffer sessions;
+    private final IntBuffer opened;
+    private final LongBuffer bits;
+    
+    private volatile CountingPolicy countingPolicy = CountingPolicy.STANDARD;
+    private volatile StudentSearchIndex searchIndex; // Built on first search
+    private volatile AtRiskIndex atRisk;             // Built on first ranking or threshold listener
+    private volatile MutationLog mutationLog;
+    private final ChangeFeed changeFeed = new ChangeFeed();
+    
+    private MappedSnapshot(FileChannel channel, MappedByteBuffer map) throws IOException {
+        this.channel = channel;
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException("Not an attendance snapshot");
+        }
+        int version = map.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int stringCount = map.getInt(8);
+        int stringBytes = map.getInt(12);
+        this.studentCount = map.getInt(16);
+        this.courseCount = map.getInt(20);
+        this.sessionCount = map.getInt(24);
+        this.words = map.getInt(28);
+        this.totalRecords = map.getLong(32);
+        
+        long[] sections = sections(stringCount, stringBytes, studentCount, courseCount, sessionCount, words);
+        if (stringCount < 0 || studentCount < 0 || courseCount < 0 || sessionCount < 0
+                || words != (studentCount + 63) >>> 6 || sections[7] != map.capacity()) {
+            throw new IOException("Truncated or corrupt attendance snapshot");
+        }
+        this.stringOffsets = slice(map, sections[0], sections[1]).asIntBuffer();
+        this.stringData = slice(map, sections[1], sections[1] + stringBytes);
+        this.students = slice(map, sections[2], sections[3]).asIntBuffer();
+        this.courses = slice(map, sections[3], sections[4]).asIntBuffer();
+        this.sessions = slice(map, sections[4], sections[5]).asIntBuffer();
+        this.opened = slice(map, sections[5], sections[6]).asIntBuffer();
+        this.bits = slice(map, sections[6], sections[7]).asLongBuffer();
+    }
+    
+    /**
+     * Start of each section and, last, the end of the file
+     */
+    private static long[] sections(int stringCount, int stringBytes, int studentCount, int courseCount,
+                                   int sessionCount, int words) {
+        long[] starts = new long[8];
+        starts[0] = HEADER_SIZE;
+        starts[1] = starts[0] + (stringCount + 1L) * 4;
+        starts[2] = align(starts[1] + stringBytes);
+        starts[3] = align(starts[2] + (long) studentCount * STUDENT_INTS * 4);
+        starts[4] = align(starts[3] + (long) courseCount * COURSE_INTS * 4);
+        starts[5] = align(starts[4] + (long) sessionCount * SESSION_INTS * 4);
+        starts[6] = align(starts[5] + sessionCount * 4L);
+        starts[7] = starts[6] + (long) sessionCount * PLANES * words * 8;
+        return starts;
+    }
+    
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+    
+    private static ByteBuffer slice(MappedByteBuffer map, long start, long end) {
+        return map.slice((int) start, (int) (end - start));
+    }
+    
+    /**
+     * Map a snapshot file. Only the header is read here.
+     */
+    public static MappedSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not an attendance snapshot: " + path);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + path);
+            }
+            return new MappedSnapshot(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Releases the file. The mapping itself stays readable until it is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    // ---- Writing ----
+    
+    /**
+     * Write the current state of any AttendanceService as a snapshot, read through one
+     * visitState call. The file is written under a temporary name and moved into place
+     * once complete. Sessions without marks are not kept, as in the journal's snapshots.
+     */
+    public static void write(AttendanceService service, Path path) throws IOException {
+        SnapshotBuilder builder = new SnapshotBuilder();
+        service.visitState(() -> {}, builder::addStudent, builder);
+        builder.write(path);
+    }
+    
+    /**
+     * Collects a visitState pass: students by arrival ordinal, and each session's marks
+     * packed as (ordinal << 2 | status code). A sharded service may visit a mark before
+     * its student, so ordinals are assigned to whichever arrives first.
+     */
+    private static final class SnapshotBuilder implements RecordVisitor {
+        private final HashMap<String, Integer> ordinals = new HashMap<>();
+        private final ArrayList<Student> roster = new ArrayList<>();
+        private final LinkedHashMap<Integer, int[]> marks = new LinkedHashMap<>(); // In opening order
+        private final HashMap<Integer, Integer> markCounts = new HashMap<>();
+        
+        private int ordinalOf(String studentId) {
+            Integer ordinal = ordinals.get(studentId);
+            if (ordinal == null) {
+                ordinal = roster.size();
+                ordinals.put(studentId, ordinal);
+                roster.add(null);
+            }
+            return ordinal;
+        }
+        
+        void addStudent(Student student) {
+            roster.set(ordinalOf(student.getStudentId()), student);
+        }
+        
+        @Override
+        public void visit(String studentId, LocalDate date, AttendanceStatus status) {
+            int epochDay = AttendanceStore.toEpochDay(date);
+            int[] session = marks.computeIfAbsent(epochDay, day -> new int[64]);
+            int count = markCounts.getOrDefault(epochDay, 0);
+            if (count == session.length) {
+                session = Arrays.copyOf(session, count * 2);
+                marks.put(epochDay, session);
+            }
+            session[count] = ordinalOf(studentId) << 2 | status.getCode();
+            markCounts.put(epochDay, count + 1);
+        }
+        
+        void write(Path path) throws IOException {
+            int studentCount = roster.size();
+            byte[][] ids = new byte[studentCount][];
+            Integer[] byId = new Integer[studentCount];
+            for (int ordinal = 0; ordinal < studentCount; ordinal++) {
+                if (roster.get(ordinal) == null) {
+                    throw new IllegalStateException("Mark of an unknown student visited");
+                }
+                ids[ordinal] = utf8(roster.get(ordinal).getStudentId());
+                byId[ordinal] = ordinal;
+            }
+            Arrays.sort(byId, (a, b) -> Arrays.compareUnsigned(ids[a], ids[b]));
+            int[] positions = new int[studentCount];
+            for (int position = 0; position < studentCount; position++) {
+                positions[byId[position]] = position;
+            }
+            
+            // Course table: a null course first, then names in UTF-8 order
+            TreeMap<byte[], String> names = new TreeMap<>(Arrays::compareUnsigned);
+            boolean nullCourse = false;
+            for (Student student : roster) {
+                if (student.getCourse() == null) {
+                    nullCourse = true;
+                } else {
+                    names.put(utf8(student.getCourse()), student.getCourse());
+                }
+            }
+            ArrayList<String> courseNames = new ArrayList<>();
+            if (nullCourse) {
+                courseNames.add(null);
+            }
+            courseNames.addAll(names.values());
+            HashMap<String, Integer> courseIndexes = new HashMap<>();
+            for (int c = 0; c < courseNames.size(); c++) {
+                courseIndexes.put(courseNames.get(c), c);
+            }
+            
+            // Bitsets and counts, sessions sorted by date
+            int words = (studentCount + 63) >>> 6;
+            Integer[] days = marks.keySet().toArray(new Integer[0]);
+            Integer[] byDate = days.clone();
+            Arrays.sort(byDate);
+            HashMap<Integer, Integer> sessionIndexes = new HashMap<>();
+            for (int s = 0; s < byDate.length; s++) {
+                sessionIndexes.put(byDate[s], s);
+            }
+            long[] bitsets = new long[byDate.length * PLANES * words];
+            int[] studentCounts = new int[studentCount * STATES];
+            int[] sessionCounts = new int[byDate.length * STATES];
+            long totalRecords = 0;
+            for (int s = 0; s < byDate.length; s++) {
+                int[] session = marks.get(byDate[s]);
+                int count = markCounts.get(byDate[s]);
+                int base = s * PLANES * words;
+                for (int i = 0; i < count; i++) {
+                    int position = positions[session[i] >>> 2];
+                    int state = session[i] & 3;
+                    long bit = 1L << position;
+                    int word = position >>> 6;
+                    if ((bitsets[base + word] & bit) == 0) {
+                        totalRecords++;
+                    } else {
+                        // Visited twice: only the last visit stands
+                        int previous = stateAt(bitsets, base, words, position);
+                        studentCounts[position * STATES + previous]--;
+                        sessionCounts[s * STATES + previous]--;
+                        bitsets[base + words + word] &= ~bit;
+                        bitsets[base + 2 * words + word] &= ~bit;
+                    }
+                    bitsets[base + word] |= bit;
+                    if ((state & 1) != 0) {
+                        bitsets[base + words + word] |= bit;
+                    }
+                    if ((state & 2) != 0) {
+                        bitsets[base + 2 * words + word] |= bit;
+                    }
+                    studentCounts[position * STATES + state]++;
+                    sessionCounts[s * STATES + state]++;
+                }
+            }
+            
+            // String table with repeated values (courses, email users) stored once
+            LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+            int[] studentInts = new int[studentCount * STUDENT_INTS];
+            int[] courseInts = new int[courseNames.size() * COURSE_INTS];
+            for (int c = 0; c < courseNames.size(); c++) {
+                courseInts[c * COURSE_INTS] = intern(strings, courseNames.get(c));
+            }
+            for (int position = 0; position < studentCount; position++) {
+                Student student = roster.get(byId[position]);
+                int course = courseIndexes.get(student.getCourse());
+                int base = position * STUDENT_INTS;
+                studentInts[base] = intern(strings, student.getStudentId());
+                studentInts[base + 1] = intern(strings, student.getName());
+                studentInts[base + 2] = intern(strings, student.getEmail());
+                studentInts[base + 3] = course;
+                courseInts[course * COURSE_INTS + 1]++;
+                for (int state = 0; state < STATES; state++) {
+                    studentInts[base + 4 + state] = studentCounts[position * STATES + state];
+                    courseInts[course * COURSE_INTS + 2 + state] += studentCounts[position * STATES + state];
+                }
+            }
+            byte[][] encoded = new byte[strings.size()][];
+            long stringBytes = 0;
+            int index = 0;
+            for (String value : strings.keySet()) {
+                encoded[index] = utf8(value);
+                stringBytes += encoded[index].length;
+                index++;
+            }
+            
+            long[] sections = sections(strings.size(), (int) Math.min(stringBytes, Integer.MAX_VALUE),
+                    studentCount, courseNames.size(), byDate.length, words);
+            if (stringBytes > Integer.MAX_VALUE || sections[7] > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot would exceed 2 GB");
+            }
+            
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+                buffer.putInt(MAGIC).putInt(FORMAT_VERSION)
+                      .putInt(strings.size()).putInt((int) stringBytes)
+                      .putInt(studentCount).putInt(courseNames.size()).putInt(byDate.length).putInt(words)
+                      .putLong(totalRecords).putLong(0);
+                
+                int offset = 0;
+                for (byte[] value : encoded) {
+                    buffer = ensure(out, buffer, 4);
+                    buffer.putInt(offset);
+                    offset += value.length;
+                }
+                buffer = ensure(out, buffer, 4);
+                buffer.putInt(offset);
+                for (byte[] value : encoded) {
+                    buffer = ensure(out, buffer, value.length);
+                    buffer.put(value);
+                }
+                buffer = pad(out, buffer, sections[1] + stringBytes);
+                buffer = putInts(out, buffer, studentInts);
+                buffer = pad(out, buffer, sections[2] + studentInts.length * 4L);
+                buffer = putInts(out, buffer, courseInts);
+                buffer = pad(out, buffer, sections[3] + courseInts.length * 4L);
+                for (int s = 0; s < byDate.length; s++) {
+                    buffer = ensure(out, buffer, SESSION_INTS * 4);
+                    buffer.putInt(byDate[s]);
+                    for (int state = 0; state < STATES; state++) {
+                        buffer.putInt(sessionCounts[s * STATES + state]);
+                    }
+                }
+                buffer = pad(out, buffer, sections[4] + (long) byDate.length * SESSION_INTS * 4);
+                for (int day : days) {
+                    buffer = ensure(out, buffer, 4);
+                    buffer.putInt(sessionIndexes.get(day));
+                }
+                buffer = pad(out, buffer, sections[5] + days.length * 4L);
+                for (long word : bitsets) {
+                    buffer = ensure(out, buffer, 8);
+                    buffer.putLong(word);
+                }
+                drain(out, buffer);
+                out.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        private static int stateAt(long[] bitsets, int base, int words, int position) {
+            int word = position >>> 6;
+            long bit = 1L << position;
+            return ((bitsets[base + words + word] & bit) != 0 ? 1 : 0)
+                    | ((bitsets[base + 2 * words + word] & bit) != 0 ? 2 : 0);
+        }
+        
+        private static int intern(LinkedHashMap<String, Integer> strings, String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.put(value, index);
+            }
+            return index;
+        }
+        
+        private static ByteBuffer putInts(FileChannel out, ByteBuffer buffer, int[] values) throws IOException {
+            for (int value : values) {
+                buffer = ensure(out, buffer, 4);
+                buffer.putInt(value);
+            }
+            return buffer;
+        }
+        
+        /**
+         * Write zeros from the end of a section up to the next 8-byte boundary
+         */
+        private static ByteBuffer pad(FileChannel out, ByteBuffer buffer, long end) throws IOException {
+            int padding = (int) (align(end) - end);
+            buffer = ensure(out, buffer, padding);
+            for (int i = 0; i < padding; i++) {
+                buffer.put((byte) 0);
+            }
+            return buffer;
+        }
+        
+        private static ByteBuffer ensure(FileChannel out, ByteBuffer buffer, int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain(out, buffer);
+                if (buffer.capacity() < bytes) {
+                    return ByteBuffer.allocateDirect(bytes);
+                }
+            }
+            return buffer;
+        }
+        
+        private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+    
+    // ---- Reading the mapping ----
+    
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private String string(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int start = stringOffsets.get(index);
+        byte[] value = new byte[stringOffsets.get(index + 1) - start];
+        stringData.get(start, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Compare a mapped string with UTF-8 bytes, without decoding it
+     */
+    private int compare(int index, byte[] key) {
+        int start = stringOffsets.get(index);
+        int length = stringOffsets.get(index + 1) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(stringData.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+    
+    /**
+     * Binary search of the ID-sorted student table, or -1
+     */
+    private int positionOf(String studentId) {
+        if (studentId == null) {
+            return -1;
+        }
+        byte[] key = utf8(studentId);
+        int low = 0;
+        int high = studentCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(students.get(mid * STUDENT_INTS), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Index of a course in the course table, or -1; null finds the students without a course
+     */
+    private int courseIndexOf(String course) {
+        if (course == null) {
+            return courseCount > 0 && courses.get(0) < 0 ? 0 : -1;
+        }
+        byte[] key = utf8(course);
+        int low = courseCount > 0 && courses.get(0) < 0 ? 1 : 0;
+        int high = courseCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(courses.get(mid * COURSE_INTS), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Index of the first session on or after an epoch day
+     */
+    private int sessionLowerBound(int epochDay) {
+        int low = 0;
+        int high = sessionCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sessionDay(mid) < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Index of the session on an epoch day, or -1
+     */
+    private int sessionIndexOf(LocalDate date) {
+        int epochDay = AttendanceStore.toEpochDay(date);
+        int session = sessionLowerBound(epochDay);
+        return session < sessionCount && sessionDay(session) == epochDay ? session : -1;
+    }
+    
+    /**
+     * Sessions [first, end) between two dates (both inclusive); null means unbounded
+     */
+    private int[] sessionRange(LocalDate from, LocalDate to) {
+        int first = from == null ? 0 : sessionLowerBound(AttendanceStore.toEpochDay(from));
+        int end = to == null ? sessionCount : sessionLowerBound(AttendanceStore.toEpochDay(to) + 1);
+        return new int[] {first, Math.max(first, end)};
+    }
+    
+    private int sessionDay(int session) {
+        return sessions.get(session * SESSION_INTS);
+    }
+    
+    private LocalDate sessionDate(int session) {
+        return LocalDate.ofEpochDay(sessionDay(session));
+    }
+    
+    private long word(int session, int plane, int word) {
+        return bits.get((session * PLANES + plane) * words + word);
+    }
+    
+    /**
+     * A student's state code in a session, or NOT_MARKED
+     */
+    private int stateOf(int session, int position) {
+        int word = position >>> 6;
+        long bit = 1L << position;
+        if ((word(session, 0, word) & bit) == 0) {
+            return AttendanceStore.NOT_MARKED;
+        }
+        return ((word(session, 1, word) & bit) != 0 ? 1 : 0) | ((word(session, 2, word) & bit) != 0 ? 2 : 0);
+    }
+    
+    /**
+     * State codes of the marked students in word w of a session, lowest position first,
+     * passed to the visitor as (position, state)
+     */
+    private void forEachMark(int session, int fromWord, int toWord, MarkVisitor visitor) {
+        for (int w = fromWord; w < toWord; w++) {
+            long marked = word(session, 0, w);
+            if (marked == 0) {
+                continue;
+            }
+            long low = word(session, 1, w);
+            long high = word(session, 2, w);
+            while (marked != 0) {
+                int bit = Long.numberOfTrailingZeros(marked);
+                visitor.visit((w << 6) + bit, (int) (low >>> bit & 1) | (int) (high >>> bit & 1) << 1);
+                marked &= marked - 1;
+            }
+        }
+    }
+    
+    private interface MarkVisitor {
+        void visit(int position, int state);
+    }
+    
+    private String idAt(int position) {
+        return string(students.get(position * STUDENT_INTS));
+    }
+    
+    /**
+     * Every student ID by position, for queries that return many marks
+     */
+    private String[] ids() {
+        String[] ids = new String[studentCount];
+        for (int position = 0; position < studentCount; position++) {
+            ids[position] = idAt(position);
+        }
+        return ids;
+    }
+    
+    private Student studentAt(int position) {
+        int base = position * STUDENT_INTS;
+        return new Student(string(students.get(base)), string(students.get(base + 1)),
+                string(students.get(base + 2)), string(courses.get(students.get(base + 3) * COURSE_INTS)));
+    }
+    
+    private int[] countsAt(IntBuffer table, int base) {
+        int[] counts = new int[STATES];
+        for (int state = 0; state < STATES; state++) {
+            counts[state] = table.get(base + state);
+        }
+        return counts;
+    }
+    
+    private int[] studentCounters(String studentId) {
+        int position = positionOf(studentId);
+        return position < 0 ? new int[STATES] : countsAt(students, position * STUDENT_INTS + 4);
+    }
+    
+    private int[] dateCounters(LocalDate date) {
+        int session = sessionIndexOf(date);
+        return session < 0 ? new int[STATES] : countsAt(sessions, session * SESSION_INTS + 1);
+    }
+    
+    /**
+     * A course's number of marks in each state on a date, or over its lifetime if date is null
+     */
+    private int[] courseCounters(String course, LocalDate date) {
+        int index = courseIndexOf(course);
+        if (index < 0) {
+            return new int[STATES];
+        }
+        if (date == null) {
+            return countsAt(courses, index * COURSE_INTS + 2);
+        }
+        int[] counts = new int[STATES];
+        int session = sessionIndexOf(date);
+        if (session >= 0) {
+            forEachMark(session, 0, words, (position, state) -> {
+                if (students.get(position * STUDENT_INTS + 3) == index) {
+                    counts[state]++;
+                }
+            });
+        }
+        return counts;
+    }
+    
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Snapshots are read-only");
+    }
+    
+    // ---- Students ----
+    
+    /**
+     * Always true: the snapshot never changes, so every method is thread-safe
+     */
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+    
+    @Override
+    public boolean addStudent(Student student) {
+        throw readOnly();
+    }
+    
+    @Override
+    public int addStudents(Collection<Student> batch) {
+        throw readOnly();
+    }
+    
+    @Override
+    public boolean removeStudent(String studentId) {
+        throw readOnly();
+    }
+    
+    @Override
+    public int removeStudents(Collection<String> studentIds) {
+        throw readOnly();
+    }
+    
+    @Override
+    public boolean changeCourse(String studentId, String course) {
+        throw readOnly();
+    }
+    
+    @Override
+    public Student getStudent(String studentId) {
+        int position = positionOf(studentId);
+        return position < 0 ? null : studentAt(position);
+    }
+    
+    /**
+     * Every student, sorted by ID. Decodes the whole roster.
+     */
+    @Override
+    public Collection<Student> getAllStudents() {
+        ArrayList<Student> roster = new ArrayList<>(studentCount);
+        for (int position = 0; position < studentCount; position++) {
+            roster.add(studentAt(position));
+        }
+        return roster;
+    }
+    
+    @Override
+    public List<String> getStudentIds() {
+        return new ArrayList<>(Arrays.asList(ids()));
+    }
+    
+    /**
+     * Search-as-you-type lookup, as AttendanceManager.searchStudents. The index is
+     * built from the whole roster on the first search.
+     */
+    @Override
+    public SearchResult searchStudents(String query, int limit) {
+        StudentSearchIndex index = searchIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = searchIndex;
+                if (index == null) {
+                    index = new StudentSearchIndex();
+                    for (int position = 0; position < studentCount; position++) {
+                        index.add(studentAt(position));
+                    }
+                    searchIndex = index;
+                }
+            }
+        }
+        return index.search(query, limit, this::getStudent);
+    }
+    
+    @Override
+    public int getTotalStudents() {
+        return studentCount;
+    }
+    
+    @Override
+    public boolean studentExists(String studentId) {
+        return positionOf(studentId) >= 0;
+    }
+    
+    // ---- Marking ----
+    
+    @Override
+    public boolean markAttendance(String studentId, LocalDate date, boolean present) {
+        throw readOnly();
+    }
+    
+    @Override
+    public boolean markAttendance(String studentId, LocalDate date, AttendanceStatus status) {
+        throw readOnly();
+    }
+    
+    @Override
+    public BulkMarkResult markSessionAttendance(LocalDate date, Map<String, Boolean> marks) {
+        throw readOnly();
+    }
+    
+    @Override
+    public BulkMarkResult markSessionStatus(LocalDate date, Map<String, AttendanceStatus> statuses) {
+        throw readOnly();
+    }
+    
+    @Override
+    public BulkMarkResult markSessionStatus(LocalDate date, String[] studentIds, AttendanceStatus[] statuses,
+                                            int count) {
+        throw readOnly();
+    }
+    
+    @Override
+    public boolean removeAttendance(String studentId, LocalDate date) {
+        throw readOnly();
+    }
+    
+    // ---- Attendance records ----
+    
+    /**
+     * The mark of a student on a date, or null if not marked; reads three bits from the mapping
+     */
+    @Override
+    public AttendanceRecord getAttendanceRecord(String studentId, LocalDate date) {
+        AttendanceStatus status = getAttendanceStatus(studentId, date);
+        return status.isMarked() ? new AttendanceRecord(studentId, date, status) : null;
+    }
+    
+    @Override
+    public AttendanceStatus getAttendanceStatus(String studentId, LocalDate date) {
+        int position = positionOf(studentId);
+        int session = sessionIndexOf(date);
+        if (position < 0 || session < 0) {
+            return AttendanceStatus.UNMARKED;
+        }
+        return AttendanceStatus.fromCode(stateOf(session, position));
+    }
+    
+    /**
+     * Every student, sorted by ID, joined with their status on a date
+     */
+    @Override
+    public SessionRoster getSessionRoster(LocalDate date) {
+        int session = sessionIndexOf(date);
+        byte[] states = new byte[studentCount];
+        Arrays.fill(states, (byte) AttendanceStore.NOT_MARKED);
+        if (session >= 0) {
+            forEachMark(session, 0, words, (position, state) -> states[position] = (byte) state);
+        }
+        return new SessionRoster(date, ids(), states, studentCount);
+    }
+    
+    @Override
+    public ArrayList<AttendanceRecord> getStudentAttendance(String studentId) {
+        return getStudentAttendance(studentId, null, null);
+    }
+    
+    @Override
+    public ArrayList<AttendanceRecord> getStudentAttendance(String studentId, LocalDate from, LocalDate to) {
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        int position = positionOf(studentId);
+        if (position < 0) {
+            return records;
+        }
+        String id = idAt(position);
+        int[] range = sessionRange(from, to);
+        for (int s = range[0]; s < range[1]; s++) {
+            int state = stateOf(s, position);
+            if (state != AttendanceStore.NOT_MARKED) {
+                records.add(new AttendanceRecord(id, sessionDate(s), AttendanceStatus.fromCode(state)));
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * The marks of one date, ordered by student ID
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getAttendanceByDate(LocalDate date) {
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        int session = sessionIndexOf(date);
+        if (session >= 0) {
+            forEachMark(session, 0, words, (position, state) ->
+                    records.add(new AttendanceRecord(idAt(position), date, AttendanceStatus.fromCode(state))));
+        }
+        return records;
+    }
+    
+    /**
+     * The marks between two dates (both inclusive), sorted by date, then by student ID
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getAttendanceBetween(LocalDate from, LocalDate to) {
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        int[] range = sessionRange(from, to);
+        if (range[0] < range[1]) {
+            visitMarks(range[0], range[1], ids(), (studentId, date, status) ->
+                    records.add(new AttendanceRecord(studentId, date, status)));
+        }
+        return records;
+    }
+    
+    @Override
+    public ArrayList<AttendanceRecord> getAllAttendanceRecords() {
+        ArrayList<AttendanceRecord> records = new ArrayList<>((int) Math.min(totalRecords, Integer.MAX_VALUE));
+        forEachRecord((studentId, date, status) -> records.add(new AttendanceRecord(studentId, date, status)));
+        return records;
+    }
+    
+    /**
+     * Stream every mark, sorted by date, then by student ID. Every ID is decoded once.
+     */
+    @Override
+    public void forEachRecord(RecordVisitor visitor) {
+        visitMarks(0, sessionCount, ids(), visitor);
+    }
+    
+    private void visitMarks(int first, int end, String[] ids, RecordVisitor visitor) {
+        for (int s = first; s < end; s++) {
+            LocalDate date = sessionDate(s);
+            forEachMark(s, 0, words, (position, state) ->
+                    visitor.visit(ids[position], date, AttendanceStatus.fromCode(state)));
+        }
+    }
+    
+    @Override
+    public long getTotalRecords() {
+        return totalRecords;
+    }
+    
+    // ---- Sessions ----
+    
+    @Override
+    public Queue<LocalDate> getAttendanceSessions() {
+        ArrayDeque<LocalDate> dates = new ArrayDeque<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            dates.offer(sessionDate(opened.get(i)));
+        }
+        return dates;
+    }
+    
+    @Override
+    public int getSessionCount() {
+        return sessionCount;
+    }
+    
+    @Override
+    public boolean hasSession(LocalDate date) {
+        return sessionIndexOf(date) >= 0;
+    }
+    
+    @Override
+    public ArrayList<LocalDate> getSessionsBetween(LocalDate from, LocalDate to) {
+        int[] range = sessionRange(from, to);
+        ArrayList<LocalDate> dates = new ArrayList<>(range[1] - range[0]);
+        for (int s = range[0]; s < range[1]; s++) {
+            dates.add(sessionDate(s));
+        }
+        return dates;
+    }
+    
+    // ---- Statistics ----
+    
+    @Override
+    public AttendanceAggregate aggregate() {
+        return aggregate(null, null, ForkJoinPool.commonPool(), () -> false);
+    }
+    
+    @Override
+    public AttendanceAggregate aggregate(LocalDate from, LocalDate to) {
+        return aggregate(from, to, ForkJoinPool.commonPool(), () -> false);
+    }
+    
+    /**
+     * Aggregate attendance on a fork/join pool, one block of students per leaf. Over
+     * every session the student counts are copied from the student table; over a date
+     * range each leaf scans its block's words of the sessions in the range. Per-date
+     * counts always come from the session table.
+     */
+    @Override
+    public AttendanceAggregate aggregate(LocalDate from, LocalDate to, ForkJoinPool pool, BooleanSupplier cancelled) {
+        int[] range = sessionRange(from, to);
+        boolean everySession = range[0] == 0 && range[1] == sessionCount;
+        CountingPolicy policy = countingPolicy;
+        AttendanceAggregate aggregate = pool.invoke(new AggregateTask(0, Math.max(1, studentCount),
+                range, everySession, policy, cancelled));
+        if (aggregate != null) {
+            for (int s = range[0]; s < range[1]; s++) {
+                aggregate.addSession(sessionDate(s), countsAt(sessions, s * SESSION_INTS + 1), 0);
+            }
+        }
+        return aggregate;
+    }
+    
+    /**
+     * Aggregates students [lo, hi) by halving until one block is left
+     */
+    private final class AggregateTask extends RecursiveTask<AttendanceAggregate> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int lo;
+        private final int hi;
+        private final int[] range;
+        private final boolean everySession;
+        private final CountingPolicy policy;
+        private final BooleanSupplier cancelled;
+        
+        AggregateTask(int lo, int hi, int[] range, boolean everySession, CountingPolicy policy,
+                      BooleanSupplier cancelled) {
+            this.lo = lo;
+            this.hi = hi;
+            this.range = range;
+            this.everySession = everySession;
+            this.policy = policy;
+            this.cancelled = cancelled;
+        }
+        
+        @Override
+        protected AttendanceAggregate compute() {
+            if (hi - lo <= AGGREGATE_BLOCK) {
+                return cancelled.getAsBoolean() ? null : aggregateBlock();
+            }
+            int middle = lo + ((hi - lo) / AGGREGATE_BLOCK / 2) * AGGREGATE_BLOCK;
+            AggregateTask left = new AggregateTask(lo, middle, range, everySession, policy, cancelled);
+            left.fork();
+            AttendanceAggregate right = new AggregateTask(middle, hi, range, everySession, policy, cancelled)
+                    .compute();
+            AttendanceAggregate merged = left.join();
+            if (merged == null || right == null) {
+                return null;
+            }
+            return merged.merge(right);
+        }
+        
+        private AttendanceAggregate aggregateBlock() {
+            int end = Math.min(hi, studentCount);
+            AttendanceAggregate partial = new AttendanceAggregate(policy, Math.max(0, end - lo));
+            int[] counts = new int[Math.max(0, end - lo) * STATES];
+            if (everySession) {
+                for (int position = lo; position < end; position++) {
+                    for (int state = 0; state < STATES; state++) {
+                        counts[(position - lo) * STATES + state] = students.get(position * STUDENT_INTS + 4 + state);
+                    }
+                }
+            } else {
+                for (int s = range[0]; s < range[1]; s++) {
+                    forEachMark(s, lo >>> 6, (end + 63) >>> 6,
+                            (position, state) -> counts[(position - lo) * STATES + state]++);
+                }
+            }
+            for (int position = lo; position < end; position++) {
+                partial.addStudent(idAt(position), string(courses.get(students.get(position * STUDENT_INTS + 3)
+                        * COURSE_INTS)), counts, (position - lo) * STATES);
+            }
+            return partial;
+        }
+    }
+    
+    @Override
+    public double calculateAttendancePercentage(String studentId) {
+        return calculateAttendancePercentage(studentId, countingPolicy);
+    }
+    
+    @Override
+    public double calculateAttendancePercentage(String studentId, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(studentCounters(studentId), policy);
+    }
+    
+    @Override
+    public Map<String, Integer> getStudentStatistics(String studentId) {
+        return getStudentStatistics(studentId, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getStudentStatistics(String studentId, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(studentCounters(studentId), policy);
+    }
+    
+    @Override
+    public double calculateDateAttendancePercentage(LocalDate date) {
+        return calculateDateAttendancePercentage(date, countingPolicy);
+    }
+    
+    @Override
+    public double calculateDateAttendancePercentage(LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(dateCounters(date), policy);
+    }
+    
+    @Override
+    public Map<String, Integer> getDateStatistics(LocalDate date) {
+        return getDateStatistics(date, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getDateStatistics(LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(dateCounters(date), policy);
+    }
+    
+    // ---- Courses ----
+    
+    /**
+     * Courses with at least one student, sorted; students without a course are in none
+     */
+    @Override
+    public SortedSet<String> getCourses() {
+        TreeSet<String> names = new TreeSet<>();
+        for (int c = 0; c < courseCount; c++) {
+            String name = string(courses.get(c * COURSE_INTS));
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+    
+    @Override
+    public int getCourseSize(String course) {
+        int index = courseIndexOf(course);
+        return index < 0 ? 0 : courses.get(index * COURSE_INTS + 1);
+    }
+    
+    /**
+     * The students of one course, sorted by ID, joined with their status on a date
+     */
+    @Override
+    public SessionRoster getCourseRoster(String course, LocalDate date) {
+        int index = courseIndexOf(course);
+        int size = index < 0 ? 0 : courses.get(index * COURSE_INTS + 1);
+        String[] ids = new String[size];
+        byte[] states = new byte[size];
+        int session = sessionIndexOf(date);
+        int row = 0;
+        for (int position = 0; row < size; position++) {
+            if (students.get(position * STUDENT_INTS + 3) == index) {
+                ids[row] = idAt(position);
+                states[row] = (byte) (session < 0 ? AttendanceStore.NOT_MARKED : stateOf(session, position));
+                row++;
+            }
+        }
+        return new SessionRoster(date, ids, states, size);
+    }
+    
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course) {
+        return getCourseStatistics(course, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(courseCounters(course, null), policy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course) {
+        return calculateCourseAttendancePercentage(course, countingPolicy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(courseCounters(course, null), policy);
+    }
+    
+    /**
+     * Statistics of a course on one date: the date's marks are scanned for the course's students
+     */
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, LocalDate date) {
+        return getCourseStatistics(course, date, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(courseCounters(course, date), policy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, LocalDate date) {
+        return calculateCourseAttendancePercentage(course, date, countingPolicy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(courseCounters(course, date), policy);
+    }
+    
+    // ---- Counting policy and at-risk students ----
+    
+    /**
+     * Policy used by the percentage and statistics methods that don't take one. If the
+     * at-risk ranking has been built every student is re-ranked, and threshold listeners
+     * hear about any student the change moves across.
+     */
+    @Override
+    public void setCountingPolicy(CountingPolicy countingPolicy) {
+        List<Runnable> crossings = null;
+        synchronized (this) {
+            this.countingPolicy = Objects.requireNonNull(countingPolicy);
+            if (atRisk != null) {
+                crossings = rank(atRisk, countingPolicy);
+            }
+        }
+        AtRiskIndex.fire(crossings);
+        changeFeed.reset(); // Every derived percentage changed
+    }
+    
+    @Override
+    public CountingPolicy getCountingPolicy() {
+        return countingPolicy;
+    }
+    
+    /**
+     * The at-risk ranking, built from the student table on first use
+     */
+    private AtRiskIndex atRisk() {
+        AtRiskIndex index = atRisk;
+        if (index == null) {
+            synchronized (this) {
+                index = atRisk;
+                if (index == null) {
+                    index = new AtRiskIndex(true);
+                    rank(index, countingPolicy);
+                    atRisk = index;
+                }
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * (Re-)rank every student under a policy; call holding this
+     */
+    private List<Runnable> rank(AtRiskIndex index, CountingPolicy policy) {
+        List<Runnable> crossings = null;
+        for (int position = 0; position < studentCount; position++) {
+            int base = position * STUDENT_INTS + 4;
+            int present = students.get(base + AttendanceStore.PRESENT);
+            int absent = students.get(base + AttendanceStore.ABSENT);
+            int late = students.get(base + AttendanceStore.LATE);
+            int excused = students.get(base + AttendanceStore.EXCUSED);
+            crossings = index.update(idAt(position), policy.attended(present, absent, late, excused),
+                    policy.counted(present, absent, late, excused), crossings);
+        }
+        return crossings;
+    }
+    
+    @Override
+    public List<StudentStanding> getStudentsBelow(double percentage) {
+        return atRisk().below(percentage);
+    }
+    
+    @Override
+    public List<StudentStanding> getLowestStudents(int k) {
+        return atRisk().lowest(k);
+    }
+    
+    @Override
+    public StudentStanding getStanding(String studentId) {
+        return atRisk().get(studentId);
+    }
+    
+    /**
+     * Marks never change, so the listener only hears of students a counting policy change moves across
+     */
+    @Override
+    public void addThresholdListener(double percentage, ThresholdListener listener) {
+        atRisk().addListener(percentage, Objects.requireNonNull(listener));
+    }
+    
+    @Override
+    public boolean removeThresholdListener(ThresholdListener listener) {
+        return atRisk().removeListener(listener);
+    }
+    
+    // ---- Change notification and durability ----
+    
+    /**
+     * The listener's first burst is a RESET, as for the managers; later bursts are
+     * RESETs after a counting policy change
+     */
+    @Override
+    public void addMutationListener(MutationListener listener) {
+        changeFeed.addListener(Objects.requireNonNull(listener));
+    }
+    
+    @Override
+    public boolean removeMutationListener(MutationListener listener) {
+        return changeFeed.removeListener(listener);
+    }
+    
+    /**
+     * Accepted for symmetry with the managers; a snapshot applies no change to log
+     */
+    @Override
+    public void setMutationLog(MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+    }
+    
+    @Override
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+    
+    /**
+     * Read every student, sorted by ID, then every mark, sorted by date; the snapshot
+     * never changes, so nothing needs locking
+     */
+    @Override
+    public void visitState(Runnable locked, Consumer<Student> students, RecordVisitor records) {
+        locked.run();
+        String[] ids = new String[studentCount];
+        for (int position = 0; position < studentCount; position++) {
+            Student student = studentAt(position);
+            ids[position] = student.getStudentId();
+            students.accept(student);
+        }
+        visitMarks(0, sessionCount, ids, records);
+    }
+    
+    /**
+     * Recount the student, course and session tables and the record total from the
+     * bitsets and compare them with the stored ones, and check the student and course
+     * tables are sorted. Intended for tests.
+     *
+     * @throws IllegalStateException if anything is out of sync
+     */
+    @Override
+    public void verifyCounters() {
+        int[] studentCounts = new int[studentCount * STATES];
+        int[] courseCounts = new int[courseCount * STATES];
+        int[] courseSizes = new int[courseCount];
+        long records = 0;
+        for (int s = 0; s < sessionCount; s++) {
+            int[] sessionCounts = new int[STATES];
+            forEachMark(s, 0, words, (position, state) -> {
+                studentCounts[position * STATES + state]++;
+                courseCounts[students.get(position * STUDENT_INTS + 3) * STATES + state]++;
+                sessionCounts[state]++;
+            });
+            for (int state = 0; state < STATES; state++) {
+                records += sessionCounts[state];
+                check(sessionCounts[state], sessions.get(s * SESSION_INTS + 1 + state), "session " + sessionDate(s));
+            }
+            if (s > 0 && sessionDay(s - 1) >= sessionDay(s)) {
+                throw new IllegalStateException("Sessions out of order at " + sessionDate(s));
+            }
+        }
+        check(records, totalRecords, "total records");
+        byte[] previous = null;
+        for (int position = 0; position < studentCount; position++) {
+            courseSizes[students.get(position * STUDENT_INTS + 3)]++;
+            for (int state = 0; state < STATES; state++) {
+                check(studentCounts[position * STATES + state], students.get(position * STUDENT_INTS + 4 + state),
+                        "student " + idAt(position));
+            }
+            byte[] id = utf8(idAt(position));
+            if (previous != null && Arrays.compareUnsigned(previous, id) >= 0) {
+                throw new IllegalStateException("Students out of order at " + idAt(position));
+            }
+            previous = id;
+        }
+        for (int c = 0; c < courseCount; c++) {
+            String course = string(courses.get(c * COURSE_INTS));
+            check(courseSizes[c], courses.get(c * COURSE_INTS + 1), "size of course " + course);
+            for (int state = 0; state < STATES; state++) {
+                check(courseCounts[c * STATES + state], courses.get(c * COURSE_INTS + 2 + state), "course " + course);
+            }
+            if (courseIndexOf(course) != c) {
+                throw new IllegalStateException("Course " + course + " out of order");
+            }
+        }
+    }
+    
+    private static void check(long actual, long stored, String what) {
+        if (actual != stored) {
+            throw new IllegalStateException("Counters out of sync for " + what + ": " + stored + " stored, "
+                    + actual + " marked");
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "MappedSnapshot{" +
+                "Students=" + studentCount +
+                ", Courses=" + courseCount +
+                ", Sessions=" + sessionCount +
+                ", Records=" + totalRecords +
+                '}';
+    }
+}
@@ -0,0 +1,127 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.time.LocalDate;
+
+/**
+ * A change applied to an AttendanceManager, as delivered to a MutationListener
+ */
+public final class MutationEvent {
+    
+    /**
+     * What kind of change happened; the getters that apply to each type are listed
+     */
+    public enum Type {
+        STUDENT_ADDED,    // getStudentId, getStudent
+        STUDENT_REMOVED,  // getStudentId; its marks were removed by MARK_CHANGED events just before
+        COURSE_CHANGED,   // getStudentId, getCourse
+        MARK_CHANGED,     // getStudentId, getDate, getOldStatus, getNewStatus (UNMARKED for no mark)
+        SESSION_OPENED,   // getDate; the first mark of a new session date
+        RESET             // State changed in ways no event describes: re-read whatever is derived from it
+    }
+    
+    private static final MutationEvent RESET = new MutationEvent(Type.RESET, null, null, null, null, null, null);
+    
+    private final Type type;
+    private final String studentId;
+    private final Student student;
+    private final String course;
+    private final LocalDate date;
+    private final AttendanceStatus oldStatus;
+    private final AttendanceStatus newStatus;
+    
+    private MutationEvent(Type type, String studentId, Student student, String course, LocalDate date,
+                          AttendanceStatus oldStatus, AttendanceStatus newStatus) {
+        this.type = type;
+        this.studentId = studentId;
+        this.student = student;
+        this.course = course;
+        this.date = date;
+        this.oldStatus = oldStatus;
+        this.newStatus = newStatus;
+    }
+    
+    static MutationEvent studentAdded(Student student) {
+        return new MutationEvent(Type.STUDENT_ADDED, student.getStudentId(), student, null, null, null, null);
+    }
+    
+    static MutationEvent studentRemoved(String studentId) {
+        return new MutationEvent(Type.STUDENT_REMOVED, studentId, null, null, null, null, null);
+    }
+    
+    static MutationEvent courseChanged(String studentId, String course) {
+        return new MutationEvent(Type.COURSE_CHANGED, studentId, null, course, null, null, null);
+    }
+    
+    static MutationEvent markChanged(String studentId, LocalDate date, AttendanceStatus oldStatus,
+                                     AttendanceStatus newStatus) {
+        return new MutationEvent(Type.MARK_CHANGED, studentId, null, null, date, oldStatus, newStatus);
+    }
+    
+    static MutationEvent sessionOpened(LocalDate date) {
+        return new MutationEvent(Type.SESSION_OPENED, null, null, null, date, null, null);
+    }
+    
+    static MutationEvent reset() {
+        return RESET;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getStudentId() {
+        return studentId;
+    }
+    
+    /**
+     * The added student (STUDENT_ADDED only)
+     */
+    public Student getStudent() {
+        return student;
+    }
+    
+    /**
+     * The student's new course (COURSE_CHANGED only)
+     */
+    public String getCourse() {
+        return course;
+    }
+    
+    public LocalDate getDate() {
+        return date;
+    }
+    
+    /**
+     * Status before the change; UNMARKED if the student had no mark on the date
+     */
+    public AttendanceStatus getOldStatus() {
+        return oldStatus;
+    }
+    
+    /**
+     * Status after the change; UNMARKED if the mark was removed
+     */
+    public AttendanceStatus getNewStatus() {
+        return newStatus;
+    }
+    
+    @Override
+    public String toString() {
+        switch (type) {
+            case STUDENT_ADDED:
+            case STUDENT_REMOVED:
+                return type + "{" + studentId + "}";
+            case COURSE_CHANGED:
+                return type + "{" + studentId + " -> " + course + "}";
+            case MARK_CHANGED:
+                return type + "{" + studentId + " " + date + " " + oldStatus + " -> " + newStatus + "}";
+            case SESSION_OPENED:
+                return type + "{" + date + "}";
+            default:
+                return type.toString();
+        }
+    }
+}
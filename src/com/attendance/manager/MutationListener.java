@@ -0,0 +1,27 @@
+package com.attendance.manager;
+
+import java.util.List;
+
+/**
+ * Receives the changes applied to an AttendanceManager, so that dashboards and
+ * caches can follow the state in O(changes) instead of polling and rescanning it.
+ *
+ * Changes are delivered in bursts on the manager's change-feed thread, never on
+ * the thread that made them, so listeners of a concurrent manager may query it
+ * (Swing listeners must hop to the event thread). Within a burst, repeated changes
+ * to one student's mark on one date are coalesced into a single MARK_CHANGED from
+ * the first old status to the last new one, and changes that cancel out are dropped.
+ * Changes to one student arrive in the order they were applied.
+ *
+ * A listener's first burst is a single RESET, as is any burst too large to queue
+ * (a bulk import, say): the listener should then re-read what it derives from the manager.
+ * Changes made while it re-reads may also arrive in the next burst, so applying
+ * an event should set state (as old/new statuses allow) rather than count it twice.
+ */
+public interface MutationListener {
+    
+    /**
+     * A burst of changes, in the order they were applied. The list must not be modified.
+     */
+    void mutationsApplied(List<MutationEvent> events);
+}
@@ -0,0 +1,48 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.time.LocalDate;
+
+/**
+ * Receives every state change applied to an AttendanceManager, after it has been applied.
+ * Used to make the in-memory state durable (see AttendanceJournal).
+ */
+public interface MutationLog {
+    
+    void studentAdded(Student student);
+    
+    void studentRemoved(String studentId);
+    
+    /**
+     * A bulk removal; only the first {@code count} entries of the array are valid
+     */
+    void studentsRemoved(String[] studentIds, int count);
+    
+    /**
+     * A student was moved to another course with AttendanceManager.changeCourse
+     */
+    void studentCourseChanged(String studentId, String course);
+    
+    /**
+     * A student's mark was set; status is never UNMARKED (removals use attendanceRemoved)
+     */
+    void attendanceMarked(String studentId, LocalDate date, AttendanceStatus status);
+    
+    void attendanceRemoved(String studentId, LocalDate date);
+    
+    /**
+     * A bulk save; only the first {@code count} entries of the arrays are valid.
+     * An UNMARKED status means the student's mark for the date was removed.
+     */
+    void sessionMarked(LocalDate date, String[] studentIds, AttendanceStatus[] statuses, int count);
+    
+    /**
+     * The changes reported since the last call are complete and the manager's locks are
+     * released. Called on the thread that made them; unlike the callbacks above, this one
+     * may call back into the manager.
+     */
+    default void changeCompleted() {
+    }
+}
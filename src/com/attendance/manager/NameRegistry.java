@@ -0,0 +1,81 @@
+package com.attendance.manager;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns names, such as courses or email domains, to dense int IDs shared by every stripe.
+ * IDs are never reused: a course that loses all of its students keeps its ID.
+ */
+final class NameRegistry {
+    
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private volatile int nullId = -1; // ID of null, once interned; the map can't hold it
+    private int count; // Guarded by this
+    
+    /**
+     * ID of a name, assigning the next one if it is new. Null gets an ID of its own, so
+     * a student without a course reads back as null rather than as a course named "".
+     */
+    int intern(String name) {
+        if (name == null) {
+            int id = nullId;
+            if (id >= 0) {
+                return id;
+            }
+            synchronized (this) {
+                if (nullId < 0) {
+                    nullId = assign(null); // Publishes the slot to anyone who reads nullId
+                }
+                return nullId;
+            }
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            int assigned = assign(name);
+            ids.put(name, assigned); // Publishes the name to anyone who looks the ID up
+            return assigned;
+        }
+    }
+    
+    /**
+     * Store a name in the next free slot; call while holding this
+     */
+    private int assign(String name) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+        }
+        names[count] = name;
+        return count++;
+    }
+    
+    /**
+     * ID of a name, or -1 if it was never interned (no student was ever in the course)
+     */
+    int idOf(String name) {
+        if (name == null) {
+            return nullId;
+        }
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+    
+    String name(int id) {
+        return names[id];
+    }
+    
+    /**
+     * Every ID in use is below this limit
+     */
+    int size() {
+        return ids.size() + (nullId >= 0 ? 1 : 0);
+    }
+}
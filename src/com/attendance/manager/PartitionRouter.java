@@ -0,0 +1,87 @@
+package com.attendance.manager;
+
+import java.util.Arrays;
+
+/**
+ * Consistent-hash ring mapping partition keys (student IDs or course names) to shards.
+ *
+ * Every shard owns POINTS_PER_SHARD points on a ring of 32-bit hashes, and a key
+ * belongs to the shard owning the first point at or after the key's hash. A shard's
+ * points depend only on its number, so a router with one more shard keeps every
+ * existing point: the only keys that change owner are those the new shard's points
+ * capture, about 1/(n+1) of them, and they all move to the new shard.
+ *
+ * Immutable; the sharded manager swaps in a new router when a shard is added.
+ */
+final class PartitionRouter {
+    
+    private static final int POINTS_PER_SHARD = 64; // Enough to keep shards within a few percent of each other
+    
+    private final int shardCount;
+    private final int[] points; // Ring positions, sorted
+    private final int[] owners; // Shard owning each point
+    
+    PartitionRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required: " + shardCount);
+        }
+        this.shardCount = shardCount;
+        // Sort (point, shard) pairs packed into longs so ties are broken the same way every time
+        long[] ring = new long[shardCount * POINTS_PER_SHARD];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int replica = 0; replica < POINTS_PER_SHARD; replica++) {
+                int point = mix(shard * POINTS_PER_SHARD + replica + 1);
+                ring[shard * POINTS_PER_SHARD + replica] = (long) point << 32 | shard;
+            }
+        }
+        Arrays.sort(ring);
+        this.points = new int[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = (int) (ring[i] >> 32);
+            owners[i] = (int) ring[i];
+        }
+    }
+    
+    int getShardCount() {
+        return shardCount;
+    }
+    
+    /**
+     * The router for one more shard
+     */
+    PartitionRouter withShard() {
+        return new PartitionRouter(shardCount + 1);
+    }
+    
+    /**
+     * Shard owning a key; null is routed like ""
+     */
+    int shardOf(String key) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        int hash = mix(key == null ? 0 : key.hashCode());
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -(index + 1);
+            if (index == points.length) {
+                index = 0; // Past the last point: wrap around the ring
+            }
+        }
+        return owners[index];
+    }
+    
+    /**
+     * Murmur3's finalizer: IDs like "S00001" differ only in their last characters,
+     * so their String hashes are spread over the whole ring first
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,17 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Callback for streaming over stored attendance marks without materializing records
+ */
+@FunctionalInterface
+public interface RecordVisitor {
+    
+    /**
+     * @param status the stored status; never UNMARKED
+     */
+    void visit(String studentId, LocalDate date, AttendanceStatus status);
+}
@@ -0,0 +1,83 @@
+package com.attendance.manager;
+
+import com.attendance.model.Student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Best matches of a student search, and how many students matched in all
+ */
+public class SearchResult {
+    
+    private final String query;
+    private final String[] studentIds;
+    private final int[] scores; // Per returned student, as ranked by the index
+    private final int matchCount;
+    private final Function<String, Student> directory;
+    
+    SearchResult(String query, String[] studentIds, int[] scores, int matchCount,
+                 Function<String, Student> directory) {
+        this.query = query;
+        this.studentIds = studentIds;
+        this.scores = scores;
+        this.matchCount = matchCount;
+        this.directory = directory;
+    }
+    
+    public String getQuery() {
+        return query;
+    }
+    
+    /**
+     * IDs of the matching students, best first, up to the limit the search was given
+     */
+    public List<String> getStudentIds() {
+        return Collections.unmodifiableList(Arrays.asList(studentIds));
+    }
+    
+    /**
+     * Matching students, best first, up to the limit the search was given.
+     * They are looked up on each call, so students removed since the search are left out.
+     */
+    public List<Student> getStudents() {
+        ArrayList<Student> students = new ArrayList<>(studentIds.length);
+        for (String studentId : studentIds) {
+            Student student = directory.apply(studentId);
+            if (student != null) {
+                students.add(student);
+            }
+        }
+        return Collections.unmodifiableList(students);
+    }
+    
+    /**
+     * Score of the student at a rank, higher first; used to merge results of several indexes
+     */
+    int getScore(int rank) {
+        return scores[rank];
+    }
+    
+    /**
+     * Number of students that matched, including any beyond the limit
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+    
+    public boolean isTruncated() {
+        return matchCount > studentIds.length;
+    }
+    
+    @Override
+    public String toString() {
+        return "SearchResult{" +
+                "Query='" + query + '\'' +
+                ", Matches=" + matchCount +
+                ", Returned=" + studentIds.length +
+                '}';
+    }
+}
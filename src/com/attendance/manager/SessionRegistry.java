@@ -0,0 +1,68 @@
+package com.attendance.manager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of attendance sessions (dates): FIFO order, hashed membership,
+ * a size read without copying, and sorted iteration for range queries.
+ * Safe for concurrent use.
+ */
+final class SessionRegistry {
+    
+    private final Set<Integer> days = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Integer> fifo = new ConcurrentLinkedQueue<>();
+    private final ConcurrentSkipListSet<Integer> sorted = new ConcurrentSkipListSet<>();
+    private final AtomicInteger count = new AtomicInteger();
+    
+    /**
+     * Register a session date
+     *
+     * @return true if the date was not registered before
+     */
+    boolean register(int epochDay) {
+        if (!days.add(epochDay)) {
+            return false;
+        }
+        fifo.offer(epochDay);
+        sorted.add(epochDay);
+        count.incrementAndGet();
+        return true;
+    }
+    
+    boolean contains(int epochDay) {
+        return days.contains(epochDay);
+    }
+    
+    int size() {
+        return count.get();
+    }
+    
+    /**
+     * Session dates in the order they were registered
+     */
+    ArrayDeque<LocalDate> inOrder() {
+        ArrayDeque<LocalDate> dates = new ArrayDeque<>();
+        for (int epochDay : fifo) {
+            dates.offer(LocalDate.ofEpochDay(epochDay));
+        }
+        return dates;
+    }
+    
+    /**
+     * Session dates between two epoch days (inclusive), sorted by date
+     */
+    ArrayList<LocalDate> between(int fromDay, int toDay) {
+        ArrayList<LocalDate> dates = new ArrayList<>();
+        if (fromDay <= toDay) {
+            for (int epochDay : sorted.subSet(fromDay, true, toDay, true)) {
+                dates.add(LocalDate.ofEpochDay(epochDay));
+            }
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,95 @@
+package com.attendance.manager;
+
+import com.attendance.model.AttendanceStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Snapshot of every student and their status on one date, as returned by
+ * AttendanceManager.getSessionRoster. Rows are kept as parallel arrays, with
+ * no record object per student.
+ */
+public class SessionRoster {
+    
+    private final LocalDate date;
+    private final String[] studentIds;
+    private final byte[] states; // Status code per row
+    private final int size;
+    
+    SessionRoster(LocalDate date, String[] studentIds, byte[] states, int size) {
+        this.date = date;
+        this.studentIds = studentIds;
+        this.states = states;
+        this.size = size;
+    }
+    
+    public LocalDate getDate() {
+        return date;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public String getStudentId(int row) {
+        checkRow(row);
+        return studentIds[row];
+    }
+    
+    public AttendanceStatus getStatus(int row) {
+        checkRow(row);
+        return AttendanceStatus.fromCode(states[row]);
+    }
+    
+    /**
+     * Whether the student has a mark (any status but UNMARKED) on this date
+     */
+    public boolean isMarked(int row) {
+        checkRow(row);
+        return states[row] != AttendanceStore.NOT_MARKED;
+    }
+    
+    /**
+     * Whether the student was marked present or late
+     */
+    public boolean isPresent(int row) {
+        checkRow(row);
+        return states[row] == AttendanceStore.PRESENT || states[row] == AttendanceStore.LATE;
+    }
+    
+    public int getMarkedCount() {
+        int marked = 0;
+        for (int i = 0; i < size; i++) {
+            if (states[i] != AttendanceStore.NOT_MARKED) {
+                marked++;
+            }
+        }
+        return marked;
+    }
+    
+    public int getPresentCount() {
+        int present = 0;
+        for (int i = 0; i < size; i++) {
+            if (states[i] == AttendanceStore.PRESENT || states[i] == AttendanceStore.LATE) {
+                present++;
+            }
+        }
+        return present;
+    }
+    
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "SessionRoster{" +
+                "Date=" + date +
+                ", Students=" + size +
+                ", Marked=" + getMarkedCount() +
+                ", Present=" + getPresentCount() +
+                '}';
+    }
+}
@@ -0,0 +1,1409 @@
+package com.attendance.manager;
+
+import com.attendance.metrics.Metrics;
+import com.attendance.metrics.Timer;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * AttendanceManager's API over N independent AttendanceManagers ("shards"), each with
+ * its own stores, indexes and locks, so no single heap structure or lock domain holds
+ * every student.
+ *
+ * PartitionRouter: Consistent-hash ring placing each student on a shard, by student ID or by course
+ *
+ * Operations on one student are routed to the shard holding it. Queries over a date,
+ * a course or the whole institution are scattered to every shard in parallel on a
+ * fork/join pool and their results merged; counts kept per shard (totals, course
+ * sizes, date statistics) are just summed in the calling thread. With BY_COURSE
+ * partitioning a course's students share a shard, so course queries visit only that one.
+ *
+ * addShard moves the students the new shard takes over, with their marks, while every
+ * other operation waits. As with a concurrent AttendanceManager, queries that visit
+ * several shards are not an atomic snapshot across them.
+ */
+public class ShardedAttendanceManager implements AttendanceService {
+    
+    /**
+     * How students are assigned to shards
+     */
+    public enum Partitioning {
+        BY_STUDENT, // Hash of the student ID: evenly sized shards, every course spread over all of them
+        BY_COURSE   // Hash of the course: a course's students share a shard, however large the course
+    }
+    
+    private static final Timer ADD_SHARD = Metrics.timer("sharded.addShard");
+    
+    private final Partitioning partitioning;
+    private final boolean concurrent;
+    private final ForkJoinPool pool; // Runs the per-shard parts of scatter-gather queries
+    
+    // The shards and the router placing students on them; replaced together by addShard
+    private volatile AttendanceManager[] shards;
+    private volatile PartitionRouter router;
+    
+    // Student ID -> shard with BY_COURSE partitioning, where the ID alone doesn't tell; null otherwise
+    private final ConcurrentHashMap<String, Integer> owners;
+    
+    // Shared by every other operation, exclusive while students move between shards; null unless concurrent
+    private final StampedLock lock;
+    
+    // Session dates across every shard, in the order they were first marked
+    private final SessionRegistry sessions;
+    
+    // Settings every shard is given, kept here for shards added later
+    private volatile CountingPolicy countingPolicy = CountingPolicy.STANDARD;
+    private volatile MutationLog mutationLog;
+    private final CopyOnWriteArrayList<Subscription> thresholdListeners;
+    
+    // Change events of every shard, re-published to this manager's listeners from one thread
+    private final ChangeFeed changeFeed;
+    private final MutationListener forwarder;
+    
+    /**
+     * A threshold listener and the percentage it watches
+     */
+    private static final class Subscription {
+        final double percentage;
+        final ThresholdListener listener;
+        
+        Subscription(double percentage, ThresholdListener listener) {
+            this.percentage = percentage;
+            this.listener = listener;
+        }
+    }
+    
+    public ShardedAttendanceManager(int shardCount, Partitioning partitioning) {
+        this(shardCount, partitioning, false);
+    }
+    
+    /**
+     * @param concurrent true to allow several threads to read and write at once
+     */
+    public ShardedAttendanceManager(int shardCount, Partitioning partitioning, boolean concurrent) {
+        this(shardCount, partitioning, concurrent, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * @param pool runs each shard's part of the queries that visit every shard
+     */
+    public ShardedAttendanceManager(int shardCount, Partitioning partitioning, boolean concurrent, ForkJoinPool pool) {
+        this.partitioning = Objects.requireNonNull(partitioning);
+        this.concurrent = concurrent;
+        this.pool = Objects.requireNonNull(pool);
+        this.router = new PartitionRouter(shardCount);
+        this.shards = new AttendanceManager[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new AttendanceManager(concurrent);
+        }
+        this.owners = partitioning == Partitioning.BY_COURSE ? new ConcurrentHashMap<>() : null;
+        this.lock = concurrent ? new StampedLock() : null;
+        this.sessions = new SessionRegistry();
+        this.thresholdListeners = new CopyOnWriteArrayList<>();
+        this.changeFeed = new ChangeFeed();
+        this.forwarder = events -> {
+            if (events.size() == 1 && events.get(0).getType() == MutationEvent.Type.RESET) {
+                changeFeed.reset();
+            } else {
+                // Sessions open per shard; this manager announces each date once, from its own registry
+                MutationEvent[] forwarded = new MutationEvent[events.size()];
+                int count = 0;
+                for (MutationEvent event : events) {
+                    if (event.getType() != MutationEvent.Type.SESSION_OPENED) {
+                        forwarded[count++] = event;
+                    }
+                }
+                changeFeed.publish(forwarded, count);
+            }
+        };
+    }
+    
+    @Override
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+    
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Number of students on each shard, in shard order
+     */
+    public int[] getShardSizes() {
+        long stamp = lockRead();
+        try {
+            AttendanceManager[] current = shards;
+            int[] sizes = new int[current.length];
+            for (int i = 0; i < current.length; i++) {
+                sizes[i] = current[i].getTotalStudents();
+            }
+            return sizes;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Add an empty shard and move to it, with their marks, the students the grown router
+     * assigns to it: about 1/(n+1) of them, as the ring keeps every other placement.
+     * Every other operation waits until the move is done. Students are copied first and
+     * removed from their old shards only once every copy has succeeded, so a failure
+     * leaves the shards as they were. The mutation log and threshold listeners don't
+     * hear about the move, as no student's data changes; mutation listeners receive a
+     * RESET.
+     *
+     * @return the number of students moved
+     */
+    public int addShard() {
+        long started = ADD_SHARD.start();
+        long stamp = lockWrite();
+        try {
+            AttendanceManager[] current = shards;
+            PartitionRouter grown = router.withShard();
+            AttendanceManager[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = new AttendanceManager(concurrent);
+            next[current.length].setCountingPolicy(countingPolicy);
+            
+            for (AttendanceManager shard : current) {
+                detach(shard);
+            }
+            try {
+                List<Move> moves = new ArrayList<>();
+                try {
+                    for (int source = 0; source < current.length; source++) {
+                        // The ring only ever hands keys to the new shard, but group by target regardless
+                        Map<Integer, List<Student>> leaving = new HashMap<>();
+                        for (Student student : current[source].getAllStudents()) {
+                            int target = placementOf(grown, student.getStudentId(), student.getCourse());
+                            if (target != source) {
+                                leaving.computeIfAbsent(target, t -> new ArrayList<>()).add(student);
+                            }
+                        }
+                        for (Map.Entry<Integer, List<Student>> move : leaving.entrySet()) {
+                            int target = move.getKey();
+                            moves.add(new Move(source, target, copyStudents(current[source], next[target],
+                                move.getValue())));
+                        }
+                    }
+                } catch (RuntimeException | Error e) {
+                    // The new shard is dropped with next; take the copies back out of existing ones
+                    for (Move move : moves) {
+                        if (move.target < current.length) {
+                            current[move.target].removeStudents(move.studentIds);
+                        }
+                    }
+                    throw e;
+                }
+                
+                shards = next;
+                router = grown;
+                int moved = 0;
+                for (Move move : moves) {
+                    commitMove(next, move);
+                    moved += move.studentIds.size();
+                }
+                return moved;
+            } finally {
+                for (AttendanceManager shard : shards) {
+                    attach(shard);
+                }
+            }
+        } finally {
+            unlockWrite(stamp);
+            ADD_SHARD.stop(started);
+        }
+    }
+    
+    /**
+     * Students copied from one shard to another, still to be removed from the first
+     */
+    private static final class Move {
+        final int source;
+        final int target;
+        final List<String> studentIds;
+        
+        Move(int source, int target, List<String> studentIds) {
+            this.source = source;
+            this.target = target;
+            this.studentIds = studentIds;
+        }
+    }
+    
+    /**
+     * Copy students, with every mark, from one shard to another; call under the exclusive
+     * lock with both shards detached. Marks are replayed one date at a time as bulk saves.
+     * If the copy fails, whatever of it reached the target is removed again.
+     *
+     * @return the IDs copied, to be passed to commitMove once the move is decided
+     */
+    private List<String> copyStudents(AttendanceManager from, AttendanceManager to, List<Student> students) {
+        ArrayList<String> ids = new ArrayList<>(students.size());
+        for (Student student : students) {
+            ids.add(student.getStudentId());
+        }
+        try {
+            to.addStudents(students);
+            TreeMap<LocalDate, List<AttendanceRecord>> marksByDate = new TreeMap<>();
+            for (String studentId : ids) {
+                for (AttendanceRecord record : from.getStudentAttendance(studentId)) {
+                    marksByDate.computeIfAbsent(record.getDate(), d -> new ArrayList<>()).add(record);
+                }
+            }
+            for (Map.Entry<LocalDate, List<AttendanceRecord>> session : marksByDate.entrySet()) {
+                List<AttendanceRecord> records = session.getValue();
+                String[] rowIds = new String[records.size()];
+                AttendanceStatus[] statuses = new AttendanceStatus[records.size()];
+                for (int i = 0; i < rowIds.length; i++) {
+                    rowIds[i] = records.get(i).getStudentId();
+                    statuses[i] = records.get(i).getStatus();
+                }
+                to.markSessionStatus(session.getKey(), rowIds, statuses, rowIds.length);
+            }
+            return ids;
+        } catch (RuntimeException | Error e) {
+            to.removeStudents(ids);
+            throw e;
+        }
+    }
+    
+    /**
+     * Finish a move once the copy is in place: drop the students from their old shard
+     * and record their new one
+     */
+    private void commitMove(AttendanceManager[] targets, Move move) {
+        targets[move.source].removeStudents(move.studentIds);
+        if (owners != null) {
+            for (String studentId : move.studentIds) {
+                owners.put(studentId, move.target);
+            }
+        }
+    }
+    
+    /**
+     * Stop a shard's changes from reaching the log and listeners
+     */
+    private void detach(AttendanceManager shard) {
+        shard.setMutationLog(null);
+        for (Subscription subscription : thresholdListeners) {
+            shard.removeThresholdListener(subscription.listener);
+        }
+        shard.removeMutationListener(forwarder);
+    }
+    
+    private void attach(AttendanceManager shard) {
+        shard.setMutationLog(mutationLog);
+        for (Subscription subscription : thresholdListeners) {
+            shard.addThresholdListener(subscription.percentage, subscription.listener);
+        }
+        if (changeFeed.isActive()) {
+            shard.addMutationListener(forwarder);
+        }
+    }
+    
+    // ---- Students ----
+    
+    @Override
+    public boolean addStudent(Student student) {
+        long stamp = lockRead();
+        try {
+            int shard = placementOf(router, student.getStudentId(), student.getCourse());
+            if (owners == null) {
+                return shards[shard].addStudent(student);
+            }
+            // Claim the ID first so the same student can't be added to two shards by two courses
+            if (owners.putIfAbsent(student.getStudentId(), shard) != null) {
+                return false; // Student already exists
+            }
+            if (!shards[shard].addStudent(student)) {
+                owners.remove(student.getStudentId(), shard);
+                return false;
+            }
+            return true;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Add many students at once, each shard receiving its share as one batch.
+     * Students whose ID already exists (or repeats earlier in the batch) are skipped.
+     *
+     * @return the number of students added
+     */
+    @Override
+    public int addStudents(Collection<Student> batch) {
+        long stamp = lockRead();
+        try {
+            AttendanceManager[] current = shards;
+            List<List<Student>> byShard = new ArrayList<>(current.length);
+            for (int i = 0; i < current.length; i++) {
+                byShard.add(new ArrayList<>());
+            }
+            for (Student student : batch) {
+                int shard = placementOf(router, student.getStudentId(), student.getCourse());
+                if (owners == null || owners.putIfAbsent(student.getStudentId(), shard) == null) {
+                    byShard.get(shard).add(student);
+                }
+            }
+            int added = 0;
+            for (int shard = 0; shard < current.length; shard++) {
+                if (!byShard.get(shard).isEmpty()) {
+                    added += current[shard].addStudents(byShard.get(shard));
+                }
+            }
+            return added;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public boolean removeStudent(String studentId) {
+        long stamp = lockRead();
+        try {
+            int shard = shardOf(studentId);
+            if (shard < 0 || !shards[shard].removeStudent(studentId)) {
+                return false;
+            }
+            if (owners != null) {
+                owners.remove(studentId, shard);
+            }
+            return true;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Remove a whole cohort with its attendance history, each shard removing its share
+     * as one batch. Unknown and repeated IDs are skipped.
+     *
+     * @return the number of students removed
+     */
+    @Override
+    public int removeStudents(Collection<String> studentIds) {
+        long stamp = lockRead();
+        try {
+            AttendanceManager[] current = shards;
+            List<List<String>> byShard = new ArrayList<>(current.length);
+            for (int i = 0; i < current.length; i++) {
+                byShard.add(new ArrayList<>());
+            }
+            for (String studentId : studentIds) {
+                int shard = shardOf(studentId);
+                if (shard >= 0) {
+                    byShard.get(shard).add(studentId);
+                }
+            }
+            int removed = 0;
+            for (int shard = 0; shard < current.length; shard++) {
+                List<String> ids = byShard.get(shard);
+                if (ids.isEmpty()) {
+                    continue;
+                }
+                removed += current[shard].removeStudents(ids);
+                if (owners != null) {
+                    for (String studentId : ids) {
+                        if (!current[shard].studentExists(studentId)) {
+                            owners.remove(studentId, shard);
+                        }
+                    }
+                }
+            }
+            return removed;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Move a student to another course. With BY_COURSE partitioning a course on another
+     * shard means moving the student and its marks there, while every other operation
+     * waits; mutation listeners then receive a RESET rather than a COURSE_CHANGED.
+     *
+     * @return false if the student doesn't exist or is already in that course
+     */
+    @Override
+    public boolean changeCourse(String studentId, String course) {
+        Objects.requireNonNull(course);
+        long stamp = lockRead();
+        try {
+            int shard = shardOf(studentId);
+            if (shard < 0) {
+                return false;
+            }
+            if (owners == null || router.shardOf(course) == shard) {
+                return shards[shard].changeCourse(studentId, course);
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+        
+        stamp = lockWrite();
+        try {
+            // Look again: the student may have been removed or moved meanwhile
+            int source = shardOf(studentId);
+            if (source < 0) {
+                return false;
+            }
+            int target = router.shardOf(course);
+            if (target == source) {
+                return shards[source].changeCourse(studentId, course);
+            }
+            AttendanceManager[] current = shards;
+            Student student = current[source].getStudent(studentId);
+            student.setCourse(course);
+            detach(current[source]);
+            detach(current[target]);
+            try {
+                List<String> ids = copyStudents(current[source], current[target], Collections.singletonList(student));
+                commitMove(current, new Move(source, target, ids));
+            } finally {
+                attach(current[source]);
+                attach(current[target]);
+            }
+            MutationLog log = mutationLog;
+            if (log != null) {
+                log.studentCourseChanged(studentId, course);
+            }
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * A copy of a student built by its shard, or null if there is none
+     */
+    @Override
+    public Student getStudent(String studentId) {
+        return onOwner(studentId, null, shard -> shard.getStudent(studentId));
+    }
+    
+    /**
+     * Every student, shard by shard, as copies built while iterating. A student moved
+     * by addShard or changeCourse during the iteration may be missed or seen twice.
+     */
+    @Override
+    public Collection<Student> getAllStudents() {
+        return new AbstractCollection<Student>() {
+            @Override
+            public Iterator<Student> iterator() {
+                AttendanceManager[] current = shards;
+                return new Iterator<Student>() {
+                    private int shard;
+                    private Iterator<Student> students = current[0].getAllStudents().iterator();
+                    
+                    @Override
+                    public boolean hasNext() {
+                        while (!students.hasNext() && shard + 1 < current.length) {
+                            students = current[++shard].getAllStudents().iterator();
+                        }
+                        return students.hasNext();
+                    }
+                    
+                    @Override
+                    public Student next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return students.next();
+                    }
+                };
+            }
+            
+            @Override
+            public int size() {
+                return getTotalStudents();
+            }
+        };
+    }
+    
+    /**
+     * IDs of every student, gathered from the shards in parallel
+     */
+    @Override
+    public List<String> getStudentIds() {
+        ArrayList<String> ids = new ArrayList<>();
+        for (List<String> shardIds : gather(AttendanceManager::getStudentIds)) {
+            ids.addAll(shardIds);
+        }
+        return ids;
+    }
+    
+    /**
+     * Search every shard's index in parallel and merge the results by score.
+     * Matching and ranking are as for AttendanceManager.searchStudents.
+     *
+     * @param limit the most students to return; getMatchCount still counts them all
+     */
+    @Override
+    public SearchResult searchStudents(String query, int limit) {
+        List<SearchResult> parts = gather(shard -> shard.searchStudents(query, limit));
+        int matches = 0;
+        int returned = 0;
+        for (SearchResult part : parts) {
+            matches += part.getMatchCount();
+            returned += part.getStudentIds().size();
+        }
+        int kept = Math.min(returned, Math.max(limit, 0));
+        String[] ids = new String[kept];
+        int[] scores = new int[kept];
+        int[] next = new int[parts.size()]; // Next rank to take from each part
+        for (int rank = 0; rank < kept; rank++) {
+            int best = -1;
+            for (int part = 0; part < parts.size(); part++) {
+                if (next[part] < parts.get(part).getStudentIds().size()
+                        && (best < 0 || parts.get(part).getScore(next[part]) > parts.get(best).getScore(next[best]))) {
+                    best = part;
+                }
+            }
+            ids[rank] = parts.get(best).getStudentIds().get(next[best]);
+            scores[rank] = parts.get(best).getScore(next[best]++);
+        }
+        return new SearchResult(query, ids, scores, matches, this::getStudent);
+    }
+    
+    // ---- Attendance ----
+    
+    @Override
+    public boolean markAttendance(String studentId, LocalDate date, boolean present) {
+        return markAttendance(studentId, date, AttendanceStatus.of(present));
+    }
+    
+    /**
+     * Set a student's status on a date; UNMARKED removes the mark.
+     *
+     * @return false if the student doesn't exist
+     */
+    @Override
+    public boolean markAttendance(String studentId, LocalDate date, AttendanceStatus status) {
+        long stamp = lockRead();
+        try {
+            int shard = shardOf(studentId);
+            if (shard < 0 || !shards[shard].markAttendance(studentId, date, status)) {
+                return false;
+            }
+            if (status.isMarked()) {
+                openSession(date);
+            }
+            return true;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Save a whole session of present/absent marks in one pass
+     *
+     * @param marks studentId -> present, in row order
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     */
+    @Override
+    public BulkMarkResult markSessionAttendance(LocalDate date, Map<String, Boolean> marks) {
+        Map<String, AttendanceStatus> statuses = new LinkedHashMap<>(marks.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Boolean> mark : marks.entrySet()) {
+            statuses.put(mark.getKey(), AttendanceStatus.of(mark.getValue() != null && mark.getValue()));
+        }
+        return markSessionStatus(date, statuses);
+    }
+    
+    /**
+     * Save a whole session, each shard saving its share of the rows as one bulk save
+     *
+     * @param statuses studentId -> status, in row order
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     */
+    @Override
+    public BulkMarkResult markSessionStatus(LocalDate date, Map<String, AttendanceStatus> statuses) {
+        String[] studentIds = new String[statuses.size()];
+        AttendanceStatus[] rowStatuses = new AttendanceStatus[statuses.size()];
+        int count = 0;
+        for (Map.Entry<String, AttendanceStatus> row : statuses.entrySet()) {
+            studentIds[count] = row.getKey();
+            rowStatuses[count++] = row.getValue();
+        }
+        return markSessionStatus(date, studentIds, rowStatuses, count);
+    }
+    
+    /**
+     * Like markSessionStatus(LocalDate, Map), for rows held in parallel arrays; only the
+     * first {@code count} entries are used. Rejected IDs are listed shard by shard.
+     *
+     * @return per-row outcome counts and the IDs of rows that were skipped
+     */
+    @Override
+    public BulkMarkResult markSessionStatus(LocalDate date, String[] studentIds, AttendanceStatus[] statuses, int count) {
+        long stamp = lockRead();
+        try {
+            AttendanceManager[] current = shards;
+            BulkMarkResult result = new BulkMarkResult(date);
+            
+            // Split the rows by shard, keeping their order so the last row of a student still wins
+            String[][] shardIds = new String[current.length][];
+            AttendanceStatus[][] shardStatuses = new AttendanceStatus[current.length][];
+            int[] shardCounts = new int[current.length];
+            for (int row = 0; row < count; row++) {
+                int shard = shardOf(studentIds[row]);
+                if (shard < 0) {
+                    result.record(studentIds[row], BulkMarkResult.Outcome.UNKNOWN_STUDENT);
+                    continue;
+                }
+                int shardCount = shardCounts[shard];
+                if (shardIds[shard] == null) {
+                    int capacity = current.length == 1 ? count : 16;
+                    shardIds[shard] = new String[capacity];
+                    shardStatuses[shard] = new AttendanceStatus[capacity];
+                } else if (shardCount == shardIds[shard].length) {
+                    shardIds[shard] = Arrays.copyOf(shardIds[shard], shardCount * 2);
+                    shardStatuses[shard] = Arrays.copyOf(shardStatuses[shard], shardCount * 2);
+                }
+                shardIds[shard][shardCount] = studentIds[row];
+                shardStatuses[shard][shardCount] = statuses[row];
+                shardCounts[shard] = shardCount + 1;
+            }
+            for (int shard = 0; shard < current.length; shard++) {
+                if (shardCounts[shard] > 0) {
+                    result.merge(current[shard].markSessionStatus(date, shardIds[shard], shardStatuses[shard],
+                            shardCounts[shard]));
+                }
+            }
+            if (result.getCount(BulkMarkResult.Outcome.INSERTED) > 0) {
+                openSession(date);
+            }
+            return result;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Register a date on which a mark was inserted, announcing it if it is new
+     */
+    private void openSession(LocalDate date) {
+        if (sessions.register(AttendanceStore.toEpochDay(date)) && changeFeed.isActive()) {
+            changeFeed.publish(MutationEvent.sessionOpened(date));
+        }
+    }
+    
+    /**
+     * Get the attendance record of a student on a given date, or null if not marked
+     */
+    @Override
+    public AttendanceRecord getAttendanceRecord(String studentId, LocalDate date) {
+        return onOwner(studentId, null, shard -> shard.getAttendanceRecord(studentId, date));
+    }
+    
+    /**
+     * A student's status on a date; UNMARKED if not marked or the student doesn't exist
+     */
+    @Override
+    public AttendanceStatus getAttendanceStatus(String studentId, LocalDate date) {
+        return onOwner(studentId, AttendanceStatus.UNMARKED, shard -> shard.getAttendanceStatus(studentId, date));
+    }
+    
+    /**
+     * Every student joined with their status on a date, gathered from the shards in parallel
+     */
+    @Override
+    public SessionRoster getSessionRoster(LocalDate date) {
+        return concat(date, gather(shard -> shard.getSessionRoster(date)));
+    }
+    
+    /**
+     * Remove the attendance record of a student on a given date
+     */
+    @Override
+    public boolean removeAttendance(String studentId, LocalDate date) {
+        return onOwner(studentId, false, shard -> shard.removeAttendance(studentId, date));
+    }
+    
+    /**
+     * Get all attendance records for a specific student, sorted by date
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getStudentAttendance(String studentId) {
+        return onOwner(studentId, new ArrayList<>(), shard -> shard.getStudentAttendance(studentId));
+    }
+    
+    /**
+     * Get a student's attendance records between two dates (both inclusive), sorted by date
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getStudentAttendance(String studentId, LocalDate from, LocalDate to) {
+        return onOwner(studentId, new ArrayList<>(), shard -> shard.getStudentAttendance(studentId, from, to));
+    }
+    
+    /**
+     * Every record of a date, gathered from the shards in parallel
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getAttendanceByDate(LocalDate date) {
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        for (List<AttendanceRecord> shardRecords : gather(shard -> shard.getAttendanceByDate(date))) {
+            records.addAll(shardRecords);
+        }
+        return records;
+    }
+    
+    /**
+     * Get all attendance records between two dates (both inclusive), sorted by date
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getAttendanceBetween(LocalDate from, LocalDate to) {
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        for (List<AttendanceRecord> shardRecords : gather(shard -> shard.getAttendanceBetween(from, to))) {
+            records.addAll(shardRecords);
+        }
+        records.sort(Comparator.comparing(AttendanceRecord::getDate));
+        return records;
+    }
+    
+    /**
+     * Per-student, per-course and per-date counts over every session, computed in parallel
+     */
+    @Override
+    public AttendanceAggregate aggregate() {
+        return aggregate(null, null, pool, () -> false);
+    }
+    
+    /**
+     * Per-student, per-course and per-date counts between two dates (both inclusive), computed in parallel
+     */
+    @Override
+    public AttendanceAggregate aggregate(LocalDate from, LocalDate to) {
+        return aggregate(from, to, pool, () -> false);
+    }
+    
+    /**
+     * Aggregate every shard at once, each on the given pool, and merge the partial aggregates
+     *
+     * @param from first date, or null for no lower bound
+     * @param to last date (inclusive), or null for no upper bound
+     * @param cancelled polled once per block
+     * @return the aggregate, or null if cancelled
+     */
+    @Override
+    public AttendanceAggregate aggregate(LocalDate from, LocalDate to, ForkJoinPool pool, BooleanSupplier cancelled) {
+        AttendanceAggregate merged = null;
+        for (AttendanceAggregate part : gather(shard -> shard.aggregate(from, to, pool, cancelled))) {
+            if (part == null) {
+                return null;
+            }
+            merged = merged == null ? part : merged.merge(part);
+        }
+        return merged;
+    }
+    
+    // ---- Statistics ----
+    
+    /**
+     * Attendance percentage of a student under the default counting policy
+     */
+    @Override
+    public double calculateAttendancePercentage(String studentId) {
+        return calculateAttendancePercentage(studentId, countingPolicy);
+    }
+    
+    @Override
+    public double calculateAttendancePercentage(String studentId, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(studentCounters(studentId), policy);
+    }
+    
+    /**
+     * Statistics of a student under the default counting policy; see CountingPolicy.statistics
+     */
+    @Override
+    public Map<String, Integer> getStudentStatistics(String studentId) {
+        return getStudentStatistics(studentId, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getStudentStatistics(String studentId, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(studentCounters(studentId), policy);
+    }
+    
+    private int[] studentCounters(String studentId) {
+        return onOwner(studentId, new int[AttendanceStore.STATES], shard -> shard.studentCounters(studentId));
+    }
+    
+    /**
+     * Percentage of students marked present on a given date, under the default counting policy
+     */
+    @Override
+    public double calculateDateAttendancePercentage(LocalDate date) {
+        return calculateDateAttendancePercentage(date, countingPolicy);
+    }
+    
+    @Override
+    public double calculateDateAttendancePercentage(LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(dateCounters(date), policy);
+    }
+    
+    /**
+     * Total/present/absent counts for a given date, under the default counting policy
+     */
+    @Override
+    public Map<String, Integer> getDateStatistics(LocalDate date) {
+        return getDateStatistics(date, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getDateStatistics(LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(dateCounters(date), policy);
+    }
+    
+    private int[] dateCounters(LocalDate date) {
+        long stamp = lockRead();
+        try {
+            int[] counts = new int[AttendanceStore.STATES];
+            for (AttendanceManager shard : shards) {
+                add(counts, shard.dateCounters(date));
+            }
+            return counts;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Courses with at least one student, sorted; students without a course are in none
+     */
+    @Override
+    public SortedSet<String> getCourses() {
+        TreeSet<String> names = new TreeSet<>();
+        for (SortedSet<String> shardCourses : gather(AttendanceManager::getCourses)) {
+            names.addAll(shardCourses);
+        }
+        return names;
+    }
+    
+    @Override
+    public int getCourseSize(String course) {
+        long stamp = lockRead();
+        try {
+            if (partitioning == Partitioning.BY_COURSE) {
+                return shards[router.shardOf(course)].getCourseSize(course);
+            }
+            int size = 0;
+            for (AttendanceManager shard : shards) {
+                size += shard.getCourseSize(course);
+            }
+            return size;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * The students of one course joined with their status on a date
+     */
+    @Override
+    public SessionRoster getCourseRoster(String course, LocalDate date) {
+        if (partitioning == Partitioning.BY_COURSE) {
+            long stamp = lockRead();
+            try {
+                return shards[router.shardOf(course)].getCourseRoster(course, date);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        return concat(date, gather(shard -> shard.getCourseRoster(course, date)));
+    }
+    
+    /**
+     * Lifetime statistics of a course's current students, under the default counting policy
+     */
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course) {
+        return getCourseStatistics(course, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(courseCounters(course, null), policy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course) {
+        return calculateCourseAttendancePercentage(course, countingPolicy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(courseCounters(course, null), policy);
+    }
+    
+    /**
+     * Statistics of a course on one date, under the default counting policy
+     */
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, LocalDate date) {
+        return getCourseStatistics(course, date, countingPolicy);
+    }
+    
+    @Override
+    public Map<String, Integer> getCourseStatistics(String course, LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.statisticsOf(courseCounters(course, date), policy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, LocalDate date) {
+        return calculateCourseAttendancePercentage(course, date, countingPolicy);
+    }
+    
+    @Override
+    public double calculateCourseAttendancePercentage(String course, LocalDate date, CountingPolicy policy) {
+        return AttendanceManager.percentageOf(courseCounters(course, date), policy);
+    }
+    
+    /**
+     * A course's number of marks in each state on a date, or over its lifetime if date is null
+     */
+    private int[] courseCounters(String course, LocalDate date) {
+        long stamp = lockRead();
+        try {
+            if (partitioning == Partitioning.BY_COURSE) {
+                return shards[router.shardOf(course)].courseCounters(course, date);
+            }
+            int[] counts = new int[AttendanceStore.STATES];
+            for (AttendanceManager shard : shards) {
+                add(counts, shard.courseCounters(course, date));
+            }
+            return counts;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    private static void add(int[] counts, int[] shardCounts) {
+        for (int state = 0; state < AttendanceStore.STATES; state++) {
+            counts[state] += shardCounts[state];
+        }
+    }
+    
+    /**
+     * Policy used by the percentage and statistics methods that don't take one,
+     * and by every shard's at-risk index
+     */
+    @Override
+    public void setCountingPolicy(CountingPolicy countingPolicy) {
+        long stamp = lockRead();
+        try {
+            this.countingPolicy = Objects.requireNonNull(countingPolicy);
+            for (AttendanceManager shard : shards) {
+                shard.setCountingPolicy(countingPolicy);
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public CountingPolicy getCountingPolicy() {
+        return countingPolicy;
+    }
+    
+    /**
+     * Students whose percentage under the default counting policy is below the
+     * given percentage, lowest first, gathered from every shard's at-risk index
+     */
+    @Override
+    public List<StudentStanding> getStudentsBelow(double percentage) {
+        ArrayList<StudentStanding> below = new ArrayList<>();
+        for (List<StudentStanding> shardBelow : gather(shard -> shard.getStudentsBelow(percentage))) {
+            below.addAll(shardBelow);
+        }
+        below.sort(AtRiskIndex.ORDER);
+        return below;
+    }
+    
+    /**
+     * The k students with the lowest percentage under the default counting policy, lowest
+     * first: the lowest k of every shard's lowest k
+     */
+    @Override
+    public List<StudentStanding> getLowestStudents(int k) {
+        ArrayList<StudentStanding> lowest = new ArrayList<>();
+        for (List<StudentStanding> shardLowest : gather(shard -> shard.getLowestStudents(k))) {
+            lowest.addAll(shardLowest);
+        }
+        lowest.sort(AtRiskIndex.ORDER);
+        return new ArrayList<>(lowest.subList(0, Math.min(Math.max(k, 0), lowest.size())));
+    }
+    
+    /**
+     * A student's ranking entry, or null if the student has no counted marks
+     */
+    @Override
+    public StudentStanding getStanding(String studentId) {
+        return onOwner(studentId, null, shard -> shard.getStanding(studentId));
+    }
+    
+    /**
+     * Be notified whenever a student's percentage under the default counting policy
+     * drops below, or climbs back to, the given percentage. Notifications come from
+     * the student's shard, on the thread that made the change.
+     */
+    @Override
+    public void addThresholdListener(double percentage, ThresholdListener listener) {
+        Objects.requireNonNull(listener);
+        long stamp = lockWrite();
+        try {
+            thresholdListeners.add(new Subscription(percentage, listener));
+            for (AttendanceManager shard : shards) {
+                shard.addThresholdListener(percentage, listener);
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    @Override
+    public boolean removeThresholdListener(ThresholdListener listener) {
+        long stamp = lockWrite();
+        try {
+            for (AttendanceManager shard : shards) {
+                shard.removeThresholdListener(listener);
+            }
+            return thresholdListeners.removeIf(subscription -> subscription.listener == listener);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Be notified of every change from now on, in coalesced bursts on this manager's
+     * change-feed thread (see MutationListener). The first burst is a RESET, as is the
+     * first after students move between shards.
+     */
+    @Override
+    public void addMutationListener(MutationListener listener) {
+        Objects.requireNonNull(listener);
+        long stamp = lockWrite();
+        try {
+            boolean first = !changeFeed.isActive();
+            changeFeed.addListener(listener);
+            if (first) {
+                for (AttendanceManager shard : shards) {
+                    shard.addMutationListener(forwarder);
+                }
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    @Override
+    public boolean removeMutationListener(MutationListener listener) {
+        long stamp = lockWrite();
+        try {
+            boolean removed = changeFeed.removeListener(listener);
+            if (removed && !changeFeed.isActive()) {
+                for (AttendanceManager shard : shards) {
+                    shard.removeMutationListener(forwarder);
+                }
+            }
+            return removed;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Check every shard's counters and at-risk index, in parallel, and that every student
+     * is on the shard the router assigns it to. Intended for tests.
+     *
+     * @throws IllegalStateException if any counter is out of sync or a student is misplaced
+     */
+    @Override
+    public void verifyCounters() {
+        gather(shard -> {
+            shard.verifyCounters();
+            return null;
+        });
+        long stamp = lockRead();
+        try {
+            AttendanceManager[] current = shards;
+            int total = 0;
+            for (int shard = 0; shard < current.length; shard++) {
+                for (Student student : current[shard].getAllStudents()) {
+                    String studentId = student.getStudentId();
+                    if (placementOf(router, studentId, student.getCourse()) != shard
+                            || (owners != null && !Integer.valueOf(shard).equals(owners.get(studentId)))) {
+                        throw new IllegalStateException("Student " + studentId + " misplaced on shard " + shard);
+                    }
+                    total++;
+                }
+            }
+            if (owners != null && owners.size() != total) {
+                throw new IllegalStateException("Shard map out of sync: " + owners.size() + " vs " + total);
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    // ---- Sessions and records ----
+    
+    /**
+     * Copy of the session dates in the order they were first marked on any shard
+     */
+    @Override
+    public Queue<LocalDate> getAttendanceSessions() {
+        return sessions.inOrder();
+    }
+    
+    /**
+     * Number of attendance sessions, without copying the queue
+     */
+    @Override
+    public int getSessionCount() {
+        return sessions.size();
+    }
+    
+    @Override
+    public boolean hasSession(LocalDate date) {
+        return sessions.contains(AttendanceStore.toEpochDay(date));
+    }
+    
+    /**
+     * Session dates between two dates (both inclusive), sorted by date
+     */
+    @Override
+    public ArrayList<LocalDate> getSessionsBetween(LocalDate from, LocalDate to) {
+        return sessions.between(AttendanceStore.toEpochDay(from), AttendanceStore.toEpochDay(to));
+    }
+    
+    /**
+     * Get every attendance record, shard by shard
+     */
+    @Override
+    public ArrayList<AttendanceRecord> getAllAttendanceRecords() {
+        ArrayList<AttendanceRecord> records = new ArrayList<>();
+        forEachRecord((studentId, date, status) -> records.add(new AttendanceRecord(studentId, date, status)));
+        return records;
+    }
+    
+    /**
+     * The owning shard's timeline of a student's marks, or null if there is none. A
+     * timeline cached before the student moved shard was copied from another store,
+     * so it is rebuilt.
+     */
+    @Override
+    public StudentTimeline studentTimeline(String studentId, StudentTimeline cached) {
+        return onOwner(studentId, null, shard -> shard.studentTimeline(studentId, cached));
+    }
+    
+    /**
+     * Stream every attendance mark, shard by shard, on the calling thread
+     */
+    @Override
+    public void forEachRecord(RecordVisitor visitor) {
+        long stamp = lockRead();
+        try {
+            for (AttendanceManager shard : shards) {
+                shard.forEachRecord(visitor);
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Read every student and mark, shard by shard, with the exclusive lock held so no
+     * shard changes (or logs a change) until the visit returns; used to take snapshots.
+     * Each shard's students are visited before its marks. Every writer holds the shared
+     * lock for its whole change, so this waits for changes in flight to finish.
+     *
+     * @param locked run once every change has stopped, before the first student is visited
+     */
+    @Override
+    public void visitState(Runnable locked, Consumer<Student> students, RecordVisitor records) {
+        long stamp = lockWrite();
+        try {
+            locked.run();
+            for (AttendanceManager shard : shards) {
+                shard.visitState(() -> {}, students, records);
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Attach a durability hook that every shard notifies after each applied change, or
+     * null to detach. Shards call it independently, so it must be thread-safe.
+     */
+    @Override
+    public void setMutationLog(MutationLog mutationLog) {
+        long stamp = lockWrite();
+        try {
+            this.mutationLog = mutationLog;
+            for (AttendanceManager shard : shards) {
+                shard.setMutationLog(mutationLog);
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    
+    @Override
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+    
+    /**
+     * Number of attendance records currently stored
+     */
+    @Override
+    public long getTotalRecords() {
+        long stamp = lockRead();
+        try {
+            long total = 0;
+            for (AttendanceManager shard : shards) {
+                total += shard.getTotalRecords();
+            }
+            return total;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public int getTotalStudents() {
+        long stamp = lockRead();
+        try {
+            int total = 0;
+            for (AttendanceManager shard : shards) {
+                total += shard.getTotalStudents();
+            }
+            return total;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public boolean studentExists(String studentId) {
+        return onOwner(studentId, false, shard -> shard.studentExists(studentId));
+    }
+    
+    // ---- Routing and locking ----
+    
+    /**
+     * Shard a new student is placed on by a router
+     */
+    private int placementOf(PartitionRouter ring, String studentId, String course) {
+        return ring.shardOf(partitioning == Partitioning.BY_COURSE ? course : studentId);
+    }
+    
+    /**
+     * Shard holding a student, or -1 if there is none; call under the shared lock
+     */
+    private int shardOf(String studentId) {
+        if (owners == null) {
+            return router.shardOf(studentId);
+        }
+        Integer shard = owners.get(studentId);
+        return shard == null ? -1 : shard;
+    }
+    
+    /**
+     * Run an operation on the shard holding a student, or return missing if there is none
+     */
+    private <T> T onOwner(String studentId, T missing, Function<AttendanceManager, T> operation) {
+        long stamp = lockRead();
+        try {
+            int shard = shardOf(studentId);
+            return shard < 0 ? missing : operation.apply(shards[shard]);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Run a query on every shard at once and return the results in shard order. The
+     * other shards' parts run on the pool while the calling thread runs the first.
+     */
+    private <T> List<T> gather(Function<AttendanceManager, T> query) {
+        long stamp = lockRead();
+        try {
+            AttendanceManager[] current = shards;
+            ArrayList<T> results = new ArrayList<>(current.length);
+            if (current.length == 1) {
+                results.add(query.apply(current[0]));
+                return results;
+            }
+            List<ForkJoinTask<T>> tasks = new ArrayList<>(current.length - 1);
+            for (int i = 1; i < current.length; i++) {
+                AttendanceManager shard = current[i];
+                tasks.add(pool.submit(ForkJoinTask.adapt(() -> query.apply(shard))));
+            }
+            results.add(query.apply(current[0]));
+            for (ForkJoinTask<T> task : tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * One roster with the rows of several, in order
+     */
+    private static SessionRoster concat(LocalDate date, List<SessionRoster> rosters) {
+        int size = 0;
+        for (SessionRoster roster : rosters) {
+            size += roster.size();
+        }
+        String[] ids = new String[size];
+        byte[] states = new byte[size];
+        int count = 0;
+        for (SessionRoster roster : rosters) {
+            for (int row = 0; row < roster.size(); row++) {
+                ids[count] = roster.getStudentId(row);
+                states[count++] = (byte) roster.getStatus(row).getCode();
+            }
+        }
+        return new SessionRoster(date, ids, states, count);
+    }
+    
+    private long lockWrite() {
+        return lock == null ? 0L : lock.writeLock();
+    }
+    
+    private void unlockWrite(long stamp) {
+        if (lock != null) {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    private long lockRead() {
+        return lock == null ? 0L : lock.readLock();
+    }
+    
+    private void unlockRead(long stamp) {
+        if (lock != null) {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.attendance.manager;
+
+/**
+ * Open-addressing map from student ID to its index in an array of IDs the caller
+ * owns, such as a store's ordinals or the search index's document numbers.
+ *
+ * The table is a flat long array of (hash << 32 | index + 1), 0 for an empty slot,
+ * probed linearly. Keys are read from the caller's array, and only when the hash
+ * matches, so an entry costs one long instead of a node and a boxed Integer, and the
+ * lookup that finds the ID has also found its index. The table is kept at most half
+ * full; removal shifts later entries of the run back, so there are no tombstones.
+ *
+ * Not thread-safe. A lookup racing a writer may miss or throw but never loops, so
+ * lookups can run under an optimistic read as long as the result is validated.
+ */
+final class StudentIdMap {
+    
+    private static final int MIN_CAPACITY = 16;
+    
+    private long[] slots = new long[MIN_CAPACITY];
+    private int size;
+    
+    /**
+     * Index of an ID, or -1 if it isn't mapped
+     *
+     * @param ids the caller's IDs by index
+     */
+    int get(String studentId, String[] ids) {
+        long[] table = slots;
+        int mask = table.length - 1;
+        int hash = studentId.hashCode();
+        int slot = slotOf(hash, mask);
+        // At most one pass over the table, even if a writer has just filled it
+        for (int probes = 0; probes <= mask; probes++) {
+            long entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if ((int) (entry >>> 32) == hash) {
+                String candidate = ids[(int) entry - 1];
+                if (candidate == studentId || candidate.equals(studentId)) {
+                    return (int) entry - 1;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Map an ID that isn't mapped yet
+     */
+    void add(String studentId, int index) {
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int hash = studentId.hashCode();
+        int slot = slotOf(hash, mask);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = (long) hash << 32 | (index + 1);
+        size++;
+    }
+    
+    /**
+     * Unmap an ID, returning its index, or -1 if it wasn't mapped. ids must still hold it.
+     */
+    int remove(String studentId, String[] ids) {
+        int mask = slots.length - 1;
+        int hash = studentId.hashCode();
+        int slot = slotOf(hash, mask);
+        while (slots[slot] != 0
+                && ((int) (slots[slot] >>> 32) != hash || !ids[(int) slots[slot] - 1].equals(studentId))) {
+            slot = (slot + 1) & mask;
+        }
+        if (slots[slot] == 0) {
+            return -1;
+        }
+        int index = (int) slots[slot] - 1;
+        // Shift back every later entry of the run that would no longer be reachable
+        int hole = slot;
+        for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int home = slotOf((int) (slots[next] >>> 32), mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+        size--;
+        return index;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void clear() {
+        slots = new long[MIN_CAPACITY];
+        size = 0;
+    }
+    
+    private void resize(int capacity) {
+        long[] table = new long[capacity];
+        int mask = capacity - 1;
+        for (long entry : slots) {
+            if (entry != 0) {
+                int slot = slotOf((int) (entry >>> 32), mask);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = entry;
+            }
+        }
+        slots = table;
+    }
+    
+    static int slotOf(int hash, int mask) {
+        // Spread the String hash: IDs like "S00001" differ only in their last characters
+        int spread = hash * 0x9E3779B9;
+        return (spread ^ (spread >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,610 @@
+package com.attendance.manager;
+
+import com.attendance.model.Student;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Prefix and typo-tolerant search over student ID, name, email and course.
+ *
+ * Each field is lowercased and split into words at anything but a letter or digit,
+ * so "john.smith@uni.edu" is indexed as john, smith, uni and edu, and the query
+ * "john.sm" is split the same way. Every word is a path in a trie held in parallel
+ * arrays, and each node where a word ends lists the students (and fields) it came from.
+ *
+ * A query term walks the trie computing one edit-distance row per node (adjacent
+ * transpositions count as one edit). Terms of 4+ characters tolerate one edit and
+ * 8+ two; shorter terms must match exactly. Every term must match, and students rank
+ * by exact word, then prefix (shorter words first), then fuzzy matches, with ID and
+ * name above email and course.
+ *
+ * Documents are student IDs only; matches are looked up in the directory once the
+ * search is done. Removing a student only drops its document; the stale postings are
+ * skipped until they outnumber the live students, and then the trie is rebuilt from
+ * its own words. Updates take a write lock; searches share a read lock.
+ */
+final class StudentSearchIndex {
+    
+    // Field a posting came from, in its low two bits
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int EMAIL = 2;
+    private static final int COURSE = 3;
+    private static final int[] FIELD_BONUS = {3, 2, 1, 0};
+    
+    // Base score per term; prefix matches lose a point per extra character, fuzzy five per edit
+    private static final int EXACT = 40;
+    private static final int PREFIX = 30;
+    private static final int FUZZY = 20;
+    
+    private static final int MAX_TERMS = 8;
+    private static final int MAX_WORD = 64;       // Longer words are indexed and searched by their first 64 characters
+    private static final int REBUILD_MIN = 1024;  // Don't rebuild for fewer removed students than this
+    private static final int SHORT_PREFIX = 2;    // Nodes this shallow also list every word below them
+    
+    // Per-thread search state, so concurrent searches don't clear arrays the size of the roster
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+    
+    private final StampedLock lock = new StampedLock();
+    
+    // Trie nodes, node 0 being the root; children are a linked list of siblings
+    private char[] labels;
+    private int[] firstChild;
+    private int[] nextSibling;
+    // Postings are (document << 2 | field) per word ending at a node. Most words (IDs, emails)
+    // belong to one student, so the first posting is kept inline and only the rest in an array.
+    private int[] postingCounts;
+    private int[] firstPostings;
+    private int[][] morePostings;
+    // One and two letter prefixes match most of the roster (every ID starts "s0..."), so those
+    // nodes also keep a flat list of the words below them, as (document << 6 | length << 2 | field)
+    // with the length capped at 15 (room for 2^26 documents), and a search scans it instead of
+    // walking the subtree.
+    private int[][] wordsBelow;
+    private int[] wordsBelowCounts;
+    private int nodeCount;
+    
+    // IDs of the indexed students by document number, null once removed; live has a bit per indexed one
+    private String[] documents;
+    private long[] live;
+    private int documentCount;
+    private int removedCount;
+    private final StudentIdMap documentOf = new StudentIdMap();
+    
+    StudentSearchIndex() {
+        clear();
+    }
+    
+    private void clear() {
+        labels = new char[1024];
+        firstChild = new int[1024];
+        nextSibling = new int[1024];
+        postingCounts = new int[1024];
+        firstPostings = new int[1024];
+        morePostings = new int[1024][];
+        wordsBelow = new int[1024][];
+        wordsBelowCounts = new int[1024];
+        firstChild[0] = -1;
+        nextSibling[0] = -1;
+        nodeCount = 1;
+        documents = new String[1024];
+        live = new long[1024 / 64];
+        documentCount = 0;
+        removedCount = 0;
+        documentOf.clear();
+    }
+    
+    void add(Student student) {
+        long stamp = lock.writeLock();
+        try {
+            index(student);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    void remove(String studentId) {
+        long stamp = lock.writeLock();
+        try {
+            unindex(studentId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Re-index a student whose fields changed
+     */
+    void update(Student student) {
+        long stamp = lock.writeLock();
+        try {
+            unindex(student.getStudentId());
+            index(student);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    private void index(Student student) {
+        if (documentOf.get(student.getStudentId(), documents) >= 0) {
+            return;
+        }
+        int document = addDocument(student.getStudentId());
+        indexField(document, student.getStudentId(), ID);
+        indexField(document, student.getName(), NAME);
+        indexField(document, student.getEmail(), EMAIL);
+        indexField(document, student.getCourse(), COURSE);
+    }
+    
+    private int addDocument(String studentId) {
+        if (documentCount == documents.length) {
+            documents = Arrays.copyOf(documents, documentCount * 2);
+            live = Arrays.copyOf(live, documents.length / 64);
+        }
+        int document = documentCount++;
+        documents[document] = studentId;
+        live[document >>> 6] |= 1L << document;
+        documentOf.add(studentId, document);
+        return document;
+    }
+    
+    private void unindex(String studentId) {
+        int document = documentOf.remove(studentId, documents);
+        if (document < 0) {
+            return;
+        }
+        documents[document] = null;
+        live[document >>> 6] &= ~(1L << document);
+        removedCount++;
+        if (removedCount >= REBUILD_MIN && removedCount > documentOf.size()) {
+            rebuild();
+        }
+    }
+    
+    /**
+     * Index the live students again from scratch, dropping stale postings and unused words.
+     * The words come from the trie itself, so the students' fields aren't needed.
+     */
+    private void rebuild() {
+        // Number the live documents densely again, in their current order
+        int[] renumbered = new int[documentCount];
+        String[] ids = new String[documentOf.size()];
+        int count = 0;
+        for (int i = 0; i < documentCount; i++) {
+            if (documents[i] == null) {
+                renumbered[i] = -1;
+            } else {
+                renumbered[i] = count;
+                ids[count++] = documents[i];
+            }
+        }
+        ArrayList<String> words = new ArrayList<>();
+        ArrayList<int[]> postings = new ArrayList<>();
+        gather(0, 0, new char[MAX_WORD], renumbered, words, postings);
+        clear();
+        for (int i = 0; i < count; i++) {
+            addDocument(ids[i]);
+        }
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            for (int posting : postings.get(w)) {
+                post(word, 0, word.length(), posting);
+            }
+        }
+    }
+    
+    /**
+     * Collect every word at or below a node with its live postings, renumbered
+     */
+    private void gather(int node, int depth, char[] path, int[] renumbered, List<String> words,
+                        List<int[]> postings) {
+        if (depth > 0) {
+            path[depth - 1] = labels[node];
+            int count = postingCounts[node];
+            int[] kept = new int[count];
+            int keptCount = 0;
+            for (int i = 0; i < count; i++) {
+                int posting = i == 0 ? firstPostings[node] : morePostings[node][i - 1];
+                int document = renumbered[posting >>> 2];
+                if (document >= 0) {
+                    kept[keptCount++] = document << 2 | (posting & 3);
+                }
+            }
+            if (keptCount > 0) {
+                words.add(new String(path, 0, depth));
+                postings.add(Arrays.copyOf(kept, keptCount));
+            }
+        }
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            gather(child, depth + 1, path, renumbered, words, postings);
+        }
+    }
+    
+    private void indexField(int document, String value, int field) {
+        if (value == null) {
+            return;
+        }
+        String text = value.toLowerCase(Locale.ROOT);
+        int posting = document << 2 | field;
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && !Character.isLetterOrDigit(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                post(text, start, end, posting);
+            }
+            start = end;
+        }
+    }
+    
+    /**
+     * Add a posting to the node of the word text[start, end), creating its path
+     */
+    private void post(String text, int start, int end, int posting) {
+        int length = Math.min(end - start, MAX_WORD);
+        int[] shortPrefixes = new int[SHORT_PREFIX];
+        int node = 0;
+        for (int i = 0; i < length; i++) {
+            node = child(node, text.charAt(start + i));
+            if (i < SHORT_PREFIX) {
+                shortPrefixes[i] = node;
+            }
+        }
+        int count = postingCounts[node];
+        if (count == 0) {
+            firstPostings[node] = posting;
+        } else {
+            int[] list = morePostings[node];
+            if ((count == 1 ? firstPostings[node] : list[count - 2]) == posting) {
+                return; // Same word twice in one field
+            }
+            if (list == null) {
+                list = new int[2];
+            } else if (count - 1 == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+            }
+            list[count - 1] = posting;
+            morePostings[node] = list;
+        }
+        postingCounts[node] = count + 1;
+        int word = (posting >>> 2) << 6 | Math.min(length, 15) << 2 | (posting & 3);
+        for (int depth = 1; depth <= SHORT_PREFIX && depth < length; depth++) {
+            int prefix = shortPrefixes[depth - 1];
+            int[] list = wordsBelow[prefix];
+            int below = wordsBelowCounts[prefix];
+            if (list == null) {
+                list = new int[16];
+            } else if (below == list.length) {
+                list = Arrays.copyOf(list, below * 2);
+            }
+            list[below] = word;
+            wordsBelow[prefix] = list;
+            wordsBelowCounts[prefix] = below + 1;
+        }
+    }
+    
+    private int child(int parent, char label) {
+        for (int node = firstChild[parent]; node >= 0; node = nextSibling[node]) {
+            if (labels[node] == label) {
+                return node;
+            }
+        }
+        if (nodeCount == labels.length) {
+            int capacity = nodeCount * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            postingCounts = Arrays.copyOf(postingCounts, capacity);
+            firstPostings = Arrays.copyOf(firstPostings, capacity);
+            morePostings = Arrays.copyOf(morePostings, capacity);
+            wordsBelow = Arrays.copyOf(wordsBelow, capacity);
+            wordsBelowCounts = Arrays.copyOf(wordsBelowCounts, capacity);
+        }
+        int node = nodeCount++;
+        labels[node] = label;
+        firstChild[node] = -1;
+        nextSibling[node] = firstChild[parent];
+        firstChild[parent] = node;
+        return node;
+    }
+    
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return documentOf.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Students matching every word of the query, best first
+     *
+     * @param limit at most this many students are returned; all matches are counted
+     * @param directory looks the matched IDs up, outside the index lock
+     */
+    SearchResult search(String query, int limit, Function<String, Student> directory) {
+        String[] terms = terms(query);
+        if (terms.length == 0) {
+            return new SearchResult(query, new String[0], new int[0], 0, directory);
+        }
+        long stamp = lock.readLock();
+        try {
+            Scratch scratch = SCRATCH.get();
+            scratch.begin(documentCount);
+            for (int t = 0; t < terms.length; t++) {
+                matchTerm(terms[t], t, scratch);
+            }
+            return rank(query, terms.length, limit, directory, scratch);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    private static String[] terms(String query) {
+        if (query == null) {
+            return new String[0];
+        }
+        String[] words = query.trim().toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+");
+        if (words.length > 0 && words[0].isEmpty()) {
+            words = Arrays.copyOfRange(words, 1, words.length); // Query started with punctuation
+        }
+        if (words.length == 0) {
+            return new String[0];
+        }
+        String[] terms = Arrays.copyOf(words, Math.min(words.length, MAX_TERMS));
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i].length() > MAX_WORD) {
+                terms[i] = terms[i].substring(0, MAX_WORD);
+            }
+        }
+        return terms;
+    }
+    
+    private void matchTerm(String term, int termIndex, Scratch scratch) {
+        int length = term.length();
+        int maxEdits = length >= 8 ? 2 : length >= 4 ? 1 : 0;
+        char[] chars = term.toCharArray();
+        int[][] rows = scratch.rows(length);
+        for (int i = 0; i <= length; i++) {
+            rows[0][i] = i;
+        }
+        for (int node = firstChild[0]; node >= 0; node = nextSibling[node]) {
+            walk(node, 1, maxEdits + 1, chars, maxEdits, rows, termIndex, scratch);
+        }
+    }
+    
+    /**
+     * Extend the edit-distance table by one node and score the words ending there
+     *
+     * @param best smallest distance between the term and any prefix of the path so far
+     */
+    private void walk(int node, int depth, int best, char[] term, int maxEdits, int[][] rows, int termIndex,
+                      Scratch scratch) {
+        int[] above = rows[depth - 1];
+        int[] row = rows[depth];
+        char label = labels[node];
+        scratch.path[depth] = label;
+        row[0] = depth;
+        int closest = depth;
+        for (int i = 1; i <= term.length; i++) {
+            int distance = Math.min(above[i] + 1, row[i - 1] + 1);
+            distance = Math.min(distance, above[i - 1] + (term[i - 1] == label ? 0 : 1));
+            if (i > 1 && depth > 1 && term[i - 1] == scratch.path[depth - 1] && term[i - 2] == label) {
+                distance = Math.min(distance, rows[depth - 2][i - 2] + 1); // Transposition
+            }
+            row[i] = distance;
+            closest = Math.min(closest, distance);
+        }
+        int whole = row[term.length];
+        best = Math.min(best, whole);
+        if (postingCounts[node] > 0) {
+            int score = whole == 0 ? EXACT : score(best, depth, term.length);
+            if (best <= maxEdits) {
+                offer(node, score, termIndex, scratch);
+            }
+        }
+        if (best == 0 || closest > maxEdits || depth == MAX_WORD) {
+            if (best <= maxEdits) {
+                // Either the term is a prefix of every word below, or no longer word can get
+                // closer; every word below extends the best match so far
+                collect(node, depth, best, term.length, termIndex, scratch);
+            }
+            return;
+        }
+        for (int next = firstChild[node]; next >= 0; next = nextSibling[next]) {
+            walk(next, depth + 1, best, term, maxEdits, rows, termIndex, scratch);
+        }
+    }
+    
+    /**
+     * Score every word below a node that is already known to extend a match
+     */
+    private void collect(int parent, int depth, int best, int termLength, int termIndex, Scratch scratch) {
+        if (depth <= SHORT_PREFIX && depth > 0) {
+            // Only exact prefixes of one or two letters get here, so the capped length is enough to score
+            int[] list = wordsBelow[parent];
+            int count = wordsBelowCounts[parent];
+            for (int i = 0; i < count; i++) {
+                int word = list[i];
+                int document = word >>> 6;
+                if ((live[document >>> 6] & 1L << document) != 0) {
+                    int points = score(best, word >>> 2 & 15, termLength) + FIELD_BONUS[word & 3];
+                    scratch.offer(document, termIndex, points);
+                }
+            }
+            return;
+        }
+        // Iterative, as short prefixes cover most of the trie; each level keeps at most one pending sibling
+        int[] nodes = scratch.nodes;
+        int[] depths = scratch.depths;
+        int pending = 0;
+        if (firstChild[parent] >= 0) {
+            nodes[pending] = firstChild[parent];
+            depths[pending++] = depth + 1;
+        }
+        while (pending > 0) {
+            int node = nodes[--pending];
+            int nodeDepth = depths[pending];
+            if (postingCounts[node] > 0) {
+                offer(node, score(best, nodeDepth, termLength), termIndex, scratch);
+            }
+            if (nextSibling[node] >= 0) {
+                nodes[pending] = nextSibling[node];
+                depths[pending++] = nodeDepth;
+            }
+            if (firstChild[node] >= 0) {
+                nodes[pending] = firstChild[node];
+                depths[pending++] = nodeDepth + 1;
+            }
+        }
+    }
+    
+    private static int score(int best, int wordLength, int termLength) {
+        return best == 0 ? PREFIX - Math.min(wordLength - termLength, 9) : FUZZY - 5 * best;
+    }
+    
+    private void offer(int node, int score, int termIndex, Scratch scratch) {
+        int posting = firstPostings[node];
+        if ((live[posting >>> 8] & 1L << (posting >>> 2)) != 0) {
+            scratch.offer(posting >>> 2, termIndex, score + FIELD_BONUS[posting & 3]);
+        }
+        int[] list = morePostings[node];
+        int count = postingCounts[node] - 1;
+        for (int i = 0; i < count; i++) {
+            posting = list[i];
+            if ((live[posting >>> 8] & 1L << (posting >>> 2)) != 0) {
+                scratch.offer(posting >>> 2, termIndex, score + FIELD_BONUS[posting & 3]);
+            }
+        }
+    }
+    
+    /**
+     * Order the documents that matched every term by score with a counting sort
+     */
+    private SearchResult rank(String query, int termCount, int limit, Function<String, Student> directory,
+                              Scratch scratch) {
+        int[] byScore = new int[termCount * (EXACT + FIELD_BONUS[ID]) + 1];
+        int matches = 0;
+        for (int i = 0; i < scratch.touchedCount; i++) {
+            int score = scratch.score(scratch.touched[i], termCount);
+            if (score >= 0) {
+                byScore[score]++;
+                matches++;
+            }
+        }
+        // Start of each score's run in the ranked order, highest score first
+        int start = 0;
+        for (int score = byScore.length - 1; score >= 0; score--) {
+            int count = byScore[score];
+            byScore[score] = start;
+            start += count;
+        }
+        int kept = Math.min(matches, Math.max(limit, 0));
+        String[] ranked = new String[kept];
+        int[] scores = new int[kept];
+        for (int i = 0; i < scratch.touchedCount; i++) {
+            int document = scratch.touched[i];
+            int score = scratch.score(document, termCount);
+            if (score >= 0) {
+                int position = byScore[score]++;
+                if (position < kept) {
+                    ranked[position] = documents[document];
+                    scores[position] = score;
+                }
+            }
+        }
+        return new SearchResult(query, ranked, scores, matches, directory);
+    }
+    
+    /**
+     * Per-document scores of the search in progress, one packed int per document so an
+     * offer touches a single cache line. Each int is stamped with the search that wrote
+     * it, so the array is only cleared once every 8191 searches and a search only pays
+     * for the documents it touches.
+     */
+    private static final class Scratch {
+        
+        // Search stamp << 19 | total score << 10 | score of the current term << 4 | terms matched so far
+        private static final int TERM_BITS = 4;
+        private static final int TERM_SCORE_BITS = 6;
+        private static final int SCORE_BITS = 9;
+        private static final int SCORE_SHIFT = TERM_BITS + TERM_SCORE_BITS;
+        private static final int STAMP_SHIFT = SCORE_SHIFT + SCORE_BITS;
+        private static final int TERM_MASK = (1 << TERM_BITS) - 1;
+        private static final int TERM_SCORE_MASK = (1 << TERM_SCORE_BITS) - 1;
+        private static final int SCORE_MASK = (1 << SCORE_BITS) - 1;
+        private static final int MAX_STAMP = (1 << (32 - STAMP_SHIFT)) - 1;
+        
+        int[] states = new int[0];
+        int[] touched = new int[0];   // Documents touched by the first term
+        int touchedCount;
+        int stamp;
+        final char[] path = new char[MAX_WORD + 1];
+        final int[][] rows = new int[MAX_WORD + 1][];
+        final int[] nodes = new int[MAX_WORD + 2];  // Pending nodes of a collect
+        final int[] depths = new int[MAX_WORD + 2];
+        
+        void begin(int documentCount) {
+            if (states.length < documentCount) {
+                int capacity = Math.max(documentCount, states.length * 2);
+                states = new int[capacity];
+                touched = new int[capacity];
+                stamp = 0;
+            }
+            if (stamp == MAX_STAMP) {
+                Arrays.fill(states, 0);
+                stamp = 0;
+            }
+            stamp++;
+            touchedCount = 0;
+        }
+        
+        int[][] rows(int termLength) {
+            if (rows[0] == null || rows[0].length < termLength + 1) {
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = new int[termLength + 1];
+                }
+            }
+            return rows;
+        }
+        
+        void offer(int document, int termIndex, int points) {
+            int state = states[document];
+            if (state >>> STAMP_SHIFT != stamp) {
+                if (termIndex == 0) {
+                    states[document] = stamp << STAMP_SHIFT | points << SCORE_SHIFT | points << TERM_BITS | 1;
+                    touched[touchedCount++] = document;
+                }
+                return; // Otherwise it missed an earlier term
+            }
+            int terms = state & TERM_MASK;
+            if (terms == termIndex) {
+                int score = (state >>> SCORE_SHIFT & SCORE_MASK) + points;
+                states[document] = stamp << STAMP_SHIFT | score << SCORE_SHIFT | points << TERM_BITS | termIndex + 1;
+            } else if (terms == termIndex + 1) {
+                int termScore = state >>> TERM_BITS & TERM_SCORE_MASK;
+                if (points > termScore) {
+                    int score = (state >>> SCORE_SHIFT & SCORE_MASK) + points - termScore;
+                    states[document] = stamp << STAMP_SHIFT | score << SCORE_SHIFT | points << TERM_BITS | terms;
+                }
+            }
+        }
+        
+        /**
+         * Total score of a document touched by this search, or -1 if it didn't match every term
+         */
+        int score(int document, int termCount) {
+            int state = states[document];
+            return (state & TERM_MASK) == termCount ? state >>> SCORE_SHIFT & SCORE_MASK : -1;
+        }
+    }
+}
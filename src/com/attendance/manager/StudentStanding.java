@@ -0,0 +1,65 @@
+package com.attendance.manager;
+
+/**
+ * A student's overall attendance under the manager's counting policy,
+ * as ranked by the at-risk index
+ */
+public class StudentStanding {
+    
+    private final String studentId;
+    private final int attended;
+    private final int counted;
+    final double ratio; // attended / counted, the index sort key
+    
+    StudentStanding(String studentId, int attended, int counted) {
+        this(studentId, attended, counted, counted == 0 ? 0.0 : (double) attended / counted);
+    }
+    
+    private StudentStanding(String studentId, int attended, int counted, double ratio) {
+        this.studentId = studentId;
+        this.attended = attended;
+        this.counted = counted;
+        this.ratio = ratio;
+    }
+    
+    /**
+     * Search key that sorts before every student at the given percentage
+     */
+    static StudentStanding probe(double percentage) {
+        return new StudentStanding("", 0, 0, percentage / 100.0);
+    }
+    
+    public String getStudentId() {
+        return studentId;
+    }
+    
+    /**
+     * Marks counted as attended under the counting policy
+     */
+    public int getAttended() {
+        return attended;
+    }
+    
+    /**
+     * Marks counted towards the total under the counting policy
+     */
+    public int getCounted() {
+        return counted;
+    }
+    
+    public double getPercentage() {
+        if (counted == 0) {
+            return 0.0;
+        }
+        return (attended * 100.0) / counted;
+    }
+    
+    @Override
+    public String toString() {
+        return "StudentStanding{" +
+                "ID='" + studentId + '\'' +
+                ", Attended=" + attended +
+                ", Counted=" + counted +
+                '}';
+    }
+}
@@ -0,0 +1,71 @@
+package com.attendance.manager;
+
+/**
+ * Immutable, date-sorted copy of one student's marks with prefix sums of every
+ * status, so the counts over any run of marks take two array reads and any date
+ * range is found with two binary searches. Opaque outside this package: only
+ * AttendanceService.studentTimeline builds one, and only AttendanceAnalytics reads it.
+ */
+public final class StudentTimeline {
+    
+    private static final int STATES = AttendanceStore.STATES;
+    
+    final AttendanceStore store;   // Store the marks were copied from, or null; versions only compare within one
+    final long version;            // AttendanceStore.studentVersion at the time of the copy
+    private final int[] days;      // Epoch day of each mark, ascending
+    private final int[] prefix;    // prefix[i * STATES + state]: marks with that state among the first i
+    
+    /**
+     * @param timeline marks sorted by date, packed as (epochDay << 8 | state)
+     */
+    StudentTimeline(AttendanceStore store, long version, long[] timeline) {
+        this.store = store;
+        this.version = version;
+        this.days = new int[timeline.length];
+        this.prefix = new int[(timeline.length + 1) * STATES];
+        for (int i = 0; i < timeline.length; i++) {
+            days[i] = (int) (timeline[i] >> 8);
+            System.arraycopy(prefix, i * STATES, prefix, (i + 1) * STATES, STATES);
+            prefix[(i + 1) * STATES + (int) (timeline[i] & 0xFF)]++;
+        }
+    }
+    
+    int size() {
+        return days.length;
+    }
+    
+    int day(int index) {
+        return days[index];
+    }
+    
+    /**
+     * Index of the first mark on or after epochDay
+     */
+    int lowerBound(int epochDay) {
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Index of the first mark after epochDay
+     */
+    int upperBound(int epochDay) {
+        return epochDay == Integer.MAX_VALUE ? days.length : lowerBound(epochDay + 1);
+    }
+    
+    /**
+     * Number of marks with a state among marks [from, to)
+     */
+    int count(int from, int to, int state) {
+        return prefix[to * STATES + state] - prefix[from * STATES + state];
+    }
+}
@@ -0,0 +1,21 @@
+package com.attendance.manager;
+
+/**
+ * Notified when a student's attendance percentage crosses a watched threshold.
+ * Called on the thread that changed the marks, after the manager's locks are released,
+ * so listeners may query the manager. Crossings of one student saved at the same time
+ * from different threads may arrive out of order; query the manager for the current standing.
+ */
+public interface ThresholdListener {
+    
+    /**
+     * The student's percentage fell below the threshold
+     */
+    void studentAtRisk(StudentStanding standing);
+    
+    /**
+     * The student's percentage rose to or above the threshold, or the student
+     * no longer has a percentage (removed, or no counted marks left: getCounted() == 0)
+     */
+    void studentRecovered(StudentStanding standing);
+}
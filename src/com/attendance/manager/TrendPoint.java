@@ -0,0 +1,66 @@
+package com.attendance.manager;
+
+import java.time.LocalDate;
+
+/**
+ * Attendance over one period of a trend: a rolling window, a week or a month
+ */
+public class TrendPoint {
+    
+    private final LocalDate start;
+    private final LocalDate end;
+    private final int attended;
+    private final int counted;
+    
+    TrendPoint(LocalDate start, LocalDate end, int attended, int counted) {
+        this.start = start;
+        this.end = end;
+        this.attended = attended;
+        this.counted = counted;
+    }
+    
+    /**
+     * First day of the period (for windows, the date of its first session)
+     */
+    public LocalDate getStart() {
+        return start;
+    }
+    
+    /**
+     * Last day of the period (for windows, the date of its last session)
+     */
+    public LocalDate getEnd() {
+        return end;
+    }
+    
+    /**
+     * Marks counted as attended under the counting policy
+     */
+    public int getAttended() {
+        return attended;
+    }
+    
+    /**
+     * Marks counted towards the total under the counting policy
+     */
+    public int getCounted() {
+        return counted;
+    }
+    
+    public double getPercentage() {
+        if (counted == 0) {
+            return 0.0;
+        }
+        return (attended * 100.0) / counted;
+    }
+    
+    @Override
+    public String toString() {
+        return "TrendPoint{" +
+                "Start=" + start +
+                ", End=" + end +
+                ", Attended=" + attended +
+                ", Counted=" + counted +
+                '}';
+    }
+}
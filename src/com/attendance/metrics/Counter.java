@@ -0,0 +1,38 @@
+package com.attendance.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events, e.g. rows saved; only counts while metrics are enabled
+ */
+public final class Counter {
+    
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    
+    Counter(String name) {
+        this.name = name;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void increment() {
+        add(1);
+    }
+    
+    public void add(long amount) {
+        if (Metrics.isEnabled()) {
+            count.add(amount);
+        }
+    }
+    
+    public long get() {
+        return count.sum();
+    }
+    
+    void reset() {
+        count.reset();
+    }
+}
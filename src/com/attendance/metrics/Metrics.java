@@ -0,0 +1,222 @@
+package com.attendance.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of timers, counters and gauges.
+ *
+ * Instrumented code holds its Timers and Counters in static final fields; they only
+ * record while metrics are enabled, so the disabled cost is one volatile read per call.
+ * Metrics start disabled unless -Dattendance.metrics=true is given, and can be switched
+ * at runtime with setEnabled or over JMX (see registerMBean). Every timed call is also
+ * a JFR event (com.attendance.Operation) while metrics are enabled.
+ */
+public final class Metrics {
+    
+    public static final String OBJECT_NAME = "com.attendance:type=Metrics";
+    
+    private static volatile boolean enabled = Boolean.getBoolean("attendance.metrics");
+    
+    // Sorted by name so the dump is stable
+    private static final ConcurrentSkipListMap<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final ConcurrentSkipListMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final ConcurrentSkipListMap<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    
+    private static ScheduledExecutorService dumper; // Guarded by Metrics.class
+    private static boolean registered;              // Guarded by Metrics.class
+    
+    private Metrics() {
+    }
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+    
+    /**
+     * The timer with this name, created on first use
+     */
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+    
+    /**
+     * The counter with this name, created on first use
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+    
+    /**
+     * Publish a value read on demand (e.g. a record count), replacing any gauge of the same name.
+     * The supplier is called from the dump and JMX threads, so it must be thread-safe.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, Objects.requireNonNull(value));
+    }
+    
+    public static void removeGauge(String name) {
+        gauges.remove(name);
+    }
+    
+    /**
+     * Summaries of the timers that have recorded anything, by name
+     */
+    public static List<TimerStats> timerStats() {
+        List<TimerStats> stats = new ArrayList<>();
+        for (Timer timer : timers.values()) {
+            TimerStats timerStats = new TimerStats(timer);
+            if (timerStats.getCount() > 0) {
+                stats.add(timerStats);
+            }
+        }
+        return stats;
+    }
+    
+    public static Map<String, Long> counterValues() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Counter counter : counters.values()) {
+            values.put(counter.getName(), counter.get());
+        }
+        return values;
+    }
+    
+    public static Map<String, Long> gaugeValues() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        return values;
+    }
+    
+    /**
+     * Every metric as a text table
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append("--- Metrics at ")
+            .append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
+            .append(enabled ? "" : " (disabled)")
+            .append(" ---\n");
+        text.append(String.format("%-36s %10s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Mean us", "p50 us", "p90 us", "p99 us", "Max us"));
+        for (TimerStats stats : timerStats()) {
+            text.append(stats).append('\n');
+        }
+        for (Map.Entry<String, Long> counter : counterValues().entrySet()) {
+            text.append(String.format("%-36s %10d%n", counter.getKey(), counter.getValue()));
+        }
+        for (Map.Entry<String, Long> gauge : gaugeValues().entrySet()) {
+            text.append(String.format("%-36s %10d%n", gauge.getKey(), gauge.getValue()));
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Clear every timer and counter; gauges are read live and stay
+     */
+    public static void reset() {
+        for (Timer timer : timers.values()) {
+            timer.getHistogram().reset();
+        }
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+    }
+    
+    /**
+     * Register the MetricsMXBean with the platform MBean server, once
+     *
+     * @return false if registration failed
+     */
+    public static synchronized boolean registerMBean() {
+        if (registered) {
+            return true;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            registered = true;
+            return true;
+        } catch (JMException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Pass the text dump to out every period on a daemon thread, replacing any earlier schedule.
+     * Nothing is written while metrics are disabled.
+     */
+    public static synchronized void startDump(long period, TimeUnit unit, Consumer<String> out) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "attendance-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            if (enabled) {
+                out.accept(dump());
+            }
+        }, period, period, unit);
+    }
+    
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+    
+    private static final class Bean implements MetricsMXBean {
+        
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+        
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+        
+        @Override
+        public List<TimerStats> getTimers() {
+            return timerStats();
+        }
+        
+        @Override
+        public Map<String, Long> getCounters() {
+            return counterValues();
+        }
+        
+        @Override
+        public Map<String, Long> getGauges() {
+            return gaugeValues();
+        }
+        
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+        
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.attendance.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of Metrics, registered as com.attendance:type=Metrics
+ */
+public interface MetricsMXBean {
+    
+    boolean isEnabled();
+    
+    void setEnabled(boolean enabled);
+    
+    List<TimerStats> getTimers();
+    
+    Map<String, Long> getCounters();
+    
+    Map<String, Long> getGauges();
+    
+    /**
+     * The same table as the periodic text dump
+     */
+    String dump();
+    
+    /**
+     * Clear every timer and counter
+     */
+    void reset();
+}
@@ -0,0 +1,28 @@
+package com.attendance.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed for every timed operation while metrics are enabled and a
+ * recording includes it, e.g. java -XX:StartFlightRecording ... -Dattendance.metrics=true
+ */
+@Name("com.attendance.Operation")
+@Label("Attendance Operation")
+@Category("Attendance")
+@Description("A timed AttendanceManager, report or UI operation")
+@StackTrace(false)
+final class OperationEvent extends Event {
+    
+    @Label("Operation")
+    String operation;
+    
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
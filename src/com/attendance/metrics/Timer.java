@@ -0,0 +1,63 @@
+package com.attendance.metrics;
+
+/**
+ * Latency and call count of one operation.
+ *
+ * Usage:
+ *   private static final Timer SAVE = Metrics.timer("manager.markSessionStatus");
+ *   long started = SAVE.start();
+ *   try { ... } finally { SAVE.stop(started); }
+ *
+ * While metrics are disabled start() returns 0 without reading the clock and stop(0)
+ * returns at once, so an instrumented call pays one volatile read.
+ */
+public final class Timer {
+    
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    
+    Timer(String name) {
+        this.name = name;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+    
+    /**
+     * @return the start time to pass to stop, or 0 if metrics are disabled
+     */
+    public long start() {
+        return Metrics.isEnabled() ? System.nanoTime() : 0L;
+    }
+    
+    public void stop(long started) {
+        if (started == 0L) {
+            return;
+        }
+        long elapsed = System.nanoTime() - started;
+        histogram.record(elapsed);
+        OperationEvent event = new OperationEvent();
+        if (event.isEnabled()) {
+            event.operation = name;
+            event.latency = elapsed;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Time a task that doesn't return anything
+     */
+    public void time(Runnable task) {
+        long started = start();
+        try {
+            task.run();
+        } finally {
+            stop(started);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.attendance.metrics;
+
+/**
+ * Point-in-time summary of a Timer, in microseconds, as shown over JMX and in the text dump
+ */
+public class TimerStats {
+    
+    private final String name;
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+    
+    TimerStats(Timer timer) {
+        LatencyHistogram histogram = timer.getHistogram();
+        this.name = timer.getName();
+        this.count = histogram.getCount();
+        this.meanMicros = histogram.getMean() / 1000.0;
+        this.p50Micros = histogram.getPercentile(0.50) / 1000.0;
+        this.p90Micros = histogram.getPercentile(0.90) / 1000.0;
+        this.p99Micros = histogram.getPercentile(0.99) / 1000.0;
+        this.maxMicros = histogram.getMax() / 1000.0;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+    
+    public double getP50Micros() {
+        return p50Micros;
+    }
+    
+    public double getP90Micros() {
+        return p90Micros;
+    }
+    
+    public double getP99Micros() {
+        return p99Micros;
+    }
+    
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%-36s %10d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                name, count, meanMicros, p50Micros, p90Micros, p99Micros, maxMicros);
+    }
+}
@@ -3,18 +3,25 @@ package com.attendance.model;
 import java.io.Serializable;
 import java.time.LocalDate;
 
-
+/**
+ * A single attendance mark. Records returned by AttendanceManager are views
+ * created on read; use AttendanceManager.markAttendance to change a mark.
+ */
 public class AttendanceRecord implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     private String studentId;
     private LocalDate date;
-    private boolean present;
+    private AttendanceStatus status;
     
     public AttendanceRecord(String studentId, LocalDate date, boolean present) {
+        this(studentId, date, AttendanceStatus.of(present));
+    }
+    
+    public AttendanceRecord(String studentId, LocalDate date, AttendanceStatus status) {
         this.studentId = studentId;
         this.date = date;
-        this.present = present;
+        this.status = status;
     }
     
     public String getStudentId() {
@@ -33,12 +40,23 @@ public class AttendanceRecord implements Serializable {
         this.date = date;
     }
     
+    /**
+     * Whether the student was there; late counts as present
+     */
     public boolean isPresent() {
-        return present;
+        return status.isPresent();
     }
     
     public void setPresent(boolean present) {
-        this.present = present;
+        this.status = AttendanceStatus.of(present);
+    }
+    
+    public AttendanceStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(AttendanceStatus status) {
+        this.status = status;
     }
     
     @Override
@@ -46,7 +64,7 @@ public class AttendanceRecord implements Serializable {
         return "AttendanceRecord{" +
                 "StudentID='" + studentId + '\'' +
                 ", Date=" + date +
-                ", Status=" + (present ? "Present" : "Absent") +
+                ", Status=" + status +
                 '}';
     }
 }
@@ -0,0 +1,65 @@
+package com.attendance.model;
+
+/**
+ * Status of a student on an attendance date.
+ *
+ * Each status has a small integer code used by the storage engine, the journal
+ * and the snapshot formats. ABSENT and PRESENT keep the codes 0 and 1 that the
+ * boolean "present" flag was stored as, so older data reads back unchanged.
+ */
+public enum AttendanceStatus {
+    UNMARKED(-1, "Unmarked"),  // Attendance not taken yet; stores nothing
+    ABSENT(0, "Absent"),
+    PRESENT(1, "Present"),
+    LATE(2, "Late"),           // Attended, but late
+    EXCUSED(3, "Excused");     // Absent with a valid excuse
+    
+    private final int code;
+    private final String label;
+    
+    AttendanceStatus(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+    
+    public int getCode() {
+        return code;
+    }
+    
+    public boolean isMarked() {
+        return this != UNMARKED;
+    }
+    
+    /**
+     * Whether the student was physically there (present or late)
+     */
+    public boolean isPresent() {
+        return this == PRESENT || this == LATE;
+    }
+    
+    public static AttendanceStatus of(boolean present) {
+        return present ? PRESENT : ABSENT;
+    }
+    
+    public static AttendanceStatus fromCode(int code) {
+        switch (code) {
+            case -1:
+                return UNMARKED;
+            case 0:
+                return ABSENT;
+            case 1:
+                return PRESENT;
+            case 2:
+                return LATE;
+            case 3:
+                return EXCUSED;
+            default:
+                throw new IllegalArgumentException("Unknown attendance status code " + code);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,836 @@
+package com.attendance.persistence;
+
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.MutationLog;
+import com.attendance.manager.RecordVisitor;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary write-ahead log for an AttendanceService, with periodic compacted snapshots.
+ *
+ * The directory holds numbered generations: snapshot-N.snap is the full state at the
+ * moment journal-N.log was started, and journal-N.log holds every change made after it.
+ * Startup replays the newest snapshot followed by the journals of the same or newer
+ * generations. A checkpoint rotates to a new journal, writes the snapshot for it and
+ * deletes the older generations.
+ *
+ * Every entry is framed as [int length][byte type][payload][int crc32], so a torn
+ * write at the end of the log is detected and truncated on recovery. Student IDs are
+ * written once per file and referenced by int afterwards. Statuses are written as
+ * their AttendanceStatus code; version 1 files used 0/1 for absent/present, which
+ * are the same codes, so they replay unchanged. Version 3 added course changes,
+ * version 4 bulk removals and version 5 null strings, written with length -1 (0xFFFF).
+ *
+ * A checkpoint read-locks the whole manager before rotating, so writers may keep
+ * running on other threads. The automatic checkpoint is never taken inside a
+ * MutationLog callback, which runs under the manager's lock: it is queued to the
+ * flusher thread once the write that reached the threshold has released its locks.
+ *
+ * Usage:
+ *   AttendanceJournal journal = new AttendanceJournal(dir, FsyncPolicy.GROUP);
+ *   journal.recover(manager);   // replays, then journals every change of manager
+ *   ...
+ *   journal.close();
+ */
+public class AttendanceJournal implements MutationLog, AutoCloseable {
+    
+    static final int LOG_MAGIC = 0x41544A4C;      // "ATJL"
+    static final int SNAPSHOT_MAGIC = 0x4154534E; // "ATSN"
+    static final int FORMAT_VERSION = 5;
+    static final int OLDEST_READABLE_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    
+    // Entry types
+    static final byte DEFINE_ID = 1;      // id string; gets the next reference number
+    static final byte ADD_STUDENT = 2;    // id, name, email, course; id gets the next reference number
+    static final byte REMOVE_STUDENT = 3; // ref
+    static final byte MARK = 4;           // ref, epochDay, status
+    static final byte UNMARK = 5;         // ref, epochDay
+    static final byte MARK_SESSION = 6;   // epochDay, count, count x (ref, status); status -1 removes
+    static final byte END = 7;            // end of a complete snapshot
+    static final byte CHANGE_COURSE = 8;  // ref, course
+    static final byte REMOVE_STUDENTS = 9; // count, count x ref
+    
+    private static final int ENTRY_OVERHEAD = 9; // length + type + crc
+    private static final int NULL_LENGTH = 0xFFFF; // String length marking null, from version 5
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private long groupCommitMillis = 10;
+    private long snapshotThreshold = 1_000_000;
+    
+    private volatile AttendanceService manager;
+    private EntryWriter log;
+    private long generation;
+    private long entriesSinceSnapshot;
+    private boolean dirty;
+    private IOException failure;
+    private ScheduledExecutorService flusher; // Group commits and automatic checkpoints
+    
+    private final Object checkpointLock = new Object(); // One checkpoint at a time; taken before the manager's locks
+    private volatile boolean checkpointDue; // The snapshot threshold was reached; cleared by the rotation
+    private final AtomicBoolean checkpointQueued = new AtomicBoolean();
+    
+    public AttendanceJournal(Path directory, FsyncPolicy fsyncPolicy) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+    }
+    
+    /**
+     * Interval between group commits when the policy is GROUP (default 10 ms)
+     */
+    public void setGroupCommitMillis(long groupCommitMillis) {
+        this.groupCommitMillis = groupCommitMillis;
+    }
+    
+    /**
+     * Number of journal entries after which a compacted snapshot is taken
+     * automatically (default 1,000,000); 0 disables automatic snapshots.
+     * For a concurrent manager it is taken on the flusher thread, otherwise
+     * by the writer, once its change is complete.
+     */
+    public void setSnapshotThreshold(long snapshotThreshold) {
+        this.snapshotThreshold = snapshotThreshold;
+    }
+    
+    public long getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * Load the newest snapshot and the journal tail into the manager, then start
+     * journaling its changes. With an empty directory this only attaches the journal.
+     */
+    public synchronized void recover(AttendanceService manager) throws IOException {
+        if (this.manager != null) {
+            throw new IllegalStateException("Journal is already attached");
+        }
+        Files.createDirectories(directory);
+        TreeSet<Long> snapshots = generations(".snap");
+        TreeSet<Long> logs = generations(".log");
+        
+        MutationLog previousLog = manager.getMutationLog();
+        manager.setMutationLog(null);
+        long start = snapshots.isEmpty() ? (logs.isEmpty() ? 0 : logs.first()) : snapshots.last();
+        if (!snapshots.isEmpty()) {
+            replay(snapshotPath(start), SNAPSHOT_MAGIC, manager);
+        }
+        
+        ReplayResult last = null;
+        long lastGeneration = start;
+        for (long gen : logs.tailSet(start, true)) {
+            last = replay(logPath(gen), LOG_MAGIC, manager);
+            lastGeneration = gen;
+        }
+        manager.setMutationLog(previousLog);
+        
+        if (last != null) {
+            // Continue the newest journal, cutting off any torn entry at its end
+            FileChannel channel = FileChannel.open(logPath(lastGeneration), StandardOpenOption.WRITE);
+            channel.truncate(last.validLength);
+            channel.position(last.validLength);
+            log = new EntryWriter(channel);
+            for (String studentId : last.ids) {
+                log.refs.put(studentId, log.refs.size());
+            }
+        } else {
+            log = createLog(lastGeneration);
+        }
+        generation = lastGeneration;
+        entriesSinceSnapshot = 0;
+        checkpointDue = false;
+        deleteGenerationsBefore(generation);
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "attendance-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (fsyncPolicy == FsyncPolicy.GROUP) {
+            flusher.scheduleAtFixedRate(this::groupCommit, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        }
+        this.manager = manager;
+        manager.setMutationLog(this);
+    }
+    
+    /**
+     * Write a compacted snapshot of the current state and start a new journal generation.
+     * Older generations are deleted once the snapshot is safely on disk. Writers on other
+     * threads wait while the snapshot is written, but not while it is synced.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            AttendanceService attached = requireAttached();
+            SnapshotFile snapshot = new SnapshotFile();
+            try {
+                // Locks are taken manager first, journal second, as writers take them. The
+                // rotation happens with the whole manager locked, so the snapshot is exactly
+                // the state the new journal starts from.
+                attached.visitState(snapshot::start, snapshot::addStudent, snapshot);
+                snapshot.commit();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                snapshot.close();
+            }
+            deleteGenerationsBefore(snapshot.generation);
+        }
+    }
+    
+    /**
+     * Write and fsync everything appended so far
+     */
+    public synchronized void sync() throws IOException {
+        requireAttached();
+        log.drain();
+        log.channel.force(false);
+        dirty = false;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                // Let a queued or running checkpoint finish
+                flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (manager == null) {
+                return;
+            }
+            manager.setMutationLog(null);
+            manager = null;
+            log.drain();
+            log.channel.force(false);
+            log.channel.close();
+        }
+    }
+    
+    // ---- MutationLog ----
+    
+    @Override
+    public synchronized void studentAdded(Student student) {
+        try {
+            log.putStudent(student);
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public synchronized void studentRemoved(String studentId) {
+        try {
+            int ref = log.ref(studentId);
+            log.begin(REMOVE_STUDENT, 4);
+            log.buffer.putInt(ref);
+            log.end();
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public synchronized void studentsRemoved(String[] studentIds, int count) {
+        try {
+            int[] refs = new int[count];
+            for (int i = 0; i < count; i++) {
+                refs[i] = log.ref(studentIds[i]);
+            }
+            log.begin(REMOVE_STUDENTS, 4 + 4 * count);
+            log.buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                log.buffer.putInt(refs[i]);
+            }
+            log.end();
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public synchronized void studentCourseChanged(String studentId, String course) {
+        try {
+            int ref = log.ref(studentId);
+            byte[] name = utf8(course);
+            log.begin(CHANGE_COURSE, 4 + stringSize(name));
+            log.buffer.putInt(ref);
+            log.putString(name);
+            log.end();
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public synchronized void attendanceMarked(String studentId, LocalDate date, AttendanceStatus status) {
+        try {
+            int ref = log.ref(studentId);
+            log.begin(MARK, 9);
+            log.buffer.putInt(ref);
+            log.buffer.putInt((int) date.toEpochDay());
+            log.buffer.put((byte) status.getCode());
+            log.end();
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public synchronized void attendanceRemoved(String studentId, LocalDate date) {
+        try {
+            int ref = log.ref(studentId);
+            log.begin(UNMARK, 8);
+            log.buffer.putInt(ref);
+            log.buffer.putInt((int) date.toEpochDay());
+            log.end();
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public synchronized void sessionMarked(LocalDate date, String[] studentIds, AttendanceStatus[] statuses, int count) {
+        try {
+            // Define any new IDs before the session entry that references them
+            int[] refs = new int[count];
+            for (int i = 0; i < count; i++) {
+                refs[i] = log.ref(studentIds[i]);
+            }
+            log.begin(MARK_SESSION, 8 + 5 * count);
+            log.buffer.putInt((int) date.toEpochDay());
+            log.buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                log.buffer.putInt(refs[i]);
+                log.buffer.put((byte) statuses[i].getCode());
+            }
+            log.end();
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void appended() throws IOException {
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            throw e;
+        }
+        dirty = true;
+        entriesSinceSnapshot++;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            log.drain();
+            log.channel.force(false);
+            dirty = false;
+        }
+        if (snapshotThreshold > 0 && entriesSinceSnapshot >= snapshotThreshold) {
+            checkpointDue = true; // Taken by changeCompleted, once the manager's locks are released
+        }
+    }
+    
+    @Override
+    public void changeCompleted() {
+        AttendanceService attached = manager;
+        if (!checkpointDue || attached == null || !checkpointQueued.compareAndSet(false, true)) {
+            return;
+        }
+        if (!attached.isConcurrent()) {
+            // A single-threaded manager may only be read by the thread writing it
+            dueCheckpoint();
+            return;
+        }
+        try {
+            flusher.execute(this::dueCheckpoint);
+        } catch (RejectedExecutionException e) {
+            checkpointQueued.set(false); // Closing
+        }
+    }
+    
+    /**
+     * The automatic checkpoint; a failure is surfaced to the writer on its next append
+     */
+    private void dueCheckpoint() {
+        try {
+            if (checkpointDue && manager != null) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        } catch (IllegalStateException e) {
+            // Closed while the checkpoint was queued
+        } finally {
+            checkpointQueued.set(false);
+        }
+    }
+    
+    /**
+     * Start the next generation's journal: everything appended after this belongs to it
+     */
+    private synchronized long rotate() throws IOException {
+        requireAttached();
+        long next = generation + 1;
+        log.drain();
+        log.channel.force(false);
+        log.channel.close();
+        log = createLog(next);
+        generation = next;
+        dirty = false;
+        entriesSinceSnapshot = 0;
+        checkpointDue = false;
+        return next;
+    }
+    
+    private synchronized void groupCommit() {
+        if (!dirty || manager == null) {
+            return;
+        }
+        try {
+            log.drain();
+            log.channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            // Surfaced to the writer on its next append
+            failure = e;
+        }
+    }
+    
+    private AttendanceService requireAttached() {
+        AttendanceService attached = manager;
+        if (attached == null) {
+            throw new IllegalStateException("Journal is not attached; call recover first");
+        }
+        return attached;
+    }
+    
+    // ---- Snapshots ----
+    
+    /**
+     * A snapshot being written by checkpoint: filled while the manager is locked, then
+     * synced and moved into place once it is unlocked
+     */
+    private final class SnapshotFile implements RecordVisitor {
+        long generation;
+        private Path temp;
+        private FileChannel channel;
+        private EntryWriter writer;
+        private SessionBatch batch;
+        
+        /**
+         * Rotate the journal and create the snapshot of the new generation
+         */
+        void start() {
+            try {
+                generation = rotate();
+                temp = directory.resolve(String.format("snapshot-%010d.tmp", generation));
+                channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                writer = new EntryWriter(channel);
+                writer.writeHeader(SNAPSHOT_MAGIC, generation);
+                batch = new SessionBatch(writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        void addStudent(Student student) {
+            try {
+                writer.putStudent(student);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        /**
+         * Marks arrive grouped by session; one MARK_SESSION entry is written per session
+         */
+        @Override
+        public void visit(String studentId, LocalDate date, AttendanceStatus status) {
+            batch.add(studentId, date, status);
+        }
+        
+        void commit() throws IOException {
+            batch.flush();
+            writer.begin(END, 0);
+            writer.end();
+            writer.drain();
+            channel.force(true);
+            channel.close();
+            Files.move(temp, snapshotPath(generation), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+    
+    /**
+     * Collects the marks of one session while streaming a snapshot
+     */
+    private static final class SessionBatch {
+        private final EntryWriter writer;
+        private LocalDate date;
+        private int[] refs = new int[1024];
+        private byte[] states = new byte[1024];
+        private int count;
+        
+        SessionBatch(EntryWriter writer) {
+            this.writer = writer;
+        }
+        
+        void add(String studentId, LocalDate recordDate, AttendanceStatus status) {
+            if (!recordDate.equals(date)) {
+                flush();
+                date = recordDate;
+            }
+            if (count == refs.length) {
+                refs = Arrays.copyOf(refs, count * 2);
+                states = Arrays.copyOf(states, count * 2);
+            }
+            refs[count] = writer.refs.get(studentId);
+            states[count] = (byte) status.getCode();
+            count++;
+        }
+        
+        void flush() {
+            if (count == 0) {
+                return;
+            }
+            try {
+                writer.begin(MARK_SESSION, 8 + 5 * count);
+                writer.buffer.putInt((int) date.toEpochDay());
+                writer.buffer.putInt(count);
+                for (int i = 0; i < count; i++) {
+                    writer.buffer.putInt(refs[i]);
+                    writer.buffer.put(states[i]);
+                }
+                writer.end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count = 0;
+        }
+    }
+    
+    // ---- Replay ----
+    
+    /**
+     * Outcome of replaying one file: the ID reference table and the length of the valid prefix
+     */
+    private static final class ReplayResult {
+        final ArrayList<String> ids = new ArrayList<>();
+        int version;
+        long validLength;
+    }
+    
+    private static ReplayResult replay(Path path, int expectedMagic, AttendanceService manager) throws IOException {
+        ReplayResult result = new ReplayResult();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Journal file too large to replay: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < HEADER_SIZE || buffer.getInt() != expectedMagic) {
+                throw new IOException("Not an attendance journal file: " + path);
+            }
+            result.version = buffer.getInt();
+            if (result.version < OLDEST_READABLE_VERSION || result.version > FORMAT_VERSION) {
+                throw new IOException("Unsupported journal version " + result.version + " in " + path);
+            }
+            buffer.getLong(); // generation
+            result.validLength = HEADER_SIZE;
+            
+            CRC32 crc = new CRC32();
+            boolean complete = false;
+            while (buffer.remaining() >= 4) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length <= 0 || buffer.remaining() < length + 4) {
+                    break; // Torn write at the tail
+                }
+                ByteBuffer entry = buffer.slice(start + 4, length);
+                crc.reset();
+                crc.update(entry.duplicate());
+                buffer.position(start + 4 + length);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    break; // Corrupt tail
+                }
+                if (entry.get() == END) {
+                    complete = true;
+                } else {
+                    apply(entry.position(0), result, manager);
+                }
+                result.validLength = buffer.position();
+            }
+            if (expectedMagic == SNAPSHOT_MAGIC && !complete) {
+                throw new IOException("Snapshot is incomplete: " + path);
+            }
+        }
+        return result;
+    }
+    
+    private static void apply(ByteBuffer entry, ReplayResult file, AttendanceService manager) {
+        ArrayList<String> ids = file.ids;
+        byte type = entry.get();
+        switch (type) {
+            case DEFINE_ID:
+                ids.add(getString(entry, file.version));
+                break;
+            case ADD_STUDENT: {
+                String id = getString(entry, file.version);
+                manager.addStudent(new Student(id, getString(entry, file.version), getString(entry, file.version),
+                        getString(entry, file.version)));
+                ids.add(id);
+                break;
+            }
+            case REMOVE_STUDENT:
+                manager.removeStudent(ids.get(entry.getInt()));
+                break;
+            case REMOVE_STUDENTS: {
+                int count = entry.getInt();
+                ArrayList<String> cohort = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    cohort.add(ids.get(entry.getInt()));
+                }
+                manager.removeStudents(cohort);
+                break;
+            }
+            case CHANGE_COURSE: {
+                String id = ids.get(entry.getInt());
+                manager.changeCourse(id, getString(entry, file.version));
+                break;
+            }
+            case MARK: {
+                String id = ids.get(entry.getInt());
+                manager.markAttendance(id, LocalDate.ofEpochDay(entry.getInt()), AttendanceStatus.fromCode(entry.get()));
+                break;
+            }
+            case UNMARK: {
+                String id = ids.get(entry.getInt());
+                manager.removeAttendance(id, LocalDate.ofEpochDay(entry.getInt()));
+                break;
+            }
+            case MARK_SESSION: {
+                LocalDate date = LocalDate.ofEpochDay(entry.getInt());
+                int count = entry.getInt();
+                for (int i = 0; i < count; i++) {
+                    String id = ids.get(entry.getInt());
+                    manager.markAttendance(id, date, AttendanceStatus.fromCode(entry.get()));
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal entry type " + type);
+        }
+    }
+    
+    // ---- Files ----
+    
+    private EntryWriter createLog(long gen) throws IOException {
+        FileChannel channel = FileChannel.open(logPath(gen), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        EntryWriter writer = new EntryWriter(channel);
+        writer.writeHeader(LOG_MAGIC, gen);
+        writer.drain();
+        channel.force(true);
+        return writer;
+    }
+    
+    private Path logPath(long gen) {
+        return directory.resolve(String.format("journal-%010d.log", gen));
+    }
+    
+    private Path snapshotPath(long gen) {
+        return directory.resolve(String.format("snapshot-%010d.snap", gen));
+    }
+    
+    private TreeSet<Long> generations(String suffix) throws IOException {
+        TreeSet<Long> generations = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dash = name.indexOf('-');
+                if (dash > 0 && name.endsWith(suffix)) {
+                    try {
+                        generations.add(Long.parseLong(name.substring(dash + 1, name.length() - suffix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        return generations;
+    }
+    
+    private void deleteGenerationsBefore(long gen) throws IOException {
+        for (long old : generations(".log").headSet(gen, false)) {
+            Files.deleteIfExists(logPath(old));
+        }
+        for (long old : generations(".snap").headSet(gen, false)) {
+            Files.deleteIfExists(snapshotPath(old));
+        }
+        for (long old : generations(".tmp")) {
+            Files.deleteIfExists(directory.resolve(String.format("snapshot-%010d.tmp", old)));
+        }
+    }
+    
+    /**
+     * The bytes to write for a string; null stays null and is written as NULL_LENGTH
+     */
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Value too long for the journal: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+    
+    private static int stringSize(byte[] value) {
+        return 2 + (value == null ? 0 : value.length);
+    }
+    
+    private static String getString(ByteBuffer entry, int version) {
+        int length = entry.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH && version >= 5) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        entry.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Frames entries into a write buffer and drains it to a file channel
+     */
+    private static final class EntryWriter {
+        final FileChannel channel;
+        final HashMap<String, Integer> refs = new HashMap<>();
+        final CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+        int entryStart;
+        
+        EntryWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+        
+        void writeHeader(int magic, long gen) throws IOException {
+            reserve(HEADER_SIZE);
+            buffer.putInt(magic);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putLong(gen);
+        }
+        
+        /**
+         * Write an ADD_STUDENT entry, giving the student's ID the next reference number
+         */
+        void putStudent(Student student) throws IOException {
+            byte[] id = utf8(student.getStudentId());
+            byte[] name = utf8(student.getName());
+            byte[] email = utf8(student.getEmail());
+            byte[] course = utf8(student.getCourse());
+            begin(ADD_STUDENT, stringSize(id) + stringSize(name) + stringSize(email) + stringSize(course));
+            putString(id);
+            putString(name);
+            putString(email);
+            putString(course);
+            end();
+            refs.put(student.getStudentId(), refs.size());
+        }
+        
+        /**
+         * Reference number for an ID, writing a DEFINE_ID entry the first time it is seen
+         */
+        int ref(String studentId) throws IOException {
+            Integer ref = refs.get(studentId);
+            if (ref != null) {
+                return ref;
+            }
+            byte[] id = utf8(studentId);
+            begin(DEFINE_ID, stringSize(id));
+            putString(id);
+            end();
+            int next = refs.size();
+            refs.put(studentId, next);
+            return next;
+        }
+        
+        void begin(byte type, int payloadSize) throws IOException {
+            reserve(ENTRY_OVERHEAD + payloadSize);
+            entryStart = buffer.position();
+            buffer.putInt(0); // length, filled in by end()
+            buffer.put(type);
+        }
+        
+        void end() {
+            int end = buffer.position();
+            int length = end - entryStart - 4;
+            crc.reset();
+            crc.update(buffer.duplicate().position(entryStart + 4).limit(end));
+            buffer.putInt(entryStart, length);
+            buffer.putInt((int) crc.getValue());
+        }
+        
+        void putString(byte[] value) {
+            if (value == null) {
+                buffer.putShort((short) NULL_LENGTH);
+                return;
+            }
+            buffer.putShort((short) value.length);
+            buffer.put(value);
+        }
+        
+        void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        private void reserve(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            drain();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(Math.max(bytes, buffer.capacity() * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.attendance.persistence;
+
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.RecordVisitor;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Streaming CSV/TSV writer for students and attendance marks, in the layout CsvImporter reads.
+ *
+ * Attendance is written straight from the storage engine with AttendanceManager.forEachRecord,
+ * so no record list is built; each stripe is read under its lock, so every stripe
+ * is exported as a consistent view. Dates are encoded once per session and statuses once.
+ *
+ * Usage:
+ *   long rows = new CsvExporter(manager, CsvFormat.CSV).exportAttendance(file);
+ */
+public class CsvExporter {
+    
+    private final AttendanceService manager;
+    private final CsvFormat format;
+    
+    public CsvExporter(AttendanceService manager, CsvFormat format) {
+        this.manager = manager;
+        this.format = format;
+    }
+    
+    /**
+     * Write every student, replacing the file
+     *
+     * @return the number of students written
+     */
+    public long exportStudents(Path file) throws IOException {
+        long rows = 0;
+        try (CsvWriter writer = create(file)) {
+            writer.field("Student ID");
+            writer.field("Name");
+            writer.field("Email");
+            writer.field("Course");
+            writer.endRecord();
+            for (Student student : manager.getAllStudents()) {
+                writer.field(student.getStudentId());
+                writer.field(student.getName());
+                writer.field(student.getEmail());
+                writer.field(student.getCourse());
+                writer.endRecord();
+                rows++;
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Write every attendance mark, grouped by session, replacing the file
+     *
+     * @return the number of marks written
+     */
+    public long exportAttendance(Path file) throws IOException {
+        try (CsvWriter writer = create(file)) {
+            writer.field("Student ID");
+            writer.field("Date");
+            writer.field("Status");
+            writer.endRecord();
+            MarkWriter marks = new MarkWriter(writer);
+            try {
+                manager.forEachRecord(marks);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return marks.rows;
+        }
+    }
+    
+    private CsvWriter create(Path file) throws IOException {
+        return new CsvWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), format);
+    }
+    
+    private static final class MarkWriter implements RecordVisitor {
+        private final CsvWriter writer;
+        private final byte[][] statuses = new byte[AttendanceStatus.values().length][];
+        private LocalDate lastDate;   // One LocalDate per session, so compared by identity
+        private byte[] lastDateBytes;
+        long rows;
+        
+        MarkWriter(CsvWriter writer) {
+            this.writer = writer;
+            for (AttendanceStatus status : AttendanceStatus.values()) {
+                statuses[status.ordinal()] = status.toString().getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+        
+        @Override
+        public void visit(String studentId, LocalDate date, AttendanceStatus status) {
+            if (date != lastDate) {
+                lastDate = date;
+                lastDateBytes = date.toString().getBytes(StandardCharsets.US_ASCII);
+            }
+            try {
+                writer.field(studentId);
+                writer.raw(lastDateBytes);
+                writer.raw(statuses[status.ordinal()]);
+                writer.endRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows++;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.attendance.persistence;
+
+import java.nio.file.Path;
+
+/**
+ * Field delimiter of a delimited text file. Both formats quote fields the same way:
+ * a field holding the delimiter, a quote or a line break is wrapped in double
+ * quotes, with quotes inside it doubled.
+ */
+public enum CsvFormat {
+    CSV((byte) ','),
+    TSV((byte) '\t');
+    
+    private final byte delimiter;
+    
+    CsvFormat(byte delimiter) {
+        this.delimiter = delimiter;
+    }
+    
+    public byte getDelimiter() {
+        return delimiter;
+    }
+    
+    /**
+     * TSV for .tsv and .tab files, CSV otherwise
+     */
+    public static CsvFormat forFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".tsv") || name.endsWith(".tab") ? TSV : CSV;
+    }
+}
@@ -0,0 +1,373 @@
+package com.attendance.persistence;
+
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.BulkMarkResult;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streaming CSV/TSV loader for students and attendance marks.
+ *
+ * Students files have the columns Student ID, Name, Email, Course and attendance
+ * files Student ID, Date (yyyy-MM-dd), Status (a status label such as "Present",
+ * or its code); both may start with the header that CsvExporter writes. Rows are
+ * parsed straight from the read buffer: student IDs are looked up in a cache keyed
+ * by their bytes and dates are compared as bytes with the previous row's, so a
+ * typical attendance row allocates nothing. Rows are applied through the manager's
+ * batch APIs, attendance grouped by date, and at most one batch is held in memory.
+ * Rows that can't be applied are counted and described in the ImportResult.
+ *
+ * Usage:
+ *   ImportResult result = new CsvImporter(manager, CsvFormat.CSV).importAttendance(file);
+ */
+public class CsvImporter {
+    
+    /**
+     * Notified every PROGRESS_ROWS rows and once at the end
+     */
+    public interface Progress {
+        void update(long bytesRead, long totalBytes, long rowsRead);
+    }
+    
+    private static final int PROGRESS_ROWS = 1 << 16;      // Rows between progress updates and cancellation checks
+    private static final int STUDENT_BATCH = 4096;         // Students per addStudents call
+    private static final int ATTENDANCE_BATCH = 1 << 16;   // Marks buffered, over all dates, before they are applied
+    private static final int ID_CACHE_LIMIT = 1 << 20;     // Cached student IDs before the cache is cleared
+    private static final AttendanceStatus[] STATUSES = AttendanceStatus.values();
+    private static final String[] STATUS_CODES = new String[STATUSES.length];
+    
+    static {
+        for (int i = 0; i < STATUSES.length; i++) {
+            STATUS_CODES[i] = Integer.toString(STATUSES[i].getCode());
+        }
+    }
+    
+    private final AttendanceService manager;
+    private final CsvFormat format;
+    
+    public CsvImporter(AttendanceService manager, CsvFormat format) {
+        this.manager = manager;
+        this.format = format;
+    }
+    
+    public ImportResult importStudents(Path file) throws IOException {
+        return importStudents(file, (bytesRead, totalBytes, rowsRead) -> { }, () -> false);
+    }
+    
+    /**
+     * Add the students of a file; rows whose student ID already exists are skipped
+     */
+    public ImportResult importStudents(Path file, Progress progress, BooleanSupplier cancelled) throws IOException {
+        ImportResult result = new ImportResult();
+        ArrayList<Student> batch = new ArrayList<>(STUDENT_BATCH);
+        HashSet<String> batchIds = new HashSet<>();
+        HashMap<String, String> courseNames = new HashMap<>(); // One String per course
+        try (CsvReader reader = open(file)) {
+            boolean first = true;
+            while (reader.next()) {
+                if (first && reader.fieldEqualsIgnoreCase(0, "Student ID")) {
+                    first = false;
+                    continue; // Header
+                }
+                first = false;
+                if (result.getRowsRead() > 0 && result.getRowsRead() % PROGRESS_ROWS == 0) {
+                    progress.update(reader.bytesRead(), reader.size(), result.getRowsRead());
+                    if (cancelled.getAsBoolean()) {
+                        applyStudents(batch, batchIds, result);
+                        return result;
+                    }
+                }
+                result.rowRead();
+                
+                if (reader.fieldCount() != 4) {
+                    result.badRow(reader.record(), "expected 4 fields but found " + reader.fieldCount());
+                    continue;
+                }
+                String studentId = reader.trimmed(0);
+                if (studentId.isEmpty()) {
+                    result.badRow(reader.record(), "missing student ID");
+                    continue;
+                }
+                if (manager.studentExists(studentId) || !batchIds.add(studentId)) {
+                    result.badRow(reader.record(), "student ID " + studentId + " already exists");
+                    continue;
+                }
+                String course = courseNames.computeIfAbsent(reader.trimmed(3), name -> name);
+                batch.add(new Student(studentId, reader.trimmed(1), reader.trimmed(2), course));
+                if (batch.size() == STUDENT_BATCH) {
+                    applyStudents(batch, batchIds, result);
+                }
+            }
+            applyStudents(batch, batchIds, result);
+            progress.update(reader.bytesRead(), reader.size(), result.getRowsRead());
+        }
+        result.setCompleted(true);
+        return result;
+    }
+    
+    private void applyStudents(ArrayList<Student> batch, HashSet<String> batchIds, ImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int added = manager.addStudents(batch);
+        result.applied(added);
+        result.rejected(batch.size() - added, "already existed when they were applied");
+        batch.clear();
+        batchIds.clear();
+    }
+    
+    public ImportResult importAttendance(Path file) throws IOException {
+        return importAttendance(file, (bytesRead, totalBytes, rowsRead) -> { }, () -> false);
+    }
+    
+    /**
+     * Apply the marks of a file, in file order: a later row for the same student and date
+     * wins, and an Unmarked status removes the mark. Rows of unknown students are skipped.
+     */
+    public ImportResult importAttendance(Path file, Progress progress, BooleanSupplier cancelled) throws IOException {
+        ImportResult result = new ImportResult();
+        LinkedHashMap<Integer, DateBatch> batches = new LinkedHashMap<>();
+        IdCache ids = new IdCache();
+        byte[] lastDate = new byte[0];
+        DateBatch lastBatch = null;
+        int buffered = 0;
+        try (CsvReader reader = open(file)) {
+            boolean first = true;
+            while (reader.next()) {
+                if (first && reader.fieldEqualsIgnoreCase(0, "Student ID")) {
+                    first = false;
+                    continue; // Header
+                }
+                first = false;
+                if (result.getRowsRead() > 0 && result.getRowsRead() % PROGRESS_ROWS == 0) {
+                    progress.update(reader.bytesRead(), reader.size(), result.getRowsRead());
+                    if (cancelled.getAsBoolean()) {
+                        applyAttendance(batches, result);
+                        return result;
+                    }
+                }
+                result.rowRead();
+                
+                if (reader.fieldCount() != 3) {
+                    result.badRow(reader.record(), "expected 3 fields but found " + reader.fieldCount());
+                    continue;
+                }
+                String studentId = ids.get(reader.bytes(), reader.start(0), reader.length(0));
+                if (studentId == null) {
+                    studentId = reader.trimmed(0);
+                    if (!manager.studentExists(studentId)) {
+                        result.badRow(reader.record(), "unknown student " + studentId);
+                        continue;
+                    }
+                    ids.put(reader.bytes(), reader.start(0), reader.length(0), studentId);
+                }
+                AttendanceStatus status = parseStatus(reader, 2);
+                if (status == null) {
+                    result.badRow(reader.record(), "unknown status " + reader.string(2));
+                    continue;
+                }
+                
+                // Rows usually come grouped by date: only parse a date that differs from the previous row's
+                byte[] bytes = reader.bytes();
+                int dateStart = reader.start(1);
+                int dateEnd = reader.end(1);
+                if (lastBatch == null || !Arrays.equals(lastDate, 0, lastDate.length, bytes, dateStart, dateEnd)) {
+                    int epochDay = parseEpochDay(bytes, dateStart, dateEnd);
+                    if (epochDay == Integer.MIN_VALUE) {
+                        result.badRow(reader.record(), "bad date " + reader.string(1) + " (expected yyyy-MM-dd)");
+                        continue;
+                    }
+                    lastDate = Arrays.copyOfRange(bytes, dateStart, dateEnd);
+                    lastBatch = batches.computeIfAbsent(epochDay, DateBatch::new);
+                }
+                lastBatch.add(studentId, status);
+                if (++buffered == ATTENDANCE_BATCH) {
+                    applyAttendance(batches, result);
+                    lastBatch = null;
+                    buffered = 0;
+                }
+            }
+            applyAttendance(batches, result);
+            progress.update(reader.bytesRead(), reader.size(), result.getRowsRead());
+        }
+        result.setCompleted(true);
+        return result;
+    }
+    
+    private void applyAttendance(LinkedHashMap<Integer, DateBatch> batches, ImportResult result) {
+        for (DateBatch batch : batches.values()) {
+            BulkMarkResult applied = manager.markSessionStatus(batch.date, batch.studentIds, batch.statuses, batch.count);
+            result.applied(applied.getAppliedCount());
+            result.rejected(applied.getCount(BulkMarkResult.Outcome.UNKNOWN_STUDENT),
+                    "of " + batch.date + " had a student removed during the import");
+        }
+        batches.clear();
+    }
+    
+    private CsvReader open(Path file) throws IOException {
+        return new CsvReader(FileChannel.open(file, StandardOpenOption.READ), format);
+    }
+    
+    /**
+     * A status label (any case) or code, or null if the field is neither
+     */
+    private static AttendanceStatus parseStatus(CsvReader reader, int field) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (reader.fieldEqualsIgnoreCase(field, STATUSES[i].toString())
+                    || reader.fieldEqualsIgnoreCase(field, STATUS_CODES[i])) {
+                return STATUSES[i];
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Epoch day of a yyyy-MM-dd date, or Integer.MIN_VALUE if it isn't one
+     */
+    private static int parseEpochDay(byte[] bytes, int start, int end) {
+        if (end - start != 10 || bytes[start + 4] != '-' || bytes[start + 7] != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int year = digits(bytes, start, 4);
+        int month = digits(bytes, start + 5, 2);
+        int day = digits(bytes, start + 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return Integer.MIN_VALUE;
+        }
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+    
+    private static int digits(byte[] bytes, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    /**
+     * Rows of one date waiting to be applied, in file order
+     */
+    private static final class DateBatch {
+        final LocalDate date;
+        String[] studentIds = new String[64];
+        AttendanceStatus[] statuses = new AttendanceStatus[64];
+        int count;
+        
+        DateBatch(int epochDay) {
+            this.date = LocalDate.ofEpochDay(epochDay);
+        }
+        
+        void add(String studentId, AttendanceStatus status) {
+            if (count == studentIds.length) {
+                studentIds = Arrays.copyOf(studentIds, count * 2);
+                statuses = Arrays.copyOf(statuses, count * 2);
+            }
+            studentIds[count] = studentId;
+            statuses[count++] = status;
+        }
+    }
+    
+    /**
+     * Open-addressing table from the UTF-8 bytes of a known student ID to one shared
+     * String, so repeated IDs are neither decoded, allocated nor looked up in the manager again
+     */
+    private static final class IdCache {
+        private byte[][] keys = new byte[1024][];
+        private String[] values = new String[1024];
+        private int size;
+        
+        /**
+         * The cached ID for these bytes, or null
+         */
+        String get(byte[] bytes, int start, int length) {
+            int mask = keys.length - 1;
+            int slot = slot(hash(bytes, start, length), mask);
+            while (keys[slot] != null) {
+                byte[] key = keys[slot];
+                if (Arrays.equals(key, 0, key.length, bytes, start, start + length)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+        
+        /**
+         * Cache an ID that get didn't find
+         */
+        void put(byte[] bytes, int start, int length, String studentId) {
+            if (size >= ID_CACHE_LIMIT) {
+                Arrays.fill(keys, null);
+                Arrays.fill(values, null);
+                size = 0;
+            }
+            int mask = keys.length - 1;
+            int slot = slot(hash(bytes, start, length), mask);
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = Arrays.copyOfRange(bytes, start, start + length);
+            values[slot] = studentId;
+            if (++size * 4 > keys.length * 3) {
+                grow();
+            }
+        }
+        
+        private static int hash(byte[] bytes, int start, int length) {
+            int hash = 0;
+            for (int i = start; i < start + length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash;
+        }
+        
+        /**
+         * The hash is String.hashCode of the ID, whose top bits after a golden-ratio multiply
+         * pick the manager's stripe. Exports list IDs stripe by stripe, so the slot must come
+         * from differently mixed low bits or each stripe's IDs would pile into one cluster.
+         */
+        private static int slot(int hash, int mask) {
+            int h = hash * 0x85EBCA6B;
+            return (h ^ (h >>> 15)) & mask;
+        }
+        
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                byte[] key = oldKeys[i];
+                if (key == null) {
+                    continue;
+                }
+                int slot = slot(hash(key, 0, key.length), mask);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
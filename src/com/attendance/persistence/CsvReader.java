@@ -0,0 +1,253 @@
+package com.attendance.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming record parser for delimited UTF-8 text over a FileChannel.
+ *
+ * The file is read in large chunks into one reusable buffer and each record is
+ * split in place: fields are exposed as byte ranges of that buffer, so nothing is
+ * allocated per field unless the caller asks for a String. Quoted fields may hold
+ * delimiters, doubled quotes and line breaks; they are unescaped in place.
+ * Memory is bounded by the buffer, which only grows to fit a single longer record.
+ */
+final class CsvReader implements AutoCloseable {
+    
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte QUOTE = '"';
+    
+    private final FileChannel channel;
+    private final byte delimiter;
+    private final long size;
+    private ByteBuffer buffer;
+    private byte[] bytes;     // buffer's backing array
+    private int position;     // Start of the next record
+    private int limit;        // End of the valid bytes
+    private boolean eof;
+    private long bytesRead;
+    private long record;      // 1-based number of the current record
+    
+    // Fields of the current record: byte ranges [starts[i], ends[i]) of bytes
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int fieldCount;
+    
+    CsvReader(FileChannel channel, CsvFormat format) throws IOException {
+        this.channel = channel;
+        this.delimiter = format.getDelimiter();
+        this.size = channel.size();
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bytes = buffer.array();
+    }
+    
+    /**
+     * Advance to the next non-blank record
+     *
+     * @return false at the end of the file
+     */
+    boolean next() throws IOException {
+        while (true) {
+            int end = findRecordEnd();
+            if (end >= 0) {
+                int start = position;
+                position = end + 1;
+                record++;
+                if (split(start, end)) {
+                    return true;
+                }
+                continue; // Blank line
+            }
+            if (eof) {
+                if (position == limit) {
+                    return false;
+                }
+                int start = position;
+                position = limit;
+                record++;
+                if (split(start, limit)) {
+                    return true;
+                }
+                continue;
+            }
+            fill();
+        }
+    }
+    
+    /**
+     * Index of the line feed ending the record at position, or -1 if the buffer doesn't hold all of it.
+     * Line feeds inside quotes don't end a record.
+     */
+    private int findRecordEnd() {
+        boolean quoted = false;
+        for (int i = position; i < limit; i++) {
+            byte b = bytes[i];
+            if (b == QUOTE) {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Move the unread bytes to the front and read more, growing the buffer if one record fills it
+     */
+    private void fill() throws IOException {
+        int pending = limit - position;
+        if (pending == bytes.length) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes.length * 2);
+            larger.put(bytes, position, pending);
+            buffer = larger;
+            bytes = larger.array();
+        } else {
+            System.arraycopy(bytes, position, bytes, 0, pending);
+            buffer.clear().position(pending);
+        }
+        position = 0;
+        limit = pending;
+        int read = channel.read(buffer);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+            bytesRead += read;
+        }
+    }
+    
+    /**
+     * Split bytes [start, end) into fields, unescaping quoted fields in place
+     *
+     * @return false if the record is blank
+     */
+    private boolean split(int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        fieldCount = 0;
+        if (end == start) {
+            return false;
+        }
+        int i = start;
+        while (true) {
+            if (fieldCount == starts.length) {
+                starts = Arrays.copyOf(starts, fieldCount * 2);
+                ends = Arrays.copyOf(ends, fieldCount * 2);
+            }
+            if (i < end && bytes[i] == QUOTE) {
+                // Quoted: copy down over the escape quotes, then skip to the delimiter
+                int write = i;
+                starts[fieldCount] = write;
+                i++;
+                while (i < end) {
+                    byte b = bytes[i];
+                    if (b == QUOTE) {
+                        if (i + 1 < end && bytes[i + 1] == QUOTE) {
+                            bytes[write++] = QUOTE;
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    bytes[write++] = b;
+                    i++;
+                }
+                ends[fieldCount++] = write;
+                while (i < end && bytes[i] != delimiter) {
+                    i++; // Stray text after the closing quote is dropped
+                }
+            } else {
+                starts[fieldCount] = i;
+                while (i < end && bytes[i] != delimiter) {
+                    i++;
+                }
+                ends[fieldCount++] = i;
+            }
+            if (i >= end) {
+                return true;
+            }
+            i++; // Skip the delimiter
+        }
+    }
+    
+    int fieldCount() {
+        return fieldCount;
+    }
+    
+    /**
+     * 1-based number of the current record, counting blank lines
+     */
+    long record() {
+        return record;
+    }
+    
+    long bytesRead() {
+        return bytesRead;
+    }
+    
+    long size() {
+        return size;
+    }
+    
+    byte[] bytes() {
+        return bytes;
+    }
+    
+    int start(int field) {
+        return starts[field];
+    }
+    
+    int end(int field) {
+        return ends[field];
+    }
+    
+    int length(int field) {
+        return ends[field] - starts[field];
+    }
+    
+    String string(int field) {
+        return new String(bytes, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Field text with surrounding blanks removed
+     */
+    String trimmed(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        while (start < end && bytes[start] == ' ') {
+            start++;
+        }
+        while (end > start && bytes[end - 1] == ' ') {
+            end--;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Whether a field equals an ASCII text, ignoring case
+     */
+    boolean fieldEqualsIgnoreCase(int field, String text) {
+        if (length(field) != text.length()) {
+            return false;
+        }
+        int start = starts[field];
+        for (int i = 0; i < text.length(); i++) {
+            int b = bytes[start + i];
+            if (b != text.charAt(i) && Character.toLowerCase(b) != Character.toLowerCase(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
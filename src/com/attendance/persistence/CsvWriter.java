@@ -0,0 +1,122 @@
+package com.attendance.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of delimited UTF-8 records to a FileChannel.
+ *
+ * ASCII text is copied into the buffer a char at a time without encoding it to a
+ * byte array first; fields that hold the delimiter, a quote or a line break are quoted.
+ */
+final class CsvWriter implements AutoCloseable {
+    
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte QUOTE = '"';
+    
+    private final FileChannel channel;
+    private final byte delimiter;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean firstField = true;
+    
+    CsvWriter(FileChannel channel, CsvFormat format) {
+        this.channel = channel;
+        this.delimiter = format.getDelimiter();
+    }
+    
+    /**
+     * A text field; null is written as an empty field
+     */
+    void field(String text) throws IOException {
+        if (text == null) {
+            separate(0);
+            return;
+        }
+        int length = text.length();
+        boolean ascii = true;
+        boolean quote = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+            } else if (c == delimiter || c == QUOTE || c == '\n' || c == '\r') {
+                quote = true;
+            }
+        }
+        if (ascii && !quote) {
+            separate(length);
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+            return;
+        }
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        if (!quote) {
+            raw(encoded);
+            return;
+        }
+        separate(encoded.length * 2 + 2);
+        buffer.put(QUOTE);
+        for (byte b : encoded) {
+            if (b == QUOTE) {
+                buffer.put(QUOTE);
+            }
+            buffer.put(b);
+        }
+        buffer.put(QUOTE);
+    }
+    
+    /**
+     * A field that needs no quoting, already encoded
+     */
+    void raw(byte[] field) throws IOException {
+        separate(field.length);
+        buffer.put(field);
+    }
+    
+    void endRecord() throws IOException {
+        reserve(1);
+        buffer.put((byte) '\n');
+        firstField = true;
+    }
+    
+    /**
+     * Write the delimiter unless this is the record's first field, with room for the field after it
+     */
+    private void separate(int fieldSize) throws IOException {
+        reserve(fieldSize + 1);
+        if (!firstField) {
+            buffer.put(delimiter);
+        }
+        firstField = false;
+    }
+    
+    private void reserve(int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return;
+        }
+        drain();
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(size);
+        }
+    }
+    
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
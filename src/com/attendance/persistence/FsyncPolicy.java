@@ -0,0 +1,23 @@
+package com.attendance.persistence;
+
+/**
+ * When the journal forces appended entries to disk
+ */
+public enum FsyncPolicy {
+    
+    /**
+     * Write and fsync every entry before the mutating call returns (a bulk save is one entry)
+     */
+    ALWAYS,
+    
+    /**
+     * Group commit: entries are buffered and a background thread writes and
+     * fsyncs them together every group commit interval
+     */
+    GROUP,
+    
+    /**
+     * Entries are written when the buffer fills and on close; fsync is left to the OS
+     */
+    NONE
+}
@@ -0,0 +1,116 @@
+package com.attendance.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a CSV/TSV import: row counts and the first bad rows with the reason each was skipped
+ */
+public class ImportResult {
+    
+    private static final int MAX_BAD_ROWS_KEPT = 1000; // Only the first bad rows are described
+    
+    /**
+     * A row that was skipped
+     */
+    public static class BadRow {
+        private final long record;
+        private final String reason;
+        
+        BadRow(long record, String reason) {
+            this.record = record;
+            this.reason = reason;
+        }
+        
+        /**
+         * 1-based record number in the file, the header included
+         */
+        public long getRecord() {
+            return record;
+        }
+        
+        public String getReason() {
+            return reason;
+        }
+        
+        @Override
+        public String toString() {
+            return "Row " + record + ": " + reason;
+        }
+    }
+    
+    private long rowsRead;
+    private long rowsApplied;
+    private long badRowCount;
+    private boolean completed;
+    private final ArrayList<BadRow> badRows = new ArrayList<>();
+    
+    void rowRead() {
+        rowsRead++;
+    }
+    
+    void applied(long rows) {
+        rowsApplied += rows;
+    }
+    
+    void badRow(long record, String reason) {
+        badRowCount++;
+        if (badRows.size() < MAX_BAD_ROWS_KEPT) {
+            badRows.add(new BadRow(record, reason));
+        }
+    }
+    
+    /**
+     * Rows skipped when they were applied, with no record number known
+     */
+    void rejected(long rows, String reason) {
+        if (rows > 0) {
+            badRow(0, rows + " row(s) " + reason);
+            badRowCount += rows - 1;
+        }
+    }
+    
+    void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+    
+    /**
+     * Data rows read, good or bad (the header is not counted)
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+    
+    public long getRowsApplied() {
+        return rowsApplied;
+    }
+    
+    public long getBadRowCount() {
+        return badRowCount;
+    }
+    
+    /**
+     * The first bad rows, in file order
+     */
+    public List<BadRow> getBadRows() {
+        return Collections.unmodifiableList(badRows);
+    }
+    
+    /**
+     * False if the import was cancelled before the end of the file
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+    
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "Read=" + rowsRead +
+                ", Applied=" + rowsApplied +
+                ", Bad=" + badRowCount +
+                ", Completed=" + completed +
+                '}';
+    }
+}
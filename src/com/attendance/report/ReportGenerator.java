@@ -0,0 +1,375 @@
+package com.attendance.report;
+
+import com.attendance.manager.AttendanceAggregate;
+import com.attendance.manager.AttendanceAnalytics;
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.CountingPolicy;
+import com.attendance.manager.TrendPoint;
+import com.attendance.model.AttendanceRecord;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Builds the text reports shown in the Reports tab without touching Swing.
+ *
+ * Reports are streamed line by line into a sink so a caller can show them as
+ * they are produced, and every loop polls a cancellation flag. Rows are padded
+ * by hand rather than with String.format, which dominated the cost of large reports.
+ */
+public class ReportGenerator {
+    
+    public static final int WIDTH = 70;
+    
+    private static final String DOUBLE_RULE = "=".repeat(WIDTH) + "\n";
+    private static final String SINGLE_RULE = "-".repeat(WIDTH) + "\n";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MMM yyyy");
+    private static final int CANCEL_CHECK_INTERVAL = 256; // Rows between cancellation checks
+    private static final int TREND_SESSIONS = 5;          // Rolling window and trend comparison size
+    private static final int RECENT_DAYS = 30;
+    
+    private final AttendanceService attendanceManager;
+    private final AttendanceAnalytics analytics;
+    
+    public ReportGenerator(AttendanceService attendanceManager) {
+        this.attendanceManager = attendanceManager;
+        this.analytics = new AttendanceAnalytics(attendanceManager);
+    }
+    
+    /**
+     * Attendance counts of every student, in roster order.
+     * Returns null if cancelled before all students were visited.
+     */
+    public List<StudentSummary> summarize(BooleanSupplier cancelled) {
+        AttendanceAggregate aggregate = attendanceManager.aggregate(null, null, ForkJoinPool.commonPool(), cancelled);
+        return aggregate == null ? null : summarize(aggregate, cancelled);
+    }
+    
+    private List<StudentSummary> summarize(AttendanceAggregate aggregate, BooleanSupplier cancelled) {
+        List<StudentSummary> summaries = new ArrayList<>(attendanceManager.getTotalStudents());
+        int visited = 0;
+        for (Student student : attendanceManager.getAllStudents()) {
+            if (++visited % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            Map<String, Integer> stats = aggregate.getStudentStatistics(student.getStudentId());
+            summaries.add(new StudentSummary(student.getStudentId(), student.getName(), student.getCourse(),
+                stats.get("present"), stats.get("absent")));
+        }
+        return summaries;
+    }
+    
+    /**
+     * Stream the all-students summary report, followed by a per-course summary, into out.
+     * The counts are aggregated in parallel (see AttendanceManager.aggregate).
+     * Returns false if it was cancelled part way.
+     */
+    public boolean writeSummaryReport(Consumer<String> out, BooleanSupplier cancelled) {
+        AttendanceAggregate aggregate = attendanceManager.aggregate(null, null, ForkJoinPool.commonPool(), cancelled);
+        if (aggregate == null) {
+            return false;
+        }
+        List<StudentSummary> summaries = summarize(aggregate, cancelled);
+        if (summaries == null) {
+            return false;
+        }
+        
+        out.accept(DOUBLE_RULE);
+        out.accept("           ALL STUDENTS ATTENDANCE SUMMARY\n");
+        out.accept(DOUBLE_RULE);
+        out.accept("\n");
+        
+        StringBuilder line = new StringBuilder(WIDTH + 16);
+        pad(line, "Student ID", 12).append(' ');
+        pad(line, "Name", 20).append(' ');
+        pad(line, "Present", 10).append(' ');
+        pad(line, "Absent", 10).append(' ');
+        pad(line, "Percentage", 12).append('\n');
+        out.accept(line.toString());
+        out.accept(SINGLE_RULE);
+        
+        for (int i = 0; i < summaries.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return false;
+            }
+            StudentSummary summary = summaries.get(i);
+            line.setLength(0);
+            pad(line, summary.getStudentId(), 12).append(' ');
+            pad(line, summary.getName(), 20).append(' ');
+            pad(line, Integer.toString(summary.getPresent()), 10).append(' ');
+            pad(line, Integer.toString(summary.getAbsent()), 10).append(' ');
+            pad(line, formatPercentage(summary.getPresent(), summary.getTotal()), 12).append("%\n");
+            out.accept(line.toString());
+        }
+        
+        out.accept("\n");
+        out.accept("COURSE SUMMARY:\n");
+        out.accept(SINGLE_RULE);
+        line.setLength(0);
+        pad(line, "Course", 33).append(' ');
+        pad(line, "Present", 10).append(' ');
+        pad(line, "Absent", 10).append(' ');
+        pad(line, "Percentage", 12).append('\n');
+        out.accept(line.toString());
+        out.accept(SINGLE_RULE);
+        for (String course : aggregate.getCourses()) {
+            Map<String, Integer> stats = aggregate.getCourseStatistics(course);
+            line.setLength(0);
+            pad(line, course, 33).append(' ');
+            pad(line, Integer.toString(stats.get("present")), 10).append(' ');
+            pad(line, Integer.toString(stats.get("absent")), 10).append(' ');
+            pad(line, formatPercentage(stats.get("present"), stats.get("total")), 12).append("%\n");
+            out.accept(line.toString());
+        }
+        
+        out.accept("\n");
+        out.accept(DOUBLE_RULE);
+        out.accept("Total Students: " + summaries.size() + "\n");
+        out.accept("Report generated on: " + LocalDate.now().format(DATE_FORMAT) + "\n");
+        out.accept(DOUBLE_RULE);
+        return true;
+    }
+    
+    /**
+     * Stream a single student's report, including their full history, into out.
+     * Returns false if the student doesn't exist or the report was cancelled part way.
+     */
+    public boolean writeStudentReport(String studentId, Consumer<String> out, BooleanSupplier cancelled) {
+        Student student = attendanceManager.getStudent(studentId);
+        if (student == null) {
+            return false;
+        }
+        Map<String, Integer> stats = attendanceManager.getStudentStatistics(studentId);
+        int present = stats.get("present");
+        int total = stats.get("total");
+        ArrayList<AttendanceRecord> records = attendanceManager.getStudentAttendance(studentId);
+        
+        out.accept(DOUBLE_RULE);
+        out.accept("              STUDENT ATTENDANCE REPORT\n");
+        out.accept(DOUBLE_RULE);
+        out.accept("\n");
+        
+        out.accept("STUDENT DETAILS:\n");
+        out.accept(SINGLE_RULE);
+        out.accept("Student ID    : " + student.getStudentId() + "\n");
+        out.accept("Name          : " + student.getName() + "\n");
+        out.accept("Email         : " + student.getEmail() + "\n");
+        out.accept("Course        : " + student.getCourse() + "\n\n");
+        
+        out.accept("ATTENDANCE SUMMARY:\n");
+        out.accept(SINGLE_RULE);
+        out.accept("Total Days    : " + total + "\n");
+        out.accept("Present       : " + present + "\n");
+        out.accept("Absent        : " + stats.get("absent") + "\n");
+        if (stats.get("late") > 0 || stats.get("excused") > 0) {
+            out.accept("Late          : " + stats.get("late") + "\n");
+            out.accept("Excused       : " + stats.get("excused") + "\n");
+        }
+        out.accept("Percentage    : " + formatPercentage(present, total) + "%\n\n");
+        
+        if (!records.isEmpty()) {
+            out.accept("ATTENDANCE HISTORY:\n");
+            out.accept(SINGLE_RULE);
+            StringBuilder line = new StringBuilder(WIDTH + 16);
+            pad(line, "Date", 15).append(' ');
+            pad(line, "Status", 20).append(' ');
+            pad(line, "Remarks", 15).append('\n');
+            out.accept(line.toString());
+            out.accept(SINGLE_RULE);
+            
+            // Records come back sorted by date
+            CountingPolicy policy = attendanceManager.getCountingPolicy();
+            for (int i = 0; i < records.size(); i++) {
+                if (i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                    return false;
+                }
+                AttendanceRecord record = records.get(i);
+                line.setLength(0);
+                pad(line, record.getDate().format(DATE_FORMAT), 15).append(' ');
+                pad(line, record.getStatus().name(), 20).append(' ');
+                pad(line, remarks(policy, record.getStatus()), 15).append('\n');
+                out.accept(line.toString());
+            }
+        }
+        
+        out.accept("\n");
+        out.accept(DOUBLE_RULE);
+        out.accept("Report generated on: " + LocalDate.now().format(DATE_FORMAT) + "\n");
+        out.accept(DOUBLE_RULE);
+        return true;
+    }
+    
+    /**
+     * Stream one line per course: its size, attendance on a date and overall attendance.
+     * Every figure comes from the manager's course index and course counters.
+     * Returns false if it was cancelled part way.
+     */
+    public boolean writeCourseReport(LocalDate date, Consumer<String> out, BooleanSupplier cancelled) {
+        out.accept(DOUBLE_RULE);
+        out.accept("              COURSE ATTENDANCE REPORT\n");
+        out.accept(DOUBLE_RULE);
+        out.accept("\n");
+        
+        StringBuilder line = new StringBuilder(WIDTH + 16);
+        pad(line, "Course", 28).append(' ');
+        pad(line, "Students", 10).append(' ');
+        pad(line, date.format(DATE_FORMAT), 14).append(' ');
+        pad(line, "Overall", 12).append('\n');
+        out.accept(line.toString());
+        out.accept(SINGLE_RULE);
+        
+        int courses = 0;
+        for (String course : attendanceManager.getCourses()) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            Map<String, Integer> today = attendanceManager.getCourseStatistics(course, date);
+            Map<String, Integer> overall = attendanceManager.getCourseStatistics(course);
+            line.setLength(0);
+            pad(line, course, 28).append(' ');
+            pad(line, Integer.toString(attendanceManager.getCourseSize(course)), 10).append(' ');
+            pad(line, today.get("total") == 0 ? "-" : formatPercentage(today.get("present"), today.get("total")) + "%", 14)
+                .append(' ');
+            pad(line, formatPercentage(overall.get("present"), overall.get("total")) + "%", 12).append('\n');
+            out.accept(line.toString());
+            courses++;
+        }
+        
+        out.accept("\n");
+        out.accept(DOUBLE_RULE);
+        out.accept("Total Courses: " + courses + "\n");
+        out.accept("Report generated on: " + LocalDate.now().format(DATE_FORMAT) + "\n");
+        out.accept(DOUBLE_RULE);
+        return true;
+    }
+    
+    /**
+     * Stream a student's attendance trends: recent attendance, monthly and weekly
+     * buckets and a rolling window over their last sessions.
+     * Returns false if the student doesn't exist or the report was cancelled part way.
+     */
+    public boolean writeTrendReport(String studentId, Consumer<String> out, BooleanSupplier cancelled) {
+        Student student = attendanceManager.getStudent(studentId);
+        if (student == null) {
+            return false;
+        }
+        List<TrendPoint> window = analytics.getRollingWindow(studentId, TREND_SESSIONS);
+        
+        out.accept(DOUBLE_RULE);
+        out.accept("              STUDENT ATTENDANCE TRENDS\n");
+        out.accept(DOUBLE_RULE);
+        out.accept("\n");
+        out.accept("Student ID    : " + student.getStudentId() + "\n");
+        out.accept("Name          : " + student.getName() + "\n");
+        out.accept("Overall       : " + formatPercentage(attendanceManager.calculateAttendancePercentage(studentId)) + "%\n");
+        if (!window.isEmpty()) {
+            LocalDate last = window.get(window.size() - 1).getEnd();
+            double recent = analytics.calculatePercentageBetween(studentId, last.minusDays(RECENT_DAYS - 1), last);
+            out.accept("Last " + RECENT_DAYS + " days  : " + formatPercentage(recent) + "% (to " + last.format(DATE_FORMAT) + ")\n");
+        }
+        out.accept("Trend         : " + analytics.getTrend(studentId, TREND_SESSIONS) + " (last " + TREND_SESSIONS
+            + " sessions vs the " + TREND_SESSIONS + " before)\n\n");
+        
+        if (!writeTrendTable("MONTHLY ATTENDANCE:\n", "Month",
+                analytics.getBuckets(studentId, AttendanceAnalytics.Bucket.MONTH), MONTH_FORMAT, false, out, cancelled)
+            || !writeTrendTable("WEEKLY ATTENDANCE:\n", "Week of",
+                analytics.getBuckets(studentId, AttendanceAnalytics.Bucket.WEEK), DATE_FORMAT, false, out, cancelled)
+            || !writeTrendTable("ROLLING " + TREND_SESSIONS + "-SESSION WINDOW:\n", "Up to",
+                window, DATE_FORMAT, true, out, cancelled)) {
+            return false;
+        }
+        
+        out.accept(DOUBLE_RULE);
+        out.accept("Report generated on: " + LocalDate.now().format(DATE_FORMAT) + "\n");
+        out.accept(DOUBLE_RULE);
+        return true;
+    }
+    
+    /**
+     * One section of the trend report with a bar per period, each labelled by its
+     * first day, or by its last day when byEnd is set (rolling windows)
+     */
+    private boolean writeTrendTable(String title, String label, List<TrendPoint> points, DateTimeFormatter format,
+                                    boolean byEnd, Consumer<String> out, BooleanSupplier cancelled) {
+        if (points.isEmpty()) {
+            return true;
+        }
+        out.accept(title);
+        out.accept(SINGLE_RULE);
+        StringBuilder line = new StringBuilder(WIDTH + 16);
+        pad(line, label, 15).append(' ');
+        pad(line, "Present", 10).append(' ');
+        pad(line, "Total", 10).append(' ');
+        pad(line, "Percentage", 12).append('\n');
+        out.accept(line.toString());
+        out.accept(SINGLE_RULE);
+        for (int i = 0; i < points.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return false;
+            }
+            TrendPoint point = points.get(i);
+            LocalDate date = byEnd ? point.getEnd() : point.getStart();
+            line.setLength(0);
+            pad(line, date.format(format), 15).append(' ');
+            pad(line, Integer.toString(point.getAttended()), 10).append(' ');
+            pad(line, Integer.toString(point.getCounted()), 10).append(' ');
+            pad(line, formatPercentage(point.getAttended(), point.getCounted()) + "%", 12).append(' ');
+            for (int bar = 0; bar < (int) Math.round(point.getPercentage() / 5); bar++) {
+                line.append('#');
+            }
+            out.accept(line.append('\n').toString());
+        }
+        out.accept("\n");
+        return true;
+    }
+    
+    /**
+     * ✓ for attended, ✗ for counted absences, - for statuses the policy leaves out
+     */
+    private static String remarks(CountingPolicy policy, AttendanceStatus status) {
+        if (policy.isAttended(status)) {
+            return "✓";
+        }
+        return policy.isCounted(status) ? "✗" : "-";
+    }
+    
+    /**
+     * Append text left-aligned in a field of the given width, like %-Ns
+     */
+    static StringBuilder pad(StringBuilder line, String text, int width) {
+        line.append(text);
+        for (int i = text.length(); i < width; i++) {
+            line.append(' ');
+        }
+        return line;
+    }
+    
+    /**
+     * A percentage with two decimals, like %.2f
+     */
+    static String formatPercentage(double percentage) {
+        return String.format("%.2f", percentage);
+    }
+    
+    /**
+     * present / total as a percentage with two decimals, rounded half up, like %.2f.
+     * Computed from the counts so no floating point formatting is needed.
+     */
+    static String formatPercentage(int present, int total) {
+        if (total == 0) {
+            return "0.00";
+        }
+        long hundredths = ((long) present * 20000 + total) / (2L * total);
+        long fraction = hundredths % 100;
+        return (hundredths / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
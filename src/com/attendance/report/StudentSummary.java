@@ -0,0 +1,61 @@
+package com.attendance.report;
+
+/**
+ * One row of the all-students report: a student's attendance counts
+ */
+public class StudentSummary {
+    
+    private final String studentId;
+    private final String name;
+    private final String course;
+    private final int present;
+    private final int absent;
+    
+    public StudentSummary(String studentId, String name, String course, int present, int absent) {
+        this.studentId = studentId;
+        this.name = name;
+        this.course = course;
+        this.present = present;
+        this.absent = absent;
+    }
+    
+    public String getStudentId() {
+        return studentId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getCourse() {
+        return course;
+    }
+    
+    public int getPresent() {
+        return present;
+    }
+    
+    public int getAbsent() {
+        return absent;
+    }
+    
+    public int getTotal() {
+        return present + absent;
+    }
+    
+    public double getPercentage() {
+        if (getTotal() == 0) {
+            return 0.0;
+        }
+        return (present * 100.0) / getTotal();
+    }
+    
+    @Override
+    public String toString() {
+        return "StudentSummary{" +
+                "ID='" + studentId + '\'' +
+                ", Present=" + present +
+                ", Absent=" + absent +
+                '}';
+    }
+}
@@ -1,25 +1,60 @@
 package com.attendance.ui;
 
 import com.attendance.manager.AttendanceManager;
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.BulkMarkResult;
+import com.attendance.manager.CountingPolicy;
+import com.attendance.manager.MutationEvent;
+import com.attendance.manager.ShardedAttendanceManager;
+import com.attendance.manager.StudentStanding;
+import com.attendance.manager.ThresholdListener;
+import com.attendance.metrics.Metrics;
+import com.attendance.metrics.Timer;
+import com.attendance.model.AttendanceStatus;
 import com.attendance.model.Student;
-import com.attendance.model.AttendanceRecord;
+import com.attendance.persistence.AttendanceJournal;
+import com.attendance.persistence.CsvExporter;
+import com.attendance.persistence.CsvFormat;
+import com.attendance.persistence.CsvImporter;
+import com.attendance.persistence.FsyncPolicy;
+import com.attendance.persistence.ImportResult;
+import com.attendance.report.ReportGenerator;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Main UI class for Student Attendance Management System
  */
 public class AttendanceSystemUI extends JFrame {
     
-    private AttendanceManager attendanceManager;
+    private AttendanceService attendanceManager;
+    private AttendanceJournal journal;
+    private ReportGenerator reportGenerator;
+    private ReportWorker reportWorker; // Report currently streaming into the Reports tab
     private JTabbedPane tabbedPane;
+    private DefaultListModel<String> atRiskModel; // Dashboard list of students below the threshold
+    private TitledBorder atRiskBorder;
+    private final AtomicBoolean atRiskRefreshQueued = new AtomicBoolean();
     
     // Color scheme for modern UI
     private static final Color PRIMARY_COLOR = new Color(41, 128, 185);
@@ -28,10 +63,85 @@ public class AttendanceSystemUI extends JFrame {
     private static final Color BACKGROUND_COLOR = new Color(236, 240, 241);
     private static final Color PANEL_COLOR = Color.WHITE;
     
+    private static final double AT_RISK_THRESHOLD = 75.0; // Percentage below which a student is flagged
+    private static final int AT_RISK_SHOWN = 200;         // Longest list shown on the dashboard
+    private static final String ALL_COURSES = "All Courses";
+    
+    // Latency of the action handlers, recorded while Metrics is enabled (table loads are timed by the models)
+    private static final Timer SAVE_ATTENDANCE = Metrics.timer("ui.saveAttendance");
+    private static final Timer IMPORT_CSV = Metrics.timer("ui.importCsv");
+    private static final Timer EXPORT_CSV = Metrics.timer("ui.exportCsv");
+    private static final Timer STUDENT_REPORT = Metrics.timer("ui.studentReport");
+    private static final Timer TREND_REPORT = Metrics.timer("ui.trendReport");
+    private static final Timer SUMMARY_REPORT = Metrics.timer("ui.summaryReport");
+    private static final Timer COURSE_REPORT = Metrics.timer("ui.courseReport");
+    
     public AttendanceSystemUI() {
-        attendanceManager = new AttendanceManager();
+        attendanceManager = createManager();
+        openJournal();
+        startMetrics();
+        reportGenerator = new ReportGenerator(attendanceManager);
         initializeUI();
-        addSampleData(); // Add some sample data for demonstration
+        if (attendanceManager.getTotalStudents() == 0) {
+            addSampleData(); // Add some sample data for demonstration
+        }
+    }
+    
+    /**
+     * A single AttendanceManager, or with -Dattendance.shards=N a ShardedAttendanceManager
+     * of N shards partitioned by student ID. Either is opened in concurrent mode, as
+     * background loaders may race the EDT.
+     */
+    private static AttendanceService createManager() {
+        int shards = Integer.getInteger("attendance.shards", 1);
+        if (shards > 1) {
+            return new ShardedAttendanceManager(shards, ShardedAttendanceManager.Partitioning.BY_STUDENT, true);
+        }
+        return new AttendanceManager(true);
+    }
+    
+    /**
+     * Restore saved data from the data directory and journal every change from now on
+     */
+    private void openJournal() {
+        journal = new AttendanceJournal(Paths.get("data"), FsyncPolicy.GROUP);
+        try {
+            journal.recover(attendanceManager);
+        } catch (IOException e) {
+            e.printStackTrace();
+            journal = null;
+            JOptionPane.showMessageDialog(this, "Could not load saved data: " + e.getMessage() +
+                "\nChanges will not be saved.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                try {
+                    journal.checkpoint();
+                    journal.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Publish the manager's size as gauges and expose Metrics over JMX, where they can be
+     * switched on at runtime. -Dattendance.metrics=true enables them from the start and
+     * -Dattendance.metrics.dumpSeconds=N prints the metrics table every N seconds.
+     */
+    private void startMetrics() {
+        Metrics.gauge("manager.students", attendanceManager::getTotalStudents);
+        Metrics.gauge("manager.records", attendanceManager::getTotalRecords);
+        Metrics.gauge("manager.sessions", attendanceManager::getSessionCount);
+        Metrics.registerMBean();
+        long dumpSeconds = Long.getLong("attendance.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            Metrics.startDump(dumpSeconds, TimeUnit.SECONDS, System.out::print);
+        }
     }
     
     private void initializeUI() {
@@ -140,9 +250,16 @@ public class AttendanceSystemUI extends JFrame {
         welcomeText.setBackground(PANEL_COLOR);
         
         welcomePanel.add(welcomeText, BorderLayout.CENTER);
-        panel.add(welcomePanel, BorderLayout.CENTER);
         
-        // Refresh button
+        JPanel centerPanel = new JPanel(new GridLayout(1, 2, 20, 0));
+        centerPanel.setBackground(BACKGROUND_COLOR);
+        centerPanel.add(welcomePanel);
+        centerPanel.add(createAtRiskPanel());
+        panel.add(centerPanel, BorderLayout.CENTER);
+        
+        // The cards follow the change feed; the button forces a full refresh
+        attendanceManager.addMutationListener(events ->
+            queueDashboardUpdate(events, totalStudentsCard, todayAttendanceCard, sessionsCard));
         JButton refreshBtn = createStyledButton("Refresh Dashboard", PRIMARY_COLOR);
         refreshBtn.addActionListener(e -> refreshDashboard(totalStudentsCard, todayAttendanceCard, sessionsCard));
         
@@ -154,6 +271,67 @@ public class AttendanceSystemUI extends JFrame {
         return panel;
     }
     
+    /**
+     * Students below the at-risk threshold, kept current by a threshold listener
+     * so the list changes as soon as a save moves someone across it
+     */
+    private JPanel createAtRiskPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(PANEL_COLOR);
+        atRiskBorder = BorderFactory.createTitledBorder("At-Risk Students");
+        atRiskBorder.setTitleColor(DANGER_COLOR);
+        panel.setBorder(atRiskBorder);
+        
+        atRiskModel = new DefaultListModel<>();
+        JList<String> atRiskList = new JList<>(atRiskModel);
+        atRiskList.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        panel.add(new JScrollPane(atRiskList), BorderLayout.CENTER);
+        
+        attendanceManager.addThresholdListener(AT_RISK_THRESHOLD, new ThresholdListener() {
+            @Override
+            public void studentAtRisk(StudentStanding standing) {
+                queueAtRiskRefresh();
+            }
+            
+            @Override
+            public void studentRecovered(StudentStanding standing) {
+                queueAtRiskRefresh();
+            }
+        });
+        refreshAtRisk();
+        return panel;
+    }
+    
+    /**
+     * Called from whichever thread saved the marks; a bulk save crossing many
+     * students causes a single refresh on the event thread
+     */
+    private void queueAtRiskRefresh() {
+        if (atRiskRefreshQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                atRiskRefreshQueued.set(false);
+                refreshAtRisk();
+            });
+        }
+    }
+    
+    private void refreshAtRisk() {
+        List<StudentStanding> atRisk = attendanceManager.getStudentsBelow(AT_RISK_THRESHOLD);
+        atRiskModel.clear();
+        for (int i = 0; i < atRisk.size() && i < AT_RISK_SHOWN; i++) {
+            StudentStanding standing = atRisk.get(i);
+            Student student = attendanceManager.getStudent(standing.getStudentId());
+            String name = student != null ? student.getName() : "";
+            atRiskModel.addElement(String.format("%-10s %-20s %6.1f%%  (%d/%d)", standing.getStudentId(), name,
+                standing.getPercentage(), standing.getAttended(), standing.getCounted()));
+        }
+        if (atRisk.size() > AT_RISK_SHOWN) {
+            atRiskModel.addElement("... and " + (atRisk.size() - AT_RISK_SHOWN) + " more");
+        }
+        atRiskBorder.setTitle(String.format("At-Risk Students: %d below %.0f%%", atRisk.size(), AT_RISK_THRESHOLD));
+        repaint();
+    }
+    
     private JPanel createStatCard(String title, String value, Color color) {
         JPanel card = new JPanel(new BorderLayout());
         card.setBackground(color);
@@ -178,41 +356,83 @@ public class AttendanceSystemUI extends JFrame {
     }
     
     private void refreshDashboard(JPanel totalStudentsCard, JPanel todayAttendanceCard, JPanel sessionsCard) {
-        // Update total students
-        Component[] components1 = totalStudentsCard.getComponents();
-        for (Component comp : components1) {
-            if (comp instanceof JLabel && ((JLabel) comp).getName() != null) {
-                ((JLabel) comp).setText(String.valueOf(attendanceManager.getTotalStudents()));
+        updateTotalStudents(totalStudentsCard);
+        updateTodayAttendance(todayAttendanceCard);
+        updateSessions(sessionsCard);
+        
+        JOptionPane.showMessageDialog(this, "Dashboard refreshed successfully!", 
+            "Success", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    /**
+     * Called on the change-feed thread with a burst of changes: only the cards the
+     * burst touches are re-read, each from an O(1) counter, on the event thread
+     */
+    private void queueDashboardUpdate(List<MutationEvent> events, JPanel totalStudentsCard,
+                                      JPanel todayAttendanceCard, JPanel sessionsCard) {
+        LocalDate today = LocalDate.now();
+        boolean studentsChanged = false;
+        boolean todayChanged = false;
+        boolean sessionsChanged = false;
+        for (MutationEvent event : events) {
+            switch (event.getType()) {
+                case STUDENT_ADDED:
+                case STUDENT_REMOVED:
+                    studentsChanged = true;
+                    break;
+                case MARK_CHANGED:
+                    todayChanged |= today.equals(event.getDate());
+                    break;
+                case SESSION_OPENED:
+                    sessionsChanged = true;
+                    break;
+                case RESET:
+                    studentsChanged = todayChanged = sessionsChanged = true;
+                    break;
+                default:
+                    break;
             }
         }
-        
-        // Update today's attendance
-        ArrayList<AttendanceRecord> todayRecords = attendanceManager.getAttendanceByDate(LocalDate.now());
-        int presentToday = 0;
-        for (AttendanceRecord record : todayRecords) {
-            if (record.isPresent()) presentToday++;
+        boolean updateStudents = studentsChanged;
+        boolean updateToday = todayChanged;
+        boolean updateSessions = sessionsChanged;
+        if (updateStudents || updateToday || updateSessions) {
+            SwingUtilities.invokeLater(() -> {
+                if (updateStudents) {
+                    updateTotalStudents(totalStudentsCard);
+                }
+                if (updateToday) {
+                    updateTodayAttendance(todayAttendanceCard);
+                }
+                if (updateSessions) {
+                    updateSessions(sessionsCard);
+                }
+            });
         }
-        int totalToday = todayRecords.size();
+    }
+    
+    private void updateTotalStudents(JPanel totalStudentsCard) {
+        setCardValue(totalStudentsCard, String.valueOf(attendanceManager.getTotalStudents()));
+    }
+    
+    private void updateTodayAttendance(JPanel todayAttendanceCard) {
+        Map<String, Integer> todayStats = attendanceManager.getDateStatistics(LocalDate.now());
+        int totalToday = todayStats.get("total");
         String attendancePercent = totalToday > 0 ? 
-            String.format("%.1f%%", (presentToday * 100.0 / totalToday)) : "0%";
-        
-        Component[] components2 = todayAttendanceCard.getComponents();
-        for (Component comp : components2) {
-            if (comp instanceof JLabel && ((JLabel) comp).getName() != null) {
-                ((JLabel) comp).setText(attendancePercent);
-            }
-        }
-        
-        // Update total sessions
-        Component[] components3 = sessionsCard.getComponents();
-        for (Component comp : components3) {
+            String.format("%.1f%%", attendanceManager.calculateDateAttendancePercentage(LocalDate.now())) : "0%";
+        setCardValue(todayAttendanceCard, attendancePercent);
+    }
+    
+    private void updateSessions(JPanel sessionsCard) {
+        setCardValue(sessionsCard, String.valueOf(attendanceManager.getSessionCount()));
+    }
+    
+    private void setCardValue(JPanel card, String value) {
+        for (Component comp : card.getComponents()) {
             if (comp instanceof JLabel && ((JLabel) comp).getName() != null) {
-                ((JLabel) comp).setText(String.valueOf(attendanceManager.getAttendanceSessions().size()));
+                ((JLabel) comp).setText(value);
             }
         }
-        
-        JOptionPane.showMessageDialog(this, "Dashboard refreshed successfully!", 
-            "Success", JOptionPane.INFORMATION_MESSAGE);
     }
     
     private JPanel createStudentManagementPanel() {
@@ -281,13 +501,7 @@ public class AttendanceSystemUI extends JFrame {
         panel.add(formPanel, BorderLayout.NORTH);
         
         // Table for displaying students
-        String[] columns = {"Student ID", "Name", "Email", "Course"};
-        DefaultTableModel tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        StudentTableModel tableModel = new StudentTableModel(attendanceManager);
         JTable studentTable = new JTable(tableModel);
         studentTable.setFont(new Font("Arial", Font.PLAIN, 14));
         studentTable.setRowHeight(30);
@@ -305,21 +519,69 @@ public class AttendanceSystemUI extends JFrame {
             PRIMARY_COLOR
         ));
         
-        panel.add(scrollPane, BorderLayout.CENTER);
+        // Search-as-you-type filter over ID, name, email and course
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        searchPanel.setBackground(BACKGROUND_COLOR);
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        JTextField searchField = new JTextField(30);
+        searchField.setToolTipText("Student ID, name, email or course; small typos are forgiven");
+        JLabel matchLabel = new JLabel(" ");
+        searchPanel.add(searchLabel);
+        searchPanel.add(searchField);
+        searchPanel.add(matchLabel);
+        
+        JPanel listPanel = new JPanel(new BorderLayout(5, 5));
+        listPanel.setBackground(BACKGROUND_COLOR);
+        listPanel.add(searchPanel, BorderLayout.NORTH);
+        listPanel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(listPanel, BorderLayout.CENTER);
         
         // Bottom panel with actions
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
         bottomPanel.setBackground(BACKGROUND_COLOR);
         
         JButton refreshBtn = createStyledButton("Refresh List", PRIMARY_COLOR);
+        JButton changeCourseBtn = createStyledButton("Change Course", PRIMARY_COLOR);
         JButton deleteBtn = createStyledButton("Delete Selected", DANGER_COLOR);
+        JButton importBtn = createStyledButton("Import CSV", SUCCESS_COLOR);
+        JButton exportBtn = createStyledButton("Export CSV", PRIMARY_COLOR);
         
         bottomPanel.add(refreshBtn);
+        bottomPanel.add(changeCourseBtn);
         bottomPanel.add(deleteBtn);
+        bottomPanel.add(importBtn);
+        bottomPanel.add(exportBtn);
         
         panel.add(bottomPanel, BorderLayout.SOUTH);
         
         // Event handlers
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                tableModel.setQuery(searchField.getText());
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                tableModel.setQuery(searchField.getText());
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        
+        tableModel.addTableModelListener(e -> {
+            if (!tableModel.isFiltered()) {
+                matchLabel.setText(" ");
+            } else if (tableModel.getMatchCount() > tableModel.getRowCount()) {
+                matchLabel.setText("Best " + tableModel.getRowCount() + " of " + tableModel.getMatchCount() + " matches");
+            } else {
+                matchLabel.setText(tableModel.getMatchCount() == 1 ? "1 match" : tableModel.getMatchCount() + " matches");
+            }
+        });
+        
         addBtn.addActionListener(e -> {
             String id = studentIdField.getText().trim();
             String name = nameField.getText().trim();
@@ -334,7 +596,7 @@ public class AttendanceSystemUI extends JFrame {
             
             Student student = new Student(id, name, email, course);
             if (attendanceManager.addStudent(student)) {
-                tableModel.addRow(new Object[]{id, name, email, course});
+                tableModel.studentAdded(id);
                 studentIdField.setText("");
                 nameField.setText("");
                 emailField.setText("");
@@ -354,37 +616,73 @@ public class AttendanceSystemUI extends JFrame {
             courseField.setText("");
         });
         
-        refreshBtn.addActionListener(e -> {
-            tableModel.setRowCount(0);
-            for (Student student : attendanceManager.getAllStudents()) {
-                tableModel.addRow(new Object[]{
-                    student.getStudentId(),
-                    student.getName(),
-                    student.getEmail(),
-                    student.getCourse()
-                });
+        refreshBtn.addActionListener(e -> tableModel.reload());
+        
+        importBtn.addActionListener(e -> importCsv(tableModel));
+        
+        exportBtn.addActionListener(e -> exportCsv());
+        
+        changeCourseBtn.addActionListener(e -> {
+            int selectedRow = studentTable.getSelectedRow();
+            if (selectedRow == -1) {
+                JOptionPane.showMessageDialog(this, "Please select a student to move!", 
+                    "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            String studentId = tableModel.getStudentId(selectedRow);
+            Student student = attendanceManager.getStudent(studentId);
+            if (student == null) {
+                return;
+            }
+            String course = (String) JOptionPane.showInputDialog(this, "New course for " + student.getName() + ":",
+                "Change Course", JOptionPane.PLAIN_MESSAGE, null, null, student.getCourse());
+            if (course == null || course.trim().isEmpty()) {
+                return;
+            }
+            if (attendanceManager.changeCourse(studentId, course.trim())) {
+                tableModel.fireTableRowsUpdated(selectedRow, selectedRow);
             }
         });
         
         deleteBtn.addActionListener(e -> {
-            int selectedRow = studentTable.getSelectedRow();
-            if (selectedRow == -1) {
+            int[] selectedRows = studentTable.getSelectedRows();
+            if (selectedRows.length == 0) {
                 JOptionPane.showMessageDialog(this, "Please select a student to delete!", 
                     "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
             
-            String studentId = (String) tableModel.getValueAt(selectedRow, 0);
+            if (selectedRows.length == 1) {
+                int selectedRow = selectedRows[0];
+                String studentId = tableModel.getStudentId(selectedRow);
+                int confirm = JOptionPane.showConfirmDialog(this, 
+                    "Are you sure you want to delete this student?", 
+                    "Confirm Delete", JOptionPane.YES_NO_OPTION);
+                
+                if (confirm == JOptionPane.YES_OPTION) {
+                    if (attendanceManager.removeStudent(studentId)) {
+                        tableModel.studentRemoved(selectedRow);
+                        JOptionPane.showMessageDialog(this, "Student deleted successfully!", 
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                }
+                return;
+            }
+            
+            // Several rows selected, e.g. a graduating class: remove them in one bulk call
             int confirm = JOptionPane.showConfirmDialog(this, 
-                "Are you sure you want to delete this student?", 
+                "Are you sure you want to delete these " + selectedRows.length + " students?", 
                 "Confirm Delete", JOptionPane.YES_NO_OPTION);
-            
             if (confirm == JOptionPane.YES_OPTION) {
-                if (attendanceManager.removeStudent(studentId)) {
-                    tableModel.removeRow(selectedRow);
-                    JOptionPane.showMessageDialog(this, "Student deleted successfully!", 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                List<String> studentIds = new ArrayList<>(selectedRows.length);
+                for (int row : selectedRows) {
+                    studentIds.add(tableModel.getStudentId(row));
                 }
+                int removed = attendanceManager.removeStudents(studentIds);
+                tableModel.studentsRemoved(selectedRows);
+                JOptionPane.showMessageDialog(this, removed + " students deleted successfully!", 
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
             }
         });
         
@@ -417,30 +715,40 @@ public class AttendanceSystemUI extends JFrame {
         dateSpinner.setEditor(dateEditor);
         dateSpinner.setPreferredSize(new Dimension(150, 30));
         
+        // Course filter, refilled from the course index whenever it is opened
+        JComboBox<String> courseBox = new JComboBox<>(new String[] {ALL_COURSES});
+        courseBox.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                Object selected = courseBox.getSelectedItem();
+                courseBox.removeAllItems();
+                courseBox.addItem(ALL_COURSES);
+                for (String course : attendanceManager.getCourses()) {
+                    courseBox.addItem(course);
+                }
+                courseBox.setSelectedItem(selected);
+            }
+            
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+            
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+        
         JButton loadBtn = createStyledButton("Load Students", PRIMARY_COLOR);
         
         topPanel.add(dateLabel);
         topPanel.add(dateSpinner);
+        topPanel.add(courseBox);
         topPanel.add(loadBtn);
         
         panel.add(topPanel, BorderLayout.NORTH);
         
         // Table for marking attendance
-        String[] columns = {"Student ID", "Name", "Course", "Status"};
-        DefaultTableModel tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 3; // Only status column is editable
-            }
-            
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 3) {
-                    return Boolean.class;
-                }
-                return String.class;
-            }
-        };
+        AttendanceTableModel tableModel = new AttendanceTableModel(attendanceManager);
         
         JTable attendanceTable = new JTable(tableModel);
         attendanceTable.setFont(new Font("Arial", Font.PLAIN, 14));
@@ -448,6 +756,8 @@ public class AttendanceSystemUI extends JFrame {
         attendanceTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 14));
         attendanceTable.getTableHeader().setBackground(PRIMARY_COLOR);
         attendanceTable.getTableHeader().setForeground(Color.WHITE);
+        attendanceTable.setDefaultEditor(AttendanceStatus.class,
+            new DefaultCellEditor(new JComboBox<>(AttendanceStatus.values())));
         
         JScrollPane scrollPane = new JScrollPane(attendanceTable);
         scrollPane.setBorder(BorderFactory.createTitledBorder(
@@ -477,41 +787,24 @@ public class AttendanceSystemUI extends JFrame {
         
         // Event handlers
         loadBtn.addActionListener(e -> {
-            tableModel.setRowCount(0);
-            Date selectedDate = (Date) dateSpinner.getValue();
-            LocalDate date = new java.sql.Date(selectedDate.getTime()).toLocalDate();
-            
-            for (Student student : attendanceManager.getAllStudents()) {
-                // Check if attendance already exists for this date
-                ArrayList<AttendanceRecord> records = attendanceManager.getAttendanceByDate(date);
-                boolean present = false;
-                for (AttendanceRecord record : records) {
-                    if (record.getStudentId().equals(student.getStudentId())) {
-                        present = record.isPresent();
-                        break;
-                    }
+            if (tableModel.getEditedCount() > 0) {
+                int confirm = JOptionPane.showConfirmDialog(this, 
+                    tableModel.getEditedCount() + " unsaved change(s) will be lost. Load anyway?", 
+                    "Unsaved Changes", JOptionPane.YES_NO_OPTION);
+                if (confirm != JOptionPane.YES_OPTION) {
+                    return;
                 }
-                
-                tableModel.addRow(new Object[]{
-                    student.getStudentId(),
-                    student.getName(),
-                    student.getCourse(),
-                    present
-                });
             }
+            
+            Date selectedDate = (Date) dateSpinner.getValue();
+            LocalDate date = new java.sql.Date(selectedDate.getTime()).toLocalDate();
+            Object course = courseBox.getSelectedItem();
+            tableModel.load(date, ALL_COURSES.equals(course) ? null : (String) course);
         });
         
-        markAllPresentBtn.addActionListener(e -> {
-            for (int i = 0; i < tableModel.getRowCount(); i++) {
-                tableModel.setValueAt(true, i, 3);
-            }
-        });
+        markAllPresentBtn.addActionListener(e -> tableModel.markAll(AttendanceStatus.PRESENT));
         
-        markAllAbsentBtn.addActionListener(e -> {
-            for (int i = 0; i < tableModel.getRowCount(); i++) {
-                tableModel.setValueAt(false, i, 3);
-            }
-        });
+        markAllAbsentBtn.addActionListener(e -> tableModel.markAll(AttendanceStatus.ABSENT));
         
         saveBtn.addActionListener(e -> {
             if (tableModel.getRowCount() == 0) {
@@ -523,15 +816,27 @@ public class AttendanceSystemUI extends JFrame {
             Date selectedDate = (Date) dateSpinner.getValue();
             LocalDate date = new java.sql.Date(selectedDate.getTime()).toLocalDate();
             
-            for (int i = 0; i < tableModel.getRowCount(); i++) {
-                String studentId = (String) tableModel.getValueAt(i, 0);
-                Boolean present = (Boolean) tableModel.getValueAt(i, 3);
-                attendanceManager.markAttendance(studentId, date, present != null ? present : false);
+            Map<String, AttendanceStatus> statuses = tableModel.getStatuses();
+            if (statuses.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No attendance has been marked yet!", 
+                    "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            long started = SAVE_ATTENDANCE.start();
+            BulkMarkResult result = attendanceManager.markSessionStatus(date, statuses);
+            tableModel.markSaved();
+            SAVE_ATTENDANCE.stop(started);
             
-            JOptionPane.showMessageDialog(this, 
-                "Attendance saved successfully for " + date.format(DateTimeFormatter.ofPattern("dd MMM yyyy")) + "!", 
-                "Success", JOptionPane.INFORMATION_MESSAGE);
+            String message = "Attendance saved successfully for " + date.format(DateTimeFormatter.ofPattern("dd MMM yyyy")) + "!\n" +
+                "New: " + result.getCount(BulkMarkResult.Outcome.INSERTED) +
+                ", Updated: " + result.getCount(BulkMarkResult.Outcome.UPDATED) +
+                ", Unchanged: " + result.getCount(BulkMarkResult.Outcome.UNCHANGED);
+            if (!result.getRejectedStudentIds().isEmpty()) {
+                message += "\nSkipped (student not found): " + String.join(", ", result.getRejectedStudentIds());
+                JOptionPane.showMessageDialog(this, message, "Warning", JOptionPane.WARNING_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
+            }
         });
         
         return panel;
@@ -559,12 +864,38 @@ public class AttendanceSystemUI extends JFrame {
         
         JTextField studentIdField = new JTextField(15);
         JButton generateBtn = createStyledButton("Generate Report", PRIMARY_COLOR);
+        JButton trendsBtn = createStyledButton("View Trends", PRIMARY_COLOR);
         JButton viewAllBtn = createStyledButton("View All Reports", SUCCESS_COLOR);
+        JButton coursesBtn = createStyledButton("View Courses", SUCCESS_COLOR);
+        JButton cancelBtn = createStyledButton("Cancel", DANGER_COLOR);
+        cancelBtn.setEnabled(false);
+        
+        // Counting policy used by every percentage in the application
+        JLabel policyLabel = new JLabel("Counting:");
+        policyLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        CountingPolicy[] policies = {CountingPolicy.STANDARD, CountingPolicy.STRICT, CountingPolicy.LENIENT};
+        JComboBox<CountingPolicy> policyBox = new JComboBox<>(policies);
+        policyBox.setSelectedItem(attendanceManager.getCountingPolicy());
+        policyBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                Object label = value instanceof CountingPolicy ? ((CountingPolicy) value).getName() : value;
+                return super.getListCellRendererComponent(list, label, index, isSelected, cellHasFocus);
+            }
+        });
+        policyBox.addActionListener(e ->
+            attendanceManager.setCountingPolicy((CountingPolicy) policyBox.getSelectedItem()));
         
         topPanel.add(studentLabel);
         topPanel.add(studentIdField);
         topPanel.add(generateBtn);
+        topPanel.add(trendsBtn);
         topPanel.add(viewAllBtn);
+        topPanel.add(coursesBtn);
+        topPanel.add(cancelBtn);
+        topPanel.add(policyLabel);
+        topPanel.add(policyBox);
         
         panel.add(topPanel, BorderLayout.NORTH);
         
@@ -586,7 +917,7 @@ public class AttendanceSystemUI extends JFrame {
         
         panel.add(scrollPane, BorderLayout.CENTER);
         
-        // Event handlers
+        // Event handlers: reports are built off the event thread and streamed into the text area
         generateBtn.addActionListener(e -> {
             String studentId = studentIdField.getText().trim();
             
@@ -602,91 +933,171 @@ public class AttendanceSystemUI extends JFrame {
                 return;
             }
             
-            Student student = attendanceManager.getStudent(studentId);
-            Map<String, Integer> stats = attendanceManager.getStudentStatistics(studentId);
-            double percentage = attendanceManager.calculateAttendancePercentage(studentId);
-            ArrayList<AttendanceRecord> records = attendanceManager.getStudentAttendance(studentId);
-            
-            StringBuilder report = new StringBuilder();
-            report.append("=".repeat(70)).append("\n");
-            report.append("              STUDENT ATTENDANCE REPORT\n");
-            report.append("=".repeat(70)).append("\n\n");
-            
-            report.append("STUDENT DETAILS:\n");
-            report.append("-".repeat(70)).append("\n");
-            report.append(String.format("Student ID    : %s\n", student.getStudentId()));
-            report.append(String.format("Name          : %s\n", student.getName()));
-            report.append(String.format("Email         : %s\n", student.getEmail()));
-            report.append(String.format("Course        : %s\n\n", student.getCourse()));
-            
-            report.append("ATTENDANCE SUMMARY:\n");
-            report.append("-".repeat(70)).append("\n");
-            report.append(String.format("Total Days    : %d\n", stats.get("total")));
-            report.append(String.format("Present       : %d\n", stats.get("present")));
-            report.append(String.format("Absent        : %d\n", stats.get("absent")));
-            report.append(String.format("Percentage    : %.2f%%\n\n", percentage));
+            startReport(STUDENT_REPORT,
+                (out, cancelled) -> reportGenerator.writeStudentReport(studentId, out, cancelled),
+                reportArea, cancelBtn);
+        });
+        
+        trendsBtn.addActionListener(e -> {
+            String studentId = studentIdField.getText().trim();
             
-            if (!records.isEmpty()) {
-                report.append("ATTENDANCE HISTORY:\n");
-                report.append("-".repeat(70)).append("\n");
-                report.append(String.format("%-15s %-20s %-15s\n", "Date", "Status", "Remarks"));
-                report.append("-".repeat(70)).append("\n");
-                
-                // Sort records by date
-                records.sort(Comparator.comparing(AttendanceRecord::getDate));
-                
-                for (AttendanceRecord record : records) {
-                    String status = record.isPresent() ? "PRESENT" : "ABSENT";
-                    String remarks = record.isPresent() ? "✓" : "✗";
-                    report.append(String.format("%-15s %-20s %-15s\n",
-                        record.getDate().format(DateTimeFormatter.ofPattern("dd MMM yyyy")),
-                        status,
-                        remarks
-                    ));
-                }
+            if (!attendanceManager.studentExists(studentId)) {
+                JOptionPane.showMessageDialog(this, studentId.isEmpty() ? "Please enter a Student ID!" : "Student not found!", 
+                    "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
             
-            report.append("\n").append("=".repeat(70)).append("\n");
-            report.append("Report generated on: ").append(LocalDate.now().format(DateTimeFormatter.ofPattern("dd MMM yyyy"))).append("\n");
-            report.append("=".repeat(70)).append("\n");
-            
-            reportArea.setText(report.toString());
+            startReport(TREND_REPORT,
+                (out, cancelled) -> reportGenerator.writeTrendReport(studentId, out, cancelled),
+                reportArea, cancelBtn);
         });
         
-        viewAllBtn.addActionListener(e -> {
-            StringBuilder report = new StringBuilder();
-            report.append("=".repeat(70)).append("\n");
-            report.append("           ALL STUDENTS ATTENDANCE SUMMARY\n");
-            report.append("=".repeat(70)).append("\n\n");
-            
-            report.append(String.format("%-12s %-20s %-10s %-10s %-12s\n", 
-                "Student ID", "Name", "Present", "Absent", "Percentage"));
-            report.append("-".repeat(70)).append("\n");
-            
-            for (Student student : attendanceManager.getAllStudents()) {
-                Map<String, Integer> stats = attendanceManager.getStudentStatistics(student.getStudentId());
-                double percentage = attendanceManager.calculateAttendancePercentage(student.getStudentId());
-                
-                report.append(String.format("%-12s %-20s %-10d %-10d %-12.2f%%\n",
-                    student.getStudentId(),
-                    student.getName(),
-                    stats.get("present"),
-                    stats.get("absent"),
-                    percentage
-                ));
+        viewAllBtn.addActionListener(e ->
+            startReport(SUMMARY_REPORT, reportGenerator::writeSummaryReport, reportArea, cancelBtn));
+        
+        coursesBtn.addActionListener(e ->
+            startReport(COURSE_REPORT,
+                (out, cancelled) -> reportGenerator.writeCourseReport(LocalDate.now(), out, cancelled),
+                reportArea, cancelBtn));
+        
+        cancelBtn.addActionListener(e -> {
+            if (reportWorker != null && reportWorker.cancel(true)) {
+                reportArea.append("\n[Report cancelled]\n");
             }
-            
-            report.append("\n").append("=".repeat(70)).append("\n");
-            report.append("Total Students: ").append(attendanceManager.getTotalStudents()).append("\n");
-            report.append("Report generated on: ").append(LocalDate.now().format(DateTimeFormatter.ofPattern("dd MMM yyyy"))).append("\n");
-            report.append("=".repeat(70)).append("\n");
-            
-            reportArea.setText(report.toString());
         });
         
         return panel;
     }
     
+    /**
+     * Cancel any running report, clear the text area and stream a new report into it
+     */
+    private void startReport(Timer timer, ReportWorker.Report report, JTextArea reportArea, JButton cancelBtn) {
+        if (reportWorker != null) {
+            reportWorker.cancel(true);
+        }
+        reportArea.setText("");
+        cancelBtn.setEnabled(true);
+        ReportWorker worker = new ReportWorker(report, timer, reportArea, () -> {
+            if (reportWorker == null || reportWorker.isDone()) {
+                cancelBtn.setEnabled(false);
+            }
+        });
+        reportWorker = worker;
+        worker.execute();
+    }
+    
+    /**
+     * Ask what the file holds (students or attendance)
+     *
+     * @return 0 for students, 1 for attendance, or -1 if the dialog was closed
+     */
+    private int askCsvContents(String title) {
+        String[] contents = {"Students", "Attendance"};
+        return JOptionPane.showOptionDialog(this, "Which data?", title, JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE, null, contents, contents[0]);
+    }
+    
+    private JFileChooser createCsvChooser() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV and TSV files", "csv", "tsv", "tab"));
+        return chooser;
+    }
+    
+    /**
+     * Import a students or attendance file off the event thread, with a cancellable progress dialog
+     */
+    private void importCsv(StudentTableModel tableModel) {
+        int contents = askCsvContents("Import CSV");
+        JFileChooser chooser = createCsvChooser();
+        if (contents < 0 || chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        CsvImporter importer = new CsvImporter(attendanceManager, CsvFormat.forFile(file));
+        ProgressMonitor monitor = new ProgressMonitor(this, "Importing " + file.getFileName(), null, 0, 100);
+        SwingWorker<ImportResult, Void> worker = new SwingWorker<ImportResult, Void>() {
+            @Override
+            protected ImportResult doInBackground() throws IOException {
+                CsvImporter.Progress progress = (bytesRead, totalBytes, rowsRead) ->
+                    setProgress((int) Math.min(100, bytesRead * 100 / Math.max(1, totalBytes)));
+                long started = IMPORT_CSV.start();
+                try {
+                    return contents == 0 ? importer.importStudents(file, progress, monitor::isCanceled)
+                        : importer.importAttendance(file, progress, monitor::isCanceled);
+                } finally {
+                    IMPORT_CSV.stop(started);
+                }
+            }
+            
+            @Override
+            protected void done() {
+                monitor.close();
+                tableModel.reload();
+                try {
+                    ImportResult result = get();
+                    StringBuilder message = new StringBuilder(String.format("%s: %,d rows read, %,d applied, %,d skipped.",
+                        result.isCompleted() ? "Import finished" : "Import cancelled",
+                        result.getRowsRead(), result.getRowsApplied(), result.getBadRowCount()));
+                    List<ImportResult.BadRow> badRows = result.getBadRows();
+                    for (int i = 0; i < badRows.size() && i < 10; i++) {
+                        message.append('\n').append(badRows.get(i));
+                    }
+                    JOptionPane.showMessageDialog(AttendanceSystemUI.this, message.toString(), "Import CSV",
+                        result.getBadRowCount() == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    JOptionPane.showMessageDialog(AttendanceSystemUI.this, "Import failed: " + e.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                monitor.setProgress((Integer) e.getNewValue());
+            }
+        });
+        worker.execute();
+    }
+    
+    /**
+     * Export students or attendance to a file off the event thread
+     */
+    private void exportCsv() {
+        int contents = askCsvContents("Export CSV");
+        JFileChooser chooser = createCsvChooser();
+        chooser.setSelectedFile(new File(contents == 0 ? "students.csv" : "attendance.csv"));
+        if (contents < 0 || chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        CsvExporter exporter = new CsvExporter(attendanceManager, CsvFormat.forFile(file));
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws IOException {
+                long started = EXPORT_CSV.start();
+                try {
+                    return contents == 0 ? exporter.exportStudents(file) : exporter.exportAttendance(file);
+                } finally {
+                    EXPORT_CSV.stop(started);
+                }
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(AttendanceSystemUI.this,
+                        String.format("%,d rows written to %s", get(), file.getFileName()),
+                        "Export CSV", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    JOptionPane.showMessageDialog(AttendanceSystemUI.this, "Export failed: " + e.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
     private JButton createStyledButton(String text, Color color) {
         JButton button = new JButton(text);
         button.setFont(new Font("Arial", Font.BOLD, 14));
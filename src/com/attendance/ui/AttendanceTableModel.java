@@ -0,0 +1,214 @@
+package com.attendance.ui;
+
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.SessionRoster;
+import com.attendance.metrics.Metrics;
+import com.attendance.metrics.Timer;
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.Student;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Attendance marking table for one date, backed by an AttendanceService.
+ *
+ * Rows hold only student IDs; names and courses are read lazily. Statuses are
+ * packed into three bitsets (marked, present, qualified) like the store does,
+ * next to a copy of the saved statuses, so pending edits are the rows whose
+ * bits differ between the two.
+ */
+class AttendanceTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    
+    static final int STATUS_COLUMN = 3;
+    
+    private static final String[] COLUMNS = {"Student ID", "Name", "Course", "Status"};
+    private static final int MARKED = 0;
+    private static final int PRESENT = 1;
+    private static final int QUALIFIED = 2; // Late or excused
+    private static final Timer LOAD = Metrics.timer("ui.loadAttendance");
+    
+    private final AttendanceService attendanceManager;
+    private String[] studentIds;
+    private final BitSet[] status;  // Current status per row, one bitset per plane
+    private final BitSet[] saved;   // Status as of the last load or save
+    private LocalDate date;
+    
+    AttendanceTableModel(AttendanceService attendanceManager) {
+        this.attendanceManager = attendanceManager;
+        this.studentIds = new String[0];
+        this.status = new BitSet[] {new BitSet(), new BitSet(), new BitSet()};
+        this.saved = new BitSet[] {new BitSet(), new BitSet(), new BitSet()};
+    }
+    
+    /**
+     * Load every student with their saved status for a date; unmarked students stay unmarked
+     */
+    void load(LocalDate date) {
+        load(date, null);
+    }
+    
+    /**
+     * Load the students of one course (every student if course is null) with their
+     * saved status for a date
+     */
+    void load(LocalDate date, String course) {
+        long started = LOAD.start();
+        this.date = date;
+        SessionRoster roster = course == null ? attendanceManager.getSessionRoster(date)
+            : attendanceManager.getCourseRoster(course, date);
+        studentIds = new String[roster.size()];
+        for (BitSet plane : status) {
+            plane.clear();
+        }
+        for (int row = 0; row < studentIds.length; row++) {
+            studentIds[row] = roster.getStudentId(row);
+            setStatus(row, roster.getStatus(row));
+        }
+        markSaved();
+        fireTableDataChanged();
+        LOAD.stop(started);
+    }
+    
+    /**
+     * Set every row's status with a single table event
+     */
+    void markAll(AttendanceStatus value) {
+        if (studentIds.length == 0) {
+            return;
+        }
+        status[MARKED].set(0, studentIds.length, value.isMarked());
+        status[PRESENT].set(0, studentIds.length, value.isPresent());
+        status[QUALIFIED].set(0, studentIds.length, isQualified(value));
+        fireTableRowsUpdated(0, studentIds.length - 1);
+    }
+    
+    /**
+     * Date the rows were loaded for, or null before the first load
+     */
+    LocalDate getDate() {
+        return date;
+    }
+    
+    /**
+     * Number of rows whose status differs from the saved one
+     */
+    int getEditedCount() {
+        return edits().cardinality();
+    }
+    
+    /**
+     * Status of every marked or edited row, in table order, ready for
+     * markSessionStatus. Rows edited back to unmarked clear their saved mark.
+     */
+    Map<String, AttendanceStatus> getStatuses() {
+        BitSet rows = edits();
+        rows.or(status[MARKED]);
+        Map<String, AttendanceStatus> statuses = new LinkedHashMap<>(rows.cardinality() * 4 / 3 + 1);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            statuses.put(studentIds[row], statusOf(row));
+        }
+        return statuses;
+    }
+    
+    /**
+     * Record the current statuses as saved
+     */
+    void markSaved() {
+        for (int plane = 0; plane < status.length; plane++) {
+            saved[plane].clear();
+            saved[plane].or(status[plane]);
+        }
+    }
+    
+    private BitSet edits() {
+        BitSet edits = new BitSet();
+        for (int plane = 0; plane < status.length; plane++) {
+            BitSet diff = (BitSet) status[plane].clone();
+            diff.xor(saved[plane]);
+            edits.or(diff);
+        }
+        return edits;
+    }
+    
+    private AttendanceStatus statusOf(int row) {
+        if (!status[MARKED].get(row)) {
+            return AttendanceStatus.UNMARKED;
+        }
+        if (status[PRESENT].get(row)) {
+            return status[QUALIFIED].get(row) ? AttendanceStatus.LATE : AttendanceStatus.PRESENT;
+        }
+        return status[QUALIFIED].get(row) ? AttendanceStatus.EXCUSED : AttendanceStatus.ABSENT;
+    }
+    
+    private void setStatus(int row, AttendanceStatus value) {
+        status[MARKED].set(row, value.isMarked());
+        status[PRESENT].set(row, value.isPresent());
+        status[QUALIFIED].set(row, isQualified(value));
+    }
+    
+    private static boolean isQualified(AttendanceStatus value) {
+        return value == AttendanceStatus.LATE || value == AttendanceStatus.EXCUSED;
+    }
+    
+    @Override
+    public int getRowCount() {
+        return studentIds.length;
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        if (columnIndex == STATUS_COLUMN) {
+            return AttendanceStatus.class;
+        }
+        return String.class;
+    }
+    
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == STATUS_COLUMN; // Only status column is editable
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        String studentId = studentIds[row];
+        switch (column) {
+            case 0:
+                return studentId;
+            case STATUS_COLUMN:
+                return statusOf(row);
+            default:
+                Student student = attendanceManager.getStudent(studentId);
+                if (student == null) {
+                    return ""; // Removed since the last load
+                }
+                return column == 1 ? student.getName() : student.getCourse();
+        }
+    }
+    
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column != STATUS_COLUMN) {
+            return;
+        }
+        AttendanceStatus next = value instanceof AttendanceStatus ? (AttendanceStatus) value : AttendanceStatus.UNMARKED;
+        if (statusOf(row) != next) {
+            setStatus(row, next);
+            fireTableCellUpdated(row, column);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.attendance.ui;
+
+import com.attendance.metrics.Timer;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs a report off the event thread and streams its text into a JTextArea in chunks.
+ * The time spent building the report is recorded in the given timer.
+ */
+class ReportWorker extends SwingWorker<Boolean, String> {
+    
+    /**
+     * A report that writes into a sink and polls a cancellation flag, returning false if it stopped early
+     */
+    interface Report {
+        boolean write(Consumer<String> out, BooleanSupplier cancelled);
+    }
+    
+    private static final int CHUNK_CHARS = 64 * 1024; // Text buffered before it is handed to the EDT
+    
+    private final Report report;
+    private final Timer timer;
+    private final JTextArea reportArea;
+    private final Runnable onFinished;
+    private final StringBuilder chunk = new StringBuilder(CHUNK_CHARS + 256);
+    
+    ReportWorker(Report report, Timer timer, JTextArea reportArea, Runnable onFinished) {
+        this.report = report;
+        this.timer = timer;
+        this.reportArea = reportArea;
+        this.onFinished = onFinished;
+    }
+    
+    @Override
+    protected Boolean doInBackground() {
+        long started = timer.start();
+        try {
+            boolean completed = report.write(this::emit, this::isCancelled);
+            if (chunk.length() > 0 && !isCancelled()) {
+                publish(chunk.toString());
+            }
+            return completed;
+        } finally {
+            timer.stop(started);
+        }
+    }
+    
+    private void emit(String text) {
+        chunk.append(text);
+        if (chunk.length() >= CHUNK_CHARS) {
+            publish(chunk.toString());
+            chunk.setLength(0);
+        }
+    }
+    
+    @Override
+    protected void process(List<String> chunks) {
+        if (isCancelled()) {
+            return;
+        }
+        for (String text : chunks) {
+            reportArea.append(text);
+        }
+    }
+    
+    @Override
+    protected void done() {
+        try {
+            if (!get()) {
+                reportArea.append("\n[Report stopped]\n");
+            }
+        } catch (CancellationException e) {
+            // Whoever cancelled the report owns the text area now
+        } catch (Exception e) {
+            e.printStackTrace();
+            reportArea.append("\n[Report failed: " + e.getMessage() + "]\n");
+        }
+        onFinished.run();
+    }
+}
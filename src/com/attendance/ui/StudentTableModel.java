@@ -0,0 +1,153 @@
+package com.attendance.ui;
+
+import com.attendance.manager.AttendanceService;
+import com.attendance.manager.SearchResult;
+import com.attendance.metrics.Metrics;
+import com.attendance.metrics.Timer;
+import com.attendance.model.Student;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+
+/**
+ * Read-only roster table backed by an AttendanceService.
+ *
+ * Only the student IDs are held per row; cells are read from the manager when
+ * the table paints them, and adds and deletes fire single-row events
+ * (a multi-row delete fires one event for all of its rows).
+ *
+ * With a search query set the rows are the best matches from the manager's
+ * search index instead of the whole roster, re-run on every reload.
+ */
+class StudentTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    
+    private static final String[] COLUMNS = {"Student ID", "Name", "Email", "Course"};
+    private static final Timer RELOAD = Metrics.timer("ui.loadStudents");
+    private static final int MAX_MATCHES_SHOWN = 1000; // Rows kept for a search; the rest are only counted
+    
+    private final AttendanceService attendanceManager;
+    private final ArrayList<String> studentIds;
+    private String query = "";
+    private int matchCount;
+    
+    StudentTableModel(AttendanceService attendanceManager) {
+        this.attendanceManager = attendanceManager;
+        this.studentIds = new ArrayList<>();
+    }
+    
+    /**
+     * Reload the roster from the manager with a single table event
+     */
+    void reload() {
+        long started = RELOAD.start();
+        studentIds.clear();
+        if (query.isEmpty()) {
+            studentIds.addAll(attendanceManager.getStudentIds());
+            matchCount = studentIds.size();
+        } else {
+            SearchResult result = attendanceManager.searchStudents(query, MAX_MATCHES_SHOWN);
+            studentIds.addAll(result.getStudentIds());
+            matchCount = result.getMatchCount();
+        }
+        fireTableDataChanged();
+        RELOAD.stop(started);
+    }
+    
+    /**
+     * Show only the students matching a search, best first, or the whole roster if the query is blank
+     */
+    void setQuery(String query) {
+        String trimmed = query == null ? "" : query.trim();
+        if (!trimmed.equals(this.query)) {
+            this.query = trimmed;
+            reload();
+        }
+    }
+    
+    boolean isFiltered() {
+        return !query.isEmpty();
+    }
+    
+    /**
+     * Students that matched the search, including any beyond the rows shown
+     */
+    int getMatchCount() {
+        return matchCount;
+    }
+    
+    void studentAdded(String studentId) {
+        if (isFiltered()) {
+            reload(); // The new student only shows if it matches, in its ranked place
+            return;
+        }
+        studentIds.add(studentId);
+        matchCount++;
+        fireTableRowsInserted(studentIds.size() - 1, studentIds.size() - 1);
+    }
+    
+    void studentRemoved(int row) {
+        studentIds.remove(row);
+        matchCount--;
+        fireTableRowsDeleted(row, row);
+    }
+    
+    /**
+     * Drop several rows in one pass with a single table event
+     *
+     * @param rows row indexes in ascending order, as returned by JTable.getSelectedRows
+     */
+    void studentsRemoved(int[] rows) {
+        int kept = 0;
+        int next = 0;
+        for (int row = 0; row < studentIds.size(); row++) {
+            if (next < rows.length && rows[next] == row) {
+                next++;
+            } else {
+                studentIds.set(kept++, studentIds.get(row));
+            }
+        }
+        matchCount -= studentIds.size() - kept;
+        studentIds.subList(kept, studentIds.size()).clear();
+        fireTableDataChanged();
+    }
+    
+    String getStudentId(int row) {
+        return studentIds.get(row);
+    }
+    
+    @Override
+    public int getRowCount() {
+        return studentIds.size();
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        String studentId = studentIds.get(row);
+        if (column == 0) {
+            return studentId;
+        }
+        Student student = attendanceManager.getStudent(studentId);
+        if (student == null) {
+            return ""; // Removed elsewhere since the last reload
+        }
+        switch (column) {
+            case 1:
+                return student.getName();
+            case 2:
+                return student.getEmail();
+            default:
+                return student.getCourse();
+        }
+    }
+}